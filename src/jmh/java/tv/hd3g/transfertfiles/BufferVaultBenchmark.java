@@ -0,0 +1,103 @@
+/*
+ * This file is part of transfertfiles.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * Copyright (C) hdsdi3g for hd3g.tv 2021
+ *
+ */
+package tv.hd3g.transfertfiles;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compare thread safe and SPSC BufferVaults, like a filter usage:
+ * small writes, byte by byte reads, and chunk reads.
+ * Run with mvn -Pjmh test-compile exec:exec
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BufferVaultBenchmark {
+
+	@Param({ "locked", "spsc" })
+	public String implementation;
+
+	@Param({ "65536" })
+	public int chunkSize;
+
+	private byte[] source;
+	private byte[] target;
+	private BufferVault vault;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		source = new byte[chunkSize];
+		new Random(0).nextBytes(source);
+		target = new byte[4096];
+		if ("spsc".equals(implementation)) {
+			vault = BufferVault.createSPSC(chunkSize);
+		} else {
+			vault = new BufferVault(chunkSize);
+		}
+	}
+
+	@Benchmark
+	public void smallWrites(final Blackhole bh) {
+		vault.clear();
+		for (var pos = 0; pos < chunkSize; pos += 512) {
+			vault.write(source, pos, 512);
+		}
+		bh.consume(vault.getSize());
+	}
+
+	@Benchmark
+	public void readByteByByte(final Blackhole bh) {
+		vault.clear();
+		vault.write(source);
+		var sum = 0;
+		for (var pos = 0; pos < chunkSize; pos++) {
+			sum += vault.read(pos);
+		}
+		bh.consume(sum);
+	}
+
+	@Benchmark
+	public void readChunks(final Blackhole bh) {
+		vault.clear();
+		vault.write(source);
+		var pos = 0;
+		int readed;
+		while ((readed = vault.read(target, pos, 0, target.length)) > 0) {
+			pos += readed;
+		}
+		bh.consume(target);
+	}
+
+}
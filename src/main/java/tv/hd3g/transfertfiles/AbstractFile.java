@@ -24,13 +24,18 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.time.Duration;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.stream.Stream;
 
 import tv.hd3g.transfertfiles.filters.DataExchangeFilter;
+import tv.hd3g.transfertfiles.filters.DataExchangeFilterBandwidthLimit;
 import tv.hd3g.transfertfiles.local.LocalFileSystem;
 
 /**
@@ -118,6 +123,23 @@ public interface AbstractFile {
 		return list().map(CachedFileAttributes::new);
 	}
 
+	/**
+	 * Recursive toCachedList, with several directories listed in parallel if the FileSystem can do it.
+	 * See TreeWalker for the depth limit, the filters and the parallelism.
+	 * @return without this, close it if it's not fully consumed
+	 */
+	default Stream<CachedFileAttributes> walkCached() {
+		return new TreeWalker(this).stream();
+	}
+
+	/**
+	 * Recursive list, see walkCached.
+	 * @return without this, close it if it's not fully consumed
+	 */
+	default Stream<AbstractFile> walk() {
+		return walkCached().map(CachedFileAttributes::getAbstractFile);
+	}
+
 	static String normalizePath(final String path) {
 		Objects.requireNonNull(path, "path can't be null");
 		var p = path;
@@ -166,6 +188,72 @@ public interface AbstractFile {
 	                    int bufferSize,
 	                    final SizedStoppableCopyCallback copyCallback);
 
+	/**
+	 * Resume support: like downloadAbstract, but start to read this from position.
+	 * Not implemented by default, only with position = 0.
+	 * @param copyCallback get the data size readed from position
+	 * @return data size readed from this, from position
+	 */
+	default long downloadAbstract(final OutputStream outputStream,
+	                              final int bufferSize,
+	                              final SizedStoppableCopyCallback copyCallback,
+	                              final long position) {
+		if (position == 0) {
+			return downloadAbstract(outputStream, bufferSize, copyCallback);
+		}
+		throw new UnsupportedOperationException("Can't download from a position with " + getClass().getSimpleName());
+	}
+
+	/**
+	 * Resume support: like uploadAbstract, but keep the first position bytes of this, and write after them.
+	 * The previous datas after position will be lost if canTruncateOnUpload, else the upload will fail
+	 * if this is bigger than position.
+	 * Not implemented by default, only with position = 0.
+	 * @param copyCallback get the data size writed from position
+	 * @return data size writed to this, from position
+	 */
+	default long uploadAbstract(final InputStream inputStream,
+	                            final int bufferSize,
+	                            final SizedStoppableCopyCallback copyCallback,
+	                            final long position) {
+		if (position == 0) {
+			return uploadAbstract(inputStream, bufferSize, copyCallback);
+		}
+		throw new UnsupportedOperationException("Can't upload from a position with " + getClass().getSimpleName());
+	}
+
+	/**
+	 * @return true if uploadAbstract from a position can cut this to position before write.
+	 *         False by default.
+	 */
+	default boolean canTruncateOnUpload() {
+		return false;
+	}
+
+	/**
+	 * Channel version of downloadAbstract. By default, channel is used via an OutputStream adapter.
+	 * channel will be closed after download.
+	 * @return data size readed from this
+	 */
+	default long downloadAbstract(final WritableByteChannel channel,
+	                              final int bufferSize,
+	                              final SizedStoppableCopyCallback copyCallback) {
+		Objects.requireNonNull(channel, "\"channel\" can't to be null");
+		return downloadAbstract(Channels.newOutputStream(channel), bufferSize, copyCallback);
+	}
+
+	/**
+	 * Channel version of uploadAbstract. By default, channel is used via an InputStream adapter.
+	 * channel will be closed after upload.
+	 * @return data size writed to this
+	 */
+	default long uploadAbstract(final ReadableByteChannel channel,
+	                            final int bufferSize,
+	                            final SizedStoppableCopyCallback copyCallback) {
+		Objects.requireNonNull(channel, "\"channel\" can't to be null");
+		return uploadAbstract(Channels.newInputStream(channel), bufferSize, copyCallback);
+	}
+
 	static void checkIsSameFileSystem(final AbstractFile from,
 	                                  final AbstractFile destination) {
 		final var fromFs = from.getFileSystem();
@@ -182,22 +270,57 @@ public interface AbstractFile {
 		}
 	}
 
+	/**
+	 * The source and destination FileSystems BandwidthLimiters are applied after the filters.
+	 * The download side runs on TransfertExecutors.getDefault.
+	 */
 	default DataExchangeInOutStream copyAbstractToAbstract(final AbstractFile destination,
 	                                                       final DataExchangeObserver dataExchangeObserver,
 	                                                       final DataExchangeFilter... filters) {
+		return copyAbstractToAbstract(destination, dataExchangeObserver, TransfertExecutors.getDefault(), filters);
+	}
+
+	/**
+	 * The source and destination FileSystems BandwidthLimiters are applied after the filters.
+	 * @param executor used for the download side (blocking I/O), the upload side runs on the current Thread.
+	 */
+	default DataExchangeInOutStream copyAbstractToAbstract(final AbstractFile destination,
+	                                                       final DataExchangeObserver dataExchangeObserver,
+	                                                       final Executor executor,
+	                                                       final DataExchangeFilter... filters) {
 		final var bufferSize = Math.max(8192,
 		        Math.max(destination.getFileSystem().getIOBufferSize(),
 		                getFileSystem().getIOBufferSize()));
 		final var exchange = new DataExchangeInOutStream();
 		Stream.of(filters).forEach(exchange::addFilter);
-		copyAbstractToAbstract(destination, bufferSize, dataExchangeObserver, exchange);
+		Stream.of(getFileSystem().getBandwidthLimiter(), destination.getFileSystem().getBandwidthLimiter())
+		        .filter(Objects::nonNull)
+		        .distinct()
+		        .map(DataExchangeFilterBandwidthLimit::new)
+		        .forEach(exchange::addFilter);
+		copyAbstractToAbstract(destination, bufferSize, dataExchangeObserver, exchange, executor);
 		return exchange;
 	}
 
+	/**
+	 * The download side runs on TransfertExecutors.getDefault.
+	 */
 	default void copyAbstractToAbstract(final AbstractFile destination,
 	                                    final int bufferSize,
 	                                    final DataExchangeObserver dataExchangeObserver,
 	                                    final DataExchangeInOutStream exchange) {
+		copyAbstractToAbstract(destination, bufferSize, dataExchangeObserver, exchange, TransfertExecutors.getDefault());
+	}
+
+	/**
+	 * @param executor used for the download side (blocking I/O), the upload side runs on the current Thread.
+	 */
+	default void copyAbstractToAbstract(final AbstractFile destination,
+	                                    final int bufferSize,
+	                                    final DataExchangeObserver dataExchangeObserver,
+	                                    final DataExchangeInOutStream exchange,
+	                                    final Executor executor) {
+		Objects.requireNonNull(executor, "\"executor\" can't to be null");
 		checkIsSameFileSystem(this, destination);
 
 		final var sourceStream = exchange.getSourceOriginStream();
@@ -211,16 +334,18 @@ public interface AbstractFile {
 
 		dataExchangeObserver.beforeTransfert(this, destination);
 		final var downloader = CompletableFuture.supplyAsync(() -> downloadAbstract(destStream, bufferSize,
-		        readCallback));
+		        readCallback), executor);
 
 		final var writed = destination.uploadAbstract(sourceStream, bufferSize, writeCallback);
 
 		long readed;
 		try {
 			readed = downloader.get();
-		} catch (InterruptedException | ExecutionException e) {
+		} catch (final InterruptedException e) {
 			Thread.currentThread().interrupt();
 			throw new IllegalStateException(e);
+		} catch (final ExecutionException e) {
+			throw new IllegalStateException(e);
 		}
 		dataExchangeObserver.afterTransfert(this, destination, readed, writed,
 		        Duration.ofMillis(System.currentTimeMillis() - startDate));
@@ -64,6 +64,22 @@ public interface AbstractFileSystem<T extends AbstractFile> extends Closeable {
 	default void setTimeout(final long duration, final TimeUnit unit) {
 	}
 
+	/**
+	 * Shared by all copyAbstractToAbstract from/to this FileSystem.
+	 * @return null for no limit
+	 */
+	default BandwidthLimiter getBandwidthLimiter() {
+		return null;
+	}
+
+	/**
+	 * Used by the TreeWalker.
+	 * @return how many operations (list, stat...) can run at the same time on this FileSystem, 1 by default.
+	 */
+	default int getMaxParallelOperations() {
+		return 1;
+	}
+
 	/**
 	 * If disconnected, can we re-connect after ?
 	 */
@@ -0,0 +1,250 @@
+/*
+ * This file is part of transfertfiles.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * Copyright (C) hdsdi3g for hd3g.tv 2021
+ *
+ */
+package tv.hd3g.transfertfiles;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Token bucket bandwidth limiter, shareable between several concurrent transferts
+ * (see CommonAbstractFileSystem.setBandwidthLimiter and DataExchangeFilterBandwidthLimit).
+ * Datas are acquired by slices (max getBurstSize bytes), served in arrival order: concurrent transferts get the same
+ * share of the bandwidth. Waits are done with lock conditions (no spin-wait).
+ * The rate can be changed during transferts.
+ * Thread safe
+ */
+public class BandwidthLimiter {
+
+	public static final int MIN_BURST_SIZE = 8192;
+	/**
+	 * Default burst size: 1/10 of the rate.
+	 */
+	private static final int DEFAULT_BURST_BY_SECOND = 10;
+
+	private final ReentrantLock lock;
+	private final Condition changed;
+	private final Queue<Thread> waiters;
+
+	private long bytesPerSecond;
+	private long burstSize;
+	private boolean autoBurstSize;
+	private double tokens;
+	private long lastRefill;
+	private long acquiredBytes;
+	private long waitNanos;
+
+	/**
+	 * @param bytesPerSecond 0 for no limit
+	 */
+	public BandwidthLimiter(final long bytesPerSecond) {
+		this(bytesPerSecond, 0);
+	}
+
+	/**
+	 * @param bytesPerSecond 0 for no limit
+	 * @param burstSize max bytes usable without wait after an idle time, and max slice size.
+	 *        0 for 1/10 of the rate (min MIN_BURST_SIZE).
+	 */
+	public BandwidthLimiter(final long bytesPerSecond, final long burstSize) {
+		lock = new ReentrantLock();
+		changed = lock.newCondition();
+		waiters = new ArrayDeque<>();
+		lastRefill = System.nanoTime();
+		setRate(bytesPerSecond, burstSize);
+		tokens = this.burstSize;
+	}
+
+	/**
+	 * Apply now, also on the waiting transferts.
+	 * @param bytesPerSecond 0 for no limit
+	 */
+	public void setRate(final long bytesPerSecond) {
+		lock.lock();
+		try {
+			setRate(bytesPerSecond, autoBurstSize ? 0 : burstSize);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Apply now, also on the waiting transferts.
+	 * @param bytesPerSecond 0 for no limit
+	 * @param burstSize 0 for 1/10 of the rate (min MIN_BURST_SIZE).
+	 */
+	public void setRate(final long bytesPerSecond, final long burstSize) {
+		if (bytesPerSecond < 0) {
+			throw new IllegalArgumentException("Invalid bytesPerSecond=" + bytesPerSecond);
+		} else if (burstSize < 0) {
+			throw new IllegalArgumentException("Invalid burstSize=" + burstSize);
+		}
+		lock.lock();
+		try {
+			refill(System.nanoTime());
+			this.bytesPerSecond = bytesPerSecond;
+			autoBurstSize = burstSize == 0;
+			if (autoBurstSize) {
+				this.burstSize = Math.max(MIN_BURST_SIZE, bytesPerSecond / DEFAULT_BURST_BY_SECOND);
+			} else {
+				this.burstSize = burstSize;
+			}
+			tokens = Math.min(tokens, this.burstSize);
+			changed.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return 0 for no limit
+	 */
+	public long getRate() {
+		lock.lock();
+		try {
+			return bytesPerSecond;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public long getBurstSize() {
+		lock.lock();
+		try {
+			return burstSize;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return all acquired bytes, since the start
+	 */
+	public long getAcquiredBytes() {
+		lock.lock();
+		try {
+			return acquiredBytes;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the sum of all waits, in nanoseconds
+	 */
+	public long getWaitDuration() {
+		lock.lock();
+		try {
+			return waitNanos;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void refill(final long now) {
+		if (bytesPerSecond > 0) {
+			tokens = Math.min(burstSize, tokens + (double) (now - lastRefill) * bytesPerSecond / SECONDS.toNanos(1));
+		}
+		lastRefill = now;
+	}
+
+	/**
+	 * Wait the bandwidth for send/receive this bytes count.
+	 */
+	public void acquire(final long bytes) throws InterruptedIOException {
+		acquire(bytes, () -> true);
+	}
+
+	/**
+	 * Wait the bandwidth for send/receive this bytes count.
+	 * @param keepWaiting checked before each slice. Stop to wait if it return false.
+	 * @return false if keepWaiting has returned false before all bytes was acquired
+	 */
+	public boolean acquire(final long bytes, final BooleanSupplier keepWaiting) throws InterruptedIOException {
+		if (bytes < 0) {
+			throw new IllegalArgumentException("Invalid bytes=" + bytes);
+		}
+		var remaining = bytes;
+		while (remaining > 0) {
+			if (keepWaiting.getAsBoolean() == false) {
+				return false;
+			}
+			remaining -= acquireSlice(remaining);
+		}
+		return true;
+	}
+
+	/**
+	 * @return acquired bytes
+	 */
+	private long acquireSlice(final long maxBytes) throws InterruptedIOException {
+		final var currentThread = Thread.currentThread();
+		lock.lock();
+		final var startWait = System.nanoTime();
+		try {
+			waiters.add(currentThread);
+			while (true) {
+				if (bytesPerSecond == 0) {
+					acquiredBytes += maxBytes;
+					return maxBytes;
+				}
+				final var slice = Math.min(maxBytes, burstSize);
+				if (waiters.peek() == currentThread) {
+					refill(System.nanoTime());
+					if (tokens >= slice) {
+						tokens -= slice;
+						acquiredBytes += slice;
+						return slice;
+					}
+					final var missingNanos = (long) Math.ceil((slice - tokens) * SECONDS.toNanos(1) / bytesPerSecond);
+					changed.await(Math.max(1, missingNanos), NANOSECONDS);
+				} else {
+					changed.await();
+				}
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted during wait the bandwidth");
+		} finally {
+			/**
+			 * Served, or out (interrupted): let the next waiter take its slice.
+			 */
+			waiters.remove(currentThread);
+			waitNanos += System.nanoTime() - startWait;
+			changed.signalAll();
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public String toString() {
+		lock.lock();
+		try {
+			return "BandwidthLimiter [bytesPerSecond=" + bytesPerSecond + ", burstSize=" + burstSize
+			       + ", acquiredBytes=" + acquiredBytes + "]";
+		} finally {
+			lock.unlock();
+		}
+	}
+
+}
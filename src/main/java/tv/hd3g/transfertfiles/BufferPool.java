@@ -0,0 +1,319 @@
+/*
+ * This file is part of transfertfiles.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * Copyright (C) hdsdi3g for hd3g.tv 2021
+ *
+ */
+package tv.hd3g.transfertfiles;
+
+import static java.util.stream.Collectors.toUnmodifiableList;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * Size-classed (power of two) pool of byte arrays and ByteBuffers, for recycle transfert buffers.
+ * Borrowed items must be released after use (see getBorrowedCount for leak checks).
+ * Items out of MIN_POOLED_SIZE/MAX_POOLED_SIZE are never keeped, and the free items keeped by a pool
+ * never exceed its maxRetainedBytes: bigger/extra items are left to the GC. Use trim to release idle free items.
+ * Thread safe
+ */
+public class BufferPool {
+
+	public static final int MIN_POOLED_SIZE = 1 << 10;
+	public static final int MAX_POOLED_SIZE = 1 << 22;
+	public static final int DEFAULT_MAX_ITEMS_BY_CLASS = 16;
+	public static final long DEFAULT_MAX_RETAINED_BYTES = 1L << 26;
+
+	private static final int MIN_CLASS = Integer.numberOfTrailingZeros(MIN_POOLED_SIZE);
+	private static final int MAX_CLASS = Integer.numberOfTrailingZeros(MAX_POOLED_SIZE);
+	private static final BufferPool defaultPool = new BufferPool(false, DEFAULT_MAX_ITEMS_BY_CLASS);
+
+	private final boolean direct;
+	private final int maxItemsByClass;
+	private final long maxRetainedBytes;
+	private final List<SizeClass<byte[]>> arrayClasses;
+	private final List<SizeClass<ByteBuffer>> bufferClasses;
+	private final AtomicInteger borrowed;
+	private final AtomicLong allocated;
+	private final AtomicLong reused;
+	private final AtomicLong retainedBytes;
+
+	/**
+	 * Keep up to DEFAULT_MAX_RETAINED_BYTES of free items.
+	 * @param direct if true, borrowBuffer will provide direct ByteBuffers (borrowArray stay on heap)
+	 * @param maxItemsByClass max free items keeped by size class, 0 for never keep (but count) items.
+	 */
+	public BufferPool(final boolean direct, final int maxItemsByClass) {
+		this(direct, maxItemsByClass, DEFAULT_MAX_RETAINED_BYTES);
+	}
+
+	/**
+	 * @param direct if true, borrowBuffer will provide direct ByteBuffers (borrowArray stay on heap)
+	 * @param maxItemsByClass max free items keeped by size class, 0 for never keep (but count) items.
+	 * @param maxRetainedBytes max total size of free items (arrays and buffers) keeped by this pool.
+	 */
+	public BufferPool(final boolean direct, final int maxItemsByClass, final long maxRetainedBytes) {
+		if (maxItemsByClass < 0) {
+			throw new IllegalArgumentException("Invalid maxItemsByClass=" + maxItemsByClass);
+		} else if (maxRetainedBytes < 0) {
+			throw new IllegalArgumentException("Invalid maxRetainedBytes=" + maxRetainedBytes);
+		}
+		this.direct = direct;
+		this.maxItemsByClass = maxItemsByClass;
+		this.maxRetainedBytes = maxRetainedBytes;
+		final var classCount = MAX_CLASS - MIN_CLASS + 1;
+		arrayClasses = IntStream.range(0, classCount)
+		        .mapToObj(pos -> new SizeClass<byte[]>(1 << (pos + MIN_CLASS)))
+		        .collect(toUnmodifiableList());
+		bufferClasses = IntStream.range(0, classCount)
+		        .mapToObj(pos -> new SizeClass<ByteBuffer>(1 << (pos + MIN_CLASS)))
+		        .collect(toUnmodifiableList());
+		borrowed = new AtomicInteger(0);
+		allocated = new AtomicLong(0);
+		reused = new AtomicLong(0);
+		retainedBytes = new AtomicLong(0);
+	}
+
+	/**
+	 * Heap pool, shared by all default DataExchangeInOutStream and BufferVault users.
+	 */
+	public static BufferPool getDefault() {
+		return defaultPool;
+	}
+
+	private class SizeClass<T> {
+		private final int size;
+		private final ConcurrentLinkedDeque<T> items;
+		private final AtomicInteger count;
+		private volatile long lastUse;
+
+		SizeClass(final int size) {
+			this.size = size;
+			items = new ConcurrentLinkedDeque<>();
+			count = new AtomicInteger(0);
+			lastUse = System.nanoTime();
+		}
+
+		T poll() {
+			lastUse = System.nanoTime();
+			final var item = items.pollFirst();
+			if (item != null) {
+				count.decrementAndGet();
+				retainedBytes.addAndGet(-size);
+			}
+			return item;
+		}
+
+		boolean offer(final T item) {
+			lastUse = System.nanoTime();
+			if (count.incrementAndGet() > maxItemsByClass) {
+				count.decrementAndGet();
+				return false;
+			} else if (reserve() == false) {
+				count.decrementAndGet();
+				return false;
+			}
+			items.offerFirst(item);
+			return true;
+		}
+
+		private boolean reserve() {
+			while (true) {
+				final var current = retainedBytes.get();
+				if (current + size > maxRetainedBytes) {
+					return false;
+				} else if (retainedBytes.compareAndSet(current, current + size)) {
+					return true;
+				}
+			}
+		}
+
+		long trim(final long maxIdleNanos) {
+			if (System.nanoTime() - lastUse < maxIdleNanos) {
+				return 0;
+			}
+			var released = 0L;
+			while (items.isEmpty() == false) {
+				if (poll() == null) {
+					break;
+				}
+				released += size;
+			}
+			return released;
+		}
+	}
+
+	/**
+	 * @return the size class index for a min size, -1 if not pooled
+	 */
+	private static int classIndex(final int minSize) {
+		if (minSize > MAX_POOLED_SIZE) {
+			return -1;
+		} else if (minSize <= MIN_POOLED_SIZE) {
+			return 0;
+		}
+		return 32 - Integer.numberOfLeadingZeros(minSize - 1) - MIN_CLASS;
+	}
+
+	/**
+	 * @return the real size of an item borrowed for minSize
+	 */
+	public static int getPooledSize(final int minSize) {
+		if (minSize < 0) {
+			throw new IllegalArgumentException("Invalid minSize=" + minSize);
+		}
+		final var index = classIndex(minSize);
+		if (index == -1) {
+			return minSize;
+		}
+		return 1 << (index + MIN_CLASS);
+	}
+
+	/**
+	 * @return an array with a length equals or more than minSize, with random content.
+	 */
+	public byte[] borrowArray(final int minSize) {
+		final var size = getPooledSize(minSize);
+		borrowed.incrementAndGet();
+		final var index = classIndex(size);
+		if (index > -1) {
+			final var array = arrayClasses.get(index).poll();
+			if (array != null) {
+				reused.incrementAndGet();
+				return array;
+			}
+		}
+		allocated.incrementAndGet();
+		return new byte[size];
+	}
+
+	/**
+	 * Don't use array after this call.
+	 */
+	public void releaseArray(final byte[] array) {
+		borrowed.decrementAndGet();
+		final var index = classIndex(array.length);
+		if (index > -1 && getPooledSize(array.length) == array.length) {
+			arrayClasses.get(index).offer(array);
+		}
+	}
+
+	/**
+	 * @return a cleared ByteBuffer with a capacity equals or more than minSize (direct if isDirect)
+	 */
+	public ByteBuffer borrowBuffer(final int minSize) {
+		final var size = getPooledSize(minSize);
+		borrowed.incrementAndGet();
+		final var index = classIndex(size);
+		if (index > -1) {
+			final var buffer = bufferClasses.get(index).poll();
+			if (buffer != null) {
+				reused.incrementAndGet();
+				return buffer.clear();
+			}
+		}
+		allocated.incrementAndGet();
+		if (direct) {
+			return ByteBuffer.allocateDirect(size);
+		}
+		return ByteBuffer.allocate(size);
+	}
+
+	/**
+	 * Don't use buffer after this call.
+	 */
+	public void releaseBuffer(final ByteBuffer buffer) {
+		borrowed.decrementAndGet();
+		final var capacity = buffer.capacity();
+		final var index = classIndex(capacity);
+		if (index > -1
+		    && getPooledSize(capacity) == capacity
+		    && buffer.isDirect() == direct
+		    && buffer.isReadOnly() == false) {
+			bufferClasses.get(index).offer(buffer);
+		}
+	}
+
+	/**
+	 * Release (to the GC) all free items keeped by this pool.
+	 * @return released bytes
+	 */
+	public long trim() {
+		return trim(Duration.ZERO);
+	}
+
+	/**
+	 * Release (to the GC) the free items of the size classes not borrowed/released since maxIdle.
+	 * @return released bytes
+	 */
+	public long trim(final Duration maxIdle) {
+		Objects.requireNonNull(maxIdle, "\"maxIdle\" can't to be null");
+		if (maxIdle.isNegative()) {
+			throw new IllegalArgumentException("Invalid maxIdle=" + maxIdle);
+		}
+		final var maxIdleNanos = maxIdle.toNanos();
+		return arrayClasses.stream().mapToLong(c -> c.trim(maxIdleNanos)).sum()
+		       + bufferClasses.stream().mapToLong(c -> c.trim(maxIdleNanos)).sum();
+	}
+
+	/**
+	 * @return total size of free items actually keeped by this pool, never more than getMaxRetainedBytes
+	 */
+	public long getRetainedBytes() {
+		return retainedBytes.get();
+	}
+
+	public long getMaxRetainedBytes() {
+		return maxRetainedBytes;
+	}
+
+	public boolean isDirect() {
+		return direct;
+	}
+
+	/**
+	 * @return borrowed items (arrays and buffers) not yet released. Should be 0 after all transferts ends.
+	 */
+	public int getBorrowedCount() {
+		return borrowed.get();
+	}
+
+	/**
+	 * @return items created by this pool
+	 */
+	public long getAllocatedCount() {
+		return allocated.get();
+	}
+
+	/**
+	 * @return borrowed items provided by recycle
+	 */
+	public long getReusedCount() {
+		return reused.get();
+	}
+
+	@Override
+	public String toString() {
+		return "BufferPool [direct=" + direct + ", borrowed=" + borrowed.get()
+		       + ", allocated=" + allocated.get() + ", reused=" + reused.get()
+		       + ", retainedBytes=" + retainedBytes.get() + "]";
+	}
+
+}
@@ -24,40 +24,163 @@ import static java.util.Spliterator.SIZED;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Spliterators;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 /**
- * Thread safe
+ * Thread safe, except instances created by createSPSC.
  */
 public class BufferVault {
+	static final byte[] EMPTY = new byte[0];
+	private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+	private static final VarHandle DATAS;
+	private static final VarHandle SIZE;
+
+	static {
+		try {
+			final var lookup = MethodHandles.lookup();
+			DATAS = lookup.findVarHandle(BufferVault.class, "datas", byte[].class);
+			SIZE = lookup.findVarHandle(BufferVault.class, "size", int.class);
+		} catch (final ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	/**
+	 * Default max bytes count added to the internal array by one growth.
+	 */
+	public static final int DEFAULT_MAX_GROW_SIZE = 1 << 23;
+
+	private final BufferPool pool;
+	/**
+	 * null for SPSC instances
+	 */
+	private final ReentrantLock lock;
+	/**
+	 * Pooled arrays replaced by a growth, for SPSC instances: the reader can still read it until release.
+	 */
+	private final List<byte[]> retiredPooledDatas;
+	/**
+	 * The writer publish datas and size with release stores, the others get it with acquire loads.
+	 */
 	private byte[] datas;
 	private int size;
-	private boolean justWrite;
+	private boolean pooledDatas;
+	private volatile boolean justWrite;
+	private int maxGrowSize = DEFAULT_MAX_GROW_SIZE;
 
 	public BufferVault() {
-		datas = new byte[0];
-		size = 0;
-		justWrite = false;
+		this(0, null);
 	}
 
 	public BufferVault(final int baseInternalArraySize) {
-		datas = new byte[baseInternalArraySize];
+		this(baseInternalArraySize, null);
+	}
+
+	/**
+	 * Internal arrays will be borrowed from pool. Call release after use.
+	 */
+	public BufferVault(final BufferPool pool) {
+		this(0, pool);
+	}
+
+	/**
+	 * @param pool if set, internal arrays will be borrowed from it. Call release after use.
+	 */
+	public BufferVault(final int baseInternalArraySize, final BufferPool pool) {
+		this(baseInternalArraySize, pool, false);
+	}
+
+	private BufferVault(final int baseInternalArraySize, final BufferPool pool, final boolean spsc) {
+		this.pool = pool;
+		lock = spsc ? null : new ReentrantLock();
+		retiredPooledDatas = new ArrayList<>();
 		size = 0;
 		justWrite = false;
+		if (pool != null && baseInternalArraySize > 0) {
+			datas = pool.borrowArray(baseInternalArraySize);
+			pooledDatas = true;
+		} else {
+			datas = baseInternalArraySize == 0 ? EMPTY : new byte[baseInternalArraySize];
+			pooledDatas = false;
+		}
 	}
 
-	public synchronized BufferVault copy() {
-		final var buffer = new BufferVault(size);
-		buffer.size = size;
-		System.arraycopy(datas, 0, buffer.datas, 0, size);
-		return buffer;
+	/**
+	 * BufferVault without locks, for one writer Thread and one reader Thread (or one Thread for both), like
+	 * a filter output, written by the filter and read by the next one.
+	 * The reader can read all datas before getSize during writes, even if the internal array grows.
+	 * Only the writer Thread can call write*, ensureBufferSize, setMaxGrowSize, clear, release and compactAndAppend
+	 * (clear, release and compactAndAppend can change already written datas: the reader must not read during calls).
+	 * Not thread safe for more Threads.
+	 * @param pool if set, internal arrays will be borrowed from it. Call release after use.
+	 */
+	public static BufferVault createSPSC(final int baseInternalArraySize, final BufferPool pool) {
+		return new BufferVault(baseInternalArraySize, pool, true);
+	}
+
+	/**
+	 * See createSPSC(int, BufferPool)
+	 */
+	public static BufferVault createSPSC(final int baseInternalArraySize) {
+		return new BufferVault(baseInternalArraySize, null, true);
+	}
+
+	boolean isSPSC() {
+		return lock == null;
+	}
+
+	private void lock() {
+		if (lock != null) {
+			lock.lock();
+		}
+	}
+
+	private void unlock() {
+		if (lock != null) {
+			lock.unlock();
+		}
+	}
+
+	private int acquireSize() {
+		return (int) SIZE.getAcquire(this);
+	}
+
+	/**
+	 * Always call after acquireSize: the returned array contains all datas before this size.
+	 */
+	private byte[] acquireDatas() {
+		return (byte[]) DATAS.getAcquire(this);
+	}
+
+	private void publishSize(final int newSize) {
+		SIZE.setRelease(this, newSize);
+	}
+
+	/**
+	 * Deep copy, with the same thread safety.
+	 */
+	public BufferVault copy() {
+		lock();
+		try {
+			final var currentSize = acquireSize();
+			final var buffer = new BufferVault(currentSize, null, lock == null);
+			buffer.maxGrowSize = maxGrowSize;
+			return buffer.write(acquireDatas(), 0, currentSize);
+		} finally {
+			unlock();
+		}
 	}
 
 	/**
@@ -69,77 +192,203 @@ public class BufferVault {
 		return new BufferVault().write(byteArrayToHeapByteBuffer);
 	}
 
-	private static void checkBufferArray(final byte[] buffer, final int pos, final int len) {
+	static void checkBufferArray(final byte[] buffer, final int pos, final int len) {
 		Objects.checkFromIndexSize(pos, len, buffer.length);
 	}
 
-	public synchronized BufferVault ensureBufferSize(final int itemsCountToAdd) {
-		final var missingSize = size + itemsCountToAdd - datas.length;
+	/**
+	 * Set the max bytes count added to the internal array by one growth. Internal array grows geometrically
+	 * (doubles its size) up to this step, then linearly. A growth is always at least the missing size.
+	 * @return this
+	 */
+	public BufferVault setMaxGrowSize(final int maxGrowSize) {
+		if (maxGrowSize < 1) {
+			throw new IllegalArgumentException("Invalid maxGrowSize=" + maxGrowSize);
+		}
+		lock();
+		try {
+			this.maxGrowSize = maxGrowSize;
+			return this;
+		} finally {
+			unlock();
+		}
+	}
+
+	public int getMaxGrowSize() {
+		lock();
+		try {
+			return maxGrowSize;
+		} finally {
+			unlock();
+		}
+	}
+
+	/**
+	 * @return the internal array size
+	 */
+	int getCapacity() {
+		return acquireDatas().length;
+	}
+
+	public BufferVault ensureBufferSize(final int itemsCountToAdd) {
+		lock();
+		try {
+			final var newSize = computeGrowSize(datas.length, size, itemsCountToAdd, maxGrowSize);
+			if (newSize == -1) {
+				return this;
+			}
+
+			final byte[] newData;
+			if (pool != null) {
+				newData = pool.borrowArray(newSize);
+			} else {
+				newData = new byte[newSize];
+			}
+			System.arraycopy(datas, 0, newData, 0, size);
+			if (lock != null) {
+				releaseDatas();
+			} else if (pooledDatas) {
+				retiredPooledDatas.add(datas);
+			}
+			DATAS.setRelease(this, newData);
+			pooledDatas = pool != null;
+			justWrite = true;
+			return this;
+		} finally {
+			unlock();
+		}
+	}
+
+	/**
+	 * @return the new internal array size, or -1 if it's not needed to grow
+	 */
+	static int computeGrowSize(final int capacity,
+	                           final int size,
+	                           final int itemsCountToAdd,
+	                           final int maxGrowSize) {
+		final var minSize = (long) size + itemsCountToAdd;
 		if (itemsCountToAdd < 0) {
 			throw new IllegalArgumentException("Invalid itemsCountToAdd=" + itemsCountToAdd);
-		} else if (missingSize <= 0) {
-			return this;
+		} else if (minSize <= capacity) {
+			return -1;
+		} else if (minSize > MAX_ARRAY_SIZE) {
+			throw new OutOfMemoryError("Can't grow internal array to " + minSize + " bytes");
 		}
-		final var newData = new byte[datas.length + missingSize];
-		System.arraycopy(datas, 0, newData, 0, size);
-		datas = newData;
-		justWrite = true;
-		return this;
+		final var grownSize = capacity + (long) Math.min(capacity, maxGrowSize);
+		return (int) Math.min(MAX_ARRAY_SIZE, Math.max(minSize, grownSize));
 	}
 
-	public synchronized void clear() {
-		size = 0;
-		justWrite = true;
+	private void releaseDatas() {
+		if (pooledDatas) {
+			pool.releaseArray(datas);
+			pooledDatas = false;
+		}
+	}
+
+	/**
+	 * Clear, and give back the internal array to the pool, if this was created with a BufferPool.
+	 * This stay usable after (a new array will be borrowed on the next write).
+	 */
+	public void release() {
+		lock();
+		try {
+			final var toRelease = datas;
+			final var wasPooled = pooledDatas;
+			pooledDatas = false;
+			DATAS.setRelease(this, EMPTY);
+			clear();
+			if (wasPooled) {
+				pool.releaseArray(toRelease);
+			}
+			if (retiredPooledDatas.isEmpty() == false) {
+				retiredPooledDatas.forEach(pool::releaseArray);
+				retiredPooledDatas.clear();
+			}
+		} finally {
+			unlock();
+		}
+	}
+
+	public void clear() {
+		lock();
+		try {
+			publishSize(0);
+			justWrite = true;
+		} finally {
+			unlock();
+		}
 	}
 
 	/**
 	 * @return this
 	 */
-	public synchronized BufferVault write(final ByteBuffer buffer) {
+	public BufferVault write(final ByteBuffer buffer) {
 		if (buffer.hasRemaining() == false) {
 			return this;
 		}
-		justWrite = true;
-		final var remaining = buffer.remaining();
-		ensureBufferSize(remaining);
-		buffer.get(datas, size, remaining);
-		size += remaining;
-		return this;
+		lock();
+		try {
+			justWrite = true;
+			final var remaining = buffer.remaining();
+			ensureBufferSize(remaining);
+			buffer.get(datas, size, remaining);
+			publishSize(size + remaining);
+			return this;
+		} finally {
+			unlock();
+		}
 	}
 
 	/**
 	 * @return this
 	 */
-	public synchronized BufferVault write(final byte[] buffer, final int pos, final int len) {
+	public BufferVault write(final byte[] buffer, final int pos, final int len) {
 		if (len == 0) {
 			return this;
 		}
 		checkBufferArray(buffer, pos, len);
-		justWrite = true;
-		ensureBufferSize(len);
-		System.arraycopy(buffer, pos, datas, size, len);
-		size += len;
-		return this;
+		lock();
+		try {
+			justWrite = true;
+			ensureBufferSize(len);
+			System.arraycopy(buffer, pos, datas, size, len);
+			publishSize(size + len);
+			return this;
+		} finally {
+			unlock();
+		}
 	}
 
 	/**
 	 * @return this
 	 */
-	public synchronized BufferVault write(final byte[] buffer) {
+	public BufferVault write(final byte[] buffer) {
 		return write(buffer, 0, buffer.length);
 	}
 
-	public synchronized int getSize() {
-		return size;
+	public int getSize() {
+		lock();
+		try {
+			return acquireSize();
+		} finally {
+			unlock();
+		}
 	}
 
 	/**
+	 * Deep copy, see asReadOnlyByteBuffer for a view.
 	 * @return empty if not datas to read.
 	 */
-	public synchronized byte[] readAll() {
-		final var array = new byte[size];
-		System.arraycopy(datas, 0, array, 0, size);
-		return array;
+	public byte[] readAll() {
+		lock();
+		try {
+			final var currentSize = acquireSize();
+			final var array = new byte[currentSize];
+			System.arraycopy(acquireDatas(), 0, array, 0, currentSize);
+			return array;
+		} finally {
+			unlock();
+		}
 	}
 
 	/**
@@ -149,38 +398,103 @@ public class BufferVault {
 	 * @param len max data len to put in b
 	 * @return real data len readed from internal array, -1 no datas/pos to big
 	 */
-	public synchronized int read(final byte[] b, final int pos, final int off, final int len) {
+	public int read(final byte[] b, final int pos, final int off, final int len) {
 		Objects.checkFromIndexSize(off, len, b.length);
-		if (pos >= size) {
-			return -1;
-		} else if (len <= 0) {
-			return 0;
+		lock();
+		try {
+			final var currentSize = acquireSize();
+			if (pos >= currentSize) {
+				return -1;
+			} else if (len <= 0) {
+				return 0;
+			}
+			final var lenToRead = Math.min(len, currentSize - pos);
+			System.arraycopy(acquireDatas(), pos, b, off, lenToRead);
+			return lenToRead;
+		} finally {
+			unlock();
 		}
-		final var lenToRead = Math.min(len, size - pos);
-		System.arraycopy(datas, pos, b, off, lenToRead);
-		return lenToRead;
 	}
 
-	public synchronized int read(final int pos) {
-		if (pos >= size) {
-			return -1;
-		} else if (pos < 0) {
-			throw new IndexOutOfBoundsException("Can't access to negative positions: " + pos);
+	public int read(final int pos) {
+		lock();
+		try {
+			if (pos >= acquireSize()) {
+				return -1;
+			} else if (pos < 0) {
+				throw new IndexOutOfBoundsException("Can't access to negative positions: " + pos);
+			}
+			return acquireDatas()[pos] & 0xFF;
+		} finally {
+			unlock();
 		}
-		return datas[pos] & 0xFF;
 	}
 
 	/**
+	 * Deep copy, see asReadOnlyByteBuffer for a view.
 	 * @return empty if not datas to read.
 	 */
-	public synchronized ByteBuffer readAllToByteBuffer() {
-		return ByteBuffer.allocate(size).put(datas, 0, size).flip();
+	public ByteBuffer readAllToByteBuffer() {
+		lock();
+		try {
+			final var currentSize = acquireSize();
+			return ByteBuffer.allocate(currentSize).put(acquireDatas(), 0, currentSize).flip();
+		} finally {
+			unlock();
+		}
+	}
+
+	/**
+	 * Zero-copy view on all actual datas (position 0, limit size).
+	 * Don't write/clear/compact this during the view usage: it can be invalidated or overwritten.
+	 * @return empty if not datas to read.
+	 */
+	public ByteBuffer asReadOnlyByteBuffer() {
+		lock();
+		try {
+			final var currentSize = acquireSize();
+			return ByteBuffer.wrap(acquireDatas(), 0, currentSize).slice().asReadOnlyBuffer();
+		} finally {
+			unlock();
+		}
+	}
+
+	/**
+	 * Zero-copy view on a part of the actual datas (position 0, limit len).
+	 * Don't write/clear/compact this during the view usage: it can be invalidated or overwritten.
+	 * @param pos where start the view in internal array
+	 * @param len view size, pos + len must be less or equals to getSize
+	 */
+	public ByteBuffer slice(final int pos, final int len) {
+		lock();
+		try {
+			Objects.checkFromIndexSize(pos, len, acquireSize());
+			return ByteBuffer.wrap(acquireDatas(), pos, len).slice().asReadOnlyBuffer();
+		} finally {
+			unlock();
+		}
+	}
+
+	/**
+	 * Put all datas in target (from its current position), without allocations.
+	 * @throws java.nio.BufferOverflowException if target has not enough space remaining
+	 * @return this
+	 */
+	public BufferVault read(final ByteBuffer target) {
+		lock();
+		try {
+			final var currentSize = acquireSize();
+			target.put(acquireDatas(), 0, currentSize);
+			return this;
+		} finally {
+			unlock();
+		}
 	}
 
 	/**
 	 * Internal buffer will be reused for each next
 	 */
-	public synchronized Iterator<byte[]> iterator(final int bufferSize) {
+	public Iterator<byte[]> iterator(final int bufferSize) {
 		justWrite = false;
 		return new Itr(bufferSize);
 	}
@@ -188,46 +502,59 @@ public class BufferVault {
 	/**
 	 * Internal buffer will be reused for each item
 	 */
-	public synchronized Stream<byte[]> stream(final int bufferSize) {
-		return StreamSupport.stream(Spliterators.spliterator(
-		        iterator(bufferSize), size, IMMUTABLE + ORDERED + SIZED + NONNULL),
-		        false);
+	public Stream<byte[]> stream(final int bufferSize) {
+		lock();
+		try {
+			return StreamSupport.stream(Spliterators.spliterator(
+			        iterator(bufferSize), acquireSize(), IMMUTABLE + ORDERED + SIZED + NONNULL),
+			        false);
+		} finally {
+			unlock();
+		}
 	}
 
 	private class Itr implements Iterator<byte[]> {
 
 		private final byte[] bArray;
-		private volatile int readIndex;
+		private int readIndex;
 
 		Itr(final int bufferSize) {
 			bArray = new byte[bufferSize];
 			readIndex = 0;
 		}
 
-		@Override
-		public synchronized boolean hasNext() {
+		private void checkJustWrite() {
 			if (justWrite) {
 				throw new IllegalStateException("You can't iterate just after write. This instance is obsolete");
 			}
-			return readIndex + 1 <= size;
 		}
 
 		@Override
-		public synchronized byte[] next() {
-			if (justWrite) {
-				throw new IllegalStateException("You can't iterate just after write. This instance is obsolete");
-			}
-			byte[] array;
-			if (readIndex + 1 > size) {
-				throw new NoSuchElementException();
-			} else if (size - readIndex < bArray.length) {
-				array = new byte[size - readIndex];
-			} else {
-				array = bArray;
+		public boolean hasNext() {
+			checkJustWrite();
+			return readIndex + 1 <= getSize();
+		}
+
+		@Override
+		public byte[] next() {
+			checkJustWrite();
+			lock();
+			try {
+				final var currentSize = acquireSize();
+				byte[] array;
+				if (readIndex + 1 > currentSize) {
+					throw new NoSuchElementException();
+				} else if (currentSize - readIndex < bArray.length) {
+					array = new byte[currentSize - readIndex];
+				} else {
+					array = bArray;
+				}
+				System.arraycopy(acquireDatas(), readIndex, array, 0, array.length);
+				readIndex += array.length;
+				return array;
+			} finally {
+				unlock();
 			}
-			System.arraycopy(datas, readIndex, array, 0, array.length);
-			readIndex += array.length;
-			return array;
 		}
 	}
 
@@ -257,9 +584,15 @@ public class BufferVault {
 	 * Inject direcly the internal byte array. If outStream change it, it will change internally.
 	 * @return this
 	 */
-	public synchronized BufferVault read(final OutputStream outStream) throws IOException {
-		outStream.write(datas, 0, size);
-		return this;
+	public BufferVault read(final OutputStream outStream) throws IOException {
+		lock();
+		try {
+			final var currentSize = acquireSize();
+			outStream.write(acquireDatas(), 0, currentSize);
+			return this;
+		} finally {
+			unlock();
+		}
 	}
 
 	/**
@@ -267,26 +600,33 @@ public class BufferVault {
 	 * @param inStream
 	 * @return total transferred bytes
 	 */
-	public synchronized int write(final InputStream inStream, final int bufferSize) throws IOException {
-		ensureBufferSize(inStream.available());
-		/**
-		 * See InputStream.transferTo
-		 */
-		var transferred = 0;
-		final var buffer = new byte[bufferSize];
-		int read;
-		while ((read = inStream.read(buffer, 0, buffer.length)) >= 0) {
-			write(buffer, 0, read);
-			transferred += read;
+	public int write(final InputStream inStream, final int bufferSize) throws IOException {
+		lock();
+		try {
+			ensureBufferSize(inStream.available());
+			/**
+			 * See InputStream.transferTo
+			 */
+			var transferred = 0;
+			final var buffer = new byte[bufferSize];
+			int read;
+			while ((read = inStream.read(buffer, 0, buffer.length)) >= 0) {
+				write(buffer, 0, read);
+				transferred += read;
+			}
+			return transferred;
+		} finally {
+			unlock();
 		}
-		return transferred;
 	}
 
 	@Override
 	public int hashCode() {
+		final var currentSize = acquireSize();
+		final var currentDatas = acquireDatas();
 		var result = 1;
-		for (var pos = 0; pos < size; pos++) {
-			result = 31 * result + datas[pos];
+		for (var pos = 0; pos < currentSize; pos++) {
+			result = 31 * result + currentDatas[pos];
 		}
 		return result;
 	}
@@ -303,36 +643,32 @@ public class BufferVault {
 			return false;
 		}
 		final var other = (BufferVault) obj;
-		return Arrays.equals(datas, 0, size, other.datas, 0, other.size);
+		final var currentSize = acquireSize();
+		final var otherSize = other.acquireSize();
+		return Arrays.equals(acquireDatas(), 0, currentSize, other.acquireDatas(), 0, otherSize);
 	}
 
 	/**
 	 * Remove all internal datas betwen 0 and pos, add append (copy/write) newDataSource content.
+	 * Internal array is reused if it's large enough.
 	 */
-	public synchronized void compactAndAppend(final int pos, final BufferVault inserted) {
+	public void compactAndAppend(final int pos, final BufferVault inserted) {
 		if (pos < 0) {
 			throw new IllegalArgumentException("Invalid negative pos: " + pos);
 		}
-		justWrite = true;
-
-		if (pos >= size) {
-			clear();
-			write(inserted.datas);
-		} else if (datas.length == 0 || pos == 0) {
-			write(inserted.datas);
-		} else if (pos + inserted.size > datas.length) {
-			final var datasLarger = new byte[size - pos + inserted.size];
-			System.arraycopy(datas, pos, datasLarger, 0, size - pos);
-			datas = datasLarger;
-			System.arraycopy(inserted.datas, 0, datas, size - pos, inserted.size);
-			size = datas.length;
-		} else {
-			final var newDatas = new byte[size - pos + inserted.size];
-			System.arraycopy(datas, pos, newDatas, 0, size - pos);
-			System.arraycopy(inserted.datas, 0, newDatas, size - pos, inserted.size);
-
-			datas = newDatas;
-			size = newDatas.length;
+		lock();
+		try {
+			justWrite = true;
+
+			if (pos >= size) {
+				publishSize(0);
+			} else if (pos > 0) {
+				System.arraycopy(datas, pos, datas, 0, size - pos);
+				publishSize(size - pos);
+			}
+			write(inserted.asReadOnlyByteBuffer());
+		} finally {
+			unlock();
 		}
 	}
 
@@ -120,4 +120,10 @@ public abstract class CommonAbstractFile<T extends AbstractFileSystem<?>> implem
 		return totalSize;
 	}
 
+	protected static void checkPosition(final long position) {
+		if (position < 0) {
+			throw new IllegalArgumentException("Invalid position=" + position);
+		}
+	}
+
 }
@@ -25,6 +25,7 @@ public abstract class CommonAbstractFileSystem<T extends AbstractFile> implement
 
 	private final String basePath;
 	protected long timeoutDuration;
+	private volatile BandwidthLimiter bandwidthLimiter;
 
 	protected CommonAbstractFileSystem(final String basePath) {
 		this.basePath = normalizePath(Objects.requireNonNull(basePath, "basePath"));
@@ -79,4 +80,18 @@ public abstract class CommonAbstractFileSystem<T extends AbstractFile> implement
 	public long getTimeout() {
 		return timeoutDuration;
 	}
+
+	@Override
+	public BandwidthLimiter getBandwidthLimiter() {
+		return bandwidthLimiter;
+	}
+
+	/**
+	 * Set the same BandwidthLimiter on several FileSystems for a global limit.
+	 * Only apply on the next copyAbstractToAbstract.
+	 * @param bandwidthLimiter null for no limit
+	 */
+	public void setBandwidthLimiter(final BandwidthLimiter bandwidthLimiter) {
+		this.bandwidthLimiter = bandwidthLimiter;
+	}
 }
@@ -0,0 +1,329 @@
+/*
+ * This file is part of transfertfiles.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * Copyright (C) hdsdi3g for hd3g.tv 2021
+ *
+ */
+package tv.hd3g.transfertfiles;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Min/max pool of connections (like FTP control connections, or SFTP channels), for one file system.
+ * Idle connections are checked before each borrow, and closed after idleTimeout (while there are more than
+ * minSize connections), on each borrow/giveBack. Waiting borrowers are served in arrival order.
+ * Thread safe
+ */
+public class ConnectionPool<T> {
+	private static final Logger log = LogManager.getLogger();
+
+	/**
+	 * See setValidationIdleTime
+	 */
+	public static final Duration DEFAULT_VALIDATION_IDLE_TIME = Duration.ofSeconds(3);
+
+	@FunctionalInterface
+	public interface ConnectionFactory<T> {
+		/**
+		 * @return a connected and ready to use connection
+		 */
+		T create() throws IOException;
+	}
+
+	@FunctionalInterface
+	public interface ConnectionValidator<T> {
+		/**
+		 * @return false if this connection can't be used anymore
+		 */
+		boolean isValid(T connection) throws IOException;
+	}
+
+	@FunctionalInterface
+	public interface ConnectionCloser<T> {
+		void close(T connection) throws IOException;
+	}
+
+	private final String name;
+	private final ConnectionFactory<T> factory;
+	private final ConnectionValidator<T> validator;
+	private final ConnectionCloser<T> closer;
+	private final int minSize;
+	private final int maxSize;
+	private final long borrowTimeoutNanos;
+	private final long idleTimeoutNanos;
+	private final ReentrantLock lock;
+	private final Condition released;
+	private final Deque<IdleConnection<T>> idleConnections;
+
+	private int size;
+	private boolean closed;
+	private long validationIdleTimeNanos;
+
+	private static class IdleConnection<T> {
+		final T connection;
+		final long since;
+
+		IdleConnection(final T connection) {
+			this.connection = connection;
+			since = System.nanoTime();
+		}
+	}
+
+	/**
+	 * @param name for logs and errors, like "FTP connection"
+	 * @param validator called before the borrow of a connection idle since more than the validation idle time
+	 * @param closer called on invalid, evicted and discarded connections
+	 */
+	public ConnectionPool(final String name,
+	                      final ConnectionFactory<T> factory,
+	                      final ConnectionValidator<T> validator,
+	                      final ConnectionCloser<T> closer,
+	                      final int minSize,
+	                      final int maxSize,
+	                      final Duration borrowTimeout,
+	                      final Duration idleTimeout) {
+		if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+			throw new IllegalArgumentException("Invalid pool sizes min=" + minSize + ", max=" + maxSize);
+		} else if (borrowTimeout.isNegative() || idleTimeout.isNegative()) {
+			throw new IllegalArgumentException("Invalid pool timeouts " + borrowTimeout + ", " + idleTimeout);
+		}
+		this.name = Objects.requireNonNull(name, "\"name\" can't to be null");
+		this.factory = Objects.requireNonNull(factory, "\"factory\" can't to be null");
+		this.validator = Objects.requireNonNull(validator, "\"validator\" can't to be null");
+		this.closer = Objects.requireNonNull(closer, "\"closer\" can't to be null");
+		this.minSize = minSize;
+		this.maxSize = maxSize;
+		borrowTimeoutNanos = borrowTimeout.toNanos();
+		idleTimeoutNanos = idleTimeout.toNanos();
+		lock = new ReentrantLock(true);
+		released = lock.newCondition();
+		idleConnections = new ArrayDeque<>();
+		validationIdleTimeNanos = DEFAULT_VALIDATION_IDLE_TIME.toNanos();
+	}
+
+	/**
+	 * The validator can cost a network round trip (like a NOOP command): connections given back since less than
+	 * this time are borrowed without validation. If such a connection is broken, the operation will fail, and the
+	 * caller will discard it.
+	 * @param validationIdleTime Duration.ZERO for validate before each borrow, default is DEFAULT_VALIDATION_IDLE_TIME
+	 */
+	public void setValidationIdleTime(final Duration validationIdleTime) {
+		if (validationIdleTime.isNegative()) {
+			throw new IllegalArgumentException("Invalid validationIdleTime=" + validationIdleTime);
+		}
+		lock.lock();
+		try {
+			validationIdleTimeNanos = validationIdleTime.toNanos();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Wait up to borrowTimeout a free connection, or create it.
+	 * Never forget to giveBack (or discard) it after use.
+	 */
+	public T borrow() throws IOException {
+		final var deadline = System.nanoTime() + borrowTimeoutNanos;
+		while (true) {
+			IdleConnection<T> idle = null;
+			var needValidation = false;
+			var canCreate = false;
+			final var toClose = new ArrayList<T>();
+			lock.lock();
+			try {
+				while (idle == null && canCreate == false) {
+					if (closed) {
+						throw new IOException(name + " pool is closed");
+					}
+					toClose.addAll(evictIdles());
+					if (idleConnections.isEmpty() == false) {
+						idle = idleConnections.pollFirst();
+						needValidation = System.nanoTime() - idle.since >= validationIdleTimeNanos;
+					} else if (size < maxSize) {
+						size++;
+						canCreate = true;
+					} else {
+						final var remaining = deadline - System.nanoTime();
+						if (remaining <= 0) {
+							throw new IOException("Timeout during wait a free " + name + " (max " + maxSize + ")");
+						}
+						released.await(remaining, NANOSECONDS);
+					}
+				}
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted during wait a free " + name);
+			} finally {
+				lock.unlock();
+				toClose.forEach(this::closeConnection);
+			}
+
+			if (canCreate) {
+				return create();
+			} else if (needValidation == false || isValid(idle.connection)) {
+				return idle.connection;
+			}
+			log.debug("Close an invalid pooled {}", name);
+			discard(idle.connection);
+		}
+	}
+
+	private T create() throws IOException {
+		try {
+			final var connection = factory.create();
+			log.debug("New pooled {} ({}/{})", name, size, maxSize);
+			return connection;
+		} catch (final IOException | RuntimeException e) {
+			lock.lock();
+			try {
+				size--;
+				released.signal();
+			} finally {
+				lock.unlock();
+			}
+			throw e;
+		}
+	}
+
+	private boolean isValid(final T connection) {
+		try {
+			return validator.isValid(connection);
+		} catch (final IOException e) {
+			log.trace("Pooled {} is invalid", name, e);
+			return false;
+		}
+	}
+
+	/**
+	 * Recycle a borrowed connection.
+	 */
+	public void giveBack(final T connection) {
+		final var toClose = new ArrayList<T>();
+		lock.lock();
+		try {
+			if (closed) {
+				size--;
+				toClose.add(connection);
+			} else {
+				idleConnections.addFirst(new IdleConnection<>(connection));
+				toClose.addAll(evictIdles());
+				released.signal();
+			}
+		} finally {
+			lock.unlock();
+		}
+		toClose.forEach(this::closeConnection);
+	}
+
+	/**
+	 * Close (don't recycle) a borrowed connection.
+	 */
+	public void discard(final T connection) {
+		lock.lock();
+		try {
+			size--;
+			released.signal();
+		} finally {
+			lock.unlock();
+		}
+		closeConnection(connection);
+	}
+
+	/**
+	 * With lock. The oldest idle connections are at the end.
+	 * @return evicted connections, to close
+	 */
+	private List<T> evictIdles() {
+		final var evicted = new ArrayList<T>();
+		final var now = System.nanoTime();
+		while (size > minSize
+		       && idleConnections.isEmpty() == false
+		       && now - idleConnections.peekLast().since > idleTimeoutNanos) {
+			evicted.add(idleConnections.pollLast().connection);
+			size--;
+		}
+		return evicted;
+	}
+
+	private void closeConnection(final T connection) {
+		try {
+			closer.close(connection);
+		} catch (final IOException e) {
+			log.warn("Can't close pooled {}", name, e);
+		}
+	}
+
+	/**
+	 * @return borrowed and idle connections count
+	 */
+	public int getSize() {
+		lock.lock();
+		try {
+			return size;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public int getIdleCount() {
+		lock.lock();
+		try {
+			return idleConnections.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Close all idle connections. Borrowed connections will be closed on giveBack.
+	 */
+	public void close() {
+		final var toClose = new ArrayList<T>();
+		lock.lock();
+		try {
+			closed = true;
+			idleConnections.forEach(i -> toClose.add(i.connection));
+			size -= idleConnections.size();
+			idleConnections.clear();
+			released.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		toClose.forEach(this::closeConnection);
+	}
+
+	@Override
+	public String toString() {
+		return name + " pool (" + getSize() + "/" + maxSize + ")";
+	}
+
+}
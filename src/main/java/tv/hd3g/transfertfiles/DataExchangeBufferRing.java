@@ -0,0 +1,266 @@
+/*
+ * This file is part of transfertfiles.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * Copyright (C) hdsdi3g for hd3g.tv 2021
+ *
+ */
+package tv.hd3g.transfertfiles;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+import tv.hd3g.transfertfiles.DataExchangeInOutStream.QueueStats;
+
+/**
+ * Bounded ring of reusable ByteBuffers, between one writer Thread and one reader Thread.
+ * Waits are done with lock conditions (no spin-wait).
+ * Slot buffers are borrowed from a BufferPool, and given back with release.
+ * Thread safe
+ */
+class DataExchangeBufferRing {
+
+	private final BufferPool pool;
+	private final ByteBuffer[] slots;
+	private final ReentrantLock lock;
+	private final Condition notEmpty;
+	private final Condition notFull;
+
+	private int head;
+	private int count;
+	private boolean released;
+
+	private int maxCount;
+	private long pushCount;
+	private long countSum;
+	private long writerWaitCount;
+	private long writerWaitNanos;
+	private long readerWaitCount;
+	private long readerWaitNanos;
+
+	DataExchangeBufferRing(final int depth) {
+		this(depth, BufferPool.getDefault());
+	}
+
+	DataExchangeBufferRing(final int depth, final BufferPool pool) {
+		if (depth < 1) {
+			throw new IllegalArgumentException("Invalid depth=" + depth);
+		}
+		this.pool = Objects.requireNonNull(pool, "\"pool\" can't to be null");
+		slots = new ByteBuffer[depth];
+		lock = new ReentrantLock();
+		notEmpty = lock.newCondition();
+		notFull = lock.newCondition();
+		head = 0;
+		count = 0;
+	}
+
+	/**
+	 * Copy all datas in the next free slot. Wait if the ring is full.
+	 * Only one Thread can push.
+	 * @param keepWaiting checked before each wait. Call wakeUp to force a re-check.
+	 * @return false if keepWaiting has returned false before a slot was free, or if this ring was released:
+	 *         nothing was pushed.
+	 */
+	boolean push(final BufferVault datas, final BooleanSupplier keepWaiting) throws InterruptedIOException {
+		final var size = datas.getSize();
+		if (size == 0) {
+			return true;
+		}
+
+		lock.lock();
+		try {
+			if (count == slots.length) {
+				writerWaitCount++;
+				final var startWait = System.nanoTime();
+				try {
+					while (count == slots.length) {
+						if (keepWaiting.getAsBoolean() == false || released) {
+							return false;
+						}
+						notFull.await();
+					}
+				} finally {
+					writerWaitNanos += System.nanoTime() - startWait;
+				}
+			}
+			if (released) {
+				return false;
+			}
+
+			/**
+			 * The free slot is not visible by the reader before count++.
+			 * The copy is done with the lock, for a safe release by the reader side.
+			 */
+			final var pos = (head + count) % slots.length;
+			var slot = slots[pos];
+			if (slot == null || slot.capacity() < size) {
+				if (slot != null) {
+					pool.releaseBuffer(slot);
+				}
+				slot = pool.borrowBuffer(size);
+				slots[pos] = slot;
+			}
+			slot.clear();
+			datas.read(slot);
+			slot.flip();
+
+			count++;
+			pushCount++;
+			countSum += count;
+			maxCount = Math.max(maxCount, count);
+			notEmpty.signal();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted during wait a free slot");
+		} finally {
+			lock.unlock();
+		}
+		return true;
+	}
+
+	/**
+	 * Wait if the ring is empty. Only one Thread can read.
+	 * The returned buffer stay owned by the reader up to releaseHead.
+	 * @param keepWaiting checked before each wait. Call wakeUp to force a re-check.
+	 * @return null if keepWaiting has returned false before a slot was filled.
+	 */
+	ByteBuffer waitHead(final BooleanSupplier keepWaiting) throws InterruptedIOException {
+		lock.lock();
+		try {
+			if (count == 0) {
+				readerWaitCount++;
+				final var startWait = System.nanoTime();
+				try {
+					while (count == 0) {
+						if (keepWaiting.getAsBoolean() == false || released) {
+							return null;
+						}
+						notEmpty.await();
+					}
+				} finally {
+					readerWaitNanos += System.nanoTime() - startWait;
+				}
+			}
+			return slots[head];
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted during wait a filled slot");
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Free the slot returned by waitHead, for a future push.
+	 */
+	void releaseHead() {
+		lock.lock();
+		try {
+			if (count == 0) {
+				return;
+			}
+			head = (head + 1) % slots.length;
+			count--;
+			notFull.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return filled slot count
+	 */
+	int size() {
+		lock.lock();
+		try {
+			return count;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * @return the remaining bytes count to read in all filled slots
+	 */
+	long remaining() {
+		lock.lock();
+		try {
+			var total = 0L;
+			for (var pos = 0; pos < count; pos++) {
+				total += slots[(head + pos) % slots.length].remaining();
+			}
+			return total;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Drop all filled slots, and give back all slot buffers to the pool.
+	 * Next push will be ignored.
+	 */
+	void release() {
+		lock.lock();
+		try {
+			head = 0;
+			count = 0;
+			released = true;
+			for (var pos = 0; pos < slots.length; pos++) {
+				if (slots[pos] != null) {
+					pool.releaseBuffer(slots[pos]);
+					slots[pos] = null;
+				}
+			}
+			notFull.signalAll();
+			notEmpty.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	QueueStats getStats() {
+		lock.lock();
+		try {
+			final var average = pushCount == 0 ? 0d : (double) countSum / (double) pushCount;
+			return new QueueStats(slots.length, count, maxCount, pushCount, average,
+			        writerWaitCount, NANOSECONDS.toMillis(writerWaitNanos),
+			        readerWaitCount, NANOSECONDS.toMillis(readerWaitNanos));
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Force all waiting Threads to re-check their keepWaiting.
+	 */
+	void wakeUp() {
+		lock.lock();
+		try {
+			notEmpty.signalAll();
+			notFull.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+}
@@ -0,0 +1,426 @@
+/*
+ * This file is part of transfertfiles.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * Copyright (C) hdsdi3g for hd3g.tv 2021
+ *
+ */
+package tv.hd3g.transfertfiles;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import tv.hd3g.transfertfiles.filters.DataExchangeFilter;
+
+/**
+ * Staged (parallel) run of a filter chain: one Thread by stage, with bounded queues between stages.
+ * A stage is a single filter, or a group of following observer filters (see DataExchangeFilter.isObserverOnly),
+ * applied in parallel on the same chunk (the first by the stage Thread, the others on TransfertExecutors.getCompute).
+ * Chunks are copied between stages (filters can reuse their returned BufferVault).
+ * Not reusable
+ */
+class DataExchangeFilterStages {
+	private static final Logger log = LogManager.getLogger();
+
+	/**
+	 * Provided by DataExchangeInOutStream
+	 */
+	interface Host {
+		/**
+		 * @return null if the filter want to stop the transfert
+		 */
+		BufferVault applyFilter(boolean last, BufferVault datas, DataExchangeFilter filter) throws IOException;
+
+		void onStoppedByFilter(DataExchangeFilter filter);
+
+		void onFilterError(Exception e);
+
+		/**
+		 * @return false if the transfert is stopped/closed: stages will stop here. Call wakeUp after a change.
+		 */
+		boolean isWorking();
+
+		/**
+		 * Send datas to the reader
+		 */
+		void push(BufferVault datas) throws IOException;
+	}
+
+	private final Host host;
+	private final BufferPool bufferPool;
+	private final List<Stage> stages;
+	private final CountDownLatch ended;
+	private final AtomicInteger canceledFromStage;
+	private volatile boolean started;
+
+	private static class Chunk {
+		private final BufferVault datas;
+		private final boolean last;
+
+		Chunk(final BufferVault datas, final boolean last) {
+			this.datas = datas;
+			this.last = last;
+		}
+	}
+
+	DataExchangeFilterStages(final Host host,
+	                         final List<DataExchangeFilter> filters,
+	                         final int stageQueueChunks,
+	                         final BufferPool bufferPool) {
+		this.host = host;
+		this.bufferPool = bufferPool;
+		if (stageQueueChunks < 1) {
+			throw new IllegalArgumentException("Invalid stageQueueChunks=" + stageQueueChunks);
+		}
+
+		stages = new ArrayList<>();
+		var group = new ArrayList<DataExchangeFilter>();
+		for (final var filter : filters) {
+			if (filter.isObserverOnly() && (group.isEmpty() || group.get(0).isObserverOnly())) {
+				group.add(filter);
+				continue;
+			}
+			if (group.isEmpty() == false) {
+				stages.add(new Stage(stages.size(), group, stageQueueChunks));
+			}
+			group = new ArrayList<>();
+			group.add(filter);
+		}
+		if (group.isEmpty() == false) {
+			stages.add(new Stage(stages.size(), group, stageQueueChunks));
+		}
+		for (var pos = 0; pos + 1 < stages.size(); pos++) {
+			stages.get(pos).next = stages.get(pos + 1);
+		}
+		ended = new CountDownLatch(stages.size());
+		canceledFromStage = new AtomicInteger(Integer.MAX_VALUE);
+	}
+
+	private synchronized void start() {
+		if (started) {
+			return;
+		}
+		started = true;
+		stages.forEach(stage -> {
+			final var t = new Thread(stage, "DataExchangeStage" + stage.index + "-" + stage.getName());
+			t.setDaemon(true);
+			t.start();
+		});
+	}
+
+	/**
+	 * Copy datas to the first stage, wait if the stage queue is full.
+	 * @return false if the transfert is stopped/closed: nothing was sent.
+	 */
+	boolean submit(final BufferVault datas, final boolean last) throws IOException {
+		start();
+		final var chunk = new Chunk(copy(datas), last);
+		if (stages.get(0).offer(chunk) == false) {
+			chunk.datas.release();
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Wait the end of all stages (after the last chunk, or after a stop/error).
+	 */
+	void awaitEnd() throws InterruptedIOException {
+		if (started == false) {
+			return;
+		}
+		try {
+			ended.await();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted during wait filter stages");
+		}
+		stages.forEach(Stage::drain);
+	}
+
+	/**
+	 * Force all waiting stages to re-check Host.isWorking.
+	 */
+	void wakeUp() {
+		stages.forEach(Stage::wakeUp);
+	}
+
+	/**
+	 * @return in ms, time spend by the filter stage to wait datas from the previous stage (or writer)
+	 */
+	long getWaitDuration(final DataExchangeFilter filter) {
+		return stages.stream()
+		        .filter(s -> s.filters.contains(filter))
+		        .findFirst()
+		        .map(s -> NANOSECONDS.toMillis(s.waitNanos.get()))
+		        .orElse(0L);
+	}
+
+	int getStageCount() {
+		return stages.size();
+	}
+
+	private BufferVault copy(final BufferVault datas) {
+		final var view = datas.asReadOnlyByteBuffer();
+		return new BufferVault(view.remaining(), bufferPool).write(view);
+	}
+
+	private class Stage implements Runnable {
+		private final int index;
+		private final List<DataExchangeFilter> filters;
+		private final Deque<Chunk> input;
+		private final int inputCapacity;
+		private final ReentrantLock lock;
+		private final Condition notEmpty;
+		private final Condition notFull;
+		private final AtomicLong waitNanos;
+		private final boolean fanOut;
+		private Stage next;
+
+		Stage(final int index, final List<DataExchangeFilter> filters, final int stageQueueChunks) {
+			this.index = index;
+			this.filters = List.copyOf(filters);
+			input = new ArrayDeque<>(stageQueueChunks);
+			inputCapacity = stageQueueChunks;
+			lock = new ReentrantLock();
+			notEmpty = lock.newCondition();
+			notFull = lock.newCondition();
+			waitNanos = new AtomicLong(0);
+			fanOut = filters.size() > 1;
+		}
+
+		String getName() {
+			return filters.stream()
+			        .map(DataExchangeFilter::getFilterName)
+			        .collect(Collectors.joining("+"));
+		}
+
+		boolean offer(final Chunk chunk) throws InterruptedIOException {
+			lock.lock();
+			try {
+				while (host.isWorking()) {
+					if (input.size() < inputCapacity) {
+						input.add(chunk);
+						notEmpty.signal();
+						return true;
+					}
+					notFull.await();
+				}
+				return false;
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted during wait a free stage slot");
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private Chunk take() throws InterruptedException {
+			final var startWait = System.nanoTime();
+			lock.lock();
+			try {
+				while (host.isWorking()) {
+					final var chunk = input.poll();
+					if (chunk != null) {
+						notFull.signal();
+						return chunk;
+					}
+					notEmpty.await();
+				}
+				return null;
+			} finally {
+				lock.unlock();
+				waitNanos.addAndGet(System.nanoTime() - startWait);
+			}
+		}
+
+		void wakeUp() {
+			lock.lock();
+			try {
+				notEmpty.signalAll();
+				notFull.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public void run() {
+			try {
+				Chunk chunk;
+				while ((chunk = take()) != null) {
+					if (process(chunk) == false || chunk.last) {
+						break;
+					}
+				}
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				log.warn("Stage {} was interrupted", getName());
+			} catch (final IOException e) {
+				log.warn("Can't push filtered datas", e);
+			} finally {
+				if (index > canceledFromStage.get()) {
+					filters.forEach(filter -> {
+						try {
+							filter.onCancelTransfert();
+						} catch (final Exception e) {
+							log.warn("Error during during close all filters", e);
+						}
+					});
+				}
+				drain();
+				ended.countDown();
+			}
+		}
+
+		/**
+		 * @return false if the transfert is stopped/closed
+		 */
+		private boolean process(final Chunk chunk) throws IOException {
+			BufferVault result;
+			try {
+				result = apply(chunk);
+			} catch (final Exception e) {
+				chunk.datas.release();
+				canceledFromStage.set(index);
+				if (e instanceof StoppedByFilterException) {
+					log.info("Filter manually stop exchange process {}", e.getMessage());
+					host.onStoppedByFilter(((StoppedByFilterException) e).filter);
+				} else {
+					log.error("Error during process filtering (close exchange process)", e);
+					host.onFilterError(e);
+				}
+				return false;
+			}
+
+			Chunk nextChunk;
+			if (result == null || result.getSize() == 0 && filters.get(0).isConsumingDataSources() == false) {
+				nextChunk = chunk;
+			} else {
+				nextChunk = new Chunk(copy(result), chunk.last);
+				chunk.datas.release();
+			}
+
+			if (nextChunk.datas.getSize() == 0 && nextChunk.last == false) {
+				nextChunk.datas.release();
+				return true;
+			} else if (next == null) {
+				try {
+					host.push(nextChunk.datas);
+				} finally {
+					nextChunk.datas.release();
+				}
+				return true;
+			} else if (next.offer(nextChunk) == false) {
+				nextChunk.datas.release();
+				return false;
+			}
+			return true;
+		}
+
+		/**
+		 * @return null if it's needed to forward the input chunk
+		 */
+		private BufferVault apply(final Chunk chunk) throws Exception {// NOSONAR S112
+			if (fanOut == false) {
+				return applyOne(chunk, filters.get(0));
+			}
+
+			final var futures = new ArrayList<CompletableFuture<BufferVault>>(filters.size() - 1);
+			for (var pos = 1; pos < filters.size(); pos++) {
+				final var filter = filters.get(pos);
+				futures.add(CompletableFuture.supplyAsync(() -> {
+					try {
+						return applyOne(chunk, filter);
+					} catch (final IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}, TransfertExecutors.getCompute()));
+			}
+			Exception error = null;
+			try {
+				applyOne(chunk, filters.get(0));
+			} catch (final Exception e) {
+				error = e;
+			}
+			for (final var future : futures) {
+				try {
+					future.get();
+				} catch (final ExecutionException e) {
+					var cause = e.getCause();
+					if (cause instanceof UncheckedIOException) {
+						cause = cause.getCause();
+					}
+					if (error == null && cause instanceof Exception) {
+						error = (Exception) cause;
+					}
+				}
+			}
+			if (error != null) {
+				throw error;
+			}
+			/**
+			 * Observers never change datas
+			 */
+			return null;
+		}
+
+		private BufferVault applyOne(final Chunk chunk, final DataExchangeFilter filter) throws IOException {
+			final var result = host.applyFilter(chunk.last, chunk.datas, filter);
+			if (result == null) {
+				throw new StoppedByFilterException(filter);
+			}
+			return result;
+		}
+
+		private void drain() {
+			lock.lock();
+			try {
+				Chunk chunk;
+				while ((chunk = input.poll()) != null) {
+					chunk.datas.release();
+				}
+				notFull.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	private static class StoppedByFilterException extends RuntimeException {
+		private final transient DataExchangeFilter filter;
+
+		StoppedByFilterException(final DataExchangeFilter filter) {
+			super(filter.getFilterName());
+			this.filter = filter;
+		}
+	}
+
+}
@@ -20,12 +20,14 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -40,17 +42,25 @@ import tv.hd3g.transfertfiles.filters.DataExchangeFilter;
 public class DataExchangeInOutStream {
 	private static final Logger log = LogManager.getLogger();
 
+	/**
+	 * Max filtered chunk count the writer can push before wait the reader.
+	 */
+	public static final int DEFAULT_WINDOW_CHUNKS = 4;
+
 	private final InternalInputStream internalInputStream;
 	private final InternalOutputStream internalOutputStream;
 
 	private final List<DataExchangeFilter> filters;
-	private final ConcurrentLinkedQueue<ByteBuffer> readQueue;
+	private final DataExchangeBufferRing readQueue;
 	private final AtomicInteger ensureMinWriteBuffersSize;
-	private final HashMap<DataExchangeFilter, Long> filterPerformance;
-	private final HashMap<DataExchangeFilter, Long> filterDeltaThroughput;
+	private final Map<DataExchangeFilter, Long> filterPerformance;
+	private final Map<DataExchangeFilter, Long> filterDeltaThroughput;
 	private final AtomicLong ioWaitTime;
+	private final BufferPool bufferPool;
 
 	private volatile State state;
+	private volatile int stageQueueChunks;
+	private volatile DataExchangeFilterStages stages;
 
 	public enum State {
 		WORKING(false, false),
@@ -69,18 +79,53 @@ public class DataExchangeInOutStream {
 	}
 
 	public DataExchangeInOutStream() {
+		this(DEFAULT_WINDOW_CHUNKS);
+	}
+
+	/**
+	 * @param windowChunks max filtered chunk count the writer can push before wait the reader.
+	 */
+	public DataExchangeInOutStream(final int windowChunks) {
+		this(windowChunks, 0);
+	}
+
+	/**
+	 * @param windowChunks max filtered chunk count the writer can push before wait the reader.
+	 * @param chunkSize min written bytes count before filter and push a chunk to the reader.
+	 *        Filters can ask more with ensureMinDataSourcesDataLength. 0 for push on each write.
+	 */
+	public DataExchangeInOutStream(final int windowChunks, final int chunkSize) {
+		this(windowChunks, chunkSize, BufferPool.getDefault());
+	}
+
+	/**
+	 * @param windowChunks max filtered chunk count the writer can push before wait the reader.
+	 * @param chunkSize min written bytes count before filter and push a chunk to the reader.
+	 *        Filters can ask more with ensureMinDataSourcesDataLength. 0 for push on each write.
+	 * @param bufferPool used by the writer buffer and the read queue chunks. All borrowed buffers are given back
+	 *        when the reader is closed or has readed all datas, and when the writer is closed.
+	 */
+	public DataExchangeInOutStream(final int windowChunks, final int chunkSize, final BufferPool bufferPool) {
+		if (chunkSize < 0) {
+			throw new IllegalArgumentException("Invalid chunkSize=" + chunkSize);
+		}
+		this.bufferPool = Objects.requireNonNull(bufferPool, "\"bufferPool\" can't to be null");
 		internalInputStream = new InternalInputStream();
-		internalOutputStream = new InternalOutputStream();
+		internalOutputStream = new InternalOutputStream(bufferPool);
 		filters = Collections.synchronizedList(new ArrayList<>());
-		readQueue = new ConcurrentLinkedQueue<>();
+		readQueue = new DataExchangeBufferRing(windowChunks, bufferPool);
 		state = State.WORKING;
-		ensureMinWriteBuffersSize = new AtomicInteger();
-		filterPerformance = new HashMap<>();
-		filterDeltaThroughput = new HashMap<>();
+		ensureMinWriteBuffersSize = new AtomicInteger(chunkSize);
+		internalOutputStream.buffers.ensureBufferSize(chunkSize);
+		filterPerformance = new ConcurrentHashMap<>();
+		filterDeltaThroughput = new ConcurrentHashMap<>();
 		ioWaitTime = new AtomicLong(0);
 	}
 
-	private class InternalInputStream extends InputStream {
+	/**
+	 * Also a ReadableByteChannel: datas are copied directly from the read queue to the ByteBuffers.
+	 */
+	private class InternalInputStream extends InputStream implements ReadableByteChannel {
 		private volatile boolean readerClosed = false;
 
 		@Override
@@ -90,42 +135,79 @@ public class DataExchangeInOutStream {
 				throw new IllegalArgumentException("Invalid len=" + len);
 			}
 
+			final var buffer = waitHead(len);
+			if (buffer == null) {
+				return -1;
+			}
+
+			final var toRead = Math.min(buffer.remaining(), len);
+			log.trace("Read from remaining={} toRead={} to b={} off={} len={}",
+			        buffer.remaining(), toRead, b.length, off, len);
+
+			final var now = System.currentTimeMillis();
+			buffer.get(b, off, toRead);
+			ioWaitTime.addAndGet(System.currentTimeMillis() - now);
+			afterRead(buffer);
+			return toRead;
+		}
+
+		@Override
+		public int read(final ByteBuffer dst) throws IOException {
+			final var len = dst.remaining();
+			if (len == 0) {
+				return 0;
+			}
+
+			final var buffer = waitHead(len);
+			if (buffer == null) {
+				return -1;
+			}
+
+			final var toRead = Math.min(buffer.remaining(), len);
+			log.trace("Read from remaining={} toRead={} to ByteBuffer", buffer.remaining(), toRead);
+
+			final var now = System.currentTimeMillis();
+			dst.put(buffer.slice().limit(toRead));
+			buffer.position(buffer.position() + toRead);
+			ioWaitTime.addAndGet(System.currentTimeMillis() - now);
+			afterRead(buffer);
+			return toRead;
+		}
+
+		/**
+		 * @return null if there is nothing more to read
+		 */
+		private ByteBuffer waitHead(final int len) throws IOException {
 			if (log.isTraceEnabled()) {
 				log.trace("Read event (wait) of {} byte(s), {} in queue...", len, readQueue.size());
 			}
 
-			while (readQueue.isEmpty()
-			       && state == State.WORKING
-			       && readerClosed == false) {
-				Thread.onSpinWait();
-			}
+			final var buffer = readQueue.waitHead(() -> state == State.WORKING && readerClosed == false);
 
 			if (readerClosed) {
 				throw new IOException("Closed InputStream (reader)");
 			} else if (state.stopped) {
 				log.trace("Read stopped: {}, {} in queue", state, readQueue.size());
 				readerClosed = true;
-				return -1;
-			} else if (readQueue.isEmpty() && state.close) {
+				readQueue.release();
+				return null;
+			} else if (buffer == null) {
 				log.trace("Read: outstream (reader) was close, nothing in queue");
-				return -1;
+				readQueue.release();
+				return null;
 			}
+			return buffer;
+		}
 
-			final var buffer = readQueue.element();
-
-			final var toRead = Math.min(buffer.remaining(), len);
-			log.trace("Read from remaining={} toRead={} to b={} off={} len={}",
-			        buffer.remaining(), toRead, b.length, off, len);
-
-			final var now = System.currentTimeMillis();
-			buffer.get(b, off, toRead);
-			ioWaitTime.addAndGet(System.currentTimeMillis() - now);
-
+		private void afterRead(final ByteBuffer buffer) {
 			if (buffer.hasRemaining() == false) {
-				readQueue.remove();
+				readQueue.releaseHead();
 			}
+		}
 
-			return toRead;
+		@Override
+		public boolean isOpen() {
+			return readerClosed == false;
 		}
 
 		@Override
@@ -143,10 +225,7 @@ public class DataExchangeInOutStream {
 			if (readerClosed || state.stopped) {
 				return 0;
 			}
-			return (int) readQueue.stream()
-			        .mapToInt(ByteBuffer::remaining)
-			        .summaryStatistics()
-			        .getSum();
+			return (int) Math.min(Integer.MAX_VALUE, readQueue.remaining());
 		}
 
 		@Override
@@ -155,21 +234,27 @@ public class DataExchangeInOutStream {
 				return;
 			}
 			readerClosed = true;
+			readQueue.wakeUp();
 
-			internalOutputStream.close();
-
-			readQueue.forEach(ByteBuffer::clear);
+			try {
+				internalOutputStream.close();
+			} finally {
+				readQueue.release();
+			}
 			log.trace("Close read");
 		}
 
 	}
 
-	private class InternalOutputStream extends OutputStream {
+	/**
+	 * Also a WritableByteChannel: ByteBuffers (like mapped files) are copied directly in the write buffers.
+	 */
+	private class InternalOutputStream extends OutputStream implements WritableByteChannel {
 
 		private final BufferVault buffers;
 
-		InternalOutputStream() {
-			buffers = new BufferVault();
+		InternalOutputStream(final BufferPool bufferPool) {
+			buffers = new BufferVault(bufferPool);
 		}
 
 		@Override
@@ -180,23 +265,38 @@ public class DataExchangeInOutStream {
 			}
 
 			if (state == State.WORKING) {
-				while (readQueue.isEmpty() == false) {
-					Thread.onSpinWait();
-				}
-
 				final var now = System.currentTimeMillis();
 				buffers.write(b, off, len);
 				ioWaitTime.addAndGet(System.currentTimeMillis() - now);
+				log.trace("Write from b/off/len {}/{}/{}", b.length, off, len);
+				afterWrite();
+			}
+			checkState();
+		}
 
-				final var totalWrited = buffers.getSize();
-				log.trace("Write from b/off/len {}/{}/{} to total writed {}",
-				        b.length, off, len, totalWrited);
+		@Override
+		public int write(final ByteBuffer src) throws IOException {
+			final var len = src.remaining();
+			if (state == State.WORKING && len > 0) {
+				final var now = System.currentTimeMillis();
+				buffers.write(src);
+				ioWaitTime.addAndGet(System.currentTimeMillis() - now);
+				log.trace("Write from ByteBuffer {} bytes", len);
+				afterWrite();
+			}
+			checkState();
+			return len;
+		}
 
-				if (totalWrited > ensureMinWriteBuffersSize.get()) {
-					processFilters(false);
-				}
+		private void afterWrite() throws IOException {
+			final var totalWrited = buffers.getSize();
+			log.trace("Total writed {}", totalWrited);
+			if (totalWrited > ensureMinWriteBuffersSize.get()) {
+				processFilters(false);
 			}
+		}
 
+		private void checkState() throws IOException {
 			if (state == State.STOPPED_BY_FILTER) {
 				throw new IOException("Stopped OutputStream (writer) by filter");
 			} else if (state == State.STOPPED_BY_USER) {
@@ -208,6 +308,11 @@ public class DataExchangeInOutStream {
 			}
 		}
 
+		@Override
+		public boolean isOpen() {
+			return state == State.WORKING;
+		}
+
 		@Override
 		public void write(final int b) throws IOException {
 			final var oneByte = new byte[] { (byte) b };
@@ -217,13 +322,21 @@ public class DataExchangeInOutStream {
 		@Override
 		public void close() throws IOException {
 			if (state.close) {
+				final var currentStages = stages;
+				if (currentStages != null) {
+					currentStages.awaitEnd();
+				}
 				return;
 			}
 			log.trace("Close write");
 
-			processFilters(true);
+			try {
+				processFilters(true);
+			} finally {
+				buffers.release();
+			}
 			if (state == State.WORKING) {
-				state = State.WRITER_MANUALLY_CLOSED;
+				setState(State.WRITER_MANUALLY_CLOSED);
 			} else if (state == State.STOPPED_BY_FILTER) {
 				throw new IOException("Stopped OutputStream (writer) by filter");
 			} else if (state == State.STOPPED_BY_USER) {
@@ -233,7 +346,17 @@ public class DataExchangeInOutStream {
 			}
 		}
 
-		private void processFilters(final boolean lastCall) {
+		private void processFilters(final boolean lastCall) throws IOException {
+			final var currentStages = getStages();
+			if (currentStages != null) {
+				currentStages.submit(buffers, lastCall);
+				buffers.clear();
+				if (lastCall) {
+					currentStages.awaitEnd();
+				}
+				return;
+			}
+
 			var canceled = false;
 			var nextBuffers = buffers;
 
@@ -258,16 +381,19 @@ public class DataExchangeInOutStream {
 				} catch (final StoppedByFilter e) {
 					canceled = true;
 					log.info("Filter manually stop exchange process {}", currentFilter.getFilterName());
-					state = State.STOPPED_BY_FILTER;
+					setState(State.STOPPED_BY_FILTER);
 				} catch (final Exception e) {
 					canceled = true;
 					log.error("Error during process filtering (close exchange process)", e);
-					state = State.FILTER_ERROR;
+					setState(State.FILTER_ERROR);
 				}
 			}
 			if (canceled == false) {
-				readQueue.add(nextBuffers.readAllToByteBuffer());
-				if (log.isTraceEnabled()) {
+				final var pushed = readQueue.push(nextBuffers,
+				        () -> state == State.WORKING && internalInputStream.readerClosed == false);
+				if (pushed == false) {
+					log.trace("Filters: can't push to read queue, reader is closed or exchange is stopped");
+				} else if (log.isTraceEnabled()) {
 					log.trace("Filters: read queue has now {} item(s)", readQueue.size());
 				}
 				buffers.clear();
@@ -275,43 +401,94 @@ public class DataExchangeInOutStream {
 		}
 
 		private BufferVault applyFilter(final boolean lastCall,
-		                                BufferVault nextBuffers,
+		                                final BufferVault nextBuffers,
 		                                final DataExchangeFilter currentFilter,
 		                                final BufferVault previousBuffers) throws IOException {
-			long currentPerformance;
-			long currentDeltaThroughput;
-			long now;
-			int inputBufferSize;
-
-			currentPerformance = filterPerformance.computeIfAbsent(currentFilter, cF -> 0L);
-			currentDeltaThroughput = filterDeltaThroughput.computeIfAbsent(currentFilter, cF -> 0L);
-			inputBufferSize = nextBuffers.getSize();
-			now = System.currentTimeMillis();
-
-			nextBuffers = currentFilter.applyDataFilter(lastCall, nextBuffers);
-
-			currentPerformance += System.currentTimeMillis() - now;
-			if (nextBuffers == null) {
-				if (log.isTraceEnabled()) {
-					log.trace("After apply filter {}, want to stop!", currentFilter.getFilterName());
-				}
+			final var result = DataExchangeInOutStream.this.applyFilter(lastCall, nextBuffers, currentFilter);
+			if (result == null) {
 				throw new StoppedByFilter(currentFilter);
+			} else if (result.getSize() == 0 && currentFilter.isConsumingDataSources() == false) {
+				return previousBuffers;
 			}
+			return result;
+		}
+	}
+
+	/**
+	 * Apply filter, and update its performance stats.
+	 * @return null if the filter want to stop, empty for "no datas provided"
+	 */
+	private BufferVault applyFilter(final boolean lastCall,
+	                                final BufferVault datas,
+	                                final DataExchangeFilter currentFilter) throws IOException {
+		final var inputBufferSize = datas.getSize();
+		final var now = System.currentTimeMillis();
 
-			filterPerformance.put(currentFilter, currentPerformance);
-			currentDeltaThroughput += inputBufferSize - nextBuffers.getSize();
-			filterDeltaThroughput.put(currentFilter, currentDeltaThroughput);
+		final var result = currentFilter.applyDataFilter(lastCall, datas);
 
-			if (nextBuffers.getSize() == 0) {
-				if (log.isTraceEnabled()) {
-					log.trace("After apply filter {}, no datas provided", currentFilter.getFilterName());
-				}
-				nextBuffers = previousBuffers;
-			} else if (log.isTraceEnabled()) {
+		final var duration = System.currentTimeMillis() - now;
+		if (result == null) {
+			if (log.isTraceEnabled()) {
+				log.trace("After apply filter {}, want to stop!", currentFilter.getFilterName());
+			}
+			return null;
+		}
+
+		filterPerformance.merge(currentFilter, duration, Long::sum);
+		filterDeltaThroughput.merge(currentFilter, (long) inputBufferSize - result.getSize(), Long::sum);
+
+		if (log.isTraceEnabled()) {
+			if (result.getSize() == 0) {
+				log.trace("After apply filter {}, no datas provided", currentFilter.getFilterName());
+			} else {
 				log.trace("After apply filter {}, provide {} bytes",
-				        currentFilter.getFilterName(), nextBuffers.getSize());
+				        currentFilter.getFilterName(), result.getSize());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return null if not staged, or if there are no filters
+	 */
+	private synchronized DataExchangeFilterStages getStages() {
+		if (stages == null && stageQueueChunks > 0 && filters.isEmpty() == false) {
+			stages = new DataExchangeFilterStages(new StagesHost(), List.copyOf(filters), stageQueueChunks, bufferPool);
+		}
+		return stages;
+	}
+
+	private class StagesHost implements DataExchangeFilterStages.Host {
+
+		@Override
+		public BufferVault applyFilter(final boolean last,
+		                               final BufferVault datas,
+		                               final DataExchangeFilter filter) throws IOException {
+			return DataExchangeInOutStream.this.applyFilter(last, datas, filter);
+		}
+
+		@Override
+		public void onStoppedByFilter(final DataExchangeFilter filter) {
+			setState(State.STOPPED_BY_FILTER);
+		}
+
+		@Override
+		public void onFilterError(final Exception e) {
+			setState(State.FILTER_ERROR);
+		}
+
+		@Override
+		public boolean isWorking() {
+			return state == State.WORKING;
+		}
+
+		@Override
+		public void push(final BufferVault datas) throws IOException {
+			final var pushed = readQueue.push(datas,
+			        () -> state == State.WORKING && internalInputStream.readerClosed == false);
+			if (pushed == false) {
+				log.trace("Stages: can't push to read queue, reader is closed or exchange is stopped");
 			}
-			return nextBuffers;
 		}
 	}
 
@@ -325,10 +502,20 @@ public class DataExchangeInOutStream {
 	public class TransfertStats {
 		private final long totalDuration;
 		private final long deltaTranfered;
+		private final long stageWaitDuration;
 
-		private TransfertStats(final long totalDuration, final long deltaTranfered) {
+		private TransfertStats(final long totalDuration, final long deltaTranfered, final long stageWaitDuration) {
 			this.totalDuration = totalDuration;
 			this.deltaTranfered = deltaTranfered;
+			this.stageWaitDuration = stageWaitDuration;
+		}
+
+		/**
+		 * @return in ms, time spend by the filter stage to wait datas from the previous stage/writer.
+		 *         Always 0 if not staged.
+		 */
+		public long getStageWaitDuration() {
+			return stageWaitDuration;
 		}
 
 		/**
@@ -347,17 +534,150 @@ public class DataExchangeInOutStream {
 		}
 	}
 
+	/**
+	 * Read queue occupancy, usable during processing, for tune window and chunk sizes.
+	 */
+	public static class QueueStats {
+		private final int windowChunks;
+		private final int currentChunks;
+		private final int maxChunks;
+		private final long pushedChunks;
+		private final double averageChunks;
+		private final long writerWaitCount;
+		private final long writerWaitDuration;
+		private final long readerWaitCount;
+		private final long readerWaitDuration;
+
+		QueueStats(final int windowChunks,
+		           final int currentChunks,
+		           final int maxChunks,
+		           final long pushedChunks,
+		           final double averageChunks,
+		           final long writerWaitCount,
+		           final long writerWaitDuration,
+		           final long readerWaitCount,
+		           final long readerWaitDuration) {
+			this.windowChunks = windowChunks;
+			this.currentChunks = currentChunks;
+			this.maxChunks = maxChunks;
+			this.pushedChunks = pushedChunks;
+			this.averageChunks = averageChunks;
+			this.writerWaitCount = writerWaitCount;
+			this.writerWaitDuration = writerWaitDuration;
+			this.readerWaitCount = readerWaitCount;
+			this.readerWaitDuration = readerWaitDuration;
+		}
+
+		/**
+		 * @return max chunk count in queue
+		 */
+		public int getWindowChunks() {
+			return windowChunks;
+		}
+
+		/**
+		 * @return chunk count actually in queue, not yet fully readed
+		 */
+		public int getCurrentChunks() {
+			return currentChunks;
+		}
+
+		/**
+		 * @return the max chunk count seen in queue
+		 */
+		public int getMaxChunks() {
+			return maxChunks;
+		}
+
+		/**
+		 * @return all chunks pushed by the writer
+		 */
+		public long getPushedChunks() {
+			return pushedChunks;
+		}
+
+		/**
+		 * @return the average chunk count in queue, just after each push
+		 */
+		public double getAverageChunks() {
+			return averageChunks;
+		}
+
+		/**
+		 * @return how many times the writer has waited a full queue
+		 */
+		public long getWriterWaitCount() {
+			return writerWaitCount;
+		}
+
+		/**
+		 * @return in ms, time spend by the writer to wait a full queue
+		 */
+		public long getWriterWaitDuration() {
+			return writerWaitDuration;
+		}
+
+		/**
+		 * @return how many times the reader has waited an empty queue
+		 */
+		public long getReaderWaitCount() {
+			return readerWaitCount;
+		}
+
+		/**
+		 * @return in ms, time spend by the reader to wait an empty queue
+		 */
+		public long getReaderWaitDuration() {
+			return readerWaitDuration;
+		}
+
+		@Override
+		public String toString() {
+			return "chunks=" + currentChunks + "/" + windowChunks
+			       + " max=" + maxChunks
+			       + " avg=" + averageChunks
+			       + " pushed=" + pushedChunks
+			       + " writerWait=" + writerWaitCount + "/" + writerWaitDuration + "ms"
+			       + " readerWait=" + readerWaitCount + "/" + readerWaitDuration + "ms";
+		}
+	}
+
+	public QueueStats getQueueStats() {
+		return readQueue.getStats();
+	}
+
 	public synchronized TransfertStats getTransfertStats(final DataExchangeFilter filter) {
 		if (state == State.WORKING) {
 			throw new IllegalStateException("Can't access to transfert stats during processing...");
 		}
-		return new TransfertStats(filterPerformance.computeIfAbsent(filter, f -> 0L),
-		        filterDeltaThroughput.computeIfAbsent(filter, f -> 0L));
+		final var currentStages = stages;
+		return new TransfertStats(filterPerformance.getOrDefault(filter, 0L),
+		        filterDeltaThroughput.getOrDefault(filter, 0L),
+		        currentStages != null ? currentStages.getWaitDuration(filter) : 0L);
+	}
+
+	/**
+	 * Run filters in a staged pipeline: each filter in its own Thread, with bounded queues between filters.
+	 * Following observer filters (see DataExchangeFilter.isObserverOnly) are applied in parallel on the same chunk.
+	 * Must be set before the first write, after add all filters.
+	 * @param stageQueueChunks max chunk count waiting before each stage, 0 for run all filters in the writer Thread
+	 *        (default).
+	 * @return this
+	 */
+	public synchronized DataExchangeInOutStream setStagedPipeline(final int stageQueueChunks) {
+		if (stageQueueChunks < 0) {
+			throw new IllegalArgumentException("Invalid stageQueueChunks=" + stageQueueChunks);
+		} else if (stages != null) {
+			throw new IllegalStateException("Staged pipeline is already started");
+		}
+		this.stageQueueChunks = stageQueueChunks;
+		return this;
 	}
 
 	/**
 	 * @return must be used by a separate Thread from getDestOriginStream()
 	 *         Never forget to close it after push all datas to it.
+	 *         It's also a WritableByteChannel, for write ByteBuffers without intermediate byte arrays.
 	 */
 	public OutputStream getDestTargetStream() {
 		return internalOutputStream;
@@ -365,14 +685,41 @@ public class DataExchangeInOutStream {
 
 	/**
 	 * @return must be used by a separate Thread from getSourceTargetStream()
+	 *         It's also a ReadableByteChannel, for read to ByteBuffers without intermediate byte arrays.
 	 */
 	public InputStream getSourceOriginStream() {
 		return internalInputStream;
 	}
 
+	/**
+	 * @return the same object as getDestTargetStream, as a channel.
+	 */
+	public WritableByteChannel getDestTargetChannel() {
+		return internalOutputStream;
+	}
+
+	/**
+	 * @return the same object as getSourceOriginStream, as a channel.
+	 */
+	public ReadableByteChannel getSourceOriginChannel() {
+		return internalInputStream;
+	}
+
 	public synchronized void stop() {
 		if (state == State.WORKING) {
-			state = State.STOPPED_BY_USER;
+			setState(State.STOPPED_BY_USER);
+		}
+	}
+
+	/**
+	 * Wake up the waiting reader/writer and filter stages, to let them to check the new state.
+	 */
+	private void setState(final State newState) {
+		state = newState;
+		readQueue.wakeUp();
+		final var currentStages = stages;
+		if (currentStages != null) {
+			currentStages.wakeUp();
 		}
 	}
 
@@ -389,6 +736,9 @@ public class DataExchangeInOutStream {
 
 	public DataExchangeInOutStream addFilter(final DataExchangeFilter filter) {
 		Objects.requireNonNull(filter);
+		if (stages != null) {
+			throw new IllegalStateException("Can't add filter after the staged pipeline start");
+		}
 		filters.add(filter);
 		final var buffersSize = ensureMinWriteBuffersSize.updateAndGet(current -> {
 			final var filterBuffer = filter.ensureMinDataSourcesDataLength();
@@ -0,0 +1,466 @@
+/*
+ * This file is part of transfertfiles.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * Copyright (C) hdsdi3g for hd3g.tv 2021
+ *
+ */
+package tv.hd3g.transfertfiles;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static tv.hd3g.transfertfiles.TransfertObserver.TransfertDirection.DISTANTTOLOCAL;
+import static tv.hd3g.transfertfiles.TransfertObserver.TransfertDirection.LOCALTODISTANT;
+import static tv.hd3g.transfertfiles.filters.BlockDigestManifest.computeBlockDigest;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import tv.hd3g.transfertfiles.filters.DataExchangeFilterBandwidthLimit;
+import tv.hd3g.transfertfiles.filters.DigestFilterHashExtraction;
+import tv.hd3g.transfertfiles.local.LocalFileSystem;
+
+/**
+ * Resumable transferts, with a persistent journal of the confirmed blocks (see TransfertJournal).
+ * Datas are cut in fixed size blocks. The digest of each block is journalized after it was writed to the destination.
+ * With the same journal file, source and destination, and if the source size and date are unchanged, the next run
+ * checks the destination prefix block by block with the journal, and continues after the last valid block, with
+ * AbstractFile.downloadAbstract/uploadAbstract from a position (FTP REST/APPE, SFTP offsets, local positional writes).
+ * If the destination is bigger than the resume position and can't be truncated (FTP, see
+ * AbstractFile.canTruncateOnUpload), it's deleted and the transfert restarts from the start.
+ * The source and destination FileSystems BandwidthLimiters are applied, like with AbstractFile.copyAbstractToAbstract.
+ * The journal is deleted after a complete transfert.
+ * Not thread safe: one instance by transfert.
+ */
+public class ResumableTransfert {
+	private static final Logger log = LogManager.getLogger();
+
+	public static final int DEFAULT_BLOCK_SIZE = 8 * 1024 * 1024;
+	public static final DigestFilterHashExtraction DEFAULT_DIGEST = DigestFilterHashExtraction.SHA_256;
+
+	private final File journalFile;
+	private final DigestFilterHashExtraction digest;
+	private final int blockSize;
+	private boolean verifyDestination;
+	private Executor executor;
+	private long resumedPosition;
+
+	public ResumableTransfert(final File journalFile) {
+		this(journalFile, DEFAULT_DIGEST, DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * @param journalFile one by transfert. It will be created, and deleted after the transfert.
+	 * @param blockSize in bytes, the resume granularity
+	 */
+	public ResumableTransfert(final File journalFile,
+	                          final DigestFilterHashExtraction digest,
+	                          final int blockSize) {
+		this.journalFile = Objects.requireNonNull(journalFile, "\"journalFile\" can't to be null");
+		this.digest = Objects.requireNonNull(digest, "\"digest\" can't to be null");
+		if (blockSize < 1) {
+			throw new IllegalArgumentException("Invalid blockSize=" + blockSize);
+		}
+		this.blockSize = blockSize;
+		verifyDestination = true;
+		executor = TransfertExecutors.getDefault();
+	}
+
+	/**
+	 * @param verifyDestination default true. If false, the destination prefix will not be re-readed before resume,
+	 *        only its size will be checked (avoid to download again a distant destination prefix).
+	 * @return this
+	 */
+	public ResumableTransfert setVerifyDestination(final boolean verifyDestination) {
+		this.verifyDestination = verifyDestination;
+		return this;
+	}
+
+	public boolean isVerifyDestination() {
+		return verifyDestination;
+	}
+
+	/**
+	 * @param executor used for the download side of copyAbstractToAbstract (blocking I/O).
+	 *        Default is TransfertExecutors.getDefault.
+	 * @return this
+	 */
+	public ResumableTransfert setExecutor(final Executor executor) {
+		this.executor = Objects.requireNonNull(executor, "\"executor\" can't to be null");
+		return this;
+	}
+
+	public Executor getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * @return the start position of the last transfert, 0 if it was not resumed
+	 */
+	public long getResumedPosition() {
+		return resumedPosition;
+	}
+
+	/**
+	 * The observer get the transferred datas size from the start of the file (not from the resumed position).
+	 * @return true if the transfert is complete, false if it was stopped by the observer (resume it with a new call)
+	 */
+	public boolean copyAbstractToLocal(final AbstractFile source,
+	                                   final File localFile,
+	                                   final TransfertObserver observer) {
+		final var dest = getLocalFile(localFile, source.getName());
+		final var now = System.currentTimeMillis();
+		observer.beforeTransfert(localFile, source, DISTANTTOLOCAL);
+		final var completed = transfert(source, dest, copied -> true,
+		        writed -> observer.onTransfertProgress(localFile, source, DISTANTTOLOCAL, now, writed));
+		if (completed) {
+			observer.afterTransfert(localFile, source, DISTANTTOLOCAL,
+			        Duration.ofMillis(System.currentTimeMillis() - now));
+		}
+		return completed;
+	}
+
+	/**
+	 * The observer get the transferred datas size from the start of the file (not from the resumed position).
+	 * @return true if the transfert is complete, false if it was stopped by the observer (resume it with a new call)
+	 */
+	public boolean sendLocalToAbstract(final File localFile,
+	                                   final AbstractFile destination,
+	                                   final TransfertObserver observer) {
+		final var source = getLocalFile(localFile, null);
+		final var now = System.currentTimeMillis();
+		observer.beforeTransfert(localFile, destination, LOCALTODISTANT);
+		final var completed = transfert(source, destination, copied -> true,
+		        writed -> observer.onTransfertProgress(localFile, destination, LOCALTODISTANT, now, writed));
+		if (completed) {
+			observer.afterTransfert(localFile, destination, LOCALTODISTANT,
+			        Duration.ofMillis(System.currentTimeMillis() - now));
+		}
+		return completed;
+	}
+
+	/**
+	 * The observer get the transferred datas sizes from the start of the file (not from the resumed position).
+	 * No filters can be used here: the destination datas must be the source datas.
+	 * @return true if the transfert is complete, false if it was stopped by the observer (resume it with a new call)
+	 */
+	public boolean copyAbstractToAbstract(final AbstractFile source,
+	                                      final AbstractFile destination,
+	                                      final DataExchangeObserver observer) {
+		AbstractFile.checkIsSameFileSystem(source, destination);
+		final var now = System.currentTimeMillis();
+		observer.beforeTransfert(source, destination);
+		final var completed = transfert(source, destination,
+		        readed -> observer.onTransfertProgressFromSource(source, now, readed),
+		        writed -> observer.onTransfertProgressToDestination(destination, now, writed));
+		if (completed) {
+			final var size = source.length();
+			observer.afterTransfert(source, destination, size - resumedPosition, size - resumedPosition,
+			        Duration.ofMillis(System.currentTimeMillis() - now));
+		}
+		return completed;
+	}
+
+	private static AbstractFile getLocalFile(final File localFile, final String nameIfDirectory) {
+		var file = localFile.getAbsoluteFile();
+		if (nameIfDirectory != null && file.isDirectory()) {
+			file = new File(file, nameIfDirectory);
+		}
+		return new LocalFileSystem(file.getParentFile()).getFromPath(file.getName());
+	}
+
+	private String makeIdentity(final AbstractFile source, final AbstractFile destination, final long size) {
+		return String.join(" ",
+		        URLEncoder.encode(source.getFileSystem() + source.getPath(), UTF_8),
+		        URLEncoder.encode(destination.getFileSystem() + destination.getPath(), UTF_8),
+		        String.valueOf(size),
+		        String.valueOf(source.lastModified()),
+		        digest.name(),
+		        String.valueOf(blockSize));
+	}
+
+	private long getBlockEnd(final int index, final long size) {
+		return Math.min(size, (index + 1L) * blockSize);
+	}
+
+	/**
+	 * @param readCallback get the readed size from the start of the file
+	 * @param writeCallback get the writed size from the start of the file
+	 */
+	private boolean transfert(final AbstractFile source,
+	                          final AbstractFile destination,
+	                          final SizedStoppableCopyCallback readCallback,
+	                          final SizedStoppableCopyCallback writeCallback) {
+		final var bufferSize = Math.max(8192,
+		        Math.max(destination.getFileSystem().getIOBufferSize(),
+		                source.getFileSystem().getIOBufferSize()));
+		final var size = source.length();
+		try (var journal = TransfertJournal.open(journalFile, makeIdentity(source, destination, size))) {
+			var validBlocks = getValidBlocks(destination, journal.getBlockDigests(), size, bufferSize);
+			if (validBlocks > 0
+			    && destination.canTruncateOnUpload() == false
+			    && destination.length() > getBlockEnd(validBlocks - 1, size)) {
+				log.warn("Can't cut \"{}\" after its {} valid block(s), delete it and restart the transfert",
+				        destination, validBlocks);
+				destination.delete();
+				validBlocks = 0;
+			}
+			journal.restart(validBlocks);
+			resumedPosition = validBlocks == 0 ? 0 : getBlockEnd(validBlocks - 1, size);
+			if (resumedPosition > 0) {
+				log.info("Resume transfert from \"{}\" to \"{}\" at {}/{} bytes ({} valid block(s))",
+				        source, destination, resumedPosition, size, validBlocks);
+			} else {
+				log.debug("Start transfert from \"{}\" to \"{}\" ({} bytes)", source, destination, size);
+			}
+
+			if (transfertFrom(source, destination, size, bufferSize, journal, readCallback, writeCallback)) {
+				journal.delete();
+				return true;
+			}
+			log.info("Stop transfert from \"{}\" to \"{}\", it can be resumed with {}", source, destination, journal);
+			return false;
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Read the destination prefix, and compare it with the journal.
+	 * @return the count of the first blocks present on destination, and valid with the journal
+	 */
+	private int getValidBlocks(final AbstractFile destination,
+	                           final List<byte[]> journalBlocks,
+	                           final long size,
+	                           final int bufferSize) {
+		if (journalBlocks.isEmpty() || destination.exists() == false) {
+			return 0;
+		}
+		final var destinationSize = destination.length();
+		var presentBlocks = 0;
+		while (presentBlocks < journalBlocks.size() && getBlockEnd(presentBlocks, size) <= destinationSize) {
+			presentBlocks++;
+		}
+		if (presentBlocks == 0 || verifyDestination == false) {
+			return presentBlocks;
+		}
+
+		final var checkedSize = getBlockEnd(presentBlocks - 1, size);
+		final var candidates = presentBlocks;
+		final var validBlocks = new AtomicInteger();
+		final var mismatch = new AtomicBoolean(false);
+		final var hasher = new BlockHasher(0, checkedSize, blockDigest -> {
+			final var index = validBlocks.get();
+			if (mismatch.get() == false
+			    && index < candidates
+			    && Arrays.equals(blockDigest, journalBlocks.get(index))) {
+				validBlocks.incrementAndGet();
+			} else {
+				mismatch.set(true);
+			}
+		});
+		final var verifier = new OutputStream() {
+
+			@Override
+			public void write(final byte[] b, final int off, final int len) throws IOException {
+				hasher.update(b, off, len);
+			}
+
+			@Override
+			public void write(final int b) throws IOException {
+				write(new byte[] { (byte) b }, 0, 1);
+			}
+		};
+		destination.downloadAbstract(verifier, bufferSize,
+		        readed -> readed < checkedSize && mismatch.get() == false);
+
+		log.debug("Check destination \"{}\" prefix: {}/{} valid block(s)", destination, validBlocks, candidates);
+		return validBlocks.get();
+	}
+
+	private boolean transfertFrom(final AbstractFile source,// NOSONAR S107
+	                              final AbstractFile destination,
+	                              final long size,
+	                              final int bufferSize,
+	                              final TransfertJournal journal,
+	                              final SizedStoppableCopyCallback readCallback,
+	                              final SizedStoppableCopyCallback writeCallback) throws IOException {
+		final var position = resumedPosition;
+		final var exchange = new DataExchangeInOutStream();
+		Stream.of(source.getFileSystem().getBandwidthLimiter(), destination.getFileSystem().getBandwidthLimiter())
+		        .filter(Objects::nonNull)
+		        .distinct()
+		        .map(DataExchangeFilterBandwidthLimit::new)
+		        .forEach(exchange::addFilter);
+		final var stopped = new AtomicBoolean(false);
+
+		/**
+		 * Blocks are hashed when the destination reads them, and journalized when the destination has writed them.
+		 * All is done by the destination Thread.
+		 */
+		final Queue<byte[]> writingBlocks = new ArrayDeque<>();
+		final var hasher = new BlockHasher(position, size, writingBlocks::add);
+		final SizedStoppableCopyCallback sourceCallback = readed -> {
+			if (readCallback.apply(position + readed).equals(false)) {
+				stopped.set(true);
+			}
+			return stopped.get() == false;
+		};
+		final SizedStoppableCopyCallback destinationCallback = writed -> {
+			try {
+				while (writingBlocks.isEmpty() == false
+				       && getBlockEnd(journal.getBlockDigests().size(), size) <= position + writed) {
+					journal.append(writingBlocks.poll());
+				}
+			} catch (final IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			if (writeCallback.apply(position + writed).equals(false)) {
+				stopped.set(true);
+				exchange.stop();
+			}
+			return stopped.get() == false;
+		};
+
+		final var downloader = CompletableFuture.supplyAsync(() -> source.downloadAbstract(
+		        exchange.getDestTargetStream(), bufferSize, sourceCallback, position), executor);
+		final var writed = destination.uploadAbstract(
+		        new HashingInputStream(exchange.getSourceOriginStream(), hasher),
+		        bufferSize, destinationCallback, position);
+
+		try {
+			downloader.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		} catch (final ExecutionException e) {
+			if (stopped.get() == false) {
+				if (e.getCause() instanceof UncheckedIOException) {
+					throw (UncheckedIOException) e.getCause();
+				}
+				throw new IllegalStateException(e.getCause());
+			}
+			log.debug("Source error after stop", e.getCause());
+		}
+
+		if (stopped.get()) {
+			return false;
+		} else if (position + writed != size) {
+			throw new IOException("Incomplete transfert from \"" + source + "\" to \"" + destination + "\": "
+			                      + (position + writed) + "/" + size + " bytes");
+		}
+		final var destinationSize = destination.length();
+		if (destinationSize != size) {
+			throw new IOException("Invalid destination size after transfert from \"" + source + "\" to \""
+			                      + destination + "\": " + destinationSize + "/" + size + " bytes");
+		}
+		return true;
+	}
+
+	@FunctionalInterface
+	private static interface BlockDigestConsumer {
+		void accept(byte[] blockDigest) throws IOException;
+	}
+
+	/**
+	 * Cut datas in blocks, aligned with the start of the file, and compute the digest of each one.
+	 */
+	private class BlockHasher {
+		private final long size;
+		private final BlockDigestConsumer onBlock;
+		private final byte[] block;
+		private long position;
+		private int blockLen;
+
+		/**
+		 * @param position must be the start of a block
+		 * @param size datas after size will be ignored
+		 */
+		BlockHasher(final long position, final long size, final BlockDigestConsumer onBlock) {
+			this.position = position;
+			this.size = size;
+			this.onBlock = onBlock;
+			block = new byte[(int) Math.min(blockSize, Math.max(1, size - position))];
+		}
+
+		void update(final byte[] b, final int off, final int len) throws IOException {
+			var offset = off;
+			var remaining = len;
+			while (remaining > 0 && position < size) {
+				final var blockEnd = Math.min(size, (position / blockSize + 1) * blockSize);
+				final var toCopy = (int) Math.min(remaining, blockEnd - position);
+				System.arraycopy(b, offset, block, blockLen, toCopy);
+				blockLen += toCopy;
+				position += toCopy;
+				offset += toCopy;
+				remaining -= toCopy;
+				if (position == blockEnd) {
+					onBlock.accept(computeBlockDigest(digest, ByteBuffer.wrap(block, 0, blockLen)));
+					blockLen = 0;
+				}
+			}
+		}
+	}
+
+	private static class HashingInputStream extends FilterInputStream {
+		private final BlockHasher hasher;
+
+		HashingInputStream(final InputStream in, final BlockHasher hasher) {
+			super(in);
+			this.hasher = hasher;
+		}
+
+		@Override
+		public int read() throws IOException {
+			final var b = new byte[1];
+			if (read(b, 0, 1) == -1) {
+				return -1;
+			}
+			return b[0] & 0xFF;
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len) throws IOException {
+			final var size = in.read(b, off, len);
+			if (size > 0) {
+				hasher.update(b, off, size);
+			}
+			return size;
+		}
+
+		@Override
+		public long skip(final long n) throws IOException {
+			throw new IOException("Skip is not supported");
+		}
+	}
+
+}
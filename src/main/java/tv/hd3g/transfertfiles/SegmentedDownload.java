@@ -0,0 +1,278 @@
+/*
+ * This file is part of transfertfiles.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * Copyright (C) hdsdi3g for hd3g.tv 2021
+ *
+ */
+package tv.hd3g.transfertfiles;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static tv.hd3g.transfertfiles.TransfertObserver.TransfertDirection.DISTANTTOLOCAL;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Download a distant file by byte ranges (segments), fetched in parallel (like on several pooled connections), and
+ * written with positional writes in the local file. After the transfert, each segment size and the local file size
+ * are checked.
+ * Observer calls from the segments Threads are serialized: onTransfertProgress always get increasing totals.
+ * Not reusable
+ */
+public class SegmentedDownload {
+	private static final Logger log = LogManager.getLogger();
+
+	/**
+	 * Segments will not be smaller (except the last).
+	 */
+	public static final long DEFAULT_MIN_SEGMENT_SIZE = 1024L * 1024L;
+
+	@FunctionalInterface
+	public interface RangeReader {
+		/**
+		 * Read the distant file from offset, and push the datas to the consumer, until length bytes (more bytes are
+		 * ignored), the end of file, or the consumer return false.
+		 */
+		void read(long offset, long length, RangeConsumer consumer) throws IOException;
+	}
+
+	@FunctionalInterface
+	public interface RangeConsumer {
+		/**
+		 * @return false for stop the read
+		 */
+		boolean accept(byte[] datas, int len) throws IOException;
+	}
+
+	private final AbstractFile distantFile;
+	private final File localFile;
+	private final long size;
+	private final TransfertObserver observer;
+	private final List<Segment> segments;
+	private final AtomicLong transferred;
+	private final AtomicBoolean stopped;
+	private final ReentrantLock observerLock;
+	private long startDate;
+
+	/**
+	 * @param size distant file size
+	 * @param segmentCount max segment count, it will be reduced for small files (see DEFAULT_MIN_SEGMENT_SIZE)
+	 */
+	public SegmentedDownload(final AbstractFile distantFile,
+	                         final File localFile,
+	                         final long size,
+	                         final int segmentCount,
+	                         final TransfertObserver observer) {
+		this(distantFile, localFile, size, segmentCount, DEFAULT_MIN_SEGMENT_SIZE, observer);
+	}
+
+	/**
+	 * @param size distant file size
+	 * @param segmentCount max segment count, it will be reduced for small files
+	 * @param minSegmentSize segments will not be smaller (except the last)
+	 */
+	public SegmentedDownload(final AbstractFile distantFile,
+	                         final File localFile,
+	                         final long size,
+	                         final int segmentCount,
+	                         final long minSegmentSize,
+	                         final TransfertObserver observer) {
+		this.distantFile = Objects.requireNonNull(distantFile, "\"distantFile\" can't to be null");
+		this.localFile = Objects.requireNonNull(localFile, "\"localFile\" can't to be null");
+		this.observer = Objects.requireNonNull(observer, "\"observer\" can't to be null");
+		if (size < 0) {
+			throw new IllegalArgumentException("Invalid size=" + size);
+		} else if (segmentCount < 1) {
+			throw new IllegalArgumentException("Invalid segmentCount=" + segmentCount);
+		} else if (minSegmentSize < 1) {
+			throw new IllegalArgumentException("Invalid minSegmentSize=" + minSegmentSize);
+		}
+		this.size = size;
+		transferred = new AtomicLong();
+		stopped = new AtomicBoolean();
+		observerLock = new ReentrantLock();
+
+		final var maxSegmentCount = Math.max(1, (size + minSegmentSize - 1) / minSegmentSize);
+		final var count = (int) Math.min(segmentCount, maxSegmentCount);
+		final var segmentLength = (size + count - 1) / count;
+		segments = new ArrayList<>(count);
+		for (var pos = 0; pos < count; pos++) {
+			final var offset = pos * segmentLength;
+			segments.add(new Segment(pos, offset, Math.max(0, Math.min(segmentLength, size - offset))));
+		}
+	}
+
+	/**
+	 * @return the segment count, after reduction
+	 */
+	public int getSegmentCount() {
+		return segments.size();
+	}
+
+	private class Segment {
+		final int index;
+		final long offset;
+		final long length;
+		long done;
+
+		Segment(final int index, final long offset, final long length) {
+			this.index = index;
+			this.offset = offset;
+			this.length = length;
+		}
+
+		void download(final FileChannel channel, final RangeReader reader) throws IOException {
+			if (length == 0) {
+				return;
+			}
+			reader.read(offset + done, length - done, (datas, len) -> {
+				if (stopped.get()) {
+					return false;
+				}
+				final var toWrite = (int) Math.min(len, length - done);
+				final var buffer = ByteBuffer.wrap(datas, 0, toWrite);
+				while (buffer.hasRemaining()) {
+					channel.write(buffer, offset + done + buffer.position());
+				}
+				done += toWrite;
+				if (onProgress(this, toWrite) == false) {
+					stopped.set(true);
+					return false;
+				}
+				return done < length;
+			});
+		}
+	}
+
+	/**
+	 * @return the observer onTransfertProgress response
+	 */
+	private boolean onProgress(final Segment segment, final int writed) {
+		observerLock.lock();
+		try {
+			observer.onSegmentProgress(localFile, distantFile, DISTANTTOLOCAL,
+			        segment.index, segment.offset, segment.length, segment.done);
+			return observer.onTransfertProgress(localFile, distantFile, DISTANTTOLOCAL,
+			        startDate, transferred.addAndGet(writed));
+		} finally {
+			observerLock.unlock();
+		}
+	}
+
+	/**
+	 * Blocking. Segments are downloaded in parallel, each in its own TransfertExecutors.getDefault Thread.
+	 * @return false if the observer has stopped the transfert (the local file is incomplete)
+	 */
+	public boolean download(final RangeReader reader) throws IOException {
+		return download(reader, TransfertExecutors.getDefault());
+	}
+
+	/**
+	 * Blocking. Segments are downloaded in parallel, one task by segment.
+	 * @param executor for the blocking I/O segments tasks. Segments will not run in parallel if it can't.
+	 * @return false if the observer has stopped the transfert (the local file is incomplete)
+	 */
+	public boolean download(final RangeReader reader, final Executor executor) throws IOException {
+		Objects.requireNonNull(reader, "\"reader\" can't to be null");
+		Objects.requireNonNull(executor, "\"executor\" can't to be null");
+		startDate = System.currentTimeMillis();
+		observer.beforeTransfert(localFile, distantFile, DISTANTTOLOCAL);
+		log.info("Segmented download from \"{}\" to \"{}\" ({} bytes, {} segments)",
+		        distantFile, localFile, size, segments.size());
+
+		try (var channel = FileChannel.open(localFile.toPath(), CREATE, WRITE, TRUNCATE_EXISTING)) {
+			final var tasks = new ArrayList<CompletableFuture<Void>>(segments.size());
+			for (final var segment : segments) {
+				tasks.add(CompletableFuture.runAsync(() -> {
+					try {
+						segment.download(channel, reader);
+					} catch (final IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}, executor));
+			}
+			waitAll(tasks);
+			if (stopped.get()) {
+				log.info("Stop segmented download from \"{}\" to \"{}\", ({}/{} bytes)",
+				        distantFile, localFile, transferred.get(), size);
+				return false;
+			}
+			checkReassembly(channel);
+		}
+
+		observer.afterTransfert(localFile, distantFile, DISTANTTOLOCAL,
+		        Duration.ofMillis(System.currentTimeMillis() - startDate));
+		return true;
+	}
+
+	/**
+	 * On the first error, stop all others segments.
+	 */
+	private void waitAll(final List<CompletableFuture<Void>> tasks) throws IOException {
+		IOException error = null;
+		for (final var task : tasks) {
+			try {
+				task.get();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				stopped.set(true);
+				throw new InterruptedIOException("Interrupted during segmented download");
+			} catch (final ExecutionException e) {
+				stopped.set(true);
+				if (error == null) {
+					var cause = e.getCause();
+					if (cause instanceof UncheckedIOException) {
+						cause = cause.getCause();
+					}
+					error = new IOException("Can't download segment from " + distantFile, cause);
+				}
+			}
+		}
+		if (error != null) {
+			throw error;
+		}
+	}
+
+	private void checkReassembly(final FileChannel channel) throws IOException {
+		for (final var segment : segments) {
+			if (segment.done != segment.length) {
+				throw new IOException("Incomplete segment #" + segment.index + " from " + distantFile + ": "
+				                      + segment.done + "/" + segment.length + " bytes at " + segment.offset);
+			}
+		}
+		if (channel.size() != size) {
+			throw new IOException("Invalid downloaded file size for " + localFile + ": "
+			                      + channel.size() + "/" + size + " bytes");
+		}
+	}
+
+}
@@ -0,0 +1,89 @@
+/*
+ * This file is part of transfertfiles.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * Copyright (C) hdsdi3g for hd3g.tv 2021
+ *
+ */
+package tv.hd3g.transfertfiles;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Threads for the blocking I/O side of the transferts (like the copyAbstractToAbstract downloads).
+ * Never the common ForkJoinPool: blocking network I/O will starve it, and all the parallel streams of the JVM.
+ */
+public final class TransfertExecutors {
+
+	private static final AtomicInteger threadCount = new AtomicInteger();
+	private static final ExecutorService DEFAULT = Executors.newCachedThreadPool(r -> {
+		final var t = new Thread(r, "Transfert-" + threadCount.incrementAndGet());
+		t.setDaemon(true);
+		return t;
+	});
+
+	private static final AtomicInteger computeThreadCount = new AtomicInteger();
+	private static final ThreadPoolExecutor COMPUTE;
+	private static final Executor COMPUTE_EXECUTOR;
+
+	static {
+		final var cpuCount = Runtime.getRuntime().availableProcessors();
+		COMPUTE = new ThreadPoolExecutor(cpuCount, cpuCount, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+			final var t = new ComputeThread(r, "TransfertCompute-" + computeThreadCount.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+		COMPUTE.allowCoreThreadTimeOut(true);
+		COMPUTE_EXECUTOR = command -> {
+			if (Thread.currentThread() instanceof ComputeThread) {
+				command.run();
+			} else {
+				COMPUTE.execute(command);
+			}
+		};
+	}
+
+	private static class ComputeThread extends Thread {
+		ComputeThread(final Runnable target, final String name) {
+			super(target, name);
+		}
+	}
+
+	private TransfertExecutors() {
+	}
+
+	/**
+	 * One (daemon) Thread by running task, without limit: concurrency is set by the callers, not by this pool.
+	 * Idle Threads are released after 60 seconds.
+	 */
+	public static Executor getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * Shared by the CPU bound tasks of the filters (like parallel digests), bounded to the CPU cores count.
+	 * Never put blocking I/O tasks here. Idle (daemon) Threads are released after 60 seconds, so the filters don't
+	 * need to be closed.
+	 * Tasks submitted from a getCompute Thread run directly on it: a task can wait its own sub-tasks (like a staged
+	 * observer filter with parallel digests) without deadlock on a full pool.
+	 */
+	public static Executor getCompute() {
+		return COMPUTE_EXECUTOR;
+	}
+
+}
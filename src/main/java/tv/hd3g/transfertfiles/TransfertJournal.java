@@ -0,0 +1,159 @@
+/*
+ * This file is part of transfertfiles.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * Copyright (C) hdsdi3g for hd3g.tv 2021
+ *
+ */
+package tv.hd3g.transfertfiles;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.bouncycastle.util.encoders.Hex;
+
+/**
+ * Append-only on-disk journal of the confirmed blocks of a transfert, for ResumableTransfert.
+ * Text file: a version line, an identity line (source/destination/size/date/digest/block size), and one hex
+ * digest line by confirmed block, in datas order. An incomplete last line (crash during an append) is ignored.
+ * Not thread safe
+ */
+class TransfertJournal implements AutoCloseable {
+	private static final Logger log = LogManager.getLogger();
+	static final String HEADER = "transfertfiles-journal 1";
+
+	private final File file;
+	private final String identity;
+	private final List<byte[]> blockDigests;
+	private FileChannel appender;
+
+	private TransfertJournal(final File file, final String identity, final List<byte[]> blockDigests) {
+		this.file = file;
+		this.identity = identity;
+		this.blockDigests = blockDigests;
+	}
+
+	/**
+	 * @return the previous confirmed blocks only if the journal file exists with the same identity
+	 */
+	static TransfertJournal open(final File file, final String identity) throws IOException {
+		Objects.requireNonNull(file, "\"file\" can't to be null");
+		if (identity.contains("\n")) {
+			throw new IllegalArgumentException("Invalid identity=" + identity);
+		}
+		final var blockDigests = new ArrayList<byte[]>();
+		if (file.exists()) {
+			final var content = new String(Files.readAllBytes(file.toPath()), UTF_8);
+			final var lines = content.split("\n", -1);
+			if (lines.length > 2 && HEADER.equals(lines[0]) && identity.equals(lines[1])) {
+				/**
+				 * The last item is after the last line feed: empty or an incomplete line.
+				 */
+				for (var pos = 2; pos < lines.length - 1; pos++) {
+					blockDigests.add(Hex.decode(lines[pos]));
+				}
+				log.debug("Load journal {} with {} confirmed block(s)", file, blockDigests.size());
+			} else {
+				log.info("Ignore journal {}, it's not for this transfert", file);
+			}
+		}
+		return new TransfertJournal(file, identity, blockDigests);
+	}
+
+	/**
+	 * @return confirmed blocks, in datas order
+	 */
+	List<byte[]> getBlockDigests() {
+		return Collections.unmodifiableList(blockDigests);
+	}
+
+	File getFile() {
+		return file;
+	}
+
+	/**
+	 * Atomically rewrite the journal with only the keptBlocks first confirmed blocks, and prepare the next appends.
+	 */
+	void restart(final int keptBlocks) throws IOException {
+		if (keptBlocks < 0 || keptBlocks > blockDigests.size()) {
+			throw new IllegalArgumentException("Invalid keptBlocks=" + keptBlocks);
+		}
+		close();
+		blockDigests.subList(keptBlocks, blockDigests.size()).clear();
+
+		final var content = new StringBuilder(HEADER).append('\n')
+		        .append(identity).append('\n');
+		blockDigests.forEach(d -> content.append(Hex.toHexString(d)).append('\n'));
+
+		final var temp = new File(file.getPath() + ".tmp");
+		try (var channel = FileChannel.open(temp.toPath(), WRITE, CREATE, TRUNCATE_EXISTING)) {
+			channel.write(ByteBuffer.wrap(content.toString().getBytes(UTF_8)));
+			channel.force(true);
+		}
+		Files.move(temp.toPath(), file.toPath(), ATOMIC_MOVE, REPLACE_EXISTING);
+		appender = FileChannel.open(file.toPath(), WRITE, APPEND);
+	}
+
+	/**
+	 * Add the next confirmed block, synced on disk before return.
+	 */
+	void append(final byte[] blockDigest) throws IOException {
+		if (appender == null) {
+			throw new IllegalStateException("Journal is not started");
+		}
+		final var line = ByteBuffer.wrap((Hex.toHexString(blockDigest) + "\n").getBytes(UTF_8));
+		while (line.hasRemaining()) {
+			appender.write(line);
+		}
+		appender.force(false);
+		blockDigests.add(blockDigest.clone());
+	}
+
+	/**
+	 * After a complete transfert.
+	 */
+	void delete() throws IOException {
+		close();
+		Files.deleteIfExists(file.toPath());
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (appender != null) {
+			appender.close();
+			appender = null;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "TransfertJournal [file=" + file + ", confirmedBlocks=" + blockDigests.size() + "]";
+	}
+
+}
@@ -36,6 +36,21 @@ public interface TransfertObserver {
 		return true;
 	}
 
+	/**
+	 * Only for segmented transferts (several byte ranges in parallel), called after each copy loop of a segment,
+	 * before onTransfertProgress (with the sum of all segments). Please do a quick answer !
+	 * Called by the segments Threads, but never concurrently (like onTransfertProgress).
+	 * @param segmentTransferred in this segment
+	 */
+	default void onSegmentProgress(final File localFile,
+	                               final AbstractFile distantFile,
+	                               final TransfertDirection transfertDirection,
+	                               final int segment,
+	                               final long segmentOffset,
+	                               final long segmentLength,
+	                               final long segmentTransferred) {
+	}
+
 	default void beforeTransfert(final File localFile,
 	                             final AbstractFile distantFile,
 	                             final TransfertDirection transfertDirection) {
@@ -0,0 +1,320 @@
+/*
+ * This file is part of transfertfiles.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * Copyright (C) hdsdi3g for hd3g.tv 2021
+ *
+ */
+package tv.hd3g.transfertfiles;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators.AbstractSpliterator;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Recursive listing (see AbstractFile.walkCached), with several directories listed in parallel.
+ * Entries are pushed in a bounded buffer, and the listings wait the consumer when it's full: the full tree is never
+ * loaded in memory (only the directories to list).
+ * The links are not followed. The entries order is not predictable in parallel.
+ * The returned streams must be closed if they are not fully consumed.
+ * Not thread safe during setup, reusable.
+ */
+public class TreeWalker {
+	private static final Logger log = LogManager.getLogger();
+	public static final int DEFAULT_BUFFER_SIZE = 1000;
+	public static final int DEFAULT_MAX_PARALLELISM = 8;
+
+	private final AbstractFile root;
+	private int parallelism;
+	private int maxDepth;
+	private int bufferSize;
+	private Predicate<CachedFileAttributes> filter;
+	private Predicate<CachedFileAttributes> descendFilter;
+
+	/**
+	 * @param root the walk will not return it, only its content
+	 */
+	public TreeWalker(final AbstractFile root) {
+		this.root = Objects.requireNonNull(root, "\"root\" can't to be null");
+		maxDepth = Integer.MAX_VALUE;
+		bufferSize = DEFAULT_BUFFER_SIZE;
+		filter = f -> true;
+		descendFilter = f -> true;
+	}
+
+	/**
+	 * @param parallelism max directories listed at the same time. It will be limited by
+	 *        AbstractFileSystem.getMaxParallelOperations (like the connection pool size).
+	 *        0 (default) for getMaxParallelOperations, limited to DEFAULT_MAX_PARALLELISM.
+	 * @return this
+	 */
+	public TreeWalker setParallelism(final int parallelism) {
+		if (parallelism < 0) {
+			throw new IllegalArgumentException("Invalid parallelism=" + parallelism);
+		}
+		this.parallelism = parallelism;
+		return this;
+	}
+
+	/**
+	 * @param maxDepth 1 for only the root content, default is no limit.
+	 * @return this
+	 */
+	public TreeWalker setMaxDepth(final int maxDepth) {
+		if (maxDepth < 1) {
+			throw new IllegalArgumentException("Invalid maxDepth=" + maxDepth);
+		}
+		this.maxDepth = maxDepth;
+		return this;
+	}
+
+	/**
+	 * @param bufferSize max entries listed and not yet consumed
+	 * @return this
+	 */
+	public TreeWalker setBufferSize(final int bufferSize) {
+		if (bufferSize < 1) {
+			throw new IllegalArgumentException("Invalid bufferSize=" + bufferSize);
+		}
+		this.bufferSize = bufferSize;
+		return this;
+	}
+
+	/**
+	 * @param filter the entries to return. Don't change the walk: a rejected directory will be listed.
+	 * @return this
+	 */
+	public TreeWalker setFilter(final Predicate<CachedFileAttributes> filter) {
+		this.filter = Objects.requireNonNull(filter, "\"filter\" can't to be null");
+		return this;
+	}
+
+	/**
+	 * @param descendFilter the directories to list, checked before list them.
+	 *        A rejected directory can be returned (see setFilter), but not its content.
+	 * @return this
+	 */
+	public TreeWalker setDescendFilter(final Predicate<CachedFileAttributes> descendFilter) {
+		this.descendFilter = Objects.requireNonNull(descendFilter, "\"descendFilter\" can't to be null");
+		return this;
+	}
+
+	/**
+	 * @return the real directory listings count in parallel
+	 */
+	public int getParallelism() {
+		final var maxOperations = Math.max(1, root.getFileSystem().getMaxParallelOperations());
+		if (parallelism == 0) {
+			return Math.min(DEFAULT_MAX_PARALLELISM, maxOperations);
+		}
+		return Math.min(parallelism, maxOperations);
+	}
+
+	/**
+	 * Start a new walk on the first read.
+	 * @return never the root, close it if it's not fully consumed
+	 */
+	public Stream<CachedFileAttributes> stream() {
+		final var walk = new Walk(getParallelism());
+		return StreamSupport.stream(walk, false).onClose(walk::close);
+	}
+
+	private static class Directory {
+		final AbstractFile file;
+		final int depth;
+
+		Directory(final AbstractFile file, final int depth) {
+			this.file = file;
+			this.depth = depth;
+		}
+	}
+
+	private static class StoppedWalkException extends RuntimeException {
+	}
+
+	private class Walk extends AbstractSpliterator<CachedFileAttributes> {
+		private final int threadCount;
+		private final ReentrantLock lock;
+		private final Condition changed;
+		private final Deque<Directory> toList;
+		private final Deque<CachedFileAttributes> buffer;
+		private final List<Thread> threads;
+		private int listing;
+		private boolean closed;
+		private RuntimeException error;
+
+		Walk(final int threadCount) {
+			super(Long.MAX_VALUE, Spliterator.NONNULL | Spliterator.DISTINCT);
+			this.threadCount = threadCount;
+			lock = new ReentrantLock();
+			changed = lock.newCondition();
+			toList = new ArrayDeque<>();
+			buffer = new ArrayDeque<>();
+			threads = new ArrayList<>(threadCount);
+			toList.add(new Directory(root, 0));
+		}
+
+		private void start() {
+			log.debug("Start to walk on {} with {} thread(s)", root, threadCount);
+			for (var pos = 0; pos < threadCount; pos++) {
+				final var t = new Thread(this::listDirectories, "TreeWalker");
+				t.setDaemon(true);
+				threads.add(t);
+				t.start();
+			}
+		}
+
+		private boolean isEnded() {
+			return toList.isEmpty() && listing == 0;
+		}
+
+		@Override
+		public boolean tryAdvance(final Consumer<? super CachedFileAttributes> action) {
+			CachedFileAttributes next;
+			lock.lock();
+			try {
+				if (threads.isEmpty()) {
+					start();
+				}
+				while (buffer.isEmpty() && error == null && closed == false && isEnded() == false) {
+					changed.await();
+				}
+				if (error != null) {
+					throw error;
+				}
+				next = buffer.poll();
+				if (next == null) {
+					return false;
+				}
+				changed.signalAll();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted during the walk", e);
+			} finally {
+				lock.unlock();
+			}
+			action.accept(next);
+			return true;
+		}
+
+		/**
+		 * Depth first (the last found directory is the next to list): less directories to keep in memory.
+		 */
+		private void listDirectories() {
+			while (true) {
+				Directory directory;
+				lock.lock();
+				try {
+					while (toList.isEmpty() && listing > 0 && closed == false) {
+						changed.await();
+					}
+					if (closed || isEnded()) {
+						return;
+					}
+					directory = toList.pollLast();
+					listing++;
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				} finally {
+					lock.unlock();
+				}
+
+				try {
+					try (var list = directory.file.toCachedList()) {
+						list.forEach(entry -> push(entry, directory.depth + 1));
+					}
+				} catch (final StoppedWalkException e) {
+					return;
+				} catch (final RuntimeException e) {
+					lock.lock();
+					try {
+						if (error == null && closed == false) {
+							log.debug("Can't list {}", directory.file, e);
+							error = e;
+						}
+						closed = true;
+					} finally {
+						lock.unlock();
+					}
+				} finally {
+					lock.lock();
+					try {
+						listing--;
+						changed.signalAll();
+					} finally {
+						lock.unlock();
+					}
+				}
+			}
+		}
+
+		/**
+		 * Wait if the buffer is full.
+		 */
+		private void push(final CachedFileAttributes entry, final int depth) {
+			final var accepted = filter.test(entry);
+			final var descend = depth < maxDepth
+			                    && entry.isDirectory()
+			                    && entry.isLink() == false
+			                    && descendFilter.test(entry);
+			lock.lock();
+			try {
+				while (accepted && buffer.size() >= bufferSize && closed == false) {
+					changed.await();
+				}
+				if (closed) {
+					throw new StoppedWalkException();
+				}
+				if (accepted) {
+					buffer.add(entry);
+				}
+				if (descend) {
+					toList.add(new Directory(entry.getAbstractFile(), depth));
+				}
+				changed.signalAll();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				closed = true;
+				changed.signalAll();
+				throw new StoppedWalkException();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private void close() {
+			lock.lock();
+			try {
+				closed = true;
+				buffer.clear();
+				changed.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,276 @@
+/*
+ * This file is part of transfertfiles.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * Copyright (C) hdsdi3g for hd3g.tv 2021
+ *
+ */
+package tv.hd3g.transfertfiles.cached;
+
+import static java.util.stream.Collectors.toUnmodifiableList;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Stream;
+
+import tv.hd3g.transfertfiles.AbstractFile;
+import tv.hd3g.transfertfiles.CachedFileAttributes;
+import tv.hd3g.transfertfiles.CommonAbstractFile;
+import tv.hd3g.transfertfiles.SizedStoppableCopyCallback;
+import tv.hd3g.transfertfiles.TransfertObserver;
+
+/**
+ * AbstractFile from a CachedFileSystem: attributes and listings are read from the cache, or from the wrapped
+ * AbstractFile toCache/toCachedList (backend optimized), and put in the cache.
+ * Mutations are done by the wrapped AbstractFile, and invalidate the cache.
+ */
+public class CachedFile extends CommonAbstractFile<CachedFileSystem> {// NOSONAR S2160
+
+	private final AbstractFile file;
+
+	CachedFile(final CachedFileSystem fileSystem, final AbstractFile file) {
+		super(fileSystem, file.getPath());
+		this.file = file;
+	}
+
+	/**
+	 * @return the wrapped AbstractFile
+	 */
+	public AbstractFile getFile() {
+		return file;
+	}
+
+	private CachedFileAttributes rewrap(final CachedFileAttributes attributes) {
+		final var related = attributes.getAbstractFile() == file ? this : fileSystem.wrap(attributes.getAbstractFile());
+		return new CachedFileAttributes(related,
+		        attributes.length(),
+		        attributes.lastModified(),
+		        attributes.exists(),
+		        attributes.isDirectory(),
+		        attributes.isFile(),
+		        attributes.isLink(),
+		        attributes.isSpecial());
+	}
+
+	/**
+	 * @return a read-only cached data version of this AbstractFile, from the CachedFileSystem cache if possible
+	 */
+	@Override
+	public CachedFileAttributes toCache() {
+		final var cache = fileSystem.getCache();
+		return cache.getAttributes(path).orElseGet(() -> {
+			final var attributes = rewrap(file.toCache());
+			cache.putAttributes(path, attributes);
+			return attributes;
+		});
+	}
+
+	/**
+	 * @return from the CachedFileSystem cache if possible
+	 */
+	@Override
+	public Stream<CachedFileAttributes> toCachedList() {
+		final var cache = fileSystem.getCache();
+		return cache.getListing(path).orElseGet(() -> {
+			final List<CachedFileAttributes> listing = file.toCachedList()
+			        .map(this::rewrap)
+			        .collect(toUnmodifiableList());
+			cache.putListing(path, listing);
+			return listing;
+		}).stream();
+	}
+
+	/**
+	 * Use the cached listing (see toCachedList)
+	 */
+	@Override
+	public Stream<AbstractFile> list() {
+		return toCachedList().map(CachedFileAttributes::getAbstractFile);
+	}
+
+	@Override
+	public long length() {
+		return toCache().length();
+	}
+
+	@Override
+	public boolean exists() {
+		return toCache().exists();
+	}
+
+	@Override
+	public boolean isDirectory() {
+		return toCache().isDirectory();
+	}
+
+	@Override
+	public boolean isFile() {
+		return toCache().isFile();
+	}
+
+	@Override
+	public boolean isLink() {
+		return toCache().isLink();
+	}
+
+	@Override
+	public boolean isSpecial() {
+		return toCache().isSpecial();
+	}
+
+	@Override
+	public boolean isHidden() {
+		return file.isHidden();
+	}
+
+	@Override
+	public long lastModified() {
+		return toCache().lastModified();
+	}
+
+	@Override
+	public void delete() {
+		try {
+			file.delete();
+		} finally {
+			fileSystem.invalidate(path);
+		}
+	}
+
+	@Override
+	public void mkdir() {
+		try {
+			file.mkdir();
+		} finally {
+			fileSystem.invalidate(path);
+		}
+	}
+
+	@Override
+	public AbstractFile renameTo(final String path) {
+		try {
+			return fileSystem.wrap(file.renameTo(path));
+		} finally {
+			fileSystem.invalidate(this.path);
+			fileSystem.invalidate(path);
+		}
+	}
+
+	@Override
+	public void copyAbstractToLocal(final File localFile, final TransfertObserver observer) {
+		file.copyAbstractToLocal(localFile, new WrappedObserver(observer));
+	}
+
+	@Override
+	public void sendLocalToAbstract(final File localFile, final TransfertObserver observer) {
+		try {
+			file.sendLocalToAbstract(localFile, new WrappedObserver(observer));
+		} finally {
+			fileSystem.invalidate(path);
+		}
+	}
+
+	/**
+	 * Observers get this CachedFile, not the wrapped AbstractFile.
+	 */
+	private class WrappedObserver implements TransfertObserver {
+		private final TransfertObserver observer;
+
+		private WrappedObserver(final TransfertObserver observer) {
+			this.observer = observer;
+		}
+
+		@Override
+		public boolean onTransfertProgress(final File localFile,
+		                                   final AbstractFile distantFile,
+		                                   final TransfertDirection transfertDirection,
+		                                   final long startDate,
+		                                   final long dataTransferred) {
+			return observer.onTransfertProgress(localFile, CachedFile.this, transfertDirection, startDate,
+			        dataTransferred);
+		}
+
+		@Override
+		public void onSegmentProgress(final File localFile,
+		                              final AbstractFile distantFile,
+		                              final TransfertDirection transfertDirection,
+		                              final int segment,
+		                              final long segmentOffset,
+		                              final long segmentLength,
+		                              final long segmentTransferred) {
+			observer.onSegmentProgress(localFile, CachedFile.this, transfertDirection, segment, segmentOffset,
+			        segmentLength, segmentTransferred);
+		}
+
+		@Override
+		public void beforeTransfert(final File localFile,
+		                            final AbstractFile distantFile,
+		                            final TransfertDirection transfertDirection) {
+			observer.beforeTransfert(localFile, CachedFile.this, transfertDirection);
+		}
+
+		@Override
+		public void afterTransfert(final File localFile,
+		                           final AbstractFile distantFile,
+		                           final TransfertDirection transfertDirection,
+		                           final Duration transfertDuration) {
+			observer.afterTransfert(localFile, CachedFile.this, transfertDirection, transfertDuration);
+		}
+	}
+
+	@Override
+	public long downloadAbstract(final OutputStream outputStream,
+	                             final int bufferSize,
+	                             final SizedStoppableCopyCallback copyCallback) {
+		return file.downloadAbstract(outputStream, bufferSize, copyCallback);
+	}
+
+	@Override
+	public long downloadAbstract(final OutputStream outputStream,
+	                             final int bufferSize,
+	                             final SizedStoppableCopyCallback copyCallback,
+	                             final long position) {
+		return file.downloadAbstract(outputStream, bufferSize, copyCallback, position);
+	}
+
+	@Override
+	public long uploadAbstract(final InputStream inputStream,
+	                           final int bufferSize,
+	                           final SizedStoppableCopyCallback copyCallback) {
+		try {
+			return file.uploadAbstract(inputStream, bufferSize, copyCallback);
+		} finally {
+			fileSystem.invalidate(path);
+		}
+	}
+
+	@Override
+	public long uploadAbstract(final InputStream inputStream,
+	                           final int bufferSize,
+	                           final SizedStoppableCopyCallback copyCallback,
+	                           final long position) {
+		try {
+			return file.uploadAbstract(inputStream, bufferSize, copyCallback, position);
+		} finally {
+			fileSystem.invalidate(path);
+		}
+	}
+
+	@Override
+	public boolean canTruncateOnUpload() {
+		return file.canTruncateOnUpload();
+	}
+
+}
@@ -0,0 +1,208 @@
+/*
+ * This file is part of transfertfiles.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * Copyright (C) hdsdi3g for hd3g.tv 2021
+ *
+ */
+package tv.hd3g.transfertfiles.cached;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import tv.hd3g.transfertfiles.AbstractFile;
+import tv.hd3g.transfertfiles.AbstractFileSystem;
+import tv.hd3g.transfertfiles.BandwidthLimiter;
+
+/**
+ * Metadata cache layer for any AbstractFileSystem: file attributes and directory listings are cached by path,
+ * with a TTL, and an LRU eviction.
+ * Not existing files are cached too (with negativeTtl).
+ * Mkdir, delete, renameTo and uploads done with the CachedFiles of this FileSystem invalidate the cache for the
+ * related paths (and the parent directory listings).
+ * Changes done by others (or directly with the wrapped FileSystem) will be seen after the TTLs.
+ * Thread safe
+ */
+public class CachedFileSystem implements AbstractFileSystem<CachedFile> {
+	private static final Logger log = LogManager.getLogger();
+
+	public static final long DEFAULT_MAX_SIZE = 100_000;
+
+	private final AbstractFileSystem<?> fileSystem;
+	private final MetadataCache cache;
+
+	/**
+	 * @param fileSystem the wrapped FileSystem
+	 * @param ttl for attributes and listings, Duration.ZERO for disable the cache
+	 * @param negativeTtl for the not existing files, Duration.ZERO for not cache them
+	 * @param maxSize in entries: 1 by file attributes, 1 + item count by directory listing
+	 */
+	public CachedFileSystem(final AbstractFileSystem<?> fileSystem,
+	                        final Duration ttl,
+	                        final Duration negativeTtl,
+	                        final long maxSize) {
+		this.fileSystem = Objects.requireNonNull(fileSystem, "\"fileSystem\" can't to be null");
+		cache = new MetadataCache(ttl, negativeTtl, maxSize);
+	}
+
+	/**
+	 * Same TTL for the not existing files, DEFAULT_MAX_SIZE entries.
+	 */
+	public CachedFileSystem(final AbstractFileSystem<?> fileSystem, final Duration ttl) {
+		this(fileSystem, ttl, ttl, DEFAULT_MAX_SIZE);
+	}
+
+	/**
+	 * @return the wrapped FileSystem
+	 */
+	public AbstractFileSystem<?> getFileSystem() {// NOSONAR S1452
+		return fileSystem;
+	}
+
+	MetadataCache getCache() {
+		return cache;
+	}
+
+	@Override
+	public void connect() {
+		fileSystem.connect();
+	}
+
+	/**
+	 * Also clear the cache.
+	 */
+	@Override
+	public void close() throws IOException {
+		cache.clear();
+		fileSystem.close();
+	}
+
+	@Override
+	public CachedFile getFromPath(final String path) {
+		return new CachedFile(this, fileSystem.getFromPath(path));
+	}
+
+	CachedFile wrap(final AbstractFile file) {
+		return new CachedFile(this, file);
+	}
+
+	/**
+	 * Forget the cached attributes and listing of this path, of its sub-paths, and the listing of its parent.
+	 * @param path relative path
+	 */
+	public void invalidate(final String path) {
+		final var normalized = AbstractFile.normalizePath(path);
+		log.trace("Invalidate cache for {}", normalized);
+		cache.invalidate(normalized, FilenameUtils.getFullPathNoEndSeparator(normalized));
+	}
+
+	public void invalidateAll() {
+		cache.clear();
+	}
+
+	/**
+	 * @return cache size, in entries
+	 */
+	public long getCacheSize() {
+		return cache.getSize();
+	}
+
+	public long getHitCount() {
+		return cache.getHits();
+	}
+
+	public long getMissCount() {
+		return cache.getMisses();
+	}
+
+	public long getEvictionCount() {
+		return cache.getEvictions();
+	}
+
+	@Override
+	public int getIOBufferSize() {
+		return fileSystem.getIOBufferSize();
+	}
+
+	@Override
+	public void setTimeout(final long duration, final TimeUnit unit) {
+		fileSystem.setTimeout(duration, unit);
+	}
+
+	@Override
+	public BandwidthLimiter getBandwidthLimiter() {
+		return fileSystem.getBandwidthLimiter();
+	}
+
+	@Override
+	public int getMaxParallelOperations() {
+		return fileSystem.getMaxParallelOperations();
+	}
+
+	@Override
+	public boolean isReusable() {
+		return fileSystem.isReusable();
+	}
+
+	@Override
+	public boolean isAvaliable() {
+		return fileSystem.isAvaliable();
+	}
+
+	@Override
+	public int reusableHashCode() {
+		return fileSystem.reusableHashCode();
+	}
+
+	@Override
+	public InetAddress getHost() {
+		return fileSystem.getHost();
+	}
+
+	@Override
+	public String getUsername() {
+		return fileSystem.getUsername();
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(fileSystem);
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj == null) {
+			return false;
+		}
+		if (getClass() != obj.getClass()) {
+			return false;
+		}
+		final var other = (CachedFileSystem) obj;
+		return Objects.equals(fileSystem, other.fileSystem);
+	}
+
+	@Override
+	public String toString() {
+		return "cached:" + fileSystem;
+	}
+
+}
@@ -0,0 +1,269 @@
+/*
+ * This file is part of transfertfiles.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * Copyright (C) hdsdi3g for hd3g.tv 2021
+ *
+ */
+package tv.hd3g.transfertfiles.cached;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+
+import tv.hd3g.transfertfiles.CachedFileAttributes;
+
+/**
+ * LRU cache of file attributes and directory listings, by normalized path, with TTLs.
+ * The size is counted in entries: 1 by file attributes, 1 + item count by directory listing.
+ * Thread safe
+ */
+class MetadataCache {
+
+	private final long ttlNanos;
+	private final long negativeTtlNanos;
+	private final long maxSize;
+	private final ReentrantLock lock;
+	private final LinkedHashMap<Key, Entry> entries;
+
+	private long size;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * @param negativeTtl for the not existing files
+	 * @param maxSize in entries
+	 */
+	MetadataCache(final Duration ttl, final Duration negativeTtl, final long maxSize) {
+		ttlNanos = checkTtl(ttl, "ttl");
+		negativeTtlNanos = checkTtl(negativeTtl, "negativeTtl");
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("Invalid maxSize=" + maxSize);
+		}
+		this.maxSize = maxSize;
+		lock = new ReentrantLock();
+		entries = new LinkedHashMap<>(16, 0.75f, true);
+	}
+
+	private static long checkTtl(final Duration ttl, final String name) {
+		Objects.requireNonNull(ttl, "\"" + name + "\" can't to be null");
+		if (ttl.isNegative()) {
+			throw new IllegalArgumentException("Invalid " + name + "=" + ttl);
+		}
+		return ttl.toNanos();
+	}
+
+	private static class Key {
+		private final boolean listing;
+		private final String path;
+
+		Key(final boolean listing, final String path) {
+			this.listing = listing;
+			this.path = path;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(listing, path);
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (obj == null) {
+				return false;
+			}
+			if (getClass() != obj.getClass()) {
+				return false;
+			}
+			final var other = (Key) obj;
+			return listing == other.listing && Objects.equals(path, other.path);
+		}
+	}
+
+	private static class Entry {
+		private final CachedFileAttributes attributes;
+		private final List<CachedFileAttributes> listing;
+		private final long expires;
+		private final long weight;
+
+		Entry(final CachedFileAttributes attributes,
+		      final List<CachedFileAttributes> listing,
+		      final long expires) {
+			this.attributes = attributes;
+			this.listing = listing;
+			this.expires = expires;
+			weight = listing == null ? 1 : 1L + listing.size();
+		}
+	}
+
+	Optional<CachedFileAttributes> getAttributes(final String path) {
+		return Optional.ofNullable(get(new Key(false, path)))
+		        .map(e -> e.attributes);
+	}
+
+	Optional<List<CachedFileAttributes>> getListing(final String path) {
+		return Optional.ofNullable(get(new Key(true, path)))
+		        .map(e -> e.listing);
+	}
+
+	private Entry get(final Key key) {
+		lock.lock();
+		try {
+			final var entry = entries.get(key);
+			if (entry != null && System.nanoTime() - entry.expires < 0) {
+				hits++;
+				return entry;
+			} else if (entry != null) {
+				remove(key);
+			}
+			misses++;
+			return null;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	void putAttributes(final String path, final CachedFileAttributes attributes) {
+		final var ttl = attributes.exists() ? ttlNanos : negativeTtlNanos;
+		if (ttl > 0) {
+			put(new Key(false, path), new Entry(attributes, null, System.nanoTime() + ttl));
+		}
+	}
+
+	/**
+	 * Also put the attributes of all listed items.
+	 */
+	void putListing(final String path, final List<CachedFileAttributes> listing) {
+		if (ttlNanos == 0) {
+			return;
+		}
+		final var expires = System.nanoTime() + ttlNanos;
+		lock.lock();
+		try {
+			put(new Key(true, path), new Entry(null, List.copyOf(listing), expires));
+			listing.forEach(a -> put(new Key(false, a.getPath()), new Entry(a, null, expires)));
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void put(final Key key, final Entry entry) {
+		lock.lock();
+		try {
+			remove(key);
+			if (entry.weight > maxSize) {
+				return;
+			}
+			entries.put(key, entry);
+			size += entry.weight;
+			final var iterator = entries.entrySet().iterator();
+			while (size > maxSize && iterator.hasNext()) {
+				final var eldest = iterator.next();
+				if (eldest.getKey().equals(key)) {
+					continue;
+				}
+				size -= eldest.getValue().weight;
+				iterator.remove();
+				evictions++;
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void remove(final Key key) {
+		final var previous = entries.remove(key);
+		if (previous != null) {
+			size -= previous.weight;
+		}
+	}
+
+	/**
+	 * Forget this path attributes and listing, all its sub-paths, and the listing of its parent directory.
+	 */
+	void invalidate(final String path, final String parentPath) {
+		final var prefix = path.endsWith("/") ? path : path + "/";
+		lock.lock();
+		try {
+			final var iterator = entries.entrySet().iterator();
+			while (iterator.hasNext()) {
+				final var item = iterator.next();
+				final var itemPath = item.getKey().path;
+				if (itemPath.equals(path)
+				    || itemPath.startsWith(prefix)
+				    || item.getKey().listing && itemPath.equals(parentPath)) {
+					size -= item.getValue().weight;
+					iterator.remove();
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	void clear() {
+		lock.lock();
+		try {
+			entries.clear();
+			size = 0;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return in entries
+	 */
+	long getSize() {
+		lock.lock();
+		try {
+			return size;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	long getHits() {
+		lock.lock();
+		try {
+			return hits;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	long getMisses() {
+		lock.lock();
+		try {
+			return misses;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	long getEvictions() {
+		lock.lock();
+		try {
+			return evictions;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+}
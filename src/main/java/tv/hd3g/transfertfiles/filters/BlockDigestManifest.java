@@ -0,0 +1,195 @@
+/*
+ * This file is part of transfertfiles.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * Copyright (C) hdsdi3g for hd3g.tv 2021
+ *
+ */
+package tv.hd3g.transfertfiles.filters;
+
+import static java.util.stream.Collectors.toUnmodifiableList;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Chunked/tree hash result: one digest by fixed size block (the last block can be shorter), and a Merkle root.
+ * Leaf = digest(0x00 + block datas), node = digest(0x01 + left + right), a lone last node is promoted as is.
+ * An empty source is one empty block.
+ * Immutable
+ */
+public class BlockDigestManifest {
+	private static final byte[] LEAF_PREFIX = { 0 };
+	private static final byte[] NODE_PREFIX = { 1 };
+
+	private final DigestFilterHashExtraction digest;
+	private final int blockSize;
+	private final long size;
+	private final List<byte[]> blockDigests;
+	private final byte[] rootDigest;
+
+	/**
+	 * @param size total datas size, in bytes
+	 */
+	public BlockDigestManifest(final DigestFilterHashExtraction digest,
+	                           final int blockSize,
+	                           final long size,
+	                           final List<byte[]> blockDigests) {
+		if (blockSize < 1) {
+			throw new IllegalArgumentException("Invalid blockSize=" + blockSize);
+		}
+		if (blockDigests.isEmpty()
+		    || blockDigests.size() != Math.max(1, (size + blockSize - 1) / blockSize)) {
+			throw new IllegalArgumentException("Invalid block count " + blockDigests.size()
+			                                   + " for size=" + size + " and blockSize=" + blockSize);
+		}
+		this.digest = digest;
+		this.blockSize = blockSize;
+		this.size = size;
+		this.blockDigests = blockDigests.stream()
+		        .map(byte[]::clone)
+		        .collect(toUnmodifiableList());
+		rootDigest = computeRootDigest(digest, this.blockDigests);
+	}
+
+	/**
+	 * @return the leaf digest of this block, as in a manifest
+	 */
+	public static byte[] computeBlockDigest(final DigestFilterHashExtraction digest, final ByteBuffer datas) {
+		final var instance = digest.createInstance();
+		instance.update(ByteBuffer.wrap(LEAF_PREFIX));
+		instance.update(datas);
+		return instance.digest();
+	}
+
+	static byte[] computeRootDigest(final DigestFilterHashExtraction digest, final List<byte[]> blockDigests) {
+		var level = blockDigests;
+		while (level.size() > 1) {
+			final var nextLevel = new ArrayList<byte[]>((level.size() + 1) / 2);
+			for (var pos = 0; pos < level.size(); pos += 2) {
+				if (pos + 1 == level.size()) {
+					nextLevel.add(level.get(pos));
+				} else {
+					final var instance = digest.createInstance();
+					instance.update(ByteBuffer.wrap(NODE_PREFIX));
+					instance.update(ByteBuffer.wrap(level.get(pos)));
+					instance.update(ByteBuffer.wrap(level.get(pos + 1)));
+					nextLevel.add(instance.digest());
+				}
+			}
+			level = nextLevel;
+		}
+		return level.get(0).clone();
+	}
+
+	public DigestFilterHashExtraction getDigest() {
+		return digest;
+	}
+
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+	/**
+	 * @return total datas size, in bytes
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	public int getBlockCount() {
+		return blockDigests.size();
+	}
+
+	/**
+	 * @return position of this block in datas, in bytes
+	 */
+	public long getBlockOffset(final int index) {
+		checkIndex(index);
+		return (long) index * blockSize;
+	}
+
+	/**
+	 * @return size of this block, in bytes
+	 */
+	public int getBlockLength(final int index) {
+		checkIndex(index);
+		return (int) Math.min(blockSize, size - getBlockOffset(index));
+	}
+
+	public byte[] getBlockDigest(final int index) {
+		checkIndex(index);
+		return blockDigests.get(index).clone();
+	}
+
+	/**
+	 * @return a copy of all block digests, in datas order
+	 */
+	public List<byte[]> getBlockDigests() {
+		return blockDigests.stream()
+		        .map(byte[]::clone)
+		        .collect(toUnmodifiableList());
+	}
+
+	public byte[] getRootDigest() {
+		return rootDigest.clone();
+	}
+
+	/**
+	 * For resume and verification: check a block without compute all the datas.
+	 * @param datas all the block content (remaining bytes will be consumed)
+	 */
+	public boolean isValidBlock(final int index, final ByteBuffer datas) {
+		checkIndex(index);
+		if (datas.remaining() != getBlockLength(index)) {
+			return false;
+		}
+		return Arrays.equals(blockDigests.get(index), computeBlockDigest(digest, datas));
+	}
+
+	/**
+	 * @return the index of the first block in this manifest who don't match with the other manifest
+	 *         (computed with the same digest and block size), or -1 if the two are the same.
+	 *         The first invalid block is the resume point for an interrupted transfert.
+	 */
+	public int getFirstMismatchBlock(final BlockDigestManifest other) {
+		if (digest != other.digest || blockSize != other.blockSize) {
+			throw new IllegalArgumentException("Can't compare " + this + " with " + other);
+		}
+		for (var pos = 0; pos < blockDigests.size(); pos++) {
+			if (pos >= other.blockDigests.size()
+			    || getBlockLength(pos) != other.getBlockLength(pos)
+			    || Arrays.equals(blockDigests.get(pos), other.blockDigests.get(pos)) == false) {
+				return pos;
+			}
+		}
+		if (size != other.size) {
+			return blockDigests.size();
+		}
+		return -1;
+	}
+
+	private void checkIndex(final int index) {
+		if (index < 0 || index >= blockDigests.size()) {
+			throw new IndexOutOfBoundsException("Invalid block index " + index + ", count=" + blockDigests.size());
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "BlockDigestManifest [digest=" + digest + ", blockSize=" + blockSize
+		       + ", size=" + size + ", blockCount=" + blockDigests.size() + "]";
+	}
+
+}
@@ -0,0 +1,135 @@
+/*
+ * This file is part of transfertfiles.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * Copyright (C) hdsdi3g for hd3g.tv 2021
+ *
+ */
+package tv.hd3g.transfertfiles.filters;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipParameters;
+import org.tukaani.xz.LZMA2Options;
+import org.tukaani.xz.XZInputStream;
+import org.tukaani.xz.XZOutputStream;
+
+/**
+ * Streaming compression formats, via commons-compress and XZ for Java.
+ * All decompressors accept concatenated streams (needed by the parallel compression mode).
+ * Zstandard is not provided: commons-compress need the zstd-jni native dependency for it.
+ * LZ4 is not provided: the commons-compress LZ4 compressor is too slow to follow a network transfert.
+ */
+public enum CompressionFormat {
+
+	/**
+	 * Level 1 to 9 (Deflater levels). The dictionary size is fixed (32 KB) by deflate.
+	 */
+	GZIP(1, 9, 6,
+	     (out, level, dictionarySize) -> {
+		     final var parameters = new GzipParameters();
+		     parameters.setCompressionLevel(level);
+		     return new GzipCompressorOutputStream(out, parameters);
+	     },
+	     in -> new GzipCompressorInputStream(in, true)),
+	/**
+	 * Level 1 to 9, as block size, by 100 KB. No dictionary.
+	 */
+	BZIP2(1, 9, 9,
+	      (out, level, dictionarySize) -> new BZip2CompressorOutputStream(out, level),
+	      in -> new BZip2CompressorInputStream(in, true)),
+	/**
+	 * Level 0 to 9 (LZMA2 presets). The dictionary size overwrite the preset dictionary size.
+	 */
+	XZ(0, 9, 6,
+	   (out, level, dictionarySize) -> {
+		   final var options = new LZMA2Options(level);
+		   if (dictionarySize > 0) {
+			   options.setDictSize(dictionarySize);
+		   }
+		   return new XZOutputStream(out, options);
+	   },
+	   XZInputStream::new);
+
+	private final int minLevel;
+	private final int maxLevel;
+	private final int defaultLevel;
+	private final CompressorProvider compressorProvider;
+	private final UnaryIOExceptionOperator<InputStream> decompressorProvider;
+
+	CompressionFormat(final int minLevel,
+	                  final int maxLevel,
+	                  final int defaultLevel,
+	                  final CompressorProvider compressorProvider,
+	                  final UnaryIOExceptionOperator<InputStream> decompressorProvider) {
+		this.minLevel = minLevel;
+		this.maxLevel = maxLevel;
+		this.defaultLevel = defaultLevel;
+		this.compressorProvider = compressorProvider;
+		this.decompressorProvider = decompressorProvider;
+	}
+
+	@FunctionalInterface
+	private static interface CompressorProvider {
+		OutputStream create(OutputStream out, int level, int dictionarySize) throws IOException;
+	}
+
+	public int getMinLevel() {
+		return minLevel;
+	}
+
+	public int getMaxLevel() {
+		return maxLevel;
+	}
+
+	public int getDefaultLevel() {
+		return defaultLevel;
+	}
+
+	/**
+	 * @return level, or the default level if level is -1
+	 */
+	int checkLevel(final int level) {
+		if (level == -1) {
+			return defaultLevel;
+		} else if (level < minLevel || level > maxLevel) {
+			throw new IllegalArgumentException("Invalid level " + level + " for " + this
+			                                   + " (" + minLevel + " to " + maxLevel + ")");
+		}
+		return level;
+	}
+
+	/**
+	 * @param level -1 for the default level
+	 * @param dictionarySize in bytes, 0 for default. Only used by XZ.
+	 * @return the close will finish the compressed stream, and close out.
+	 */
+	public OutputStream createCompressor(final OutputStream out,
+	                                     final int level,
+	                                     final int dictionarySize) throws IOException {
+		if (dictionarySize < 0) {
+			throw new IllegalArgumentException("Invalid dictionarySize=" + dictionarySize);
+		}
+		return compressorProvider.create(out, checkLevel(level), dictionarySize);
+	}
+
+	public InputStream createDecompressor(final InputStream in) throws IOException {
+		return decompressorProvider.apply(in);
+	}
+
+}
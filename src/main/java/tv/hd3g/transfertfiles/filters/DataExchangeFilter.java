@@ -28,7 +28,8 @@ public interface DataExchangeFilter {
 	 * @param dataSource can be empty after call
 	 * @param last if true, you should use flush/close internal needs and return last responses,
 	 *        because applyDataFilter will never be called for the current instance.
-	 * @return empty for "ignore" filter/data collector filter
+	 * @return empty for "ignore" filter/data collector filter (or "nothing to push for now", see
+	 *         isConsumingDataSources)
 	 *         null for stop data transfert operation
 	 *         returned BufferVault can be re-used here after, and can be empty after call
 	 */
@@ -38,6 +39,24 @@ public interface DataExchangeFilter {
 	default void onCancelTransfert() {
 	}
 
+	/**
+	 * @return true if applyDataFilter never change datas and always return an empty BufferVault (like a hash
+	 *         extraction). With a staged DataExchangeInOutStream, following observer filters are applied in parallel
+	 *         on the same datas.
+	 */
+	default boolean isObserverOnly() {
+		return false;
+	}
+
+	/**
+	 * @return true if applyDataFilter always consumes dataSources, and can return an empty BufferVault for
+	 *         "nothing to push for now" (like a compressor that waits more datas to produce a block). Else, an empty
+	 *         returned BufferVault means "push dataSources as is".
+	 */
+	default boolean isConsumingDataSources() {
+		return false;
+	}
+
 	/**
 	 * Ensure to all applyDataFilter call will contain a total dataSources size equals/more than with this value.
 	 * Else applyDataFilter with last = true will be called
@@ -0,0 +1,64 @@
+/*
+ * This file is part of transfertfiles.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * Copyright (C) hdsdi3g for hd3g.tv 2021
+ *
+ */
+package tv.hd3g.transfertfiles.filters;
+
+import java.io.IOException;
+import java.util.Objects;
+
+import tv.hd3g.transfertfiles.BandwidthLimiter;
+import tv.hd3g.transfertfiles.BufferVault;
+
+/**
+ * Pass-through filter: wait the BandwidthLimiter before let pass datas.
+ * The same BandwidthLimiter can be shared by several filters (and transferts).
+ * Not reusable
+ */
+public class DataExchangeFilterBandwidthLimit implements DataExchangeFilter {
+
+	private final BandwidthLimiter limiter;
+	private volatile boolean cancelled;
+
+	public DataExchangeFilterBandwidthLimit(final BandwidthLimiter limiter) {
+		this.limiter = Objects.requireNonNull(limiter, "\"limiter\" can't to be null");
+	}
+
+	public BandwidthLimiter getLimiter() {
+		return limiter;
+	}
+
+	@Override
+	public BufferVault applyDataFilter(final boolean last, final BufferVault dataSources) throws IOException {
+		if (limiter.acquire(dataSources.getSize(), () -> cancelled == false) == false) {
+			dataSources.clear();
+		}
+		return dataSources;
+	}
+
+	/**
+	 * Stop to wait after the current slice
+	 */
+	@Override
+	public void onCancelTransfert() {
+		cancelled = true;
+	}
+
+	@Override
+	public String getFilterName() {
+		return "BandwidthLimit:" + limiter.getRate();
+	}
+
+}
@@ -0,0 +1,211 @@
+/*
+ * This file is part of transfertfiles.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * Copyright (C) hdsdi3g for hd3g.tv 2021
+ *
+ */
+package tv.hd3g.transfertfiles.filters;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import tv.hd3g.transfertfiles.BufferVault;
+import tv.hd3g.transfertfiles.TransfertExecutors;
+
+/**
+ * Compress datas on the fly, without temp files. See DataExchangeFilterDecompress for the reverse.
+ * Not reusable
+ */
+public class DataExchangeFilterCompress implements DataExchangeFilter {
+	private static final Logger log = LogManager.getLogger();
+	private static final int MAX_PENDING_BLOCKS_BY_THREAD = 2;
+
+	private final CompressionFormat format;
+	private final int level;
+	private final int dictionarySize;
+	/**
+	 * Only written by this filter Thread, and read by the next filter (or the exchange reader), that will never run
+	 * concurrently with the next applyDataFilter call: no need to lock each byte read.
+	 */
+	private final BufferVault dataDest;
+	private OutputStream compressor;
+
+	private Executor parallelCompress;
+	private int parallelBlockSize;
+	private int maxPendingBlocks;
+	private BufferVault pendingBlock;
+	private Queue<CompletableFuture<BufferVault>> compressedBlocks;
+	private boolean blockSubmitted;
+
+	/**
+	 * @param level -1 for the format default level
+	 * @param dictionarySize in bytes, 0 for default. Only used by XZ.
+	 */
+	public DataExchangeFilterCompress(final CompressionFormat format, final int level, final int dictionarySize) {
+		this.format = Objects.requireNonNull(format, "\"format\" can't to be null");
+		this.level = format.checkLevel(level);
+		if (dictionarySize < 0) {
+			throw new IllegalArgumentException("Invalid dictionarySize=" + dictionarySize);
+		}
+		this.dictionarySize = dictionarySize;
+		dataDest = BufferVault.createSPSC(DEFAULT_BUFFER_SIZE);
+	}
+
+	public DataExchangeFilterCompress(final CompressionFormat format) {
+		this(format, -1, 0);
+	}
+
+	/**
+	 * Block-parallel mode: datas are cut in blocks, and each block is compressed as an independent stream,
+	 * in parallel. Compressed blocks are pushed in order, as concatenated streams (the compression ratio will be a
+	 * little less good than a single stream). Any DataExchangeFilterDecompress can read it.
+	 * Call it before the first applyDataFilter.
+	 * Blocks are compressed on TransfertExecutors.getCompute.
+	 * @param threads parallel block compressions count, 0 for all CPU cores
+	 * @param blockSize min block size (datas will be cut on the next applyDataFilter call), in bytes
+	 * @return this
+	 */
+	public DataExchangeFilterCompress setParallel(final int threads, final int blockSize) {
+		return setParallel(threads, blockSize, TransfertExecutors.getCompute());
+	}
+
+	/**
+	 * See setParallel(threads, blockSize)
+	 * @param executor for the CPU bound block compressions
+	 * @return this
+	 */
+	public DataExchangeFilterCompress setParallel(final int threads, final int blockSize, final Executor executor) {
+		Objects.requireNonNull(executor, "\"executor\" can't to be null");
+		if (threads < 0) {
+			throw new IllegalArgumentException("Invalid threads=" + threads);
+		} else if (blockSize < 1) {
+			throw new IllegalArgumentException("Invalid blockSize=" + blockSize);
+		} else if (compressor != null || parallelCompress != null) {
+			throw new IllegalStateException("Compression is already started");
+		}
+		final var threadCount = threads == 0 ? Runtime.getRuntime().availableProcessors() : threads;
+		parallelCompress = executor;
+		parallelBlockSize = blockSize;
+		maxPendingBlocks = threadCount * MAX_PENDING_BLOCKS_BY_THREAD;
+		pendingBlock = new BufferVault(blockSize);
+		compressedBlocks = new ArrayDeque<>();
+		log.debug("Set parallel {} compression with {} threads and blocks of {} bytes",
+		        format, threadCount, blockSize);
+		return this;
+	}
+
+	@Override
+	public BufferVault applyDataFilter(final boolean last, final BufferVault dataSources) throws IOException {
+		dataDest.clear();
+		if (parallelCompress == null) {
+			if (compressor == null) {
+				compressor = format.createCompressor(dataDest.asOutputStream(), level, dictionarySize);
+			}
+			/**
+			 * No flush here: it will close the current compressed block for some formats (XZ).
+			 */
+			dataSources.read(compressor);
+			if (last) {
+				compressor.close();
+			}
+		} else {
+			applyParallelDataFilter(last, dataSources);
+		}
+
+		if (log.isTraceEnabled()) {
+			log.trace("Readed before compress {} bytes, after compress {} bytes",
+			        dataSources.getSize(), dataDest.getSize());
+		}
+		return dataDest;
+	}
+
+	private void applyParallelDataFilter(final boolean last, final BufferVault dataSources) throws IOException {
+		pendingBlock.write(dataSources.asReadOnlyByteBuffer());
+		if (pendingBlock.getSize() >= parallelBlockSize
+		    || last && (pendingBlock.getSize() > 0 || blockSubmitted == false)) {
+			final var block = pendingBlock.readAll();
+			pendingBlock.clear();
+			compressedBlocks.add(CompletableFuture.supplyAsync(() -> compressBlock(block), parallelCompress));
+			blockSubmitted = true;
+		}
+
+		while (compressedBlocks.isEmpty() == false
+		       && (last
+		           || compressedBlocks.size() > maxPendingBlocks
+		           || compressedBlocks.peek().isDone())) {
+			dataDest.write(waitFor(compressedBlocks.poll()).asReadOnlyByteBuffer());
+		}
+	}
+
+	private BufferVault compressBlock(final byte[] block) {
+		final var result = new BufferVault();
+		try (var out = format.createCompressor(result.asOutputStream(), level, dictionarySize)) {
+			out.write(block);
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return result;
+	}
+
+	private static BufferVault waitFor(final CompletableFuture<BufferVault> compressedBlock) throws IOException {
+		try {
+			return compressedBlock.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted during block compression");
+		} catch (final ExecutionException e) {
+			var cause = e.getCause();
+			if (cause instanceof UncheckedIOException) {
+				cause = cause.getCause();
+			}
+			throw new IOException("Can't compress block", cause);
+		}
+	}
+
+	@Override
+	public boolean isConsumingDataSources() {
+		return true;
+	}
+
+	@Override
+	public void onCancelTransfert() {
+		dataDest.clear();
+		if (parallelCompress != null) {
+			compressedBlocks.forEach(compressedBlock -> compressedBlock.cancel(false));
+			compressedBlocks.clear();
+		} else if (compressor != null) {
+			try {
+				compressor.close();
+			} catch (final IOException e) {
+				log.error("Can't close compressor: {}", getFilterName(), e);
+			}
+		}
+	}
+
+	@Override
+	public String getFilterName() {
+		return "Compress:" + format;
+	}
+
+}
@@ -0,0 +1,254 @@
+/*
+ * This file is part of transfertfiles.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * Copyright (C) hdsdi3g for hd3g.tv 2021
+ *
+ */
+package tv.hd3g.transfertfiles.filters;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import tv.hd3g.transfertfiles.BufferVault;
+
+/**
+ * Decompress datas on the fly, without temp files. See DataExchangeFilterCompress for the reverse.
+ * Decompressors are pull-based (InputStream): each one runs in its own Thread, fed by applyDataFilter.
+ * applyDataFilter waits the decompressor has consumed all provided datas, or has maxPendingSize decompressed datas
+ * (the decompressor waits the next call before continue), and returns the available decompressed datas. The last
+ * call returns all the remaining decompressed datas.
+ * Not reusable
+ */
+public class DataExchangeFilterDecompress implements DataExchangeFilter {
+	private static final Logger log = LogManager.getLogger();
+
+	public static final int DEFAULT_MAX_PENDING_SIZE = 1024 * 1024;
+
+	private final CompressionFormat format;
+	private final int maxPendingSize;
+	/**
+	 * Only written by this filter Thread, and read by the next filter (or the exchange reader), that will never run
+	 * concurrently with the next applyDataFilter call: no need to lock each byte read.
+	 */
+	private final BufferVault dataDest;
+	private final BufferVault decompressed;
+	private final ReentrantLock lock;
+	private final Condition changed;
+	private final Queue<byte[]> inputs;
+	private final InputStream feed;
+
+	private Thread decompressor;
+	private byte[] currentInput;
+	private int currentInputPos;
+	private boolean inputEnded;
+	private boolean starved;
+	private boolean ended;
+	private boolean cancelled;
+	private IOException error;
+
+	public DataExchangeFilterDecompress(final CompressionFormat format) {
+		this(format, DEFAULT_MAX_PENDING_SIZE);
+	}
+
+	/**
+	 * @param maxPendingSize max decompressed datas size keeped between two non-last applyDataFilter calls.
+	 */
+	public DataExchangeFilterDecompress(final CompressionFormat format, final int maxPendingSize) {
+		this.format = Objects.requireNonNull(format, "\"format\" can't to be null");
+		if (maxPendingSize < 1) {
+			throw new IllegalArgumentException("Invalid maxPendingSize=" + maxPendingSize);
+		}
+		this.maxPendingSize = maxPendingSize;
+		dataDest = BufferVault.createSPSC(DEFAULT_BUFFER_SIZE);
+		decompressed = new BufferVault(DEFAULT_BUFFER_SIZE);
+		lock = new ReentrantLock();
+		changed = lock.newCondition();
+		inputs = new ArrayDeque<>();
+		feed = new FeedInputStream();
+	}
+
+	/**
+	 * Read by the decompressor Thread
+	 */
+	private class FeedInputStream extends InputStream {
+
+		@Override
+		public int read() throws IOException {
+			final var b = new byte[1];
+			if (read(b, 0, 1) == -1) {
+				return -1;
+			}
+			return b[0] & 0xFF;
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len) throws IOException {
+			Objects.checkFromIndexSize(off, len, b.length);
+			if (len == 0) {
+				return 0;
+			}
+			lock.lock();
+			try {
+				while (currentInput == null || currentInputPos == currentInput.length) {
+					if (cancelled) {
+						throw new IOException("Decompression is cancelled");
+					} else if (inputs.isEmpty() == false) {
+						currentInput = inputs.poll();
+						currentInputPos = 0;
+					} else if (inputEnded) {
+						return -1;
+					} else {
+						starved = true;
+						changed.signalAll();
+						changed.await();
+					}
+				}
+				starved = false;
+				final var size = Math.min(len, currentInput.length - currentInputPos);
+				System.arraycopy(currentInput, currentInputPos, b, off, size);
+				currentInputPos += size;
+				return size;
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted during wait datas to decompress");
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	private void decompress() {
+		try (var in = format.createDecompressor(feed)) {
+			final var buffer = new byte[DEFAULT_BUFFER_SIZE];
+			int size;
+			while ((size = in.read(buffer)) > -1) {
+				lock.lock();
+				try {
+					while (decompressed.getSize() >= maxPendingSize && inputEnded == false && cancelled == false) {
+						changed.signalAll();
+						changed.await();
+					}
+					if (cancelled) {
+						throw new IOException("Decompression is cancelled");
+					}
+					decompressed.write(buffer, 0, size);
+				} finally {
+					lock.unlock();
+				}
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			lock.lock();
+			try {
+				error = new InterruptedIOException("Interrupted during decompression");
+			} finally {
+				lock.unlock();
+			}
+		} catch (final IOException e) {
+			lock.lock();
+			try {
+				if (cancelled == false) {
+					error = e;
+				}
+			} finally {
+				lock.unlock();
+			}
+		} finally {
+			lock.lock();
+			try {
+				ended = true;
+				changed.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	@Override
+	public BufferVault applyDataFilter(final boolean last, final BufferVault dataSources) throws IOException {
+		dataDest.clear();
+		if (decompressor == null) {
+			decompressor = new Thread(this::decompress, "Decompress" + format);
+			decompressor.setDaemon(true);
+			decompressor.start();
+		}
+
+		lock.lock();
+		try {
+			if (dataSources.getSize() > 0) {
+				inputs.add(dataSources.readAll());
+				starved = false;
+			}
+			if (last) {
+				inputEnded = true;
+			}
+			changed.signalAll();
+
+			while (ended == false
+			       && (last || starved == false && decompressed.getSize() < maxPendingSize)) {
+				changed.await();
+			}
+			if (error != null) {
+				throw new IOException("Can't decompress with " + format, error);
+			}
+			dataDest.write(decompressed.asReadOnlyByteBuffer());
+			decompressed.clear();
+			changed.signalAll();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted during decompression");
+		} finally {
+			lock.unlock();
+		}
+
+		if (log.isTraceEnabled()) {
+			log.trace("Readed before decompress {} bytes, after decompress {} bytes",
+			        dataSources.getSize(), dataDest.getSize());
+		}
+		return dataDest;
+	}
+
+	@Override
+	public boolean isConsumingDataSources() {
+		return true;
+	}
+
+	@Override
+	public void onCancelTransfert() {
+		lock.lock();
+		try {
+			cancelled = true;
+			inputs.clear();
+			decompressed.clear();
+			dataDest.clear();
+			changed.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public String getFilterName() {
+		return "Decompress:" + format;
+	}
+
+}
@@ -17,14 +17,21 @@
 package tv.hd3g.transfertfiles.filters;
 
 import static java.util.function.Predicate.not;
+import static java.util.stream.Collectors.toUnmodifiableList;
 import static java.util.stream.Collectors.toUnmodifiableMap;
 import static java.util.stream.Collectors.toUnmodifiableSet;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -32,7 +39,9 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import tv.hd3g.transfertfiles.BufferVault;
+import tv.hd3g.transfertfiles.TransfertExecutors;
 import tv.hd3g.transfertfiles.filters.DigestFilterHashExtraction.ExtractionInstance;
+import tv.hd3g.transfertfiles.filters.DigestFilterHashExtraction.TreeExtractionInstance;
 
 /**
  * Not reusable
@@ -54,6 +63,9 @@ public class DataExchangeFilterHashExtraction implements DataExchangeFilter {
 	}
 
 	private final Map<DigestFilterHashExtraction, ExtractionInstance> currentDigests;
+	private final BufferVault emptyResult;
+	private final Executor parallelDigests;
+	private final int treeBlockSize;
 
 	public DataExchangeFilterHashExtraction(final DigestFilterHashExtraction... digests) {
 		this(Stream.of(digests)
@@ -62,20 +74,101 @@ public class DataExchangeFilterHashExtraction implements DataExchangeFilter {
 	}
 
 	public DataExchangeFilterHashExtraction(final Collection<DigestFilterHashExtraction> digests) {
-		currentDigests = digests.stream()
+		this(digests, false);
+	}
+
+	/**
+	 * All digests are always computed in one pass on a shared read-only view of the datas (without copy).
+	 * @param parallelDigests if true, each digest will be computed in its own Thread for each datas chunk, with
+	 *        TransfertExecutors.getCompute. Useful with 2+ slow digests (SHA-256, SHA-512...) on fast transferts.
+	 */
+	public DataExchangeFilterHashExtraction(final Collection<DigestFilterHashExtraction> digests,
+	                                        final boolean parallelDigests) {
+		this(digests, parallelDigests, 0);
+	}
+
+	/**
+	 * Chunked/tree hashes: each digest is computed by treeBlockSize blocks, and getResults will return
+	 * the Merkle roots. Get the per-block digests with getBlockManifests.
+	 * @param parallelDigests if true, blocks will be hashed in parallel, on all CPU cores (see
+	 *        TransfertExecutors.getCompute).
+	 * @param treeBlockSize 0 for classic linear digests
+	 */
+	public DataExchangeFilterHashExtraction(final Collection<DigestFilterHashExtraction> digests,
+	                                        final boolean parallelDigests,
+	                                        final int treeBlockSize) {
+		if (treeBlockSize < 0) {
+			throw new IllegalArgumentException("Invalid treeBlockSize=" + treeBlockSize);
+		}
+		this.treeBlockSize = treeBlockSize;
+		emptyResult = new BufferVault();
+		final var selectedDigests = digests.stream()
 		        .filter(avaliableDigests::contains)
-		        .collect(toUnmodifiableMap(d -> d,
-		                DigestFilterHashExtraction::createInstance));
-		if (currentDigests.isEmpty()) {
+		        .collect(toUnmodifiableSet());
+		if (selectedDigests.isEmpty()) {
 			throw new IllegalArgumentException("Can't init instances of " + digests);
 		}
+
+		if (parallelDigests && (treeBlockSize > 0 || selectedDigests.size() > 1)) {
+			this.parallelDigests = TransfertExecutors.getCompute();
+		} else {
+			this.parallelDigests = null;
+		}
+
+		if (treeBlockSize > 0) {
+			currentDigests = selectedDigests.stream()
+			        .collect(toUnmodifiableMap(d -> d,
+			                d -> d.createTreeInstance(treeBlockSize, this.parallelDigests)));
+		} else {
+			currentDigests = selectedDigests.stream()
+			        .collect(toUnmodifiableMap(d -> d,
+			                DigestFilterHashExtraction::createInstance));
+		}
 	}
 
 	@Override
 	public BufferVault applyDataFilter(final boolean last, final BufferVault dataSources) throws IOException {
-		currentDigests.values()
-		        .forEach(md -> md.update(dataSources.readAllToByteBuffer()));
-		return new BufferVault();
+		final var view = dataSources.asReadOnlyByteBuffer();
+		if (parallelDigests == null || treeBlockSize > 0) {
+			currentDigests.values()
+			        .forEach(md -> md.update(view.duplicate()));
+		} else {
+			applyParallelDigests(view);
+		}
+		emptyResult.clear();
+		return emptyResult;
+	}
+
+	private void applyParallelDigests(final ByteBuffer view) throws IOException {
+		final var instances = List.copyOf(currentDigests.values());
+		final var futures = instances.stream()
+		        .skip(1)
+		        .map(md -> CompletableFuture.runAsync(() -> md.update(view.duplicate()), parallelDigests))
+		        .collect(toUnmodifiableList());
+		instances.get(0).update(view.duplicate());
+		try {
+			for (final var future : futures) {
+				future.get();
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted during digests computation");
+		} catch (final ExecutionException e) {
+			throw new IOException("Can't compute digest", e.getCause());
+		}
+	}
+
+	@Override
+	public void onCancelTransfert() {
+		currentDigests.values().stream()
+		        .filter(TreeExtractionInstance.class::isInstance)
+		        .map(TreeExtractionInstance.class::cast)
+		        .forEach(TreeExtractionInstance::cancel);
+	}
+
+	@Override
+	public boolean isObserverOnly() {
+		return true;
 	}
 
 	public Map<DigestFilterHashExtraction, byte[]> getResults() {
@@ -84,6 +177,19 @@ public class DataExchangeFilterHashExtraction implements DataExchangeFilter {
 		                d -> currentDigests.get(d).digest()));
 	}
 
+	/**
+	 * Only with a treeBlockSize. Call it after the last applyDataFilter, like getResults.
+	 * @return the per-block digests and the Merkle root for each digest.
+	 */
+	public Map<DigestFilterHashExtraction, BlockDigestManifest> getBlockManifests() {
+		if (treeBlockSize == 0) {
+			throw new IllegalStateException("Tree hashes are not enabled");
+		}
+		return currentDigests.keySet().stream()
+		        .collect(toUnmodifiableMap(d -> d,
+		                d -> ((TreeExtractionInstance) currentDigests.get(d)).getManifest()));
+	}
+
 	@Override
 	public String getFilterName() {
 		return "HashExtraction:" + currentDigests.keySet().stream()
@@ -31,6 +31,10 @@ public class DataExchangeFilterOutputStream implements DataExchangeFilter {
 	private static final Logger log = LogManager.getLogger();
 
 	private final int defaultBufferSize;
+	/**
+	 * Only written by this filter Thread, and read by the next filter (or the exchange reader), that will never run
+	 * concurrently with the next applyDataFilter call: no need to lock each byte read.
+	 */
 	private final BufferVault dataDest;
 	private final UnaryIOExceptionOperator<OutputStream> streamProvider;
 	private OutputStream externalOutputStream;
@@ -38,7 +42,7 @@ public class DataExchangeFilterOutputStream implements DataExchangeFilter {
 	public DataExchangeFilterOutputStream(final UnaryIOExceptionOperator<OutputStream> streamProvider,
 	                                      final int defaultBufferSize) {
 		this.defaultBufferSize = defaultBufferSize;
-		dataDest = new BufferVault(defaultBufferSize);
+		dataDest = BufferVault.createSPSC(defaultBufferSize);
 		this.streamProvider = streamProvider;
 		log.debug("Init filter outputstream with buffer={}", defaultBufferSize);
 	}
@@ -74,6 +78,11 @@ public class DataExchangeFilterOutputStream implements DataExchangeFilter {
 		return defaultBufferSize;
 	}
 
+	@Override
+	public boolean isConsumingDataSources() {
+		return true;
+	}
+
 	@Override
 	public void onCancelTransfert() {
 		try {
@@ -20,6 +20,13 @@ import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.Security;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 import java.util.zip.Adler32;
 import java.util.zip.CRC32;
 import java.util.zip.CRC32C;
@@ -27,6 +34,8 @@ import java.util.zip.Checksum;
 
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 
+import tv.hd3g.transfertfiles.BufferPool;
+
 public enum DigestFilterHashExtraction {
 
 	CRC32(new CRC32InstanceProvider()),
@@ -91,6 +100,15 @@ public enum DigestFilterHashExtraction {
 		return digestProvider.createInstance();
 	}
 
+	/**
+	 * Chunked/tree hash with this digest: see BlockDigestManifest.
+	 * @param blockExecutor if not null, full blocks will be hashed in parallel with it, else during update.
+	 *        It must stay usable until the last update.
+	 */
+	TreeExtractionInstance createTreeInstance(final int blockSize, final Executor blockExecutor) {
+		return new TreeExtractionInstance(this, blockSize, blockExecutor);
+	}
+
 	@Override
 	public String toString() {
 		return getDigestName();
@@ -224,4 +242,132 @@ public enum DigestFilterHashExtraction {
 			return new Adler32();
 		}
 	}
+
+	/**
+	 * digest() return the Merkle root. Not thread safe.
+	 */
+	static class TreeExtractionInstance implements ExtractionInstance {
+		private static final int MAX_PENDING_BLOCKS_BY_CPU = 2;
+
+		private final DigestFilterHashExtraction digest;
+		private final int blockSize;
+		private final Executor blockExecutor;
+		private final int maxPendingBlocks;
+		private final BufferPool bufferPool;
+		private final List<Future<byte[]>> blockDigests;
+		private byte[] currentBlock;
+		private int currentBlockSize;
+		private int firstPendingBlock;
+		private long size;
+		private BlockDigestManifest manifest;
+
+		TreeExtractionInstance(final DigestFilterHashExtraction digest,
+		                       final int blockSize,
+		                       final Executor blockExecutor) {
+			if (blockSize < 1) {
+				throw new IllegalArgumentException("Invalid blockSize=" + blockSize);
+			}
+			this.digest = digest;
+			this.blockSize = blockSize;
+			this.blockExecutor = blockExecutor;
+			maxPendingBlocks = Runtime.getRuntime().availableProcessors() * MAX_PENDING_BLOCKS_BY_CPU;
+			bufferPool = BufferPool.getDefault();
+			blockDigests = new ArrayList<>();
+		}
+
+		@Override
+		public void update(final ByteBuffer datas) {
+			if (manifest != null) {
+				throw new IllegalStateException("Digest is already computed");
+			}
+			while (datas.hasRemaining()) {
+				if (currentBlock == null) {
+					currentBlock = bufferPool.borrowArray(blockSize);
+					currentBlockSize = 0;
+				}
+				final var len = Math.min(datas.remaining(), blockSize - currentBlockSize);
+				datas.get(currentBlock, currentBlockSize, len);
+				currentBlockSize += len;
+				size += len;
+				if (currentBlockSize == blockSize) {
+					pushCurrentBlock(blockExecutor);
+				}
+			}
+		}
+
+		private void pushCurrentBlock(final Executor executor) {
+			final var block = currentBlock;
+			final var len = currentBlockSize;
+			currentBlock = null;
+			currentBlockSize = 0;
+
+			final Callable<byte[]> task = () -> {
+				try {
+					return BlockDigestManifest.computeBlockDigest(digest, ByteBuffer.wrap(block, 0, len));
+				} finally {
+					bufferPool.releaseArray(block);
+				}
+			};
+			if (executor == null) {
+				blockDigests.add(CompletableFuture.completedFuture(call(task)));
+			} else {
+				blockDigests.add(CompletableFuture.supplyAsync(() -> call(task), executor));
+				while (blockDigests.size() - firstPendingBlock > maxPendingBlocks) {
+					waitFor(blockDigests.get(firstPendingBlock++));
+				}
+			}
+		}
+
+		private static byte[] call(final Callable<byte[]> task) {
+			try {
+				return task.call();
+			} catch (final Exception e) {
+				throw new IllegalStateException("Can't compute block digest", e);
+			}
+		}
+
+		private static byte[] waitFor(final Future<byte[]> blockDigest) {
+			try {
+				return blockDigest.get();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted during block digest computation", e);
+			} catch (final ExecutionException e) {
+				throw new IllegalStateException("Can't compute block digest", e.getCause());
+			}
+		}
+
+		BlockDigestManifest getManifest() {
+			if (manifest == null) {
+				if (currentBlock != null || blockDigests.isEmpty()) {
+					if (currentBlock == null) {
+						currentBlock = bufferPool.borrowArray(0);
+					}
+					pushCurrentBlock(null);
+				}
+				final var result = new ArrayList<byte[]>(blockDigests.size());
+				for (final var blockDigest : blockDigests) {
+					result.add(waitFor(blockDigest));
+				}
+				manifest = new BlockDigestManifest(digest, blockSize, size, result);
+			}
+			return manifest;
+		}
+
+		@Override
+		public byte[] digest() {
+			return getManifest().getRootDigest();
+		}
+
+		/**
+		 * Release the current block buffer, after a cancel.
+		 */
+		void cancel() {
+			if (currentBlock != null) {
+				bufferPool.releaseArray(currentBlock);
+				currentBlock = null;
+			}
+		}
+	}
+
 }
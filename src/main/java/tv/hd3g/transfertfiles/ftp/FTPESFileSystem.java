@@ -93,6 +93,14 @@ public class FTPESFileSystem extends FTPFileSystem {// NOSONAR S2160
 		return client;
 	}
 
+	@Override
+	protected FTPClient createClient() {
+		if (isIgnoreInvalidCertificates()) {
+			return new FTPSClient(false, sslContextNeverCheck);
+		}
+		return new FTPSClient(false);
+	}
+
 	@Override
 	public String toString() {
 		return "ftpes://" + username + "@" + host.getHostName() + ":" + port + getBasePath();
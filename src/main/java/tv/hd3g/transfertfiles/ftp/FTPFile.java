@@ -35,6 +35,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UncheckedIOException;
 import java.time.Duration;
+import java.util.Arrays;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -54,6 +55,8 @@ import tv.hd3g.transfertfiles.AbstractFileSystem;
 import tv.hd3g.transfertfiles.CachedFileAttributes;
 import tv.hd3g.transfertfiles.CannotDeleteException;
 import tv.hd3g.transfertfiles.CommonAbstractFile;
+import tv.hd3g.transfertfiles.SegmentedDownload;
+import tv.hd3g.transfertfiles.SegmentedDownload.RangeConsumer;
 import tv.hd3g.transfertfiles.SizedStoppableCopyCallback;
 import tv.hd3g.transfertfiles.TransfertObserver;
 import tv.hd3g.transfertfiles.TransfertObserver.TransfertDirection;
@@ -63,13 +66,13 @@ public class FTPFile extends CommonAbstractFile<FTPFileSystem> {// NOSONAR S2160
 
 	private static final Logger log = LogManager.getLogger();
 
-	private final FTPClient ftpClient;
-	private String actualCWD;
 	private final String absolutePath;
 
+	/**
+	 * All FTP operations are done with fileSystem.useClient: on a borrowed connection in pooled mode.
+	 */
 	FTPFile(final FTPFileSystem fileSystem, final String relativePath, final String absolutePath) {
 		super(fileSystem, relativePath);
-		ftpClient = fileSystem.getClient();
 		this.absolutePath = absolutePath;
 	}
 
@@ -78,16 +81,42 @@ public class FTPFile extends CommonAbstractFile<FTPFileSystem> {// NOSONAR S2160
 		return fileSystem;
 	}
 
+	/**
+	 * Use the FTPFileSystem stat cache, if enabled.
+	 */
 	private Optional<org.apache.commons.net.ftp.FTPFile> getCurrentFile() {
+		final var cached = fileSystem.getStatCache().get(absolutePath);
+		if (cached.isPresent()) {
+			return cached.get().getFile();
+		}
+		try {
+			return fileSystem.useClient(this::getCurrentFile);
+		} catch (final IOException e) {
+			throw new UncheckedIOException(FTP_ERROR_DURING_LIST + absolutePath + "\"", e);
+		}
+	}
+
+	/**
+	 * Always get fresh attributes, and put them in the FTPFileSystem stat cache.
+	 * With LIST, the cache will get all the parent directory entries.
+	 */
+	private Optional<org.apache.commons.net.ftp.FTPFile> getCurrentFile(final FTPClient ftpClient) {
+		final var statCache = fileSystem.getStatCache();
 		try {
 			final var preferList = FTPListing.LIST.equals(fileSystem.getFtpListing());
+			Optional<org.apache.commons.net.ftp.FTPFile> result;
 			if (preferList || ftpClient.hasFeature("MLST") == false) {
-				return Stream.of(ftpClient.listFiles(getFullPathNoEndSeparator(absolutePath)))
+				final var parentPath = getFullPathNoEndSeparator(absolutePath);
+				final var parentList = ftpClient.listFiles(parentPath);
+				statCache.putListing(parentPath, Arrays.asList(parentList));
+				result = Stream.of(parentList)
 				        .filter(f -> f.getName().equalsIgnoreCase(getName()))
 				        .findFirst();
 			} else {
-				return Optional.ofNullable(ftpClient.mlistFile(absolutePath));
+				result = Optional.ofNullable(ftpClient.mlistFile(absolutePath));
 			}
+			statCache.put(absolutePath, result.orElse(null));
+			return result;
 		} catch (final IOException e) {
 			throw new UncheckedIOException(FTP_ERROR_DURING_LIST + absolutePath + "\"", e);
 		}
@@ -112,16 +141,26 @@ public class FTPFile extends CommonAbstractFile<FTPFileSystem> {// NOSONAR S2160
 
 	@Override
 	public long length() {
+		final var cached = fileSystem.getStatCache().get(absolutePath)
+		        .map(FTPStatCache.Entry::getFile)
+		        .filter(f -> f.isEmpty() || f.get().isFile());
+		if (cached.isPresent()) {
+			return cached.get()
+			        .map(org.apache.commons.net.ftp.FTPFile::getSize)
+			        .orElse(0L);
+		}
 		try {
-			if (ftpClient.hasFeature("SIZE")) {
-				return Optional.ofNullable(ftpClient.getSize(absolutePath))
-				        .map(Long::valueOf)
-				        .orElse(0L);
-			} else {
-				return getCurrentFile()
-				        .map(org.apache.commons.net.ftp.FTPFile::getSize)
-				        .orElse(0L);
-			}
+			return fileSystem.useClient(ftpClient -> {
+				if (ftpClient.hasFeature("SIZE")) {
+					return Optional.ofNullable(ftpClient.getSize(absolutePath))
+					        .map(Long::valueOf)
+					        .orElse(0L);
+				} else {
+					return getCurrentFile(ftpClient)
+					        .map(org.apache.commons.net.ftp.FTPFile::getSize)
+					        .orElse(0L);
+				}
+			});
 		} catch (final IOException e) {
 			throw new UncheckedIOException(e);
 		}
@@ -170,9 +209,9 @@ public class FTPFile extends CommonAbstractFile<FTPFileSystem> {// NOSONAR S2160
 	@Override
 	public Stream<AbstractFile> list() {
 		try {
-			return Optional.ofNullable(fileSystem.getFtpListing())
-			        .orElse(FTPListing.NLST)
-			        .listDirectory(ftpClient, absolutePath)
+			final var ftpListing = Optional.ofNullable(fileSystem.getFtpListing())
+			        .orElse(FTPListing.NLST);
+			return fileSystem.useClient(ftpClient -> ftpListing.listDirectory(ftpClient, absolutePath))
 			        .filter(name -> name.equalsIgnoreCase(getName()) == false)
 			        .map(name -> fileSystem.getFromPath(path, name));
 		} catch (final IOException e) {
@@ -183,7 +222,7 @@ public class FTPFile extends CommonAbstractFile<FTPFileSystem> {// NOSONAR S2160
 	@Override
 	public Stream<CachedFileAttributes> toCachedList() {
 		try {
-			return Optional.ofNullable(fileSystem.getFtpListing())
+			return fileSystem.useClient(ftpClient -> Optional.ofNullable(fileSystem.getFtpListing())
 			        .map(ftpL -> {
 				        if (ftpL.equals(NLST)) {
 					        return MLSD;
@@ -200,11 +239,14 @@ public class FTPFile extends CommonAbstractFile<FTPFileSystem> {// NOSONAR S2160
 				        }
 				        return LIST;
 			        })
-			        .rawListDirectory(ftpClient, absolutePath)
+			        .rawListDirectory(ftpClient, absolutePath))
 			        .peek(f -> log.trace("Raw toCachedList # {}", f))// NOSONAR S3864
 			        .filter(f -> f.getName().equalsIgnoreCase(getName()) == false)
-			        .map(f -> makeCachedFileAttributesFromFTPFileRaw(
-			                fileSystem.getFromPath(path, f.getName()), f));
+			        .map(f -> {
+				        final var file = fileSystem.getFromPath(path, f.getName());
+				        fileSystem.getStatCache().put(file.absolutePath, f);
+				        return makeCachedFileAttributesFromFTPFileRaw(file, f);
+			        });
 		} catch (final IOException e) {
 			throw new UncheckedIOException(FTP_ERROR_DURING_LIST + absolutePath + "\"", e);
 		}
@@ -214,44 +256,52 @@ public class FTPFile extends CommonAbstractFile<FTPFileSystem> {// NOSONAR S2160
 	public void delete() {
 		final var directory = isDirectory();
 		try {
-			boolean deleteOk;
-			if (directory) {
-				deleteOk = ftpClient.removeDirectory(absolutePath);
-			} else {
-				deleteOk = ftpClient.deleteFile(absolutePath);
-			}
+			final boolean deleteOk = fileSystem.useClient(ftpClient -> {
+				if (directory) {
+					return ftpClient.removeDirectory(absolutePath);
+				} else {
+					return ftpClient.deleteFile(absolutePath);
+				}
+			});
 			if (deleteOk == false) {
 				throw new CannotDeleteException(this, directory, new IOException("Can't delete " + fileSystem + path));
 			}
 		} catch (final IOException e) {
 			throw new UncheckedIOException(e);
+		} finally {
+			fileSystem.getStatCache().invalidate(absolutePath);
 		}
 	}
 
 	@Override
 	public void mkdir() {
 		try {
-			final var mkdirOk = ftpClient.makeDirectory(absolutePath);
+			final boolean mkdirOk = fileSystem.useClient(ftpClient -> ftpClient.makeDirectory(absolutePath));
 			if (mkdirOk == false) {
 				throw new IOException("Can't mkdir " + fileSystem + path);
 			}
 		} catch (final IOException e) {
 			throw new UncheckedIOException(e);
+		} finally {
+			fileSystem.getStatCache().invalidate(absolutePath);
 		}
 	}
 
 	@Override
 	public AbstractFile renameTo(final String path) {
+		final var from = absolutePath;
+		final var to = fileSystem.getPathFromRelative(path);
 		try {
-			final var from = absolutePath;
-			final var to = fileSystem.getPathFromRelative(path);
-			final var renameOk = ftpClient.rename(from, to);
+			final boolean renameOk = fileSystem.useClient(ftpClient -> ftpClient.rename(from, to));
 			if (renameOk == false) {
 				throw new IOException("Can't rename form \"" + from + "\" to \"" + to + "\"");
 			}
 			return fileSystem.getFromPath(path);
 		} catch (final IOException e) {
 			throw new UncheckedIOException(e);
+		} finally {
+			fileSystem.getStatCache().invalidate(from);
+			fileSystem.getStatCache().invalidate(to);
 		}
 	}
 
@@ -263,14 +313,100 @@ public class FTPFile extends CommonAbstractFile<FTPFileSystem> {// NOSONAR S2160
 
 	@Override
 	public void sendLocalToAbstract(final File localFile, final TransfertObserver observer) {
-		copy(localFile.getPath(), path, localFile, observer, LOCALTODISTANT);
+		try {
+			copy(localFile.getPath(), path, localFile, observer, LOCALTODISTANT);
+		} finally {
+			fileSystem.getStatCache().invalidate(absolutePath);
+		}
 	}
 
-	private void cwdBeforeOperation(final String newPath) throws IOException {
-		actualCWD = ftpClient.printWorkingDirectory();
+	/**
+	 * Download by byte ranges in parallel (REST offsets), each on its own pooled control connection (see
+	 * FTPFileSystem.setConnectionPool). See SegmentedDownload.
+	 * Without pool, or if the server don't announce REST in FEAT, fall back to copyAbstractToLocal.
+	 * @param segmentCount limited by the connection pool max size
+	 * @param minSegmentSize segments will not be smaller (except the last)
+	 */
+	public void copyAbstractToLocalSegmented(final File localFile,
+	                                         final int segmentCount,
+	                                         final long minSegmentSize,
+	                                         final TransfertObserver observer) {
+		final var pool = fileSystem.getConnectionPool();
+		try {
+			if (pool == null || fileSystem.useClient(c -> c.hasFeature("REST")) == false) {
+				log.debug("Can't do a segmented download with {}, switch to a simple download", fileSystem);
+				copyAbstractToLocal(localFile, observer);
+				return;
+			}
+			final var before = fileSystem.useClient(this::getCurrentFile)
+			        .orElseThrow(() -> new IOException("Can't access to source file in ftp server"));
+			if (before.isDirectory()) {
+				throw new IOException("Source file is a directory, can't copy from it");
+			}
+			final var download = new SegmentedDownload(this, localFile, before.getSize(),
+			        Math.min(segmentCount, pool.getMaxSize()), minSegmentSize, observer);
+			if (download.download(this::readRange) == false) {
+				return;
+			}
+			final var after = fileSystem.useClient(this::getCurrentFile)
+			        .orElseThrow(() -> new IOException("Source file " + this + " was removed during the download"));
+			if (after.getSize() != before.getSize()
+			    || after.getTimestamp().equals(before.getTimestamp()) == false) {
+				throw new IOException("Source file " + this + " has changed during the download");
+			}
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * The server will send all the datas up to the end of file: if the range ends before, the connection is closed
+	 * (and discarded by the pool). If the range ends with the file (last segment), the connection is recycled.
+	 */
+	private void readRange(final long offset, final long length, final RangeConsumer consumer) throws IOException {
+		fileSystem.useClient(ftpClient -> {
+			ftpClient.setRestartOffset(offset);
+			final var inputStream = ftpClient.retrieveFileStream(absolutePath);
+			if (inputStream == null) {
+				throw new IOException("Can't start FTP download [" + absolutePath + "] from " + offset + ": "
+				                      + ftpClient.getReplyString());
+			}
+			var endOfFile = false;
+			try (inputStream) {
+				final var buffer = new byte[Math.max(8192, fileSystem.getIOBufferSize())];
+				var readed = 0L;
+				int size;
+				while ((size = inputStream.read(buffer)) > -1) {
+					readed += size;
+					if (consumer.accept(buffer, size) == false) {
+						if (readed >= length) {
+							/**
+							 * The range is complete: check if it's also the end of file.
+							 */
+							size = inputStream.read(buffer);
+						}
+						break;
+					}
+				}
+				endOfFile = size == -1;
+			}
+			if (endOfFile) {
+				checkCompletePendingCommand(ftpClient, "FTP download error");
+			} else {
+				ftpClient.disconnect();
+			}
+			return null;
+		});
+	}
+
+	/**
+	 * @return the previous working directory, to restore
+	 */
+	private String cwdBeforeOperation(final FTPClient ftpClient, final String newPath) throws IOException {
+		final var actualCWD = ftpClient.printWorkingDirectory();
 
 		if (absolutePath.equalsIgnoreCase(actualCWD)) {
-			return;
+			return actualCWD;
 		}
 
 		log.debug("Do CWD to \"{}\" for {}", actualCWD, this);
@@ -279,9 +415,10 @@ public class FTPFile extends CommonAbstractFile<FTPFileSystem> {// NOSONAR S2160
 			throw new IOException("Can't change working directory to " + actualCWD
 			                      + ": " + ftpClient.getReplyString());
 		}
+		return actualCWD;
 	}
 
-	private void restoreCwd() throws IOException {
+	private void restoreCwd(final FTPClient ftpClient, final String actualCWD) throws IOException {
 		if (actualCWD == null) {
 			return;
 		}
@@ -291,14 +428,13 @@ public class FTPFile extends CommonAbstractFile<FTPFileSystem> {// NOSONAR S2160
 			throw new IOException("Can't change working directory to " + actualCWD
 			                      + ": " + ftpClient.getReplyString());
 		}
-		actualCWD = null;
 	}
 
-	private void cwdToParentPath() throws IOException {
+	private String cwdToParentPath(final FTPClient ftpClient) throws IOException {
 		if (path.equals("/")) {
 			throw new IllegalArgumentException("Can't cwd to ../");
 		}
-		cwdBeforeOperation(getFullPathNoEndSeparator(path));
+		return cwdBeforeOperation(ftpClient, getFullPathNoEndSeparator(path));
 	}
 
 	private class StoppableListener implements CopyStreamListener {
@@ -361,8 +497,33 @@ public class FTPFile extends CommonAbstractFile<FTPFileSystem> {// NOSONAR S2160
 		final var thisRef = this;
 		final var now = System.currentTimeMillis();
 
-		synchronized (ftpClient) {
+		try {
+			fileSystem.useClient(ftpClient -> {
+				copy(ftpClient, relativeSource, relativeDest, localFile, observer, transfertDirection,
+				        localBufferSize, stoppableIOStream, sizeToTransfert, thisRef, now);
+				return null;
+			});
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void copy(final FTPClient ftpClient,// NOSONAR S107
+	                  final String relativeSource,
+	                  final String relativeDest,
+	                  final File localFile,
+	                  final TransfertObserver observer,
+	                  final TransfertDirection transfertDirection,
+	                  final int localBufferSize,
+	                  final AtomicReference<StoppableIOStream> stoppableIOStream,
+	                  final AtomicLong sizeToTransfert,
+	                  final FTPFile thisRef,
+	                  final long now) {
+		final var clientLock = fileSystem.getClientLock(ftpClient);
+		clientLock.lock();
+		try {
 			var done = false;
+			String actualCWD = null;
 
 			try {
 				ftpClient.setCopyStreamListener(new StoppableListener(relativeSource, relativeDest, localFile, observer,
@@ -370,7 +531,7 @@ public class FTPFile extends CommonAbstractFile<FTPFileSystem> {// NOSONAR S2160
 
 				final var absSource = fileSystem.getPathFromRelative(relativeSource);
 				final var absDest = fileSystem.getPathFromRelative(relativeDest);
-				final var oTargetFileRef = getCurrentFile();
+				final var oTargetFileRef = getCurrentFile(ftpClient);
 				observer.beforeTransfert(localFile, this, transfertDirection);
 
 				if (transfertDirection == DISTANTTOLOCAL) {
@@ -382,7 +543,7 @@ public class FTPFile extends CommonAbstractFile<FTPFileSystem> {// NOSONAR S2160
 						        "Source file is a directory, can't copy from it"));
 					}
 					sizeToTransfert.set(sourceFileRef.getSize());
-					cwdToParentPath();
+					actualCWD = cwdToParentPath(ftpClient);
 
 					try (var outputstream = new StoppableOutputStream(new BufferedOutputStream(
 					        new FileOutputStream(localFile), localBufferSize))) {
@@ -396,9 +557,9 @@ public class FTPFile extends CommonAbstractFile<FTPFileSystem> {// NOSONAR S2160
 
 					var storeName = getName();
 					if (oTargetFileRef.isEmpty() || oTargetFileRef.get().isFile()) {
-						cwdToParentPath();
+						actualCWD = cwdToParentPath(ftpClient);
 					} else if (oTargetFileRef.get().isDirectory()) {
-						cwdBeforeOperation(path);
+						actualCWD = cwdBeforeOperation(ftpClient, path);
 						storeName = localFile.getName();
 					}
 
@@ -412,26 +573,22 @@ public class FTPFile extends CommonAbstractFile<FTPFileSystem> {// NOSONAR S2160
 				}
 
 				if (stoppableIOStream.get().isStopped()) {
-					actualCWD = null;
 					ftpClient.abort();
-					fileSystem.close();
-					fileSystem.connect();
+					resetAfterAbort(ftpClient);
 				} else if (done == false) {
 					throw new IOException("FTP server refuse the file transfert after the operation: "
 					                      + ftpClient.getReplyString());
 				} else {
 					observer.afterTransfert(localFile, this, transfertDirection,
 					        Duration.of(System.currentTimeMillis() - now, MILLIS));
-					restoreCwd();
+					restoreCwd(ftpClient, actualCWD);
 				}
 			} catch (final CopyStreamException e) {
 				if (e.getCause() instanceof IOException
 				    && e.getCause().getMessage().equals(MANUALLY_STOP_WRITING)) {
 					try {
-						actualCWD = null;
 						ftpClient.abort();
-						fileSystem.close();
-						fileSystem.connect();
+						resetAfterAbort(ftpClient);
 					} catch (final IOException e1) {
 						throw new UncheckedIOException("Can't abort transfert after manual stop", e);
 					}
@@ -443,6 +600,20 @@ public class FTPFile extends CommonAbstractFile<FTPFileSystem> {// NOSONAR S2160
 			} finally {
 				ftpClient.setCopyStreamListener(null);
 			}
+		} finally {
+			clientLock.unlock();
+		}
+	}
+
+	/**
+	 * In pooled mode, the aborted connection will be discarded by the pool. Else, reconnect the file system.
+	 */
+	private void resetAfterAbort(final FTPClient ftpClient) throws IOException {
+		if (fileSystem.getConnectionPool() != null) {
+			ftpClient.disconnect();
+		} else {
+			fileSystem.close();
+			fileSystem.connect();
 		}
 	}
 
@@ -450,7 +621,33 @@ public class FTPFile extends CommonAbstractFile<FTPFileSystem> {// NOSONAR S2160
 	public long downloadAbstract(final OutputStream outputStream,
 	                             final int bufferSize,
 	                             final SizedStoppableCopyCallback copyCallback) {
+		return downloadAbstract(outputStream, bufferSize, copyCallback, 0);
+	}
+
+	/**
+	 * Use a REST command before the RETR if position > 0.
+	 */
+	@Override
+	public long downloadAbstract(final OutputStream outputStream,
+	                             final int bufferSize,
+	                             final SizedStoppableCopyCallback copyCallback,
+	                             final long position) {
+		checkPosition(position);
+		try {
+			return fileSystem.useClient(ftpClient -> downloadAbstract(
+			        ftpClient, outputStream, bufferSize, copyCallback, position));
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private long downloadAbstract(final FTPClient ftpClient,
+	                              final OutputStream outputStream,
+	                              final int bufferSize,
+	                              final SizedStoppableCopyCallback copyCallback,
+	                              final long position) {
 		var copied = 0L;
+		ftpClient.setRestartOffset(position);
 		try (var inputStream = ftpClient.retrieveFileStream(absolutePath)) {
 			if (inputStream == null) {
 				throw new UncheckedIOException(
@@ -463,7 +660,16 @@ public class FTPFile extends CommonAbstractFile<FTPFileSystem> {// NOSONAR S2160
 				continueStatus.set(continueCopy);
 				return continueCopy;
 			};
-			copied = observableCopyStream(inputStream, outputStream, bufferSize, catchCallBack);
+			try {
+				copied = observableCopyStream(inputStream, outputStream, bufferSize, catchCallBack);
+			} catch (final IOException e) {
+				/**
+				 * Like a stop (the outputStream can't get more datas), the control connection must be reset.
+				 */
+				log.debug("Can't push downloaded datas, abort {}", this, e);
+				resetAfterAbort(ftpClient);
+				throw e;
+			}
 
 			if (continueStatus.get() == false) {
 				ftpClient.abort();
@@ -477,7 +683,7 @@ public class FTPFile extends CommonAbstractFile<FTPFileSystem> {// NOSONAR S2160
 				log.error("Can't close provided outputStream after use", e);
 			}
 		}
-		checkCompletePendingCommand("FTP download error");
+		checkCompletePendingCommand(ftpClient, "FTP download error");
 		return copied;
 	}
 
@@ -485,8 +691,39 @@ public class FTPFile extends CommonAbstractFile<FTPFileSystem> {// NOSONAR S2160
 	public long uploadAbstract(final InputStream inputStream,
 	                           final int bufferSize,
 	                           final SizedStoppableCopyCallback copyCallback) {
+		return uploadAbstract(inputStream, bufferSize, copyCallback, 0);
+	}
+
+	/**
+	 * If position > 0, use an APPE command if this file size is position. FTP can't cut a file, and a REST/STOR
+	 * don't truncate it with all servers: the upload will fail if this file is bigger than position.
+	 */
+	@Override
+	public long uploadAbstract(final InputStream inputStream,
+	                           final int bufferSize,
+	                           final SizedStoppableCopyCallback copyCallback,
+	                           final long position) {
+		checkPosition(position);
+		try {
+			return fileSystem.useClient(ftpClient -> uploadAbstract(
+			        ftpClient, inputStream, bufferSize, copyCallback, position));
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			fileSystem.getStatCache().invalidate(absolutePath);
+		}
+	}
+
+	/**
+	 * Store with the absolute path: a pooled connection working directory is not predictable.
+	 */
+	private long uploadAbstract(final FTPClient ftpClient,
+	                            final InputStream inputStream,
+	                            final int bufferSize,
+	                            final SizedStoppableCopyCallback copyCallback,
+	                            final long position) {
 		var copied = 0L;
-		try (var outputStream = ftpClient.storeFileStream(getName())) {
+		try (var outputStream = openStoreStream(ftpClient, position)) {
 			if (outputStream == null) {
 				throw new UncheckedIOException(
 				        new IOException(
@@ -502,11 +739,26 @@ public class FTPFile extends CommonAbstractFile<FTPFileSystem> {// NOSONAR S2160
 				log.error("Can't close provided inputStream after use", e);
 			}
 		}
-		checkCompletePendingCommand("FTP upload error");
+		checkCompletePendingCommand(ftpClient, "FTP upload error");
 		return copied;
 	}
 
-	private void checkCompletePendingCommand(final String message) {
+	private OutputStream openStoreStream(final FTPClient ftpClient, final long position) throws IOException {
+		if (position == 0) {
+			return ftpClient.storeFileStream(absolutePath);
+		}
+		final var size = getCurrentFile(ftpClient)
+		        .map(org.apache.commons.net.ftp.FTPFile::getSize)
+		        .orElse(0L);
+		if (size != position) {
+			throw new IOException("Can't resume FTP upload [" + absolutePath + "] from " + position
+			                      + ", actual size is " + size);
+		}
+		log.debug("Resume FTP upload {} with APPE from {}", this, position);
+		return ftpClient.appendFileStream(absolutePath);
+	}
+
+	private void checkCompletePendingCommand(final FTPClient ftpClient, final String message) {
 		try {
 			if (ftpClient.completePendingCommand() == false) {
 				throw new UncheckedIOException(
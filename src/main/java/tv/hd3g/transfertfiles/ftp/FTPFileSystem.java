@@ -19,8 +19,13 @@ package tv.hd3g.transfertfiles.ftp;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.net.InetAddress;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.WeakHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.IntStream;
 
 import org.apache.commons.net.ftp.FTP;
@@ -30,6 +35,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import tv.hd3g.transfertfiles.CommonAbstractFileSystem;
+import tv.hd3g.transfertfiles.ConnectionPool;
 
 public class FTPFileSystem extends CommonAbstractFileSystem<FTPFile> {
 	private static final Logger log = LogManager.getLogger();
@@ -45,6 +51,13 @@ public class FTPFileSystem extends CommonAbstractFileSystem<FTPFile> {
 	 * Never use directly, prefer getClient (maybe overrided)
 	 */
 	private final FTPClient client;
+	private int poolMinSize;
+	private int poolMaxSize;
+	private Duration poolBorrowTimeout;
+	private Duration poolIdleTimeout;
+	private volatile ConnectionPool<FTPClient> pool;
+	private final FTPStatCache statCache;
+	private final Map<FTPClient, ReentrantLock> clientLocks;
 
 	public FTPFileSystem(final InetAddress host,
 	                     final int port,
@@ -63,6 +76,8 @@ public class FTPFileSystem extends CommonAbstractFileSystem<FTPFile> {
 		this.passiveMode = passiveMode;
 
 		client = new FTPClient();
+		statCache = new FTPStatCache();
+		clientLocks = Collections.synchronizedMap(new WeakHashMap<>());
 		log.debug("Init ftp client to {}", this);
 	}
 
@@ -80,14 +95,45 @@ public class FTPFileSystem extends CommonAbstractFileSystem<FTPFile> {
 		if (isAvaliable()) {
 			return;
 		}
-		final var ftpClient = getClient();
+		try {
+			connectClient(getClient());
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		synchronized (this) {
+			if (poolMaxSize > 0 && pool == null) {
+				pool = new ConnectionPool<>("FTP connection", this::createConnectedClient,
+				        c -> c.isAvailable() && c.sendNoOp(),
+				        c -> {
+					        if (c.isConnected()) {
+						        c.disconnect();
+					        }
+				        },
+				        poolMinSize, poolMaxSize, poolBorrowTimeout, poolIdleTimeout);
+			}
+		}
+	}
 
+	/**
+	 * @return a new FTPClient instance, not connected. Used by the connection pool.
+	 */
+	protected FTPClient createClient() {
+		return new FTPClient();
+	}
+
+	private FTPClient createConnectedClient() throws IOException {
+		final var ftpClient = createClient();
+		connectClient(ftpClient);
+		return ftpClient;
+	}
+
+	private void connectClient(final FTPClient ftpClient) throws IOException {
 		if (timeoutDuration > 0) {
-			client.setConnectTimeout((int) timeoutDuration);
-			client.setControlKeepAliveReplyTimeout((int) timeoutDuration);
-			client.setControlKeepAliveTimeout(timeoutDuration);
-			client.setDefaultTimeout((int) timeoutDuration);
-			client.setDataTimeout((int) timeoutDuration);
+			ftpClient.setConnectTimeout((int) timeoutDuration);
+			ftpClient.setControlKeepAliveReplyTimeout((int) timeoutDuration);
+			ftpClient.setControlKeepAliveTimeout(timeoutDuration);
+			ftpClient.setDefaultTimeout((int) timeoutDuration);
+			ftpClient.setDataTimeout((int) timeoutDuration);
 		}
 		try {
 			log.debug("Start to connect to {}", this);
@@ -121,8 +167,101 @@ public class FTPFileSystem extends CommonAbstractFileSystem<FTPFile> {
 					log.error("Can't disconnect properly after login error", e1);
 				}
 			}
-			throw new UncheckedIOException(e);
+			throw e;
+		}
+	}
+
+	/**
+	 * Pooled mode: FTPFile operations will run on a borrowed control connection (in addition to the
+	 * getClient connection), so several files can be transferred in parallel.
+	 * Apply on the next connect. Idle connections are checked with a NOOP before borrow, only if they are idle since
+	 * more than ConnectionPool.DEFAULT_VALIDATION_IDLE_TIME.
+	 * @param minSize idle connections keeped, even after idleTimeout
+	 * @param maxSize max opened connections (not counting getClient), 0 for disable the pool
+	 * @param borrowTimeout max wait time for a free connection
+	 * @param idleTimeout after this time, an unused connection will be closed
+	 */
+	public synchronized void setConnectionPool(final int minSize,
+	                                           final int maxSize,
+	                                           final Duration borrowTimeout,
+	                                           final Duration idleTimeout) {
+		if (maxSize < 0 || minSize < 0 || minSize > maxSize) {
+			throw new IllegalArgumentException("Invalid pool sizes min=" + minSize + ", max=" + maxSize);
+		}
+		poolMinSize = minSize;
+		poolMaxSize = maxSize;
+		poolBorrowTimeout = Objects.requireNonNull(borrowTimeout, "borrowTimeout");
+		poolIdleTimeout = Objects.requireNonNull(idleTimeout, "idleTimeout");
+	}
+
+	/**
+	 * @return null if not in pooled mode, or not connected
+	 */
+	ConnectionPool<FTPClient> getConnectionPool() {
+		return pool;
+	}
+
+	/**
+	 * @return the pool max size in pooled mode, else 1
+	 */
+	@Override
+	public int getMaxParallelOperations() {
+		final var currentPool = pool;
+		if (currentPool == null) {
+			return 1;
+		}
+		return currentPool.getMaxSize();
+	}
+
+	/**
+	 * Run an operation on a borrowed pooled connection, or on getClient if not in pooled mode.
+	 * A disconnected pooled connection after the operation will not be recycled.
+	 */
+	<T> T useClient(final FTPClientOperation<T> operation) throws IOException {
+		final var currentPool = pool;
+		if (currentPool == null) {
+			return operation.apply(getClient());
 		}
+		final var pooledClient = currentPool.borrow();
+		try {
+			return operation.apply(pooledClient);
+		} finally {
+			if (pooledClient.isAvailable()) {
+				currentPool.giveBack(pooledClient);
+			} else {
+				currentPool.discard(pooledClient);
+			}
+		}
+	}
+
+	@FunctionalInterface
+	interface FTPClientOperation<T> {
+		T apply(FTPClient ftpClient) throws IOException;
+	}
+
+	/**
+	 * File attributes cache, by path, populated by the FTPFile attribute getters, and by the directory listings
+	 * (LIST of the parent directory, toCachedList). Invalidated by the FTPFile mutations (delete, mkdir, renameTo,
+	 * uploads) done with this FileSystem. Changes done by others will be seen after the TTL.
+	 * @param ttl Duration.ZERO (default) for disable the cache
+	 */
+	public void setStatCacheTTL(final Duration ttl) {
+		statCache.setTTL(ttl);
+	}
+
+	public Duration getStatCacheTTL() {
+		return statCache.getTTL();
+	}
+
+	/**
+	 * Forget all cached file attributes.
+	 */
+	public void clearStatCache() {
+		statCache.clear();
+	}
+
+	FTPStatCache getStatCache() {
+		return statCache;
 	}
 
 	@Override
@@ -147,6 +286,12 @@ public class FTPFileSystem extends CommonAbstractFileSystem<FTPFile> {
 
 	@Override
 	public void close() {
+		synchronized (this) {
+			if (pool != null) {
+				pool.close();
+				pool = null;
+			}
+		}
 		try {
 			final var ftpClient = getClient();
 			if (ftpClient.isConnected()) {
@@ -158,6 +303,14 @@ public class FTPFileSystem extends CommonAbstractFileSystem<FTPFile> {
 		}
 	}
 
+	/**
+	 * A lock, not a monitor: it's held during a whole file transfert (blocking I/O).
+	 * @return the same lock for the same ftpClient
+	 */
+	ReentrantLock getClientLock(final FTPClient ftpClient) {
+		return clientLocks.computeIfAbsent(ftpClient, c -> new ReentrantLock());
+	}
+
 	public FTPClient getClient() {
 		return client;
 	}
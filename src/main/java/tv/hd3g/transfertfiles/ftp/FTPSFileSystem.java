@@ -48,6 +48,14 @@ public class FTPSFileSystem extends FTPESFileSystem {// NOSONAR S2160
 		return client;
 	}
 
+	@Override
+	protected FTPClient createClient() {
+		if (isIgnoreInvalidCertificates()) {
+			return new FTPSClient(true, sslContextNeverCheck);
+		}
+		return new FTPSClient(true);
+	}
+
 	@Override
 	public String toString() {
 		return "ftps://" + username + "@" + host.getHostName() + ":" + port + getBasePath();
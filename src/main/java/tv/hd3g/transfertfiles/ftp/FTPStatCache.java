@@ -0,0 +1,160 @@
+/*
+ * This file is part of transfertfiles.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * Copyright (C) hdsdi3g for hd3g.tv 2021
+ *
+ */
+package tv.hd3g.transfertfiles.ftp;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.net.ftp.FTPFile;
+
+/**
+ * Per absolute path cache of FTP file attributes (MLST / LIST entries), with a TTL.
+ * Keep also the absent files (negative cache).
+ * Populated by the attribute getters, directory listings and toCachedList, and invalidated by the
+ * FTPFile mutations done with the same FTPFileSystem. Changes done by others are seen after the TTL.
+ * Thread safe
+ */
+class FTPStatCache {
+
+	private final Map<String, Entry> entries;
+	private final AtomicLong hits;
+	private final AtomicLong misses;
+	private volatile long ttlNanos;
+
+	FTPStatCache() {
+		entries = new ConcurrentHashMap<>();
+		hits = new AtomicLong();
+		misses = new AtomicLong();
+	}
+
+	static class Entry {
+		private final FTPFile file;
+		private final long expires;
+
+		private Entry(final FTPFile file, final long expires) {
+			this.file = file;
+			this.expires = expires;
+		}
+
+		/**
+		 * @return empty if cached as not exists
+		 */
+		Optional<FTPFile> getFile() {
+			return Optional.ofNullable(file);
+		}
+
+		boolean isExpired(final long now) {
+			return now - expires >= 0;
+		}
+	}
+
+	/**
+	 * @param ttl Duration.ZERO for disable the cache
+	 */
+	void setTTL(final Duration ttl) {
+		Objects.requireNonNull(ttl, "\"ttl\" can't to be null");
+		if (ttl.isNegative()) {
+			throw new IllegalArgumentException("Invalid ttl=" + ttl);
+		}
+		ttlNanos = ttl.toNanos();
+		entries.clear();
+	}
+
+	Duration getTTL() {
+		return Duration.ofNanos(ttlNanos);
+	}
+
+	boolean isEnabled() {
+		return ttlNanos > 0;
+	}
+
+	/**
+	 * @return empty if not in cache
+	 */
+	Optional<Entry> get(final String absolutePath) {
+		if (isEnabled() == false) {
+			return Optional.empty();
+		}
+		final var entry = entries.get(absolutePath);
+		final var now = System.nanoTime();
+		if (entry == null || entry.isExpired(now)) {
+			if (entry != null) {
+				entries.remove(absolutePath, entry);
+			}
+			misses.incrementAndGet();
+			return Optional.empty();
+		}
+		hits.incrementAndGet();
+		return Optional.ofNullable(entry);
+	}
+
+	/**
+	 * @param file null if not exists
+	 */
+	void put(final String absolutePath, final FTPFile file) {
+		if (isEnabled()) {
+			entries.put(absolutePath, new Entry(file, System.nanoTime() + ttlNanos));
+		}
+	}
+
+	/**
+	 * Also remove the expired entries.
+	 */
+	void putListing(final String directoryAbsolutePath, final Collection<FTPFile> files) {
+		if (isEnabled() == false) {
+			return;
+		}
+		final var now = System.nanoTime();
+		entries.values().removeIf(e -> e.isExpired(now));
+		final var expires = now + ttlNanos;
+		final var base = directoryAbsolutePath.endsWith("/") ? directoryAbsolutePath : directoryAbsolutePath + "/";
+		files.stream()
+		        .filter(Objects::nonNull)
+		        .forEach(f -> entries.put(base + f.getName(), new Entry(f, expires)));
+	}
+
+	/**
+	 * Also remove all the cached sub-paths (for a directory).
+	 */
+	void invalidate(final String absolutePath) {
+		entries.remove(absolutePath);
+		final var prefix = absolutePath.endsWith("/") ? absolutePath : absolutePath + "/";
+		entries.keySet().removeIf(k -> k.startsWith(prefix));
+	}
+
+	void clear() {
+		entries.clear();
+	}
+
+	int size() {
+		return entries.size();
+	}
+
+	long getHits() {
+		return hits.get();
+	}
+
+	long getMisses() {
+		return misses.get();
+	}
+
+}
@@ -16,6 +16,7 @@
  */
 package tv.hd3g.transfertfiles.local;
 
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
 import static java.nio.file.StandardOpenOption.CREATE;
 import static java.nio.file.StandardOpenOption.READ;
 import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
@@ -26,6 +27,7 @@ import static tv.hd3g.transfertfiles.TransfertObserver.TransfertDirection.LOCALT
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -33,10 +35,20 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.time.Duration;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.stream.Stream;
 
@@ -53,6 +65,7 @@ import tv.hd3g.transfertfiles.TransfertObserver.TransfertDirection;
 
 public class LocalFile extends CommonAbstractFile<LocalFileSystem> {// NOSONAR S2160
 	private static final Logger log = LogManager.getLogger();
+	private static final MethodHandle UNMAPPER = findUnmapper();
 
 	private final File internalFile;
 
@@ -99,77 +112,393 @@ public class LocalFile extends CommonAbstractFile<LocalFileSystem> {// NOSONAR S
 
 		final var now = System.currentTimeMillis();
 		observer.beforeTransfert(localFile, this, transfertDirection);
-		log.info("Copy local file from \"{}\" to \"{}\" ({} bytes)", source, dest, source.length());
-
-		var stopped = false;
-		final var buffer = ByteBuffer.allocateDirect(fileSystem.getIOBufferSize());
-		try (var reader = Files.newByteChannel(source.toPath(), READ);
-		     var writer = Files.newByteChannel(dest.toPath(), WRITE, CREATE, TRUNCATE_EXISTING)) {
-
-			var dataTransferred = 0L;
-			while (reader.read(buffer) >= 0 || buffer.position() != 0) {
-				buffer.flip();
-				dataTransferred += buffer.remaining();
-				writer.write(buffer);
-				buffer.compact();
-
-				if (log.isTraceEnabled()) {
-					log.trace("Copy local progression from \"{}\" ({} bytes) to \"{}\": {} bytes",
-					        source, source.length(), dest, dataTransferred);
-				}
-				stopped = observer.onTransfertProgress(
-				        localFile, this, transfertDirection, now, dataTransferred) == false;
-				if (stopped) {
-					log.info("Stop copy local file from \"{}\" ({} bytes) to \"{}\": {} bytes",
-					        source, source.length(), dest, dataTransferred);
-					break;
-				}
+		final var sourceSize = source.length();
+		log.info("Copy local file from \"{}\" to \"{}\" ({} bytes)", source, dest, sourceSize);
+
+		final var progress = new CopyProgress(localFile, observer, transfertDirection, now);
+		final var transferSegmentSize = fileSystem.getTransferSegmentSize();
+		try (var reader = FileChannel.open(source.toPath(), READ);
+		     var writer = FileChannel.open(dest.toPath(), WRITE, CREATE, TRUNCATE_EXISTING)) {
+			if (transferSegmentSize > 0) {
+				transfer(reader, writer, transferSegmentSize, progress);
+			} else {
+				bufferedCopy(reader, writer, progress);
 			}
 		} catch (final IOException e) {
 			throw new UncheckedIOException(e);
 		}
 
-		if (stopped) {
+		if (progress.stopped) {
+			log.info("Stop copy local file from \"{}\" ({} bytes) to \"{}\": {} bytes",
+			        source, sourceSize, dest, progress.dataTransferred);
 			return;
 		}
 		observer.afterTransfert(localFile, this, transfertDirection,
 		        Duration.of(System.currentTimeMillis() - now, MILLIS));
 	}
 
+	private class CopyProgress {
+		final File localFile;
+		final TransfertObserver observer;
+		final TransfertDirection transfertDirection;
+		final long startDate;
+		long dataTransferred;
+		boolean stopped;
+
+		CopyProgress(final File localFile,
+		             final TransfertObserver observer,
+		             final TransfertDirection transfertDirection,
+		             final long startDate) {
+			this.localFile = localFile;
+			this.observer = observer;
+			this.transfertDirection = transfertDirection;
+			this.startDate = startDate;
+		}
+
+		/**
+		 * @return false if the observer has stopped the copy
+		 */
+		boolean add(final long size) {
+			dataTransferred += size;
+			log.trace("Copy local progression to \"{}\": {} bytes", localFile, dataTransferred);
+			stopped = observer.onTransfertProgress(
+			        localFile, LocalFile.this, transfertDirection, startDate, dataTransferred) == false;
+			return stopped == false;
+		}
+	}
+
+	/**
+	 * Kernel-side copy, by segments, until the reader end.
+	 */
+	private static void transfer(final FileChannel reader,
+	                             final FileChannel writer,
+	                             final long segmentSize,
+	                             final CopyProgress progress) throws IOException {
+		var position = 0L;
+		while (position < reader.size()) {
+			final var size = reader.transferTo(position, segmentSize, writer);
+			if (size == 0) {
+				break;
+			}
+			position += size;
+			if (progress.add(size) == false) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * User-space copy, via a direct buffer.
+	 */
+	private void bufferedCopy(final FileChannel reader,
+	                          final FileChannel writer,
+	                          final CopyProgress progress) throws IOException {
+		final var buffer = ByteBuffer.allocateDirect(fileSystem.getIOBufferSize());
+		while (reader.read(buffer) >= 0 || buffer.position() != 0) {
+			buffer.flip();
+			final var size = writer.write(buffer);
+			buffer.compact();
+			if (progress.add(size) == false) {
+				return;
+			}
+		}
+	}
+
 	@Override
 	public long downloadAbstract(final OutputStream outputStream,
 	                             final int bufferSize,
 	                             final SizedStoppableCopyCallback copyCallback) {
-		try (var inputStream = new BufferedInputStream(new FileInputStream(internalFile), bufferSize)) {
-			return observableCopyStream(inputStream, outputStream, bufferSize, copyCallback);
+		return downloadAbstract(outputStream, bufferSize, copyCallback, 0);
+	}
+
+	/**
+	 * See LocalFileSystem.setMappedReadWindowSize.
+	 * If outputStream is a WritableByteChannel or a FileOutputStream, datas are sent by FileChannel.transferTo.
+	 */
+	@Override
+	public long downloadAbstract(final OutputStream outputStream,
+	                             final int bufferSize,
+	                             final SizedStoppableCopyCallback copyCallback,
+	                             final long position) {
+		return download(outputStream, getWritableChannel(outputStream), bufferSize, copyCallback, position);
+	}
+
+	/**
+	 * By FileChannel.transferTo, or by mapped windows (see LocalFileSystem.setMappedReadWindowSize).
+	 */
+	@Override
+	public long downloadAbstract(final WritableByteChannel channel,
+	                             final int bufferSize,
+	                             final SizedStoppableCopyCallback copyCallback) {
+		return download(null, Objects.requireNonNull(channel, "\"channel\" can't to be null"),
+		        bufferSize, copyCallback, 0);
+	}
+
+	/**
+	 * @param outputStream can be null if destChannel is set
+	 * @param destChannel can be null
+	 */
+	private long download(final OutputStream outputStream,
+	                      final WritableByteChannel destChannel,
+	                      final int bufferSize,
+	                      final SizedStoppableCopyCallback copyCallback,
+	                      final long position) {
+		checkPosition(position);
+		final Closeable dest = destChannel != null ? destChannel : outputStream;
+		final var mappedReadWindowSize = fileSystem.getMappedReadWindowSize();
+		try {
+			if (mappedReadWindowSize > 0) {
+				return mappedCopy(outputStream, destChannel, mappedReadWindowSize, bufferSize, copyCallback, position);
+			} else if (destChannel != null) {
+				return transferTo(destChannel, bufferSize, copyCallback, position);
+			}
+			try (var inputStream = new BufferedInputStream(
+			        Channels.newInputStream(Files.newByteChannel(internalFile.toPath(), READ).position(position)),
+			        bufferSize)) {
+				return observableCopyStream(inputStream, outputStream, bufferSize, copyCallback);
+			}
 		} catch (final IOException e) {
 			throw new UncheckedIOException(e);
 		} finally {
 			try {
-				outputStream.close();
+				dest.close();
 			} catch (final IOException e) {
 				log.error("Can't close provided outputStream after use", e);
 			}
 		}
 	}
 
+	/**
+	 * By segments of bufferSize bytes (one callback by segment).
+	 */
+	private long transferTo(final WritableByteChannel destChannel,
+	                        final int bufferSize,
+	                        final SizedStoppableCopyCallback copyCallback,
+	                        final long position) throws IOException {
+		final var segmentSize = bufferSize > 0 ? bufferSize : fileSystem.getIOBufferSize();
+		var totalSize = 0L;
+		try (var channel = FileChannel.open(internalFile.toPath(), READ)) {
+			var readPosition = position;
+			while (readPosition < channel.size()) {
+				final var size = channel.transferTo(readPosition, segmentSize, destChannel);
+				if (size == 0) {
+					break;
+				}
+				readPosition += size;
+				totalSize += size;
+				if (copyCallback.apply(totalSize).equals(false)) {
+					break;
+				}
+			}
+		}
+		return totalSize;
+	}
+
+	/**
+	 * Map the file by windows, and write slices of bufferSize bytes (one callback by slice).
+	 * There is no madvise in the JDK: the windows are mapped in order, and the kernel read-ahead will see
+	 * sequential page faults. Each window is unmapped after use.
+	 */
+	private long mappedCopy(final OutputStream outputStream,
+	                        final WritableByteChannel destChannel,
+	                        final int windowSize,
+	                        final int bufferSize,
+	                        final SizedStoppableCopyCallback copyCallback,
+	                        final long position) throws IOException {
+		final var sliceSize = bufferSize > 0 ? bufferSize : fileSystem.getIOBufferSize();
+		final var heapBuffer = destChannel == null ? new byte[sliceSize] : null;
+		log.debug("Read {} by mapped windows of {} bytes, to {}",
+		        internalFile, windowSize, destChannel == null ? "a stream" : "a channel");
+
+		var totalSize = 0L;
+		try (var channel = FileChannel.open(internalFile.toPath(), READ)) {
+			final var size = channel.size();
+			for (var windowPosition = position; windowPosition < size; windowPosition += windowSize) {
+				final var mapped = channel.map(READ_ONLY, windowPosition, Math.min(windowSize, size - windowPosition));
+				try {
+					while (mapped.hasRemaining()) {
+						final var slice = mapped.slice();
+						final var len = Math.min(sliceSize, slice.remaining());
+						slice.limit(len);
+						if (destChannel != null) {
+							while (slice.hasRemaining()) {
+								destChannel.write(slice);
+							}
+						} else {
+							slice.get(heapBuffer, 0, len);
+							outputStream.write(heapBuffer, 0, len);
+						}
+						mapped.position(mapped.position() + len);
+						totalSize += len;
+						if (copyCallback.apply(totalSize).equals(false)) {
+							return totalSize;
+						}
+					}
+				} finally {
+					unmap(mapped);
+				}
+			}
+		}
+		return totalSize;
+	}
+
+	/**
+	 * @return null if outputStream can't be used as a channel
+	 */
+	private static WritableByteChannel getWritableChannel(final OutputStream outputStream) {
+		if (outputStream instanceof WritableByteChannel) {
+			return (WritableByteChannel) outputStream;
+		} else if (outputStream instanceof FileOutputStream) {
+			return ((FileOutputStream) outputStream).getChannel();
+		}
+		return null;
+	}
+
+	/**
+	 * @return null if inputStream can't be used as a channel
+	 */
+	private static ReadableByteChannel getReadableChannel(final InputStream inputStream) {
+		if (inputStream instanceof ReadableByteChannel) {
+			return (ReadableByteChannel) inputStream;
+		} else if (inputStream instanceof FileInputStream) {
+			return ((FileInputStream) inputStream).getChannel();
+		}
+		return null;
+	}
+
+	private static MethodHandle findUnmapper() {
+		try {
+			final var unsafeClass = Class.forName("sun.misc.Unsafe");
+			final var theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);// NOSONAR S3011
+			return MethodHandles.lookup()
+			        .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+			        .bindTo(theUnsafe.get(null));
+		} catch (final ReflectiveOperationException | RuntimeException e) {
+			log.debug("Can't get a mapped buffer unmapper, the GC will unmap them", e);
+			return null;
+		}
+	}
+
+	/**
+	 * Don't wait the GC: release the mapping now. The buffer (and its slices) must not be used after.
+	 */
+	private static void unmap(final MappedByteBuffer mapped) {
+		if (UNMAPPER == null) {
+			return;
+		}
+		try {
+			UNMAPPER.invokeExact((ByteBuffer) mapped);
+		} catch (final Throwable e) {// NOSONAR S1181
+			log.warn("Can't unmap buffer", e);
+		}
+	}
+
+	@Override
+	public long uploadAbstract(final InputStream inputStream,
+	                           final int bufferSize,
+	                           final SizedStoppableCopyCallback copyCallback) {
+		return uploadAbstract(inputStream, bufferSize, copyCallback, 0);
+	}
+
+	@Override
+	public boolean canTruncateOnUpload() {
+		return true;
+	}
+
+	/**
+	 * Positional write: the file is cut to position before the write.
+	 * If inputStream is a ReadableByteChannel or a FileInputStream, datas are readed via a direct ByteBuffer.
+	 */
 	@Override
 	public long uploadAbstract(final InputStream inputStream,
+	                           final int bufferSize,
+	                           final SizedStoppableCopyCallback copyCallback,
+	                           final long position) {
+		return upload(inputStream, getReadableChannel(inputStream), bufferSize, copyCallback, position);
+	}
+
+	/**
+	 * Via a direct ByteBuffer.
+	 */
+	@Override
+	public long uploadAbstract(final ReadableByteChannel channel,
 	                           final int bufferSize,
 	                           final SizedStoppableCopyCallback copyCallback) {
-		try (var outputStream = new BufferedOutputStream(new FileOutputStream(internalFile), bufferSize)) {
-			return observableCopyStream(inputStream, outputStream, bufferSize, copyCallback);
+		return upload(null, Objects.requireNonNull(channel, "\"channel\" can't to be null"),
+		        bufferSize, copyCallback, 0);
+	}
+
+	/**
+	 * @param inputStream can be null if sourceChannel is set
+	 * @param sourceChannel can be null
+	 */
+	private long upload(final InputStream inputStream,
+	                    final ReadableByteChannel sourceChannel,
+	                    final int bufferSize,
+	                    final SizedStoppableCopyCallback copyCallback,
+	                    final long position) {
+		checkPosition(position);
+		final Closeable source = sourceChannel != null ? sourceChannel : inputStream;
+		try {
+			if (sourceChannel != null) {
+				return channelCopy(sourceChannel, bufferSize, copyCallback, position);
+			}
+			try (var outputStream = new BufferedOutputStream(
+			        Channels.newOutputStream(openPositionalWrite(position)), bufferSize)) {
+				return observableCopyStream(inputStream, outputStream, bufferSize, copyCallback);
+			}
 		} catch (final IOException e) {
 			throw new UncheckedIOException(e);
 		} finally {
 			try {
-				inputStream.close();
+				source.close();
 			} catch (final IOException e) {
 				log.error("Can't close provided inputStream after use", e);
 			}
 		}
 	}
 
+	private long channelCopy(final ReadableByteChannel sourceChannel,
+	                         final int bufferSize,
+	                         final SizedStoppableCopyCallback copyCallback,
+	                         final long position) throws IOException {
+		final var buffer = ByteBuffer.allocateDirect(bufferSize > 0 ? bufferSize : fileSystem.getIOBufferSize());
+		var totalSize = 0L;
+		try (var writer = openPositionalWrite(position)) {
+			while (sourceChannel.read(buffer) > -1) {
+				buffer.flip();
+				final var size = buffer.remaining();
+				while (buffer.hasRemaining()) {
+					writer.write(buffer);
+				}
+				buffer.clear();
+				totalSize += size;
+				if (size > 0 && copyCallback.apply(totalSize).equals(false)) {
+					break;
+				}
+			}
+		}
+		return totalSize;
+	}
+
+	private SeekableByteChannel openPositionalWrite(final long position) throws IOException {
+		if (position == 0) {
+			return Files.newByteChannel(internalFile.toPath(), WRITE, CREATE, TRUNCATE_EXISTING);
+		}
+		final var channel = Files.newByteChannel(internalFile.toPath(), WRITE);
+		try {
+			if (channel.size() < position) {
+				throw new IOException("Can't resume write to \"" + internalFile + "\" from " + position
+				                      + ", actual size is " + channel.size());
+			}
+			return channel.truncate(position).position(position);
+		} catch (final IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
 	@Override
 	public long length() {
 		return internalFile.length();
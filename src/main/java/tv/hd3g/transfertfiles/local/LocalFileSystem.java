@@ -31,8 +31,11 @@ import tv.hd3g.transfertfiles.CommonAbstractFileSystem;
 
 public class LocalFileSystem extends CommonAbstractFileSystem<LocalFile> {
 	private static final Logger log = LogManager.getLogger();
+	public static final long DEFAULT_TRANSFER_SEGMENT_SIZE = 64L * 1024 * 1024;
 
 	private final File relativePath;
+	private volatile long transferSegmentSize;
+	private volatile int mappedReadWindowSize;
 
 	public LocalFileSystem(final File relativePath) {
 		super("");
@@ -46,9 +49,52 @@ public class LocalFileSystem extends CommonAbstractFileSystem<LocalFile> {
 			throw new UncheckedIOException(
 			        new IOException("Can't access to \"" + relativePath + "\" directory"));
 		}
+		transferSegmentSize = DEFAULT_TRANSFER_SEGMENT_SIZE;
 		log.debug("Init LocalFileSystem with {}", relativePath);
 	}
 
+	/**
+	 * LocalFile copyAbstractToLocal/sendLocalToAbstract let the kernel copy the datas (FileChannel.transferTo, like
+	 * copy_file_range or sendfile on Linux), by segments. The observer is called after each segment.
+	 * @param transferSegmentSize in bytes, 0 for copy via a user-space buffer (getIOBufferSize), with an observer call
+	 *        after each buffer.
+	 */
+	public void setTransferSegmentSize(final long transferSegmentSize) {
+		if (transferSegmentSize < 0) {
+			throw new IllegalArgumentException("Invalid transferSegmentSize=" + transferSegmentSize);
+		}
+		this.transferSegmentSize = transferSegmentSize;
+	}
+
+	public long getTransferSegmentSize() {
+		return transferSegmentSize;
+	}
+
+	/**
+	 * LocalFile downloadAbstract can read the file by memory-mapped windows, and write the mapped datas directly to
+	 * the destination if it's a WritableByteChannel (like DataExchangeInOutStream.getDestTargetStream) or a
+	 * FileOutputStream. Useful for the big files uploads.
+	 * @param mappedReadWindowSize in bytes, 0 (default) for disable it and use a FileChannel read.
+	 */
+	public void setMappedReadWindowSize(final int mappedReadWindowSize) {
+		if (mappedReadWindowSize < 0) {
+			throw new IllegalArgumentException("Invalid mappedReadWindowSize=" + mappedReadWindowSize);
+		}
+		this.mappedReadWindowSize = mappedReadWindowSize;
+	}
+
+	public int getMappedReadWindowSize() {
+		return mappedReadWindowSize;
+	}
+
+	/**
+	 * @return the CPU count
+	 */
+	@Override
+	public int getMaxParallelOperations() {
+		return Runtime.getRuntime().availableProcessors();
+	}
+
 	@Override
 	public boolean isReusable() {
 		return true;
@@ -0,0 +1,254 @@
+/*
+ * This file is part of transfertfiles.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * Copyright (C) hdsdi3g for hd3g.tv 2021
+ *
+ */
+package tv.hd3g.transfertfiles.scheduler;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import tv.hd3g.transfertfiles.AbstractFile;
+import tv.hd3g.transfertfiles.DataExchangeObserver;
+
+/**
+ * A transfert submitted to a TransfertScheduler, from a source URL/path to a destination URL/path.
+ * Thread safe
+ */
+public class TransfertJob {
+
+	public enum Status {
+		QUEUED(false),
+		RUNNING(false),
+		/**
+		 * Failed, waiting the retry backoff in the queue.
+		 */
+		WAITING_RETRY(false),
+		DONE(true),
+		/**
+		 * By the observer (a progress callback has returned false).
+		 */
+		STOPPED(true),
+		/**
+		 * By cancel, or by the scheduler close.
+		 */
+		CANCELLED(true),
+		/**
+		 * All attempts have failed, see getLastError.
+		 */
+		FAILED(true);
+
+		private final boolean ended;
+
+		Status(final boolean ended) {
+			this.ended = ended;
+		}
+
+		public boolean isEnded() {
+			return ended;
+		}
+	}
+
+	private final TransfertScheduler scheduler;
+	private final long sequence;
+	private final TransfertPriority priority;
+	private final TransfertScheduler.Connection sourceConnection;
+	private final String sourcePath;
+	private final TransfertScheduler.Connection destinationConnection;
+	private final String destinationPath;
+	private final DataExchangeObserver observer;
+	private final CompletableFuture<TransfertJob> completion;
+
+	private volatile Status status;
+	private volatile int attempts;
+	private volatile RuntimeException lastError;
+	private volatile boolean cancelRequested;
+	private volatile boolean stopRequested;
+	/**
+	 * System.nanoTime based. Guarded by the scheduler lock.
+	 */
+	private long notBefore;
+
+	TransfertJob(final TransfertScheduler scheduler,// NOSONAR S107
+	             final long sequence,
+	             final TransfertPriority priority,
+	             final TransfertScheduler.Connection sourceConnection,
+	             final String sourcePath,
+	             final TransfertScheduler.Connection destinationConnection,
+	             final String destinationPath,
+	             final DataExchangeObserver observer) {
+		this.scheduler = scheduler;
+		this.sequence = sequence;
+		this.priority = priority;
+		this.sourceConnection = sourceConnection;
+		this.sourcePath = sourcePath;
+		this.destinationConnection = destinationConnection;
+		this.destinationPath = destinationPath;
+		this.observer = observer;
+		completion = new CompletableFuture<>();
+		status = Status.QUEUED;
+		notBefore = System.nanoTime();
+	}
+
+	long getSequence() {
+		return sequence;
+	}
+
+	public TransfertPriority getPriority() {
+		return priority;
+	}
+
+	TransfertScheduler.Connection getSourceConnection() {
+		return sourceConnection;
+	}
+
+	public String getSourcePath() {
+		return sourcePath;
+	}
+
+	TransfertScheduler.Connection getDestinationConnection() {
+		return destinationConnection;
+	}
+
+	public String getDestinationPath() {
+		return destinationPath;
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	void setStatus(final Status status) {
+		this.status = status;
+	}
+
+	/**
+	 * @return started attempts count, with the current one
+	 */
+	public int getAttempts() {
+		return attempts;
+	}
+
+	void newAttempt() {
+		attempts++;
+		stopRequested = false;
+	}
+
+	/**
+	 * @return the error of the last failed attempt, or null
+	 */
+	public RuntimeException getLastError() {
+		return lastError;
+	}
+
+	void setLastError(final RuntimeException lastError) {
+		this.lastError = lastError;
+	}
+
+	long getNotBefore() {
+		return notBefore;
+	}
+
+	void setNotBefore(final long notBefore) {
+		this.notBefore = notBefore;
+	}
+
+	boolean isCancelRequested() {
+		return cancelRequested;
+	}
+
+	void setCancelRequested() {
+		cancelRequested = true;
+	}
+
+	boolean isStopRequested() {
+		return stopRequested;
+	}
+
+	/**
+	 * @return completed with this on the job end (DONE, STOPPED, CANCELLED), or exceptionally with the last error
+	 *         (FAILED).
+	 */
+	public CompletableFuture<TransfertJob> getCompletion() {
+		return completion;
+	}
+
+	/**
+	 * A queued job is removed from the queue, a running job is stopped on its next progress callback.
+	 * @return false if this job is already ended
+	 */
+	public boolean cancel() {
+		return scheduler.cancel(this);
+	}
+
+	/**
+	 * Used for each attempt. Stop the transfert if this job is cancelled.
+	 */
+	DataExchangeObserver getInternalObserver() {
+		return new DataExchangeObserver() {
+
+			@Override
+			public boolean onTransfertProgressFromSource(final AbstractFile source,
+			                                             final long startDate,
+			                                             final long dataTransferred) {
+				return checkProgress(observer.onTransfertProgressFromSource(source, startDate, dataTransferred));
+			}
+
+			@Override
+			public boolean onTransfertProgressToDestination(final AbstractFile destination,
+			                                                final long startDate,
+			                                                final long dataTransferred) {
+				return checkProgress(observer.onTransfertProgressToDestination(destination, startDate,
+				        dataTransferred));
+			}
+
+			@Override
+			public void beforeTransfert(final AbstractFile source, final AbstractFile destination) {
+				observer.beforeTransfert(source, destination);
+			}
+
+			@Override
+			public void afterTransfert(final AbstractFile source,
+			                           final AbstractFile destination,
+			                           final long dataSizeTranferedFromSource,
+			                           final long dataSizeTranferedToDestination,
+			                           final Duration transfertDuration) {
+				observer.afterTransfert(source, destination, dataSizeTranferedFromSource,
+				        dataSizeTranferedToDestination, transfertDuration);
+			}
+		};
+	}
+
+	private boolean checkProgress(final boolean keepTransfert) {
+		if (keepTransfert == false) {
+			stopRequested = true;
+		}
+		return keepTransfert && stopRequested == false && cancelRequested == false;
+	}
+
+	void complete() {
+		if (status == Status.FAILED) {
+			completion.completeExceptionally(lastError);
+		} else {
+			completion.complete(this);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "TransfertJob [" + priority + " " + sourceConnection + sourcePath
+		       + " -> " + destinationConnection + destinationPath + ", " + status + "]";
+	}
+
+}
@@ -0,0 +1,30 @@
+/*
+ * This file is part of transfertfiles.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * Copyright (C) hdsdi3g for hd3g.tv 2021
+ *
+ */
+package tv.hd3g.transfertfiles.scheduler;
+
+/**
+ * Dispatch order of the TransfertScheduler queue: all URGENT jobs before HIGH jobs, etc.
+ * Same priority jobs are dispatched in submit order.
+ */
+public enum TransfertPriority {
+
+	URGENT,
+	HIGH,
+	NORMAL,
+	BULK;
+
+}
@@ -0,0 +1,621 @@
+/*
+ * This file is part of transfertfiles.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * Copyright (C) hdsdi3g for hd3g.tv 2021
+ *
+ */
+package tv.hd3g.transfertfiles.scheduler;
+
+import static tv.hd3g.transfertfiles.AbstractFile.normalizePath;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import tv.hd3g.transfertfiles.AbstractFileSystemURL;
+import tv.hd3g.transfertfiles.BandwidthLimiter;
+import tv.hd3g.transfertfiles.DataExchangeObserver;
+import tv.hd3g.transfertfiles.filters.DataExchangeFilter;
+import tv.hd3g.transfertfiles.filters.DataExchangeFilterBandwidthLimit;
+import tv.hd3g.transfertfiles.local.LocalFileSystem;
+
+/**
+ * Run a lot of transferts, with a fixed count of workers, by priority (see TransfertPriority).
+ * Each transfert is a copyAbstractToAbstract between two AbstractFileSystemURLs (use "file://" URLs for local files).
+ * - One AbstractFileSystemURL is created by URL, and reused (connected) by all the jobs, until the close.
+ * - Concurrency caps by FileSystem (never more than its getMaxParallelOperations: set a connection pool for
+ * run several transferts on the same FTP/SFTP server) and by host (for distant hosts only).
+ * A job blocked by a cap don't block the next jobs in the queue.
+ * - A global BandwidthLimiter can be shared by all the transferts. It's cumulated with the FileSystems
+ * BandwidthLimiters: don't set the same on both.
+ * - Failed transferts are retried, after an exponential backoff. Broken and not reusable FileSystems (like SFTP)
+ * are re-created before the retry.
+ * Source and destination must not be the same distant URL (see AbstractFile.checkIsSameFileSystem).
+ * Thread safe
+ */
+public class TransfertScheduler implements Closeable {
+	private static final Logger log = LogManager.getLogger();
+
+	public static final int DEFAULT_MAX_ATTEMPTS = 3;
+	public static final Duration DEFAULT_INITIAL_BACKOFF = Duration.ofSeconds(1);
+	public static final Duration DEFAULT_MAX_BACKOFF = Duration.ofMinutes(1);
+
+	private final Function<String, AbstractFileSystemURL> fileSystemProvider;
+	private final ReentrantLock lock;
+	private final Condition changed;
+	private final NavigableSet<TransfertJob> queue;
+	private final Set<TransfertJob> running;
+	private final Map<String, Connection> connections;
+	private final Map<InetAddress, Integer> runningByHost;
+	private final List<Thread> workers;
+
+	private long sequence;
+	private int maxConcurrentByHost;
+	private int maxConcurrentByFileSystem;
+	private BandwidthLimiter bandwidthLimiter;
+	private int maxAttempts;
+	private Duration initialBackoff;
+	private Duration maxBackoff;
+	private boolean closed;
+
+	/**
+	 * @param maxConcurrentTransferts workers count
+	 */
+	public TransfertScheduler(final int maxConcurrentTransferts) {
+		this(maxConcurrentTransferts, AbstractFileSystemURL::new);
+	}
+
+	/**
+	 * @param maxConcurrentTransferts workers count
+	 * @param fileSystemProvider called one time by URL (and again after a broken FileSystem), can be used for setup
+	 *        the FileSystems (like the connection pools).
+	 */
+	public TransfertScheduler(final int maxConcurrentTransferts,
+	                          final Function<String, AbstractFileSystemURL> fileSystemProvider) {
+		if (maxConcurrentTransferts < 1) {
+			throw new IllegalArgumentException("Invalid maxConcurrentTransferts=" + maxConcurrentTransferts);
+		}
+		this.fileSystemProvider = Objects.requireNonNull(fileSystemProvider,
+		        "\"fileSystemProvider\" can't to be null");
+		lock = new ReentrantLock();
+		changed = lock.newCondition();
+		queue = new TreeSet<>(Comparator.comparing(TransfertJob::getPriority)
+		        .thenComparingLong(TransfertJob::getSequence));
+		running = new HashSet<>();
+		connections = new HashMap<>();
+		runningByHost = new HashMap<>();
+		maxAttempts = DEFAULT_MAX_ATTEMPTS;
+		initialBackoff = DEFAULT_INITIAL_BACKOFF;
+		maxBackoff = DEFAULT_MAX_BACKOFF;
+
+		workers = new ArrayList<>(maxConcurrentTransferts);
+		for (var pos = 0; pos < maxConcurrentTransferts; pos++) {
+			final var t = new Thread(this::work, "TransfertScheduler-" + pos);
+			t.setDaemon(true);
+			workers.add(t);
+		}
+		workers.forEach(Thread::start);
+	}
+
+	/**
+	 * A FileSystem shared by the jobs, by URL.
+	 */
+	static class Connection {
+		private final String url;
+		private AbstractFileSystemURL fileSystemURL;
+		private InetAddress host;
+		private int running;
+		private boolean broken;
+
+		private Connection(final String url, final AbstractFileSystemURL fileSystemURL) {
+			this.url = url;
+			setFileSystemURL(fileSystemURL);
+		}
+
+		private void setFileSystemURL(final AbstractFileSystemURL fileSystemURL) {
+			this.fileSystemURL = fileSystemURL;
+			final var fileSystem = fileSystemURL.getFileSystem();
+			if (fileSystem instanceof LocalFileSystem) {
+				host = null;
+			} else {
+				host = fileSystem.getHost();
+			}
+		}
+
+		@Override
+		public String toString() {
+			return fileSystemURL.toString();
+		}
+	}
+
+	/**
+	 * @param maxConcurrentByHost 0 for no limit (the default). Only for the distant hosts.
+	 * @return this
+	 */
+	public TransfertScheduler setMaxConcurrentByHost(final int maxConcurrentByHost) {
+		if (maxConcurrentByHost < 0) {
+			throw new IllegalArgumentException("Invalid maxConcurrentByHost=" + maxConcurrentByHost);
+		}
+		lock.lock();
+		try {
+			this.maxConcurrentByHost = maxConcurrentByHost;
+			changed.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		return this;
+	}
+
+	/**
+	 * @param maxConcurrentByFileSystem 0 (the default) for the FileSystem getMaxParallelOperations. Never more than
+	 *        it.
+	 * @return this
+	 */
+	public TransfertScheduler setMaxConcurrentByFileSystem(final int maxConcurrentByFileSystem) {
+		if (maxConcurrentByFileSystem < 0) {
+			throw new IllegalArgumentException("Invalid maxConcurrentByFileSystem=" + maxConcurrentByFileSystem);
+		}
+		lock.lock();
+		try {
+			this.maxConcurrentByFileSystem = maxConcurrentByFileSystem;
+			changed.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		return this;
+	}
+
+	/**
+	 * Only apply on the next started transferts.
+	 * @param bandwidthLimiter null for no global limit (the default)
+	 * @return this
+	 */
+	public TransfertScheduler setBandwidthLimiter(final BandwidthLimiter bandwidthLimiter) {
+		lock.lock();
+		try {
+			this.bandwidthLimiter = bandwidthLimiter;
+		} finally {
+			lock.unlock();
+		}
+		return this;
+	}
+
+	public BandwidthLimiter getBandwidthLimiter() {
+		lock.lock();
+		try {
+			return bandwidthLimiter;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Retry n waits min(maxBackoff, initialBackoff * 2^(n-1)).
+	 * @param maxAttempts 1 for never retry
+	 * @return this
+	 */
+	public TransfertScheduler setRetry(final int maxAttempts, final Duration initialBackoff, final Duration maxBackoff) {
+		if (maxAttempts < 1) {
+			throw new IllegalArgumentException("Invalid maxAttempts=" + maxAttempts);
+		} else if (initialBackoff.isNegative()) {
+			throw new IllegalArgumentException("Invalid initialBackoff=" + initialBackoff);
+		} else if (maxBackoff.compareTo(initialBackoff) < 0) {
+			throw new IllegalArgumentException("Invalid maxBackoff=" + maxBackoff);
+		}
+		lock.lock();
+		try {
+			this.maxAttempts = maxAttempts;
+			this.initialBackoff = initialBackoff;
+			this.maxBackoff = maxBackoff;
+		} finally {
+			lock.unlock();
+		}
+		return this;
+	}
+
+	/**
+	 * @param observer receive the progress of each attempt. Stop the job if it returns false in a progress callback.
+	 * @param sourceURL see AbstractFileSystemURL
+	 * @param destinationURL see AbstractFileSystemURL
+	 * @return the queued job
+	 */
+	public TransfertJob submit(final TransfertPriority priority,
+	                           final String sourceURL,
+	                           final String sourcePath,
+	                           final String destinationURL,
+	                           final String destinationPath,
+	                           final DataExchangeObserver observer) {
+		Objects.requireNonNull(priority, "\"priority\" can't to be null");
+		Objects.requireNonNull(observer, "\"observer\" can't to be null");
+		final var sourceNormalizedPath = normalizePath(sourcePath);
+		final var destinationNormalizedPath = normalizePath(destinationPath);
+		final var source = getConnection(Objects.requireNonNull(sourceURL, "\"sourceURL\" can't to be null"));
+		final var destination = getConnection(Objects.requireNonNull(destinationURL,
+		        "\"destinationURL\" can't to be null"));
+
+		lock.lock();
+		try {
+			if (closed) {
+				throw new IllegalStateException("This scheduler is closed");
+			}
+			final var job = new TransfertJob(this, sequence++, priority,
+			        source, sourceNormalizedPath, destination, destinationNormalizedPath, observer);
+			queue.add(job);
+			log.debug("Submit {}", job);
+			changed.signalAll();
+			return job;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * The AbstractFileSystemURL creation is done out of the lock (hostname resolution).
+	 */
+	private Connection getConnection(final String url) {
+		lock.lock();
+		try {
+			final var connection = connections.get(url);
+			if (connection != null) {
+				return connection;
+			}
+		} finally {
+			lock.unlock();
+		}
+
+		final var created = new Connection(url, fileSystemProvider.apply(url));
+		Connection current;
+		lock.lock();
+		try {
+			current = connections.putIfAbsent(url, created);
+			if (current == null) {
+				log.debug("Create FileSystem for {}", created);
+				return created;
+			}
+		} finally {
+			lock.unlock();
+		}
+		closeQuietly(created.fileSystemURL);
+		return current;
+	}
+
+	public int getQueuedCount() {
+		lock.lock();
+		try {
+			return queue.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public int getRunningCount() {
+		lock.lock();
+		try {
+			return running.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	boolean cancel(final TransfertJob job) {
+		lock.lock();
+		try {
+			if (job.getStatus().isEnded()) {
+				return false;
+			}
+			job.setCancelRequested();
+			if (queue.remove(job) == false) {
+				log.debug("Cancel running {}", job);
+				return true;
+			}
+			job.setStatus(TransfertJob.Status.CANCELLED);
+			log.debug("Cancel queued {}", job);
+			changed.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		job.complete();
+		return true;
+	}
+
+	private void work() {
+		while (true) {
+			final TransfertJob job;
+			lock.lock();
+			try {
+				job = waitNextJob();
+				if (job == null) {
+					return;
+				}
+				start(job);
+			} finally {
+				lock.unlock();
+			}
+			run(job);
+		}
+	}
+
+	/**
+	 * @return null if closed
+	 */
+	private TransfertJob waitNextJob() {
+		try {
+			while (closed == false) {
+				final var now = System.nanoTime();
+				var nextRetry = Long.MAX_VALUE;
+				for (final var job : queue) {
+					final var wait = job.getNotBefore() - now;
+					if (wait > 0) {
+						nextRetry = Math.min(nextRetry, wait);
+					} else if (canStart(job)) {
+						queue.remove(job);
+						return job;
+					}
+				}
+				if (nextRetry == Long.MAX_VALUE) {
+					changed.await();
+				} else {
+					changed.awaitNanos(nextRetry);
+				}
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			log.warn("Worker interrupted", e);
+		}
+		return null;
+	}
+
+	private static Stream<Connection> getConnections(final TransfertJob job) {
+		return Stream.of(job.getSourceConnection(), job.getDestinationConnection()).distinct();
+	}
+
+	private static Stream<InetAddress> getHosts(final TransfertJob job) {
+		return getConnections(job)
+		        .map(c -> c.host)
+		        .filter(Objects::nonNull)
+		        .distinct();
+	}
+
+	private boolean canStart(final TransfertJob job) {
+		final var connectionsAvailable = getConnections(job).allMatch(c -> {
+			if (c.broken) {
+				/**
+				 * Wait the end of all its transferts, before re-create it.
+				 */
+				return c.running == 0;
+			}
+			final var maxParallel = c.fileSystemURL.getFileSystem().getMaxParallelOperations();
+			final var limit = maxConcurrentByFileSystem > 0 ? Math.min(maxConcurrentByFileSystem, maxParallel)
+			                                                : maxParallel;
+			return c.running < Math.max(1, limit);
+		});
+		if (connectionsAvailable == false) {
+			return false;
+		}
+		return maxConcurrentByHost == 0
+		       || getHosts(job).allMatch(h -> runningByHost.getOrDefault(h, 0) < maxConcurrentByHost);
+	}
+
+	private void start(final TransfertJob job) {
+		getConnections(job).forEach(c -> c.running++);
+		getHosts(job).forEach(h -> runningByHost.merge(h, 1, Integer::sum));
+		running.add(job);
+		job.newAttempt();
+		job.setStatus(TransfertJob.Status.RUNNING);
+		log.debug("Start {}, attempt {}", job, job.getAttempts());
+	}
+
+	private void run(final TransfertJob job) {
+		RuntimeException error = null;
+		var copied = false;
+		try {
+			getConnections(job).forEach(this::renewIfBroken);
+			final var source = getFileSystemURL(job.getSourceConnection()).getFromPath(job.getSourcePath());
+			final var destination = getFileSystemURL(job.getDestinationConnection())
+			        .getFromPath(job.getDestinationPath());
+			source.copyAbstractToAbstract(destination, job.getInternalObserver(), getFilters());
+			copied = true;
+		} catch (final RuntimeException e) {
+			error = e;
+			getConnections(job).forEach(this::checkIsBroken);
+		} finally {
+			if (copied == false && error == null) {
+				error = new IllegalStateException("Unexpected error during " + job);
+			}
+			lock.lock();
+			try {
+				end(job, error);
+				changed.signalAll();
+			} finally {
+				lock.unlock();
+			}
+			if (job.getStatus().isEnded()) {
+				job.complete();
+			}
+		}
+	}
+
+	private DataExchangeFilter[] getFilters() {
+		final var limiter = getBandwidthLimiter();
+		if (limiter == null) {
+			return new DataExchangeFilter[] {};
+		}
+		return new DataExchangeFilter[] { new DataExchangeFilterBandwidthLimit(limiter) };
+	}
+
+	private void end(final TransfertJob job, final RuntimeException error) {
+		getConnections(job).forEach(c -> c.running--);
+		getHosts(job).forEach(h -> runningByHost.merge(h, -1, (a, b) -> a + b == 0 ? null : a + b));
+		running.remove(job);
+
+		if (closed || job.isCancelRequested()) {
+			job.setStatus(TransfertJob.Status.CANCELLED);
+		} else if (job.isStopRequested()) {
+			job.setStatus(TransfertJob.Status.STOPPED);
+		} else if (error == null) {
+			job.setStatus(TransfertJob.Status.DONE);
+		} else {
+			job.setLastError(error);
+			if (job.getAttempts() < maxAttempts) {
+				final var backoff = getBackoff(job.getAttempts());
+				log.warn("Can't transfert {}, retry in {}", job, backoff, error);
+				job.setStatus(TransfertJob.Status.WAITING_RETRY);
+				job.setNotBefore(System.nanoTime() + backoff.toNanos());
+				queue.add(job);
+			} else {
+				log.error("Can't transfert {}, after {} attempt(s)", job, job.getAttempts(), error);
+				job.setStatus(TransfertJob.Status.FAILED);
+			}
+			return;
+		}
+		log.debug("End {}", job);
+	}
+
+	Duration getBackoff(final int failedAttempts) {
+		final var shift = Math.min(failedAttempts - 1, 30);
+		final var backoff = initialBackoff.multipliedBy(1L << shift);
+		if (backoff.compareTo(maxBackoff) > 0) {
+			return maxBackoff;
+		}
+		return backoff;
+	}
+
+	/**
+	 * A not reusable FileSystem can't be re-connected after a disconnect.
+	 */
+	private void checkIsBroken(final Connection connection) {
+		final var fileSystemURL = getFileSystemURL(connection);
+		if (fileSystemURL.isReusable() || fileSystemURL.getFileSystem().isAvaliable()) {
+			return;
+		}
+		lock.lock();
+		try {
+			if (connection.fileSystemURL == fileSystemURL) {
+				log.info("Set broken FileSystem {}", connection);
+				connection.broken = true;
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Only the current job can use a broken connection (see canStart)
+	 */
+	private void renewIfBroken(final Connection connection) {
+		final AbstractFileSystemURL oldFileSystemURL;
+		lock.lock();
+		try {
+			if (connection.broken == false) {
+				return;
+			}
+			oldFileSystemURL = connection.fileSystemURL;
+		} finally {
+			lock.unlock();
+		}
+
+		log.info("Re-create broken FileSystem {}", connection);
+		closeQuietly(oldFileSystemURL);
+		final var fileSystemURL = fileSystemProvider.apply(connection.url);
+
+		lock.lock();
+		try {
+			connection.setFileSystemURL(fileSystemURL);
+			connection.broken = false;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private AbstractFileSystemURL getFileSystemURL(final Connection connection) {
+		lock.lock();
+		try {
+			return connection.fileSystemURL;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private static void closeQuietly(final AbstractFileSystemURL fileSystemURL) {
+		try {
+			fileSystemURL.close();
+		} catch (final IOException | RuntimeException e) {
+			log.warn("Can't close {}", fileSystemURL, e);
+		}
+	}
+
+	/**
+	 * Cancel all queued and running jobs, wait the workers end, and close all FileSystems.
+	 */
+	@Override
+	public void close() throws IOException {
+		final List<TransfertJob> cancelled;
+		lock.lock();
+		try {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			cancelled = new ArrayList<>(queue);
+			queue.clear();
+			cancelled.forEach(job -> {
+				job.setCancelRequested();
+				job.setStatus(TransfertJob.Status.CANCELLED);
+			});
+			running.forEach(TransfertJob::setCancelRequested);
+			changed.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		cancelled.forEach(TransfertJob::complete);
+
+		for (final var worker : workers) {
+			try {
+				worker.join(TimeUnit.MINUTES.toMillis(1));
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted during wait the workers", e);
+			}
+		}
+
+		final List<Connection> toClose;
+		lock.lock();
+		try {
+			toClose = new ArrayList<>(connections.values());
+			connections.clear();
+		} finally {
+			lock.unlock();
+		}
+		toClose.forEach(c -> closeQuietly(c.fileSystemURL));
+	}
+
+}
@@ -26,7 +26,8 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UncheckedIOException;
 import java.time.Duration;
-import java.util.List;
+import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.UnaryOperator;
 import java.util.stream.Stream;
@@ -37,17 +38,18 @@ import org.apache.logging.log4j.Logger;
 import net.schmizz.sshj.common.StreamCopier.Listener;
 import net.schmizz.sshj.sftp.FileAttributes;
 import net.schmizz.sshj.sftp.FileMode.Type;
+import net.schmizz.sshj.sftp.OpenMode;
 import net.schmizz.sshj.sftp.RemoteResourceInfo;
+import net.schmizz.sshj.sftp.RemoteFile;
 import net.schmizz.sshj.sftp.SFTPClient;
-import net.schmizz.sshj.xfer.LocalDestFile;
-import net.schmizz.sshj.xfer.LocalFileFilter;
-import net.schmizz.sshj.xfer.LocalSourceFile;
 import net.schmizz.sshj.xfer.TransferListener;
 import tv.hd3g.transfertfiles.AbstractFile;
 import tv.hd3g.transfertfiles.AbstractFileSystem;
 import tv.hd3g.transfertfiles.CachedFileAttributes;
 import tv.hd3g.transfertfiles.CannotDeleteException;
 import tv.hd3g.transfertfiles.CommonAbstractFile;
+import tv.hd3g.transfertfiles.SegmentedDownload;
+import tv.hd3g.transfertfiles.SegmentedDownload.RangeConsumer;
 import tv.hd3g.transfertfiles.SizedStoppableCopyCallback;
 import tv.hd3g.transfertfiles.TransfertObserver;
 import tv.hd3g.transfertfiles.TransfertObserver.TransfertDirection;
@@ -57,11 +59,29 @@ public class SFTPFile extends CommonAbstractFile<SFTPFileSystem> { // NOSONAR S2
 
 	private final SFTPClient sftpClient;
 	private final String sftpAbsolutePath;
-
+	/**
+	 * Provided by a directory listing (READDIR) or a bulk stat, and forgotten after a change done by this.
+	 */
+	private volatile FileAttributes knownAttributes;
+
+	/**
+	 * @param sftpClient used if the fileSystem is not in pooled mode, else operations are done on a borrowed channel.
+	 */
 	SFTPFile(final SFTPFileSystem fileSystem, final SFTPClient sftpClient,
 	         final String relativePath,
 	         final String absolutePath) {
+		this(fileSystem, sftpClient, relativePath, absolutePath, null);
+	}
+
+	/**
+	 * @param knownAttributes can be null. Will be used by the getters, without new stat requests.
+	 */
+	SFTPFile(final SFTPFileSystem fileSystem, final SFTPClient sftpClient,
+	         final String relativePath,
+	         final String absolutePath,
+	         final FileAttributes knownAttributes) {
 		super(fileSystem, relativePath);
+		this.knownAttributes = knownAttributes;
 		if (fileSystem.isAbsoluteBasePath()) {
 			sftpAbsolutePath = absolutePath;
 		} else {
@@ -70,6 +90,44 @@ public class SFTPFile extends CommonAbstractFile<SFTPFileSystem> { // NOSONAR S2
 		this.sftpClient = sftpClient;
 	}
 
+	private <T> T useClient(final SFTPFileSystem.SFTPClientOperation<T> operation) throws IOException {
+		return fileSystem.useClient(sftpClient, operation);
+	}
+
+	private FileAttributes stat() throws IOException {
+		return useClient(c -> c.stat(sftpAbsolutePath));
+	}
+
+	/**
+	 * @return the known attributes (from the listing), else a new stat
+	 */
+	private FileAttributes attributes() throws IOException {
+		final var attributes = knownAttributes;
+		if (attributes != null) {
+			return attributes;
+		}
+		return stat();
+	}
+
+	String getSFTPAbsolutePath() {
+		return sftpAbsolutePath;
+	}
+
+	/**
+	 * @return true if this was created by a list() or a bulk stat, and the attribute getters don't need to send stat
+	 *         requests. The values are the ones from the listing time.
+	 */
+	public boolean hasKnownAttributes() {
+		return knownAttributes != null;
+	}
+
+	/**
+	 * @return a new SFTPFile for this path, without known attributes: the getters will send new stat requests.
+	 */
+	public SFTPFile refresh() {
+		return fileSystem.getFromPath(getPath());
+	}
+
 	private boolean isNoSuchFileInError(final IOException e) {
 		return e.getMessage().toUpperCase().startsWith("No such file".toUpperCase());
 	}
@@ -81,8 +139,12 @@ public class SFTPFile extends CommonAbstractFile<SFTPFileSystem> { // NOSONAR S2
 
 	@Override
 	public long length() {
+		final var attributes = knownAttributes;
+		if (attributes != null) {
+			return attributes.getSize();
+		}
 		try {
-			return sftpClient.size(sftpAbsolutePath);
+			return useClient(c -> c.size(sftpAbsolutePath));
 		} catch (final IOException e) {
 			if (isNoSuchFileInError(e)) {
 				return 0L;
@@ -93,8 +155,11 @@ public class SFTPFile extends CommonAbstractFile<SFTPFileSystem> { // NOSONAR S2
 
 	@Override
 	public boolean exists() {
+		if (knownAttributes != null) {
+			return true;
+		}
 		try {
-			return sftpClient.statExistence(sftpAbsolutePath) != null;
+			return useClient(c -> c.statExistence(sftpAbsolutePath)) != null;
 		} catch (final IOException e) {
 			throw new UncheckedIOException(e);
 		}
@@ -103,12 +168,16 @@ public class SFTPFile extends CommonAbstractFile<SFTPFileSystem> { // NOSONAR S2
 	@Override
 	public void delete() {
 		final var directory = isDirectory();
+		knownAttributes = null;
 		try {
-			if (directory) {
-				sftpClient.rmdir(sftpAbsolutePath);
-			} else {
-				sftpClient.rm(sftpAbsolutePath);
-			}
+			useClient(c -> {
+				if (directory) {
+					c.rmdir(sftpAbsolutePath);
+				} else {
+					c.rm(sftpAbsolutePath);
+				}
+				return null;
+			});
 		} catch (final IOException e) {
 			throw new CannotDeleteException(this, directory, e);
 		}
@@ -117,7 +186,7 @@ public class SFTPFile extends CommonAbstractFile<SFTPFileSystem> { // NOSONAR S2
 	@Override
 	public boolean isDirectory() {
 		try {
-			return sftpClient.stat(sftpAbsolutePath).getType() == Type.DIRECTORY;
+			return attributes().getType() == Type.DIRECTORY;
 		} catch (final IOException e) {
 			if (isNoSuchFileInError(e)) {
 				return false;
@@ -129,7 +198,7 @@ public class SFTPFile extends CommonAbstractFile<SFTPFileSystem> { // NOSONAR S2
 	@Override
 	public boolean isFile() {
 		try {
-			return sftpClient.stat(sftpAbsolutePath).getType() == Type.REGULAR;
+			return attributes().getType() == Type.REGULAR;
 		} catch (final IOException e) {
 			if (isNoSuchFileInError(e)) {
 				return false;
@@ -141,7 +210,7 @@ public class SFTPFile extends CommonAbstractFile<SFTPFileSystem> { // NOSONAR S2
 	@Override
 	public boolean isLink() {
 		try {
-			return sftpClient.stat(sftpAbsolutePath).getType() == Type.SYMLINK;
+			return attributes().getType() == Type.SYMLINK;
 		} catch (final IOException e) {
 			if (isNoSuchFileInError(e)) {
 				return false;
@@ -153,7 +222,7 @@ public class SFTPFile extends CommonAbstractFile<SFTPFileSystem> { // NOSONAR S2
 	@Override
 	public boolean isSpecial() {
 		try {
-			final var type = sftpClient.stat(sftpAbsolutePath).getType();
+			final var type = attributes().getType();
 			return type != Type.REGULAR
 			       && type != Type.DIRECTORY
 			       && type != Type.SYMLINK;
@@ -168,7 +237,7 @@ public class SFTPFile extends CommonAbstractFile<SFTPFileSystem> { // NOSONAR S2
 	@Override
 	public long lastModified() {
 		try {
-			return sftpClient.stat(sftpAbsolutePath).getMtime() * 1000L;
+			return attributes().getMtime() * 1000L;
 		} catch (final IOException e) {
 			if (isNoSuchFileInError(e)) {
 				return 0;
@@ -177,7 +246,7 @@ public class SFTPFile extends CommonAbstractFile<SFTPFileSystem> { // NOSONAR S2
 		}
 	}
 
-	private CachedFileAttributes makeCachedFileAttributesFromStat(final AbstractFile related, final FileAttributes f) {
+	static CachedFileAttributes makeCachedFileAttributesFromStat(final AbstractFile related, final FileAttributes f) {
 		return new CachedFileAttributes(related,
 		        f.getSize(), f.getMtime() * 1000L, true,
 		        f.getType() == Type.DIRECTORY,
@@ -189,7 +258,7 @@ public class SFTPFile extends CommonAbstractFile<SFTPFileSystem> { // NOSONAR S2
 	@Override
 	public CachedFileAttributes toCache() {
 		try {
-			return makeCachedFileAttributesFromStat(this, sftpClient.stat(sftpAbsolutePath));
+			return makeCachedFileAttributesFromStat(this, attributes());
 		} catch (final IOException e) {
 			if (isNoSuchFileInError(e)) {
 				return CachedFileAttributes.notExists(this);
@@ -206,13 +275,26 @@ public class SFTPFile extends CommonAbstractFile<SFTPFileSystem> { // NOSONAR S2
 		}
 	};
 
+	/**
+	 * @return SFTPFiles with the attributes provided by the READDIR responses (see hasKnownAttributes and refresh).
+	 *         Links are followed (with a stat request by link), like with getFromPath: a link to a directory is a
+	 *         directory. A broken link keeps its own attributes (isLink is true).
+	 */
 	@Override
 	public Stream<AbstractFile> list() {
+		return listWithAttributes().map(AbstractFile.class::cast);
+	}
+
+	private Stream<SFTPFile> listWithAttributes() {
 		try {
-			return sftpClient.ls(sftpAbsolutePath).stream()
-			        .map(RemoteResourceInfo::getPath)
-			        .map(toRelativePath)
-			        .map(fileSystem::getFromPath);
+			return useClient(c -> {
+				final var entries = c.ls(sftpAbsolutePath);
+				final var files = new ArrayList<SFTPFile>(entries.size());
+				for (final var rri : entries) {
+					files.add(fileSystem.getFromPath(toRelativePath.apply(rri.getPath()), followLink(c, rri)));
+				}
+				return files;
+			}).stream();
 		} catch (final IOException e) {
 			if (isNoSuchFileInError(e) || e.getMessage().equals("Accessed location is not a directory")) {
 				return Stream.empty();
@@ -221,24 +303,38 @@ public class SFTPFile extends CommonAbstractFile<SFTPFileSystem> { // NOSONAR S2
 		}
 	}
 
-	@Override
-	public Stream<CachedFileAttributes> toCachedList() {
+	/**
+	 * READDIR responses are like a lstat.
+	 * @return the link target attributes, or the entry attributes if it's not a link, or a broken link
+	 */
+	private FileAttributes followLink(final SFTPClient channel, final RemoteResourceInfo rri) throws IOException {
+		final var attributes = rri.getAttributes();
+		if (attributes.getType() != Type.SYMLINK) {
+			return attributes;
+		}
 		try {
-			return sftpClient.ls(sftpAbsolutePath).stream()
-			        .map(rri -> makeCachedFileAttributesFromStat(
-			                fileSystem.getFromPath(toRelativePath.apply(rri.getPath())), rri.getAttributes()));
+			return channel.stat(rri.getPath());
 		} catch (final IOException e) {
-			if (isNoSuchFileInError(e) || e.getMessage().equals("Accessed location is not a directory")) {
-				return Stream.empty();
+			if (isNoSuchFileInError(e)) {
+				return attributes;
 			}
-			throw new UncheckedIOException(e);
+			throw e;
 		}
 	}
 
+	@Override
+	public Stream<CachedFileAttributes> toCachedList() {
+		return listWithAttributes().map(SFTPFile::toCache);
+	}
+
 	@Override
 	public void mkdir() {
+		knownAttributes = null;
 		try {
-			sftpClient.mkdirs(sftpAbsolutePath);
+			useClient(c -> {
+				c.mkdirs(sftpAbsolutePath);
+				return null;
+			});
 		} catch (final IOException e) {
 			throw new UncheckedIOException(e);
 		}
@@ -246,13 +342,14 @@ public class SFTPFile extends CommonAbstractFile<SFTPFileSystem> { // NOSONAR S2
 
 	@Override
 	public AbstractFile renameTo(final String path) {
+		knownAttributes = null;
 		try {
 			final var newPath = AbstractFile.normalizePath(path);
-			if (fileSystem.isAbsoluteBasePath()) {
-				sftpClient.rename(sftpAbsolutePath, newPath);
-			} else {
-				sftpClient.rename(sftpAbsolutePath, newPath.substring(1));
-			}
+			final var sftpNewPath = fileSystem.isAbsoluteBasePath() ? newPath : newPath.substring(1);
+			useClient(c -> {
+				c.rename(sftpAbsolutePath, sftpNewPath);
+				return null;
+			});
 			return fileSystem.getFromPath(newPath);
 		} catch (final IOException e) {
 			throw new UncheckedIOException(e);
@@ -266,9 +363,61 @@ public class SFTPFile extends CommonAbstractFile<SFTPFileSystem> { // NOSONAR S2
 
 	@Override
 	public void sendLocalToAbstract(final File localFile, final TransfertObserver observer) {
+		knownAttributes = null;
 		copy(localFile.getPath(), sftpAbsolutePath, localFile, observer, LOCALTODISTANT);
 	}
 
+	/**
+	 * Download by byte ranges in parallel, on several pooled channels (see SFTPFileSystem.setChannelPool), for the
+	 * big files when one channel can't fill the network link. See SegmentedDownload.
+	 * @param segmentCount limited by the channel pool max size. Without pool, only one segment will be used.
+	 */
+	public void copyAbstractToLocalSegmented(final File localFile,
+	                                         final int segmentCount,
+	                                         final TransfertObserver observer) {
+		try {
+			final var before = stat();
+			if (before.getType() == Type.DIRECTORY) {
+				throw new IOException("Source file is a directory, can't copy from it");
+			}
+			final var pool = fileSystem.getChannelPool();
+			final var maxSegmentCount = pool == null ? 1 : Math.min(segmentCount, pool.getMaxSize());
+			final var download = new SegmentedDownload(this, localFile, before.getSize(), maxSegmentCount, observer);
+			if (download.download(this::readRange) == false) {
+				return;
+			}
+			final var after = stat();
+			if (after.getSize() != before.getSize() || after.getMtime() != before.getMtime()) {
+				throw new IOException("Source file " + this + " has changed during the download");
+			}
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Read-ahead from offset. Outstanding requests are limited to the range length.
+	 */
+	private void readRange(final long offset, final long length, final RangeConsumer consumer) throws IOException {
+		useClient(c -> {
+			try (var remoteFile = c.open(sftpAbsolutePath, EnumSet.of(OpenMode.READ))) {
+				final var requestSize = getRequestSize(c, remoteFile);
+				final var maxOutstandingRequests = (int) Math.max(1, Math.min(
+				        fileSystem.getMaxOutstandingRequests(), (length + requestSize - 1) / requestSize));
+				try (var inputStream = remoteFile.new ReadAheadRemoteFileInputStream(maxOutstandingRequests, offset)) {
+					final var buffer = new byte[requestSize];
+					int size;
+					while ((size = inputStream.read(buffer)) > -1) {
+						if (consumer.accept(buffer, size) == false) {
+							break;
+						}
+					}
+				}
+			}
+			return null;
+		});
+	}
+
 	private class StoppedTransfertException extends IOException {
 		private final long transferred;
 
@@ -283,257 +432,219 @@ public class SFTPFile extends CommonAbstractFile<SFTPFileSystem> { // NOSONAR S2
 	                  final File localFile,
 	                  final TransfertObserver observer,
 	                  final TransfertDirection transfertDirection) {
-		var sizeToTransfert = 0L;
+		final var sizeToTransfert = new AtomicLong();
 		try {
-			synchronized (sftpClient) {
-				final var thisRef = this;
-				final var now = System.currentTimeMillis();
-				final var ft = sftpClient.getFileTransfer();
-				ft.setTransferListener(new TransferListener() {
-
-					@Override
-					public Listener file(final String name, final long size) {
-						return transferred -> {
-							if (observer.onTransfertProgress(
-							        localFile, thisRef, transfertDirection, now, transferred) == false) {
-								throw new StoppedTransfertException(localFile.getPath(), transferred);
-							}
-						};
-					}
+			useClient(c -> {
+				copy(c, source, dest, localFile, observer, transfertDirection, sizeToTransfert);
+				return null;
+			});
+		} catch (final StoppedTransfertException e) {
+			log.info("Stop copy SSH file from \"{}\" to \"{}\", ({}/{} bytes)",
+			        source, dest, e.transferred, sizeToTransfert.get());
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
 
-					@Override
-					public TransferListener directory(final String name) {
-						return this;
-					}
-				});
+	private void copy(final SFTPClient channel,
+	                  final String source,
+	                  final String dest,
+	                  final File localFile,
+	                  final TransfertObserver observer,
+	                  final TransfertDirection transfertDirection,
+	                  final AtomicLong sizeToTransfert) throws IOException {
+		final var clientLock = fileSystem.getClientLock(channel);
+		clientLock.lock();
+		try {
+			final var thisRef = this;
+			final var now = System.currentTimeMillis();
+			final var ft = channel.getFileTransfer();
+			ft.setTransferListener(new TransferListener() {
+
+				@Override
+				public Listener file(final String name, final long size) {
+					return transferred -> {
+						if (observer.onTransfertProgress(
+						        localFile, thisRef, transfertDirection, now, transferred) == false) {
+							throw new StoppedTransfertException(localFile.getPath(), transferred);
+						}
+					};
+				}
 
-				observer.beforeTransfert(localFile, this, transfertDirection);
+				@Override
+				public TransferListener directory(final String name) {
+					return this;
+				}
+			});
 
-				if (transfertDirection == DISTANTTOLOCAL) {
-					if (sftpClient.stat(sftpAbsolutePath).getType() == Type.DIRECTORY) {
-						throw new UncheckedIOException(
-						        new IOException("Source file is a directory, can't copy from it"));
-					}
-					sizeToTransfert = sftpClient.size(sftpAbsolutePath);
-					log.info("Download file from SSH host \"{}@{}:{}\" to \"{}\" ({} bytes)",
-					        fileSystem.getUsername(), fileSystem.getHost(), source, dest, sizeToTransfert);
-					ft.download(source, dest);
-				} else if (transfertDirection == LOCALTODISTANT) {
-					sizeToTransfert = localFile.length();
-					log.info("Upload file \"{}\" ({} bytes) to SSH host \"{}@{}:{}\"",
-					        localFile, sizeToTransfert, fileSystem.getUsername(), fileSystem.getHost(), dest);
-					ft.upload(source, dest);
+			observer.beforeTransfert(localFile, this, transfertDirection);
+
+			if (transfertDirection == DISTANTTOLOCAL) {
+				if (channel.stat(sftpAbsolutePath).getType() == Type.DIRECTORY) {
+					throw new UncheckedIOException(
+					        new IOException("Source file is a directory, can't copy from it"));
 				}
+				sizeToTransfert.set(channel.size(sftpAbsolutePath));
+				log.info("Download file from SSH host \"{}@{}:{}\" to \"{}\" ({} bytes)",
+				        fileSystem.getUsername(), fileSystem.getHost(), source, dest, sizeToTransfert);
+				ft.download(source, dest);
+			} else if (transfertDirection == LOCALTODISTANT) {
+				sizeToTransfert.set(localFile.length());
+				log.info("Upload file \"{}\" ({} bytes) to SSH host \"{}@{}:{}\"",
+				        localFile, sizeToTransfert, fileSystem.getUsername(), fileSystem.getHost(), dest);
+				ft.upload(source, dest);
+			}
+
+			observer.afterTransfert(localFile, this, transfertDirection,
+			        Duration.of(System.currentTimeMillis() - now, MILLIS));
+		} finally {
+			clientLock.unlock();
+		}
+	}
 
-				observer.afterTransfert(localFile, this, transfertDirection,
-				        Duration.of(System.currentTimeMillis() - now, MILLIS));
+	/**
+	 * Servers split (or refuse) the requests bigger than a channel packet, and short reads break the read-ahead.
+	 * @return the configured request size, limited to a channel packet
+	 */
+	private int getRequestSize(final SFTPClient channel, final RemoteFile remoteFile) {
+		final var subsystem = channel.getSFTPEngine().getSubsystem();
+		final var maxPacketSize = Math.min(subsystem.getLocalMaxPacketSize(), subsystem.getRemoteMaxPacketSize());
+		return Math.min(fileSystem.getRequestSize(), maxPacketSize - remoteFile.getOutgoingPacketOverhead());
+	}
+
+	/**
+	 * Copy by bufferSize steps (one copyCallback call by step), and write by requestSize: the SFTP requests size
+	 * don't change the callback steps.
+	 * @param bufferSize if 0 or less, requestSize will be used
+	 */
+	private static long pipelinedCopyStream(final InputStream inputStream,
+	                                        final OutputStream outputStream,
+	                                        final int bufferSize,
+	                                        final int requestSize,
+	                                        final SizedStoppableCopyCallback copyCallback) throws IOException {
+		final var buffer = new byte[bufferSize > 0 ? bufferSize : requestSize];
+		var totalSize = 0L;
+		while (true) {
+			var filled = 0;
+			int size;
+			while (filled < buffer.length && (size = inputStream.read(buffer, filled, buffer.length - filled)) > -1) {
+				filled += size;
+			}
+			if (filled == 0) {
+				return totalSize;
+			}
+			for (var pos = 0; pos < filled; pos += requestSize) {
+				outputStream.write(buffer, pos, Math.min(requestSize, filled - pos));
+			}
+			totalSize += filled;
+			if (copyCallback.apply(totalSize).equals(false) || filled < buffer.length) {
+				return totalSize;
 			}
-		} catch (final StoppedTransfertException e) {
-			log.info("Stop copy SSH file from \"{}\" to \"{}\", ({}/{} bytes)",
-			        source, dest, e.transferred, sizeToTransfert);
-		} catch (final IOException e) {
-			throw new UncheckedIOException(e);
 		}
 	}
 
+	/**
+	 * Read-ahead: see SFTPFileSystem.setPipelining
+	 * copyCallback is called by bufferSize steps, independently of the SFTP requests size.
+	 */
 	@Override
 	public long downloadAbstract(final OutputStream outputStream,
 	                             final int bufferSize,
 	                             final SizedStoppableCopyCallback copyCallback) {
-		final var dest = new LocalDestFileImpl(outputStream, copyCallback);
-		synchronized (sftpClient) {
+		return downloadAbstract(outputStream, bufferSize, copyCallback, 0);
+	}
+
+	/**
+	 * Read-ahead from position: see SFTPFileSystem.setPipelining
+	 * copyCallback is called by bufferSize steps, independently of the SFTP requests size.
+	 */
+	@Override
+	public long downloadAbstract(final OutputStream outputStream,
+	                             final int bufferSize,
+	                             final SizedStoppableCopyCallback copyCallback,
+	                             final long position) {
+		checkPosition(position);
+		final var maxOutstandingRequests = fileSystem.getMaxOutstandingRequests();
+		try {
+			return useClient(c -> {
+				try (var remoteFile = c.open(sftpAbsolutePath, EnumSet.of(OpenMode.READ));
+				     var inputStream = remoteFile.new ReadAheadRemoteFileInputStream(
+				             maxOutstandingRequests, position)) {
+					final var requestSize = getRequestSize(c, remoteFile);
+					log.debug("Download {} with {} outstanding requests of {} bytes",
+					        this, maxOutstandingRequests, requestSize);
+					return pipelinedCopyStream(inputStream, outputStream, bufferSize, requestSize, copyCallback);
+				}
+			});
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
 			try {
-				sftpClient.getFileTransfer().setTransferListener(dest);
-				sftpClient.get(sftpAbsolutePath, dest);
-			} catch (final StoppedTransfertException e) {
-				log.debug("Manually stop ssh download", e);
+				outputStream.close();
 			} catch (final IOException e) {
-				throw new UncheckedIOException(e);
-			} finally {
-				sftpClient.getFileTransfer().setTransferListener(null);
-				try {
-					outputStream.close();
-				} catch (final IOException e) {
-					log.error("Can't close provided outputStream after use", e);
-				}
+				log.error("Can't close provided outputStream after use", e);
 			}
 		}
-
-		return dest.getTotalSize();
-
 	}
 
+	/**
+	 * Write-behind: see SFTPFileSystem.setPipelining
+	 * copyCallback is called by bufferSize steps, independently of the SFTP requests size.
+	 */
 	@Override
 	public long uploadAbstract(final InputStream inputStream,
 	                           final int bufferSize,
 	                           final SizedStoppableCopyCallback copyCallback) {
-		final var source = new LocalSourceFileImpl(getName(), inputStream, copyCallback);
-		synchronized (sftpClient) {
-			try {
-				sftpClient.getFileTransfer().setTransferListener(source);
-				sftpClient.put(source, sftpAbsolutePath);
-			} catch (final StoppedTransfertException e) {
-				log.debug("Manually stop ssh upload", e);
-			} catch (final IOException e) {
-				throw new UncheckedIOException(e);
-			} finally {
-				sftpClient.getFileTransfer().setTransferListener(null);
-				try {
-					inputStream.close();
-				} catch (final IOException e) {
-					log.error("Can't close provided inputStream after use", e);
-				}
-			}
-		}
-
-		return source.getTotalSize();
+		return uploadAbstract(inputStream, bufferSize, copyCallback, 0);
 	}
 
-	private class TransferListenerImpl implements TransferListener {
-		private final SizedStoppableCopyCallback copyCallback;
-		private final AtomicLong totalSize;
-
-		TransferListenerImpl(final SizedStoppableCopyCallback copyCallback) {
-			this.copyCallback = copyCallback;
-			totalSize = new AtomicLong();
-		}
-
-		@Override
-		public Listener file(final String name, final long size) {
-			return transferred -> {
-				totalSize.set(transferred);
-				if (copyCallback.apply(transferred).equals(false)) {
-					throw new StoppedTransfertException(name, transferred);
-				}
-			};
-		}
-
-		@Override
-		public TransferListener directory(final String name) {
-			return this;
-		}
-
-		public long getTotalSize() {
-			return totalSize.get();
-		}
-	}
-
-	private class LocalSourceFileImpl extends TransferListenerImpl implements LocalSourceFile {
-
-		private final String name;
-		private final InputStream inputStream;
-
-		LocalSourceFileImpl(final String name,
-		                    final InputStream inputStream,
-		                    final SizedStoppableCopyCallback copyCallback) {
-			super(copyCallback);
-			this.name = name;
-			this.inputStream = inputStream;
-		}
-
-		@Override
-		public String getName() {
-			return name;
-		}
-
-		@Override
-		public InputStream getInputStream() throws IOException {
-			return inputStream;
-		}
-
-		@Override
-		public long getLength() {
-			return -1;
-		}
-
-		@Override
-		public int getPermissions() throws IOException {
-			return 777;
-		}
-
-		@Override
-		public boolean isFile() {
-			return true;
-		}
-
-		@Override
-		public boolean isDirectory() {
-			return false;
-		}
-
-		@Override
-		public Iterable<? extends LocalSourceFile> getChildren(final LocalFileFilter filter) throws IOException {
-			return List.of();
-		}
-
-		@Override
-		public boolean providesAtimeMtime() {
-			return false;
-		}
-
-		@Override
-		public long getLastAccessTime() throws IOException {
-			return System.currentTimeMillis() / 1000L;
-		}
-
-		@Override
-		public long getLastModifiedTime() throws IOException {
-			return System.currentTimeMillis() / 1000L;
-		}
-
+	@Override
+	public boolean canTruncateOnUpload() {
+		return true;
 	}
 
-	private class LocalDestFileImpl extends TransferListenerImpl implements LocalDestFile {
-
-		private final OutputStream outputStream;
-
-		LocalDestFileImpl(final OutputStream outputStream,
-		                  final SizedStoppableCopyCallback copyCallback) {
-			super(copyCallback);
-			this.outputStream = outputStream;
-		}
-
-		@Override
-		public OutputStream getOutputStream() throws IOException {
-			return outputStream;
-		}
-
-		@Override
-		public LocalDestFile getChild(final String name) {
-			throw new UnsupportedOperationException("Not avaliable");
-		}
-
-		@Override
-		public LocalDestFile getTargetFile(final String filename) throws IOException {
-			return this;
-		}
-
-		@Override
-		public LocalDestFile getTargetDirectory(final String dirname) throws IOException {
-			throw new UnsupportedOperationException("Not avaliable");
-		}
-
-		@Override
-		public void setPermissions(final int perms) throws IOException {
-			/**
-			 * Not managed
-			 */
-		}
-
-		@Override
-		public void setLastAccessedTime(final long t) throws IOException {
-			/**
-			 * Not managed
-			 */
-		}
-
-		@Override
-		public void setLastModifiedTime(final long t) throws IOException {
-			/**
-			 * Not managed
-			 */
+	/**
+	 * Write-behind from position: see SFTPFileSystem.setPipelining
+	 * copyCallback is called by bufferSize steps, independently of the SFTP requests size.
+	 * If position > 0, the file is opened without truncate, and cut to position before the write.
+	 */
+	@Override
+	public long uploadAbstract(final InputStream inputStream,
+	                           final int bufferSize,
+	                           final SizedStoppableCopyCallback copyCallback,
+	                           final long position) {
+		checkPosition(position);
+		knownAttributes = null;
+		final var maxOutstandingRequests = fileSystem.getMaxOutstandingRequests();
+		final var openMode = position == 0 ? EnumSet.of(OpenMode.WRITE, OpenMode.CREAT, OpenMode.TRUNC)
+		                                   : EnumSet.of(OpenMode.WRITE);
+		try {
+			return useClient(c -> {
+				try (var remoteFile = c.open(sftpAbsolutePath, openMode);
+				     var outputStream = remoteFile.new RemoteFileOutputStream(position, maxOutstandingRequests)) {
+					if (position > 0) {
+						final var size = remoteFile.length();
+						if (size < position) {
+							throw new IOException("Can't resume upload to " + sftpAbsolutePath + " from " + position
+							                      + ", actual size is " + size);
+						}
+						remoteFile.setLength(position);
+					}
+					final var requestSize = getRequestSize(c, remoteFile);
+					log.debug("Upload {} with {} outstanding requests of {} bytes",
+					        this, maxOutstandingRequests, requestSize);
+					return pipelinedCopyStream(inputStream, outputStream, bufferSize, requestSize, copyCallback);
+				}
+			});
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			try {
+				inputStream.close();
+			} catch (final IOException e) {
+				log.error("Can't close provided inputStream after use", e);
+			}
 		}
-
 	}
 
 }
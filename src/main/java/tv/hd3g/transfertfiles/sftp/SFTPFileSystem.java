@@ -23,24 +23,43 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.net.InetAddress;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Stream;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import net.schmizz.concurrent.Promise;
 import net.schmizz.sshj.SSHClient;
+import net.schmizz.sshj.sftp.FileAttributes;
+import net.schmizz.sshj.sftp.PacketType;
+import net.schmizz.sshj.sftp.Response;
+import net.schmizz.sshj.sftp.Response.StatusCode;
 import net.schmizz.sshj.sftp.SFTPClient;
+import net.schmizz.sshj.sftp.SFTPException;
 import net.schmizz.sshj.userauth.keyprovider.KeyProvider;
+import tv.hd3g.transfertfiles.CachedFileAttributes;
 import tv.hd3g.transfertfiles.CommonAbstractFileSystem;
+import tv.hd3g.transfertfiles.ConnectionPool;
 
 public class SFTPFileSystem extends CommonAbstractFileSystem<SFTPFile> {
 	private static final Logger log = LogManager.getLogger();
+	public static final int DEFAULT_MAX_OUTSTANDING_REQUESTS = 32;
+	public static final int DEFAULT_REQUEST_SIZE = 32 * 1024;
 
 	private final SSHClient client;
 	private final InetAddress host;
@@ -53,6 +72,14 @@ public class SFTPFileSystem extends CommonAbstractFileSystem<SFTPFile> {
 	private SFTPClient sftpClient;
 	private boolean statefulSFTPClient;
 	private volatile boolean wasConnected;
+	private int poolMinSize;
+	private int poolMaxSize;
+	private Duration poolBorrowTimeout;
+	private Duration poolIdleTimeout;
+	private volatile ConnectionPool<SFTPClient> channelPool;
+	private volatile int maxOutstandingRequests;
+	private volatile int requestSize;
+	private final Map<SFTPClient, ReentrantLock> clientLocks;
 
 	public SFTPFileSystem(final InetAddress host, final int port, final String username, final String basePath) {
 		this(host, port, username, basePath, false);
@@ -74,6 +101,9 @@ public class SFTPFileSystem extends CommonAbstractFileSystem<SFTPFile> {
 		}
 		authKeys = new HashSet<>();
 		this.absoluteBasePath = absoluteBasePath;
+		maxOutstandingRequests = DEFAULT_MAX_OUTSTANDING_REQUESTS;
+		requestSize = DEFAULT_REQUEST_SIZE;
+		clientLocks = Collections.synchronizedMap(new WeakHashMap<>());
 		log.debug("Init ssh client to {}", this);
 
 		final var defaultKhFile = System.getProperty("user.home")
@@ -217,11 +247,41 @@ public class SFTPFileSystem extends CommonAbstractFileSystem<SFTPFile> {
 			}
 			log.info("Connected to {}", this);
 			createANewSFTPClient();
+			if (poolMaxSize > 0) {
+				channelPool = new ConnectionPool<>("SFTP channel", this::newSFTPClient,
+				        c -> c.getSFTPEngine().getSubsystem().isOpen() && c.canonicalize(".") != null,
+				        SFTPClient::close,
+				        poolMinSize, poolMaxSize, poolBorrowTimeout, poolIdleTimeout);
+			}
 		} catch (final IOException e) {
 			throw new UncheckedIOException(e);
 		}
 	}
 
+	/**
+	 * SFTPFile downloadAbstract/uploadAbstract send several READ/WRITE requests before waiting the responses, like
+	 * a TCP window: the throughput will be near maxOutstandingRequests * requestSize / RTT.
+	 * @param maxOutstandingRequests 1 for no pipelining
+	 * @param requestSize in bytes, by READ/WRITE request. It will be limited by the channel max packet size.
+	 */
+	public void setPipelining(final int maxOutstandingRequests, final int requestSize) {
+		if (maxOutstandingRequests < 1) {
+			throw new IllegalArgumentException("Invalid maxOutstandingRequests=" + maxOutstandingRequests);
+		} else if (requestSize < 1024) {
+			throw new IllegalArgumentException("Invalid requestSize=" + requestSize);
+		}
+		this.maxOutstandingRequests = maxOutstandingRequests;
+		this.requestSize = requestSize;
+	}
+
+	public int getMaxOutstandingRequests() {
+		return maxOutstandingRequests;
+	}
+
+	public int getRequestSize() {
+		return requestSize;
+	}
+
 	public boolean isStatefulSFTPClient() {
 		return statefulSFTPClient;
 	}
@@ -231,27 +291,105 @@ public class SFTPFileSystem extends CommonAbstractFileSystem<SFTPFile> {
 	}
 
 	/**
-	 * Needed for simultaneous transferts:
+	 * Needed for simultaneous transferts, if not in pooled mode (see setChannelPool):
 	 * a = getFromPath() + createANewSFTPClient() + b = getFromPath()
 	 * &gt; a and b can do actions in same time.
 	 */
 	public synchronized void createANewSFTPClient() {
 		try {
-			if (statefulSFTPClient) {
-				log.debug("Create a new stateful SFTP client for {}", this);
-				sftpClient = client.newStatefulSFTPClient();
-			} else {
-				log.debug("Create a new SFTP client for {}", this);
-				sftpClient = client.newSFTPClient();
-			}
-			sftpClient.getFileTransfer().setPreserveAttributes(false);
+			sftpClient = newSFTPClient();
 		} catch (final IOException e) {
 			throw new UncheckedIOException(e);
 		}
 	}
 
+	private SFTPClient newSFTPClient() throws IOException {
+		final SFTPClient newClient;
+		if (statefulSFTPClient) {
+			log.debug("Create a new stateful SFTP client for {}", this);
+			newClient = client.newStatefulSFTPClient();
+		} else {
+			log.debug("Create a new SFTP client for {}", this);
+			newClient = client.newSFTPClient();
+		}
+		newClient.getFileTransfer().setPreserveAttributes(false);
+		return newClient;
+	}
+
+	/**
+	 * Pooled mode: SFTPFile operations will run on a borrowed SFTP channel (subsystem), opened on the same SSH
+	 * connection, so several files can be listed and transferred in parallel without createANewSFTPClient.
+	 * Apply on connect. Idle channels are checked with a REALPATH request before borrow, only if they are idle since
+	 * more than ConnectionPool.DEFAULT_VALIDATION_IDLE_TIME.
+	 * @param minSize idle channels keeped, even after idleTimeout
+	 * @param maxSize max opened channels (not counting getSFTPClient), 0 for disable the pool
+	 * @param borrowTimeout max wait time for a free channel
+	 * @param idleTimeout after this time, an unused channel will be closed
+	 */
+	public synchronized void setChannelPool(final int minSize,
+	                                        final int maxSize,
+	                                        final Duration borrowTimeout,
+	                                        final Duration idleTimeout) {
+		if (maxSize < 0 || minSize < 0 || minSize > maxSize) {
+			throw new IllegalArgumentException("Invalid pool sizes min=" + minSize + ", max=" + maxSize);
+		}
+		poolMinSize = minSize;
+		poolMaxSize = maxSize;
+		poolBorrowTimeout = Objects.requireNonNull(borrowTimeout, "borrowTimeout");
+		poolIdleTimeout = Objects.requireNonNull(idleTimeout, "idleTimeout");
+	}
+
+	/**
+	 * @return null if not in pooled mode, or not connected
+	 */
+	ConnectionPool<SFTPClient> getChannelPool() {
+		return channelPool;
+	}
+
+	/**
+	 * @return the pool max size in pooled mode, else 1
+	 */
+	@Override
+	public int getMaxParallelOperations() {
+		final var pool = channelPool;
+		if (pool == null) {
+			return 1;
+		}
+		return pool.getMaxSize();
+	}
+
+	/**
+	 * Run an operation on a borrowed pooled channel, or on defaultClient if not in pooled mode.
+	 * A closed pooled channel after the operation will not be recycled.
+	 */
+	<T> T useClient(final SFTPClient defaultClient, final SFTPClientOperation<T> operation) throws IOException {
+		final var pool = channelPool;
+		if (pool == null) {
+			return operation.apply(defaultClient);
+		}
+		final var pooledClient = pool.borrow();
+		try {
+			return operation.apply(pooledClient);
+		} finally {
+			if (pooledClient.getSFTPEngine().getSubsystem().isOpen()) {
+				pool.giveBack(pooledClient);
+			} else {
+				pool.discard(pooledClient);
+			}
+		}
+	}
+
+	@FunctionalInterface
+	interface SFTPClientOperation<T> {
+		T apply(SFTPClient sftpClient) throws IOException;
+	}
+
 	@Override
 	public synchronized void close() {
+		if (channelPool != null) {
+			channelPool.close();
+			channelPool = null;
+		}
 		try {
 			if (client.isConnected()) {
 				log.info("Manually disconnect client for {}", this);
@@ -264,7 +402,22 @@ public class SFTPFileSystem extends CommonAbstractFileSystem<SFTPFile> {
 	}
 
 	@Override
-	public synchronized SFTPFile getFromPath(final String path) {
+	public SFTPFile getFromPath(final String path) {
+		return getFromPath(path, (FileAttributes) null);
+	}
+
+	/**
+	 * A lock, not a monitor: it's held during a whole file transfert (blocking I/O).
+	 * @return the same lock for the same channel
+	 */
+	ReentrantLock getClientLock(final SFTPClient channel) {
+		return clientLocks.computeIfAbsent(channel, c -> new ReentrantLock());
+	}
+
+	/**
+	 * @param knownAttributes can be null
+	 */
+	synchronized SFTPFile getFromPath(final String path, final FileAttributes knownAttributes) {
 		if (isAvaliable() == false) {
 			if (wasConnected == false) {
 				throw new UncheckedIOException(
@@ -276,7 +429,56 @@ public class SFTPFileSystem extends CommonAbstractFileSystem<SFTPFile> {
 		}
 		final var aPath = getPathFromRelative(path);
 		log.trace("Create new SFTPFile to {}/{}", this, aPath);
-		return new SFTPFile(this, sftpClient, path, aPath);
+		return new SFTPFile(this, sftpClient, path, aPath, knownAttributes);
+	}
+
+	/**
+	 * Bulk stat: all the STAT requests are sent before reading the responses, in one channel, with max
+	 * getMaxOutstandingRequests requests in flight (see setPipelining), instead of one round-trip by path.
+	 * @param paths relative paths
+	 * @return in the paths order. Related SFTPFiles carry the stat attributes (see SFTPFile.hasKnownAttributes).
+	 *         CachedFileAttributes.notExists for the missing files.
+	 */
+	public List<CachedFileAttributes> stat(final Collection<String> paths) {
+		Objects.requireNonNull(paths, "\"paths\" can't to be null");
+		final var files = paths.stream()
+		        .map(this::getFromPath)
+		        .collect(toUnmodifiableList());
+		try {
+			return useClient(sftpClient, c -> stat(c, files));
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private List<CachedFileAttributes> stat(final SFTPClient channel, final List<SFTPFile> files) throws IOException {
+		final var engine = channel.getSFTPEngine();
+		final var charset = engine.getSubsystem().getRemoteCharset();
+		final var result = new ArrayList<CachedFileAttributes>(files.size());
+		final var pendingResponses = new ArrayDeque<Promise<Response, SFTPException>>();
+		var sended = 0;
+		while (result.size() < files.size()) {
+			while (sended < files.size() && pendingResponses.size() < maxOutstandingRequests) {
+				final var request = engine.newRequest(PacketType.STAT)
+				        .putString(files.get(sended).getSFTPAbsolutePath(), charset);
+				pendingResponses.add(engine.request(request));
+				sended++;
+			}
+			final var file = files.get(result.size());
+			final var response = pendingResponses.poll().retrieve(engine.getTimeoutMs(), TimeUnit.MILLISECONDS);
+			try {
+				final var attributes = response.ensurePacketTypeIs(PacketType.ATTRS).readFileAttributes();
+				result.add(SFTPFile.makeCachedFileAttributesFromStat(
+				        getFromPath(file.getPath(), attributes), attributes));
+			} catch (final SFTPException e) {
+				if (e.getStatusCode() != StatusCode.NO_SUCH_FILE) {
+					throw e;
+				}
+				result.add(CachedFileAttributes.notExists(file));
+			}
+		}
+		log.debug("Bulk stat {} files on {}", files.size(), this);
+		return result;
 	}
 
 	public boolean isAbsoluteBasePath() {
@@ -16,6 +16,7 @@
  */
 package tv.hd3g.transfertfiles;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
@@ -26,10 +27,16 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static tv.hd3g.transfertfiles.AbstractFile.checkIsSameFileSystem;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
@@ -91,9 +98,35 @@ class AbstractFileSpecificIOTest {
 		assertEquals(1, source.outputStreams.size());
 		assertEquals(1, source.copyCallbacks.size());
 
-		verify(destination, times(2)).getFileSystem();
+		verify(destination, times(3)).getFileSystem();
 		verify(fsSource, times(1)).getIOBufferSize();
 		verify(fsDest, times(1)).getIOBufferSize();
+		verify(fsSource, times(1)).getBandwidthLimiter();
+		verify(fsDest, times(1)).getBandwidthLimiter();
+		verify(observer, times(1)).beforeTransfert(eq(source), eq(destination));
+		verify(observer, times(1)).afterTransfert(eq(source), eq(destination),
+		        eq(source.copiedFrom), eq(0L), any(Duration.class));
+	}
+
+	@Test
+	void testCopyDefault_bandwidthLimiter() throws IOException {
+		final var limiter = new BandwidthLimiter(1_000_000);
+		when(fsSource.getBandwidthLimiter()).thenReturn(limiter);
+		when(fsDest.getBandwidthLimiter()).thenReturn(limiter);
+
+		source.copyAbstractToAbstract(destination, observer);
+		try (var outputStream = source.outputStreams.get(0)) {
+			outputStream.write(new byte[1000]);
+		}
+		assertEquals(1000, limiter.getAcquiredBytes());
+
+		verify(destination, times(1)).uploadAbstract(any(InputStream.class), eq(8192),
+		        any(SizedStoppableCopyCallback.class));
+		verify(destination, times(3)).getFileSystem();
+		verify(fsSource, times(1)).getIOBufferSize();
+		verify(fsDest, times(1)).getIOBufferSize();
+		verify(fsSource, times(1)).getBandwidthLimiter();
+		verify(fsDest, times(1)).getBandwidthLimiter();
 		verify(observer, times(1)).beforeTransfert(eq(source), eq(destination));
 		verify(observer, times(1)).afterTransfert(eq(source), eq(destination),
 		        eq(source.copiedFrom), eq(0L), any(Duration.class));
@@ -118,6 +151,68 @@ class AbstractFileSpecificIOTest {
 		        eq(source.copiedFrom), eq(0L), any(Duration.class));
 	}
 
+	@Test
+	void testCopyDefault_executor() {
+		final var executed = new ArrayList<Runnable>();
+		source.copyAbstractToAbstract(destination, observer, r -> {
+			executed.add(r);
+			r.run();
+		});
+		assertEquals(1, executed.size());
+		verify(destination, times(1)).uploadAbstract(any(InputStream.class), eq(8192),
+		        any(SizedStoppableCopyCallback.class));
+		assertEquals(1, source.outputStreams.size());
+
+		verify(destination, times(3)).getFileSystem();
+		verify(fsSource, times(1)).getIOBufferSize();
+		verify(fsDest, times(1)).getIOBufferSize();
+		verify(fsSource, times(1)).getBandwidthLimiter();
+		verify(fsDest, times(1)).getBandwidthLimiter();
+		verify(observer, times(1)).beforeTransfert(eq(source), eq(destination));
+		verify(observer, times(1)).afterTransfert(eq(source), eq(destination),
+		        eq(source.copiedFrom), eq(0L), any(Duration.class));
+	}
+
+	@Test
+	void testSpecific_nullExecutor() {
+		final var exchange = new DataExchangeInOutStream();
+		assertThrows(NullPointerException.class,
+		        () -> source.copyAbstractToAbstract(destination, 8192, observer, exchange, null));
+	}
+
+	@Test
+	void testDownloadAbstract_channel() throws IOException {
+		final var outputStream = new ByteArrayOutputStream();
+		final var channel = Channels.newChannel(outputStream);
+		final SizedStoppableCopyCallback copyCallback = s -> true;
+
+		assertEquals(source.copiedFrom, source.downloadAbstract(channel, 8192, copyCallback));
+		assertEquals(1, source.outputStreams.size());
+		assertEquals(copyCallback, source.copyCallbacks.get(0));
+
+		final var datas = new byte[100];
+		random.nextBytes(datas);
+		source.outputStreams.get(0).write(datas);
+		assertArrayEquals(datas, outputStream.toByteArray());
+		assertThrows(NullPointerException.class,
+		        () -> source.downloadAbstract((WritableByteChannel) null, 8192, copyCallback));
+	}
+
+	@Test
+	void testUploadAbstract_channel() throws IOException {
+		final var datas = new byte[100];
+		random.nextBytes(datas);
+		final var channel = Channels.newChannel(new ByteArrayInputStream(datas));
+		final SizedStoppableCopyCallback copyCallback = s -> true;
+
+		assertEquals(-1, source.uploadAbstract(channel, 8192, copyCallback));
+		assertEquals(1, source.inputStreams.size());
+		assertEquals(copyCallback, source.copyCallbacks.get(0));
+		assertArrayEquals(datas, source.inputStreams.get(0).readAllBytes());
+		assertThrows(NullPointerException.class,
+		        () -> source.uploadAbstract((ReadableByteChannel) null, 8192, copyCallback));
+	}
+
 	@Test
 	void testCheckIsSameFileSystem_notSame() {
 		checkIsSameFileSystem(source, destination);
@@ -0,0 +1,124 @@
+/*
+ * This file is part of transfertfiles.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * Copyright (C) hdsdi3g for hd3g.tv 2021
+ *
+ */
+package tv.hd3g.transfertfiles;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+class BandwidthLimiterTest {
+
+	static long acquireDuration(final BandwidthLimiter limiter, final long bytes) throws InterruptedIOException {
+		final var start = System.nanoTime();
+		limiter.acquire(bytes);
+		return NANOSECONDS.toMillis(System.nanoTime() - start);
+	}
+
+	@Test
+	void testInvalid() {
+		assertThrows(IllegalArgumentException.class, () -> new BandwidthLimiter(-1));
+		assertThrows(IllegalArgumentException.class, () -> new BandwidthLimiter(1000, -1));
+		final var limiter = new BandwidthLimiter(1000);
+		assertThrows(IllegalArgumentException.class, () -> limiter.acquire(-1));
+	}
+
+	@Test
+	void testNoLimit() throws InterruptedIOException {
+		final var limiter = new BandwidthLimiter(0);
+		assertTrue(acquireDuration(limiter, Long.MAX_VALUE / 2) < 100);
+		assertEquals(Long.MAX_VALUE / 2, limiter.getAcquiredBytes());
+	}
+
+	@Test
+	void testBurstSize() {
+		assertEquals(BandwidthLimiter.MIN_BURST_SIZE, new BandwidthLimiter(1000).getBurstSize());
+		assertEquals(100_000, new BandwidthLimiter(1_000_000).getBurstSize());
+		assertEquals(1234, new BandwidthLimiter(1_000_000, 1234).getBurstSize());
+	}
+
+	@Test
+	void testAcquire() throws InterruptedIOException {
+		final var limiter = new BandwidthLimiter(1_000_000);
+		/**
+		 * First burst is free, next 300 KB are at 1 MB/sec
+		 */
+		final var duration = acquireDuration(limiter, limiter.getBurstSize() + 300_000);
+		assertTrue(duration >= 280 && duration < 1000, "Duration: " + duration);
+		assertEquals(limiter.getBurstSize() + 300_000, limiter.getAcquiredBytes());
+		assertTrue(limiter.getWaitDuration() > MILLISECONDS.toNanos(280));
+	}
+
+	@Test
+	void testSetRate() throws Exception {
+		final var limiter = new BandwidthLimiter(10_000);
+		final var waiter = CompletableFuture.supplyAsync(() -> {
+			try {
+				return acquireDuration(limiter, 1_000_000);
+			} catch (final InterruptedIOException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		Thread.sleep(100);
+		limiter.setRate(10_000_000);
+		assertEquals(10_000_000, limiter.getRate());
+		assertTrue(waiter.get() < 1000);
+	}
+
+	@Test
+	void testAcquire_keepWaiting() throws InterruptedIOException {
+		final var limiter = new BandwidthLimiter(1000);
+		assertFalse(limiter.acquire(100_000, () -> false));
+		assertTrue(limiter.acquire(10, () -> true));
+	}
+
+	@Test
+	void testFairShare() throws Exception {
+		final var limiter = new BandwidthLimiter(2_000_000, 10_000);
+		final var acquiredA = new AtomicLong();
+		final var acquiredB = new AtomicLong();
+		final var end = System.nanoTime() + MILLISECONDS.toNanos(500);
+		final var a = CompletableFuture.runAsync(() -> loop(limiter, acquiredA, end));
+		final var b = CompletableFuture.runAsync(() -> loop(limiter, acquiredB, end));
+		a.get();
+		b.get();
+		final var total = acquiredA.get() + acquiredB.get();
+		assertTrue(total < 1_500_000, "Total: " + total);
+		assertTrue(Math.abs(acquiredA.get() - acquiredB.get()) < total / 4,
+		        "A: " + acquiredA.get() + ", B: " + acquiredB.get());
+	}
+
+	private static void loop(final BandwidthLimiter limiter, final AtomicLong acquired, final long end) {
+		try {
+			while (System.nanoTime() < end) {
+				limiter.acquire(10_000);
+				acquired.addAndGet(10_000);
+			}
+		} catch (final InterruptedIOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
@@ -0,0 +1,214 @@
+/*
+ * This file is part of transfertfiles.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * Copyright (C) hdsdi3g for hd3g.tv 2021
+ *
+ */
+package tv.hd3g.transfertfiles;
+
+import static java.util.stream.Collectors.toUnmodifiableList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static tv.hd3g.transfertfiles.BufferPool.DEFAULT_MAX_ITEMS_BY_CLASS;
+import static tv.hd3g.transfertfiles.BufferPool.DEFAULT_MAX_RETAINED_BYTES;
+import static tv.hd3g.transfertfiles.BufferPool.MAX_POOLED_SIZE;
+import static tv.hd3g.transfertfiles.BufferPool.MIN_POOLED_SIZE;
+
+import java.time.Duration;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class BufferPoolTest {
+	static Random random;
+
+	@BeforeAll
+	static void initAll() {
+		random = new Random();
+	}
+
+	BufferPool pool;
+	boolean direct;
+
+	@BeforeEach
+	void init() throws Exception {
+		direct = random.nextBoolean();
+		pool = new BufferPool(direct, 2);
+	}
+
+	@AfterEach
+	void ends() {
+		assertEquals(0, pool.getBorrowedCount(), "Leak in pool");
+	}
+
+	@Test
+	void testInvalid() {
+		assertThrows(IllegalArgumentException.class, () -> new BufferPool(false, -1));
+		assertThrows(IllegalArgumentException.class, () -> new BufferPool(false, 1, -1));
+		assertThrows(IllegalArgumentException.class, () -> pool.trim(Duration.ofSeconds(-1)));
+		assertThrows(NullPointerException.class, () -> pool.trim(null));
+		assertThrows(IllegalArgumentException.class, () -> BufferPool.getPooledSize(-1));
+	}
+
+	@Test
+	void testGetPooledSize() {
+		assertEquals(MIN_POOLED_SIZE, BufferPool.getPooledSize(0));
+		assertEquals(MIN_POOLED_SIZE, BufferPool.getPooledSize(1));
+		assertEquals(MIN_POOLED_SIZE, BufferPool.getPooledSize(MIN_POOLED_SIZE));
+		assertEquals(MIN_POOLED_SIZE * 2, BufferPool.getPooledSize(MIN_POOLED_SIZE + 1));
+		assertEquals(MAX_POOLED_SIZE, BufferPool.getPooledSize(MAX_POOLED_SIZE));
+		assertEquals(MAX_POOLED_SIZE + 1, BufferPool.getPooledSize(MAX_POOLED_SIZE + 1));
+	}
+
+	@Test
+	void testArray() {
+		final var size = random.nextInt(MIN_POOLED_SIZE * 10) + 1;
+		final var array = pool.borrowArray(size);
+		assertTrue(array.length >= size);
+		assertEquals(1, pool.getBorrowedCount());
+		assertEquals(1, pool.getAllocatedCount());
+		pool.releaseArray(array);
+		assertEquals(0, pool.getBorrowedCount());
+
+		assertSame(array, pool.borrowArray(size));
+		assertEquals(1, pool.getReusedCount());
+		assertEquals(1, pool.getAllocatedCount());
+		assertNotSame(array, pool.borrowArray(size));
+		assertEquals(2, pool.getBorrowedCount());
+		assertEquals(2, pool.getAllocatedCount());
+		pool.releaseArray(array);
+		pool.releaseArray(array);
+	}
+
+	@Test
+	void testBuffer() {
+		final var size = random.nextInt(MIN_POOLED_SIZE * 10) + 1;
+		final var buffer = pool.borrowBuffer(size);
+		assertEquals(direct, buffer.isDirect());
+		assertEquals(direct, pool.isDirect());
+		assertTrue(buffer.capacity() >= size);
+		assertEquals(0, buffer.position());
+		buffer.put((byte) 1);
+		pool.releaseBuffer(buffer);
+
+		final var reused = pool.borrowBuffer(size);
+		assertSame(buffer, reused);
+		assertEquals(0, reused.position());
+		assertEquals(reused.capacity(), reused.limit());
+		assertEquals(1, pool.getReusedCount());
+		pool.releaseBuffer(reused);
+	}
+
+	@Test
+	void testMaxItemsByClass() {
+		final var a0 = pool.borrowArray(1);
+		final var a1 = pool.borrowArray(1);
+		final var a2 = pool.borrowArray(1);
+		pool.releaseArray(a0);
+		pool.releaseArray(a1);
+		pool.releaseArray(a2);
+		assertSame(a1, pool.borrowArray(1));
+		assertSame(a0, pool.borrowArray(1));
+		assertFalse(a2 == pool.borrowArray(1));
+		assertEquals(3, pool.getBorrowedCount());
+		pool.releaseArray(a0);
+		pool.releaseArray(a1);
+		pool.releaseArray(a2);
+	}
+
+	@Test
+	void testNotPooled() {
+		final var array = new byte[MIN_POOLED_SIZE + 1];
+		pool.borrowArray(1);
+		pool.releaseArray(array);
+		assertNotSame(array, pool.borrowArray(MIN_POOLED_SIZE + 1));
+		pool.releaseArray(array);
+	}
+
+	@Test
+	void testMaxRetainedBytes() {
+		pool = new BufferPool(direct, 16, MIN_POOLED_SIZE * 3L);
+		assertEquals(MIN_POOLED_SIZE * 3L, pool.getMaxRetainedBytes());
+		final var a0 = pool.borrowArray(MIN_POOLED_SIZE * 2);
+		final var a1 = pool.borrowArray(MIN_POOLED_SIZE * 2);
+		final var b0 = pool.borrowBuffer(1);
+		final var b1 = pool.borrowBuffer(1);
+		pool.releaseArray(a0);
+		pool.releaseArray(a1);
+		pool.releaseBuffer(b0);
+		pool.releaseBuffer(b1);
+		assertEquals(MIN_POOLED_SIZE * 3L, pool.getRetainedBytes());
+
+		assertSame(b0, pool.borrowBuffer(1));
+		assertNotSame(b1, pool.borrowBuffer(1));
+		assertSame(a0, pool.borrowArray(MIN_POOLED_SIZE * 2));
+		assertNotSame(a1, pool.borrowArray(MIN_POOLED_SIZE * 2));
+		assertEquals(0, pool.getRetainedBytes());
+		pool.releaseArray(a0);
+		pool.releaseArray(a1);
+		pool.releaseBuffer(b0);
+		pool.releaseBuffer(b1);
+		assertEquals(MIN_POOLED_SIZE * 3L, pool.getRetainedBytes());
+	}
+
+	@Test
+	void testDefaultRetention() {
+		pool = new BufferPool(direct, DEFAULT_MAX_ITEMS_BY_CLASS);
+		final var count = (int) (DEFAULT_MAX_RETAINED_BYTES / MAX_POOLED_SIZE) + 2;
+		final var arrays = IntStream.range(0, count)
+		        .mapToObj(i -> pool.borrowArray(MAX_POOLED_SIZE))
+		        .collect(toUnmodifiableList());
+		arrays.forEach(pool::releaseArray);
+		assertEquals(DEFAULT_MAX_RETAINED_BYTES, pool.getRetainedBytes());
+
+		final var big = pool.borrowArray(MAX_POOLED_SIZE + 1);
+		pool.releaseArray(big);
+		assertEquals(DEFAULT_MAX_RETAINED_BYTES, pool.getRetainedBytes());
+	}
+
+	@Test
+	void testTrim() {
+		final var array = pool.borrowArray(1);
+		final var buffer = pool.borrowBuffer(MIN_POOLED_SIZE * 2);
+		pool.releaseArray(array);
+		pool.releaseBuffer(buffer);
+		assertEquals(MIN_POOLED_SIZE * 3L, pool.getRetainedBytes());
+
+		assertEquals(0, pool.trim(Duration.ofHours(1)));
+		assertEquals(MIN_POOLED_SIZE * 3L, pool.getRetainedBytes());
+
+		assertEquals(MIN_POOLED_SIZE * 3L, pool.trim());
+		assertEquals(0, pool.getRetainedBytes());
+		assertNotSame(array, pool.borrowArray(1));
+		assertEquals(0, pool.trim());
+		pool.releaseArray(array);
+	}
+
+	@Test
+	void testGetDefault() {
+		assertNotNull(BufferPool.getDefault());
+		assertSame(BufferPool.getDefault(), BufferPool.getDefault());
+		assertFalse(BufferPool.getDefault().isDirect());
+		assertNotNull(pool.toString());
+	}
+
+}
@@ -0,0 +1,187 @@
+/*
+ * This file is part of transfertfiles.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * Copyright (C) hdsdi3g for hd3g.tv 2021
+ *
+ */
+package tv.hd3g.transfertfiles;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class BufferVaultSPSCTest {
+	static Random random;
+
+	@BeforeAll
+	static void initAll() {
+		random = new Random();
+	}
+
+	BufferVault vault;
+	byte[] inputArray;
+
+	@BeforeEach
+	void init() throws Exception {
+		vault = BufferVault.createSPSC(0);
+		inputArray = new byte[random.nextInt(100) + 100];
+		random.nextBytes(inputArray);
+	}
+
+	@Test
+	void testWriteRead() throws IOException {
+		assertEquals(0, vault.getSize());
+		vault.write(inputArray, 0, 10);
+		vault.write(ByteBuffer.wrap(inputArray, 10, 10));
+		vault.write(new ByteArrayInputStream(inputArray, 20, inputArray.length - 20), 7);
+		assertEquals(inputArray.length, vault.getSize());
+		assertTrue(Arrays.equals(inputArray, vault.readAll()));
+		assertTrue(Arrays.equals(inputArray, vault.readAllToByteBuffer().array()));
+		assertEquals(inputArray[5] & 0xFF, vault.read(5));
+		assertEquals(-1, vault.read(inputArray.length));
+		assertThrows(IndexOutOfBoundsException.class, () -> vault.read(-1));
+
+		final var b = new byte[10];
+		assertEquals(10, vault.read(b, 3, 0, 10));
+		assertTrue(Arrays.equals(Arrays.copyOfRange(inputArray, 3, 13), b));
+		assertEquals(-1, vault.read(b, inputArray.length, 0, 10));
+
+		final var outStream = new ByteArrayOutputStream();
+		vault.read(outStream);
+		assertTrue(Arrays.equals(inputArray, outStream.toByteArray()));
+
+		final var target = ByteBuffer.allocate(inputArray.length);
+		vault.read(target);
+		assertTrue(Arrays.equals(inputArray, target.array()));
+	}
+
+	@Test
+	void testViews() {
+		vault.write(inputArray);
+		final var view = vault.asReadOnlyByteBuffer();
+		assertTrue(view.isReadOnly());
+		assertEquals(inputArray.length, view.remaining());
+		final var slice = vault.slice(10, 20);
+		assertEquals(20, slice.remaining());
+		assertEquals(inputArray[10], slice.get());
+		assertThrows(IndexOutOfBoundsException.class, () -> vault.slice(10, inputArray.length));
+	}
+
+	@Test
+	void testCopyEqualsHashCode() {
+		vault.write(inputArray);
+		final var copy = vault.copy();
+		assertEquals(vault, copy);
+		assertEquals(vault.hashCode(), copy.hashCode());
+		assertEquals(vault, BufferVault.wrap(inputArray));
+		assertTrue(vault.isSPSC());
+		assertTrue(copy.isSPSC());
+		assertFalse(BufferVault.wrap(inputArray).isSPSC());
+		assertFalse(vault.equals(null)); // NOSONAR S5785
+	}
+
+	@Test
+	void testClearCompactAndAppend() {
+		vault.write(inputArray);
+		vault.compactAndAppend(10, BufferVault.wrap(inputArray));
+		assertEquals(inputArray.length * 2 - 10, vault.getSize());
+		assertEquals(inputArray[10], (byte) vault.read(0));
+
+		vault.clear();
+		assertEquals(0, vault.getSize());
+		vault.compactAndAppend(10, BufferVault.wrap(inputArray));
+		assertTrue(Arrays.equals(inputArray, vault.readAll()));
+		assertThrows(IllegalArgumentException.class, () -> vault.compactAndAppend(-1, vault));
+	}
+
+	@Test
+	void testIterator() {
+		vault.write(inputArray);
+		final var itr = vault.iterator(inputArray.length / 2 + 1);
+		assertTrue(itr.hasNext());
+		assertEquals(inputArray.length / 2 + 1, itr.next().length);
+		assertTrue(itr.hasNext());
+		itr.next();
+		assertFalse(itr.hasNext());
+		assertThrows(NoSuchElementException.class, itr::next);
+
+		assertEquals(inputArray.length, vault.stream(1).count());
+		vault.write(inputArray);
+		assertThrows(IllegalStateException.class, itr::hasNext);
+	}
+
+	@Test
+	void testGrowth() {
+		vault.setMaxGrowSize(10);
+		assertEquals(10, vault.getMaxGrowSize());
+		vault.write(new byte[20]);
+		vault.write(new byte[1]);
+		assertEquals(30, vault.getCapacity());
+		assertThrows(IllegalArgumentException.class, () -> vault.setMaxGrowSize(0));
+		assertThrows(IllegalArgumentException.class, () -> vault.ensureBufferSize(-1));
+	}
+
+	@Test
+	void testPool() {
+		final var pool = new BufferPool(false, 2);
+		vault = BufferVault.createSPSC(10, pool);
+		vault.write(inputArray);
+		vault.ensureBufferSize(BufferPool.MIN_POOLED_SIZE * 4);
+		assertTrue(Arrays.equals(inputArray, vault.readAll()));
+		assertEquals(2, pool.getBorrowedCount());
+
+		vault.release();
+		assertEquals(0, vault.getSize());
+		assertEquals(0, pool.getBorrowedCount());
+		vault.write(inputArray);
+		assertTrue(Arrays.equals(inputArray, vault.readAll()));
+	}
+
+	@Test
+	void testConcurrentReader() throws Exception {
+		final var total = 100_000;
+		final var reader = CompletableFuture.supplyAsync(() -> {
+			var readed = 0;
+			while (readed < total) {
+				final var size = vault.getSize();
+				for (var pos = readed; pos < size; pos++) {
+					if (vault.read(pos) != (pos & 0xFF)) {
+						return false;
+					}
+				}
+				readed = size;
+			}
+			return true;
+		});
+		for (var pos = 0; pos < total; pos++) {
+			vault.write(new byte[] { (byte) pos });
+		}
+		assertTrue(reader.get(10, TimeUnit.SECONDS));
+	}
+
+}
@@ -68,6 +68,57 @@ class BufferVaultTest {
 			assertTrue(Arrays.equals(inputArray, vault0.readAll()));
 		}
 
+		@Test
+		void testReadToByteBuffer() {
+			vault.write(inputArray);
+			final var buffer = ByteBuffer.allocate(inputArray.length + 1);
+			buffer.put((byte) 1);
+			assertEquals(vault, vault.read(buffer));
+			assertEquals(inputArray.length + 1, buffer.position());
+			buffer.flip().get();
+			final var result = new byte[inputArray.length];
+			buffer.get(result);
+			assertTrue(Arrays.equals(inputArray, result));
+		}
+
+		@Test
+		void testAsReadOnlyByteBuffer() {
+			assertEquals(0, vault.asReadOnlyByteBuffer().remaining());
+			vault.write(inputArray);
+			final var view = vault.asReadOnlyByteBuffer();
+			assertTrue(view.isReadOnly());
+			assertEquals(0, view.position());
+			assertEquals(inputArray.length, view.remaining());
+			final var result = new byte[inputArray.length];
+			view.get(result);
+			assertTrue(Arrays.equals(inputArray, result));
+		}
+
+		@Test
+		void testSlice() {
+			vault.write(inputArray);
+			final var pos = random.nextInt(inputArray.length / 2);
+			final var len = random.nextInt(inputArray.length / 2);
+			final var view = vault.slice(pos, len);
+			assertTrue(view.isReadOnly());
+			assertEquals(len, view.remaining());
+			final var result = new byte[len];
+			view.get(result);
+			assertTrue(Arrays.equals(Arrays.copyOfRange(inputArray, pos, pos + len), result));
+
+			assertThrows(IndexOutOfBoundsException.class, () -> vault.slice(-1, 1));
+			assertThrows(IndexOutOfBoundsException.class, () -> vault.slice(pos + 1, inputArray.length));
+		}
+
+		@Test
+		void testRelease() {
+			vault.write(inputArray);
+			vault.release();
+			assertEquals(0, vault.getSize());
+			vault.write(inputArray);
+			assertTrue(Arrays.equals(inputArray, vault.readAll()));
+		}
+
 		@Test
 		void testWrapByteArray() {
 			assertTrue(Arrays.equals(inputArray, BufferVault.wrap(inputArray).readAll()));
@@ -500,6 +551,37 @@ class BufferVaultTest {
 
 	}
 
+	@Nested
+	class PooledInternalArray extends DefaultSizeInternalArray {
+
+		BufferPool pool;
+		BufferVault pooledVault;
+
+		@Override
+		@BeforeEach
+		void init() throws Exception {
+			pool = new BufferPool(false, 2);
+			pooledVault = new BufferVault(random.nextInt(inputArray.length), pool);
+			vault = pooledVault;
+		}
+
+		@AfterEach
+		void ends() {
+			pooledVault.release();
+			assertEquals(0, pool.getBorrowedCount());
+		}
+
+		@Test
+		void testGrowWithPool() {
+			vault.write(inputArray);
+			vault.ensureBufferSize(BufferPool.MIN_POOLED_SIZE * 2);
+			assertEquals(1, pool.getBorrowedCount());
+			assertTrue(pool.getAllocatedCount() >= 1);
+			assertTrue(Arrays.equals(inputArray, vault.readAll()));
+		}
+
+	}
+
 	@Nested
 	class EnsureSmallSizeInternalArray extends DefaultSizeInternalArray {
 
@@ -542,4 +624,37 @@ class BufferVaultTest {
 		assertThrows(IllegalArgumentException.class, () -> vault.ensureBufferSize(-1));
 	}
 
+
+	@Test
+	void testGeometricGrowth() {
+		vault = new BufferVault();
+		var grows = 0;
+		var lastCapacity = vault.getCapacity();
+		for (var pos = 0; pos < 1000; pos++) {
+			vault.write(inputArray, 0, 1);
+			if (vault.getCapacity() != lastCapacity) {
+				grows++;
+				lastCapacity = vault.getCapacity();
+			}
+		}
+		assertEquals(1000, vault.getSize());
+		assertTrue(grows <= 11, "Too many grows: " + grows);
+	}
+
+	@Test
+	void testMaxGrowSize() {
+		vault = new BufferVault(100);
+		assertEquals(BufferVault.DEFAULT_MAX_GROW_SIZE, vault.getMaxGrowSize());
+		assertEquals(vault, vault.setMaxGrowSize(10));
+		assertEquals(10, vault.getMaxGrowSize());
+
+		vault.write(new byte[101]);
+		assertEquals(110, vault.getCapacity());
+		vault.ensureBufferSize(50);
+		assertEquals(151, vault.getCapacity());
+		assertEquals(10, vault.copy().getMaxGrowSize());
+
+		assertThrows(IllegalArgumentException.class, () -> vault.setMaxGrowSize(0));
+	}
+
 }
@@ -18,6 +18,7 @@ package tv.hd3g.transfertfiles;
 
 import static java.util.concurrent.TimeUnit.DAYS;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.io.IOException;
@@ -82,6 +83,16 @@ class CommonAbstractFileSystemTest {
 		assertEquals(TimeUnit.DAYS.toMillis(10), cafs.getTimeout());
 	}
 
+	@Test
+	void testSetBandwidthLimiter() {
+		assertNull(cafs.getBandwidthLimiter());
+		final var limiter = new BandwidthLimiter(1000);
+		cafs.setBandwidthLimiter(limiter);
+		assertEquals(limiter, cafs.getBandwidthLimiter());
+		cafs.setBandwidthLimiter(null);
+		assertNull(cafs.getBandwidthLimiter());
+	}
+
 	static class TestCAFS extends CommonAbstractFileSystem<AbstractFile> {
 
 		protected TestCAFS(final String basePath) {
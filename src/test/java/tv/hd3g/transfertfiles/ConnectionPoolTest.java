@@ -0,0 +1,188 @@
+/*
+ * This file is part of transfertfiles.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * Copyright (C) hdsdi3g for hd3g.tv 2021
+ *
+ */
+package tv.hd3g.transfertfiles;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ConnectionPoolTest {
+
+	static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+	static class Connection {
+		boolean valid = true;
+		int validations;
+		boolean closed;
+	}
+
+	int created;
+	ConnectionPool<Connection> pool;
+
+	Connection create() {
+		created++;
+		return new Connection();
+	}
+
+	ConnectionPool<Connection> createPool(final int minSize,
+	                                      final int maxSize,
+	                                      final Duration borrowTimeout,
+	                                      final Duration idleTimeout) {
+		return new ConnectionPool<>("test connection", this::create,
+		        c -> {
+			        c.validations++;
+			        return c.valid;
+		        },
+		        c -> c.closed = true,
+		        minSize, maxSize, borrowTimeout, idleTimeout);
+	}
+
+	@BeforeEach
+	void init() {
+		created = 0;
+		pool = createPool(0, 2, TIMEOUT, TIMEOUT);
+	}
+
+	@Test
+	void testInvalidSizes() {
+		assertThrows(IllegalArgumentException.class, () -> createPool(0, 0, TIMEOUT, TIMEOUT));
+		assertThrows(IllegalArgumentException.class, () -> createPool(3, 2, TIMEOUT, TIMEOUT));
+		final var negated = TIMEOUT.negated();
+		assertThrows(IllegalArgumentException.class, () -> createPool(0, 2, negated, TIMEOUT));
+	}
+
+	@Test
+	void testBorrowGiveBack() throws IOException {
+		final var c0 = pool.borrow();
+		final var c1 = pool.borrow();
+		assertNotEquals(c0, c1);
+		assertEquals(2, pool.getSize());
+		assertEquals(0, pool.getIdleCount());
+
+		pool.giveBack(c1);
+		assertEquals(1, pool.getIdleCount());
+		assertEquals(c1, pool.borrow());
+		assertEquals(0, c1.validations);
+		assertEquals(0, c0.validations);
+		assertEquals(2, created);
+	}
+
+	@Test
+	void testSetValidationIdleTime() throws IOException {
+		assertThrows(IllegalArgumentException.class, () -> pool.setValidationIdleTime(Duration.ofSeconds(-1)));
+		pool.setValidationIdleTime(Duration.ZERO);
+		final var c0 = pool.borrow();
+		pool.giveBack(c0);
+		assertEquals(c0, pool.borrow());
+		assertEquals(1, c0.validations);
+	}
+
+	@Test
+	void testBorrow_timeout() throws IOException {
+		pool = createPool(0, 1, Duration.ofMillis(10), TIMEOUT);
+		pool.borrow();
+		assertThrows(IOException.class, () -> pool.borrow());
+		assertEquals(1, pool.getSize());
+	}
+
+	@Test
+	void testBorrow_waitGiveBack() throws Exception {
+		pool = createPool(0, 1, TIMEOUT, TIMEOUT);
+		final var c0 = pool.borrow();
+		final var waiting = CompletableFuture.supplyAsync(() -> {
+			try {
+				return pool.borrow();
+			} catch (final IOException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		Thread.sleep(50);// NOSONAR
+		pool.giveBack(c0);
+		assertEquals(c0, waiting.get(10, TimeUnit.SECONDS));
+		assertEquals(1, created);
+	}
+
+	@Test
+	void testBorrow_invalid() throws IOException {
+		pool.setValidationIdleTime(Duration.ZERO);
+		final var c0 = pool.borrow();
+		pool.giveBack(c0);
+		c0.valid = false;
+
+		final var c1 = pool.borrow();
+		assertNotEquals(c0, c1);
+		assertTrue(c0.closed);
+		assertEquals(1, pool.getSize());
+	}
+
+	@Test
+	void testBorrow_createError() {
+		pool = new ConnectionPool<>("test connection", () -> {
+			throw new IOException("Can't connect");
+		}, c -> true, c -> c.closed = true, 0, 1, TIMEOUT, TIMEOUT);
+		assertThrows(IOException.class, () -> pool.borrow());
+		assertEquals(0, pool.getSize());
+	}
+
+	@Test
+	void testDiscard() throws IOException {
+		final var c0 = pool.borrow();
+		pool.discard(c0);
+		assertTrue(c0.closed);
+		assertEquals(0, pool.getSize());
+		assertEquals(0, pool.getIdleCount());
+	}
+
+	@Test
+	void testEvictIdles() throws IOException {
+		pool = createPool(1, 2, TIMEOUT, Duration.ZERO);
+		final var c0 = pool.borrow();
+		final var c1 = pool.borrow();
+		pool.giveBack(c0);
+		pool.giveBack(c1);
+		assertEquals(1, pool.getSize());
+		assertEquals(1, pool.getIdleCount());
+		assertTrue(c0.closed);
+		assertFalse(c1.closed);
+	}
+
+	@Test
+	void testClose() throws IOException {
+		final var c0 = pool.borrow();
+		final var c1 = pool.borrow();
+		pool.giveBack(c0);
+		pool.close();
+		assertTrue(c0.closed);
+		assertEquals(1, pool.getSize());
+		assertThrows(IOException.class, () -> pool.borrow());
+
+		pool.giveBack(c1);
+		assertTrue(c1.closed);
+		assertEquals(0, pool.getSize());
+	}
+
+}
@@ -0,0 +1,151 @@
+/*
+ * This file is part of transfertfiles.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * Copyright (C) hdsdi3g for hd3g.tv 2021
+ *
+ */
+package tv.hd3g.transfertfiles;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class DataExchangeBufferRingTest {
+	static Random random;
+
+	@BeforeAll
+	static void initAll() {
+		random = new Random();
+	}
+
+	DataExchangeBufferRing ring;
+	int depth;
+	byte[] datas;
+
+	@BeforeEach
+	void init() throws Exception {
+		depth = random.nextInt(5) + 2;
+		ring = new DataExchangeBufferRing(depth);
+		datas = new byte[random.nextInt(100) + 10];
+		random.nextBytes(datas);
+	}
+
+	@Test
+	void testInvalidDepth() {
+		assertThrows(IllegalArgumentException.class, () -> new DataExchangeBufferRing(0));
+	}
+
+	@Test
+	void testPushRead() throws IOException {
+		assertTrue(ring.isEmpty());
+		assertTrue(ring.push(BufferVault.wrap(datas), () -> true));
+		assertEquals(1, ring.size());
+		assertEquals(datas.length, ring.remaining());
+
+		final var head = ring.waitHead(() -> true);
+		final var result = new byte[head.remaining()];
+		head.get(result);
+		assertTrue(Arrays.equals(datas, result));
+		ring.releaseHead();
+		assertTrue(ring.isEmpty());
+	}
+
+	@Test
+	void testPushEmpty() throws IOException {
+		assertTrue(ring.push(new BufferVault(), () -> true));
+		assertTrue(ring.isEmpty());
+	}
+
+	@Test
+	void testPushFull() throws IOException {
+		for (var pos = 0; pos < depth; pos++) {
+			assertTrue(ring.push(BufferVault.wrap(datas), () -> true));
+		}
+		assertEquals(depth, ring.size());
+		assertFalse(ring.push(BufferVault.wrap(datas), () -> false));
+		assertEquals(depth, ring.size());
+		assertEquals((long) depth * datas.length, ring.remaining());
+	}
+
+	@Test
+	void testWaitHeadEmpty() throws IOException {
+		assertNull(ring.waitHead(() -> false));
+	}
+
+	@Test
+	void testWakeUp() throws Exception {
+		final var keepWaiting = new AtomicBoolean(true);
+		final var reader = CompletableFuture.supplyAsync(() -> {
+			try {
+				return ring.waitHead(keepWaiting::get);
+			} catch (final IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+		keepWaiting.set(false);
+		ring.wakeUp();
+		assertNull(reader.get(1, TimeUnit.SECONDS));
+	}
+
+	@Test
+	void testReuseSlots() throws Exception {
+		final var writer = CompletableFuture.runAsync(() -> {
+			try {
+				for (var pos = 0; pos < depth * 10; pos++) {
+					ring.push(BufferVault.wrap(new byte[] { (byte) pos }), () -> true);
+				}
+			} catch (final IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+
+		for (var pos = 0; pos < depth * 10; pos++) {
+			final var head = ring.waitHead(() -> true);
+			assertEquals((byte) pos, head.get());
+			ring.releaseHead();
+		}
+		writer.get(1, TimeUnit.SECONDS);
+		assertTrue(ring.isEmpty());
+	}
+
+	@Test
+	void testRelease() throws IOException {
+		final var pool = new BufferPool(random.nextBoolean(), 2);
+		ring = new DataExchangeBufferRing(depth, pool);
+		ring.push(BufferVault.wrap(datas), () -> true);
+		ring.push(BufferVault.wrap(datas), () -> true);
+		assertEquals(2, pool.getBorrowedCount());
+		assertEquals(pool.isDirect(), ring.waitHead(() -> true).isDirect());
+
+		ring.release();
+		assertEquals(0, pool.getBorrowedCount());
+		assertTrue(ring.isEmpty());
+		assertFalse(ring.push(BufferVault.wrap(datas), () -> true));
+		assertNull(ring.waitHead(() -> true));
+		assertEquals(0, pool.getBorrowedCount());
+	}
+}
@@ -30,13 +30,21 @@ import static tv.hd3g.transfertfiles.DataExchangeInOutStream.State.STOPPED_BY_FI
 import static tv.hd3g.transfertfiles.DataExchangeInOutStream.State.STOPPED_BY_USER;
 import static tv.hd3g.transfertfiles.DataExchangeInOutStream.State.WORKING;
 import static tv.hd3g.transfertfiles.DataExchangeInOutStream.State.WRITER_MANUALLY_CLOSED;
+import static tv.hd3g.transfertfiles.filters.DigestFilterHashExtraction.MD5;
+import static tv.hd3g.transfertfiles.filters.DigestFilterHashExtraction.SHA_1;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.CompletableFuture;
@@ -56,7 +64,11 @@ import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 
 import tv.hd3g.transfertfiles.DataExchangeInOutStream.State;
+import tv.hd3g.transfertfiles.filters.CompressionFormat;
 import tv.hd3g.transfertfiles.filters.DataExchangeFilter;
+import tv.hd3g.transfertfiles.filters.DataExchangeFilterCompress;
+import tv.hd3g.transfertfiles.filters.DataExchangeFilterDecompress;
+import tv.hd3g.transfertfiles.filters.DataExchangeFilterHashExtraction;
 
 class DataExchangeInOutStreamTest {
 
@@ -144,6 +156,76 @@ class DataExchangeInOutStreamTest {
 		assertEquals(WRITER_MANUALLY_CLOSED, exchange.getState());
 	}
 
+	@Test
+	void testChannelCopy_filtered() throws IOException, InterruptedException, ExecutionException, TimeoutException {
+		exchange = new DataExchangeInOutStream();
+		exchange.addFilter(new XorTestFilter()).addFilter(new XorTestFilter());
+		final var dataInput = "0123456789ABCDEFGHIJklmnopqrstUVWXYZ".getBytes();
+		final var dataOutput = new byte[dataInput.length];
+		final var channel = (WritableByteChannel) exchange.getDestTargetStream();
+		assertTrue(channel.isOpen());
+
+		final var writerCF = CompletableFuture.runAsync(() -> {
+			try {
+				final var direct = ByteBuffer.allocateDirect(dataInput.length);
+				direct.put(dataInput).flip();
+				final var half = dataInput.length / 2;
+				assertEquals(half, channel.write(direct.slice().limit(half)));
+				direct.position(half);
+				assertEquals(dataInput.length - half, channel.write(direct));
+				assertEquals(0, direct.remaining());
+				assertEquals(0, channel.write(ByteBuffer.allocate(0)));
+				channel.close();
+			} catch (final IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+
+		final var copiedSize = read(exchange.getSourceOriginStream(), dataOutput);
+		writerCF.orTimeout(2, TimeUnit.SECONDS).get();
+
+		assertEquals(dataInput.length, copiedSize, new String(dataOutput));
+		assertTrue(Arrays.areEqual(dataInput, dataOutput), new String(dataOutput));
+		assertEquals(WRITER_MANUALLY_CLOSED, exchange.getState());
+		assertFalse(channel.isOpen());
+		final var buffer = ByteBuffer.wrap(dataInput);
+		assertThrows(IOException.class, () -> channel.write(buffer));
+	}
+
+	@Test
+	void testChannelRead() throws IOException, InterruptedException, ExecutionException, TimeoutException {
+		exchange = new DataExchangeInOutStream();
+		final var dataInput = "0123456789ABCDEFGHIJklmnopqrstUVWXYZ".getBytes();
+		final var channel = exchange.getSourceOriginChannel();
+		assertTrue(channel.isOpen());
+		assertEquals(exchange.getSourceOriginStream(), channel);
+
+		final var writerCF = CompletableFuture.runAsync(() -> {
+			try (var outputStream = exchange.getDestTargetStream()) {
+				outputStream.write(dataInput);
+			} catch (final IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+
+		final var direct = ByteBuffer.allocateDirect(dataInput.length + 10);
+		assertEquals(0, channel.read(direct.slice().limit(0)));
+		int size;
+		while ((size = channel.read(direct.slice().limit(Math.min(7, direct.remaining())))) > -1) {
+			direct.position(direct.position() + size);
+		}
+		writerCF.orTimeout(2, TimeUnit.SECONDS).get();
+
+		direct.flip();
+		final var dataOutput = new byte[direct.remaining()];
+		direct.get(dataOutput);
+		assertTrue(Arrays.areEqual(dataInput, dataOutput), new String(dataOutput));
+
+		channel.close();
+		assertFalse(channel.isOpen());
+		assertThrows(IOException.class, () -> channel.read(direct.clear()));
+	}
+
 	@Test
 	void testSimpleCopy_filtered() throws IOException, InterruptedException, ExecutionException, TimeoutException {
 		exchange = new DataExchangeInOutStream();
@@ -239,6 +321,263 @@ class DataExchangeInOutStreamTest {
 		assertEquals(WORKING, exchange.getState());
 	}
 
+	@Test
+	void testReadQueueDepth() throws IOException {
+		final var depth = random.nextInt(5) + 2;
+		exchange = new DataExchangeInOutStream(depth);
+		final var dataInput = new byte[100];
+		random.nextBytes(dataInput);
+
+		for (var pos = 0; pos < depth; pos++) {
+			exchange.getDestTargetStream().write(dataInput);
+		}
+		assertEquals(depth * dataInput.length, exchange.getSourceOriginStream().available());
+
+		final var dataOutput = new byte[dataInput.length];
+		for (var pos = 0; pos < depth; pos++) {
+			assertEquals(dataInput.length, read(exchange.getSourceOriginStream(), dataOutput));
+			assertTrue(Arrays.areEqual(dataInput, dataOutput));
+		}
+		assertEquals(0, exchange.getSourceOriginStream().available());
+		assertThrows(IllegalArgumentException.class, () -> new DataExchangeInOutStream(0));
+	}
+
+	@Test
+	void testChunkSize() throws IOException {
+		exchange = new DataExchangeInOutStream(2, 150);
+		final var dataInput = new byte[100];
+		random.nextBytes(dataInput);
+
+		exchange.getDestTargetStream().write(dataInput);
+		assertEquals(0, exchange.getSourceOriginStream().available());
+		exchange.getDestTargetStream().write(dataInput);
+		assertEquals(200, exchange.getSourceOriginStream().available());
+		exchange.getDestTargetStream().write(dataInput);
+		exchange.getDestTargetStream().close();
+		assertEquals(300, exchange.getSourceOriginStream().available());
+
+		final var dataOutput = new byte[300];
+		assertEquals(300, read(exchange.getSourceOriginStream(), dataOutput));
+		assertTrue(Arrays.areEqual(dataInput, Arrays.copyOfRange(dataOutput, 200, 300)));
+		assertThrows(IllegalArgumentException.class, () -> new DataExchangeInOutStream(2, -1));
+	}
+
+	@Test
+	void testQueueStats() throws IOException {
+		exchange = new DataExchangeInOutStream(3);
+		var stats = exchange.getQueueStats();
+		assertNotNull(stats);
+		assertEquals(3, stats.getWindowChunks());
+		assertEquals(0, stats.getCurrentChunks());
+		assertEquals(0, stats.getPushedChunks());
+
+		final var dataInput = new byte[10];
+		exchange.getDestTargetStream().write(dataInput);
+		exchange.getDestTargetStream().write(dataInput);
+		stats = exchange.getQueueStats();
+		assertEquals(2, stats.getCurrentChunks());
+		assertEquals(2, stats.getMaxChunks());
+		assertEquals(2, stats.getPushedChunks());
+		assertEquals(1.5d, stats.getAverageChunks());
+		assertEquals(0, stats.getWriterWaitCount());
+
+		read(exchange.getSourceOriginStream(), new byte[20]);
+		stats = exchange.getQueueStats();
+		assertEquals(0, stats.getCurrentChunks());
+		assertEquals(2, stats.getMaxChunks());
+		assertEquals(0, stats.getReaderWaitCount());
+		assertNotNull(stats.toString());
+	}
+
+	@Test
+	void testBufferPool() throws IOException, InterruptedException, ExecutionException, TimeoutException {
+		final var pool = new BufferPool(random.nextBoolean(), 4);
+		exchange = new DataExchangeInOutStream(2, 0, pool);
+		exchange.addFilter(new XorTestFilter(100)).addFilter(new XorTestFilter(100));
+
+		final var dataInput = new byte[BufferPool.MIN_POOLED_SIZE * 3];
+		random.nextBytes(dataInput);
+		final var dataOutput = new byte[dataInput.length];
+
+		final var writerCF = CompletableFuture.runAsync(() -> {
+			try {
+				for (var pos = 0; pos < dataInput.length; pos += 100) {
+					exchange.getDestTargetStream().write(dataInput, pos, Math.min(100, dataInput.length - pos));
+				}
+				exchange.getDestTargetStream().close();
+			} catch (final IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+
+		assertEquals(dataInput.length, read(exchange.getSourceOriginStream(), dataOutput));
+		assertEquals(-1, exchange.getSourceOriginStream().read());
+		writerCF.orTimeout(2, TimeUnit.SECONDS).get();
+
+		assertTrue(Arrays.areEqual(dataInput, dataOutput));
+		assertEquals(0, pool.getBorrowedCount());
+		assertTrue(pool.getAllocatedCount() > 0);
+		assertThrows(NullPointerException.class, () -> new DataExchangeInOutStream(2, 0, null));
+	}
+
+	@Test
+	void testStagedPipeline() throws Exception {
+		final var pool = new BufferPool(false, 4);
+		exchange = new DataExchangeInOutStream(2, 0, pool);
+		final var md5 = new DataExchangeFilterHashExtraction(MD5);
+		final var sha1 = new DataExchangeFilterHashExtraction(SHA_1);
+		final var xor0 = new XorTestFilter(1000);
+		exchange.addFilter(xor0)
+		        .addFilter(md5)
+		        .addFilter(sha1)
+		        .addFilter(new XorTestFilter(1000))
+		        .setStagedPipeline(2);
+
+		final var dataInput = new byte[100_000];
+		random.nextBytes(dataInput);
+		final var dataOutput = new byte[dataInput.length];
+
+		final var writerCF = CompletableFuture.runAsync(() -> {
+			try {
+				for (var pos = 0; pos < dataInput.length; pos += 1500) {
+					exchange.getDestTargetStream().write(dataInput, pos, Math.min(1500, dataInput.length - pos));
+				}
+				exchange.getDestTargetStream().close();
+			} catch (final IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+
+		assertEquals(dataInput.length, read(exchange.getSourceOriginStream(), dataOutput));
+		assertEquals(-1, exchange.getSourceOriginStream().read());
+		writerCF.orTimeout(5, TimeUnit.SECONDS).get();
+
+		assertTrue(Arrays.areEqual(dataInput, dataOutput));
+		assertEquals(WRITER_MANUALLY_CLOSED, exchange.getState());
+		assertEquals(0, pool.getBorrowedCount());
+
+		final var xored = new byte[dataInput.length];
+		xor(dataInput, xored, Byte.MAX_VALUE);
+		assertTrue(Arrays.areEqual(MessageDigest.getInstance("MD5").digest(xored), md5.getResults().get(MD5)));
+		assertTrue(Arrays.areEqual(MessageDigest.getInstance("SHA-1").digest(xored), sha1.getResults().get(SHA_1)));
+
+		final var stats = exchange.getTransfertStats(xor0);
+		assertTrue(stats.getTotalDuration() >= 0);
+		assertTrue(stats.getStageWaitDuration() >= 0);
+		assertThrows(IllegalStateException.class, () -> exchange.setStagedPipeline(1));
+		assertThrows(IllegalStateException.class, () -> exchange.addFilter(new XorTestFilter()));
+	}
+
+	@Test
+	void testStagedPipeline_fanOutOnCompute() throws Exception {
+		exchange = new DataExchangeInOutStream();
+		final var fanOutThreads = Collections.synchronizedSet(new HashSet<String>());
+		final var recorder = new DataExchangeFilter() {
+			final BufferVault empty = new BufferVault();
+
+			@Override
+			public BufferVault applyDataFilter(final boolean last, final BufferVault dataSources) {
+				fanOutThreads.add(Thread.currentThread().getName());
+				return empty;
+			}
+
+			@Override
+			public boolean isObserverOnly() {
+				return true;
+			}
+		};
+		final var md5 = new DataExchangeFilterHashExtraction(MD5);
+		final var tree = new DataExchangeFilterHashExtraction(List.of(MD5, SHA_1), true, 4096);
+		exchange.addFilter(md5)
+		        .addFilter(recorder)
+		        .addFilter(tree)
+		        .setStagedPipeline(2);
+
+		final var dataInput = new byte[200_000];
+		random.nextBytes(dataInput);
+		final var dataOutput = new byte[dataInput.length];
+		final var writerCF = CompletableFuture.runAsync(() -> {
+			try {
+				exchange.getDestTargetStream().write(dataInput);
+				exchange.getDestTargetStream().close();
+			} catch (final IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+
+		assertEquals(dataInput.length, read(exchange.getSourceOriginStream(), dataOutput));
+		writerCF.orTimeout(10, TimeUnit.SECONDS).get();
+		assertTrue(Arrays.areEqual(dataInput, dataOutput));
+		assertTrue(Arrays.areEqual(MessageDigest.getInstance("MD5").digest(dataInput), md5.getResults().get(MD5)));
+		assertEquals(2, tree.getResults().size());
+		assertFalse(fanOutThreads.isEmpty());
+		assertTrue(fanOutThreads.stream().allMatch(name -> name.startsWith("TransfertCompute-")));
+	}
+
+	@Test
+	void testStagedPipeline_ErrorWithFilter() throws IOException {
+		exchange = new DataExchangeInOutStream();
+		exchange.setStagedPipeline(1);
+		assertThrows(IllegalArgumentException.class, () -> exchange.setStagedPipeline(-1));
+
+		exchange.addFilter(new FilterCancelTransfert(0) {
+			@Override
+			public BufferVault applyDataFilter(final boolean last, final BufferVault dataSource) throws IOException {
+				throw new IOException("My filter can't process (this is a test)");
+			}
+		});
+		exchange.addFilter(new FilterCancelTransfert(1) {
+			@Override
+			public BufferVault applyDataFilter(final boolean last, final BufferVault dataSource) throws IOException {
+				return new BufferVault();
+			}
+		});
+
+		assertThrows(IOException.class, () -> {
+			exchange.getDestTargetStream().write(new byte[10]);
+			exchange.getDestTargetStream().write(new byte[10]);
+			exchange.getDestTargetStream().close();
+		});
+		exchange.getDestTargetStream().close();
+		assertEquals(FILTER_ERROR, exchange.getState());
+		assertEquals(List.of(1), filterCancelTransfertItems);
+		assertEquals(-1, exchange.getSourceOriginStream().read());
+	}
+
+	@Test
+	void testStagedPipeline_stop() throws Exception {
+		exchange = new DataExchangeInOutStream();
+		exchange.addFilter(new XorTestFilter(100) {
+			@Override
+			public String getFilterName() {
+				return "StopTestFilter";
+			}
+		}).setStagedPipeline(1);
+		exchange.getDestTargetStream().write(new byte[1000]);
+		final var stageThreads = Thread.getAllStackTraces().keySet().stream()
+		        .filter(t -> t.getName().endsWith("StopTestFilter"))
+		        .collect(toUnmodifiableList());
+		assertFalse(stageThreads.isEmpty());
+
+		exchange.stop();
+		for (final var stageThread : stageThreads) {
+			stageThread.join(5000);
+			assertFalse(stageThread.isAlive());
+		}
+		assertEquals(STOPPED_BY_USER, exchange.getState());
+	}
+
+	@Test
+	void testBufferPool_closeReader() throws IOException {
+		final var pool = new BufferPool(false, 4);
+		exchange = new DataExchangeInOutStream(2, 0, pool);
+		exchange.getDestTargetStream().write(new byte[10]);
+		assertTrue(pool.getBorrowedCount() > 0);
+
+		exchange.getSourceOriginStream().close();
+		assertEquals(0, pool.getBorrowedCount());
+	}
+
 	@Test
 	void testInt_filtered() throws IOException {
 		exchange = new DataExchangeInOutStream();
@@ -361,6 +700,61 @@ class DataExchangeInOutStreamTest {
 	/**
 	 * From IOUtils
 	 */
+	static byte[] exchangeByChunks(final DataExchangeInOutStream exchange,
+	                               final byte[] dataInput,
+	                               final int chunkSize) throws InterruptedException,
+	                                                    ExecutionException,
+	                                                    TimeoutException,
+	                                                    IOException {
+		final var writerCF = CompletableFuture.runAsync(() -> {
+			try (var out = exchange.getDestTargetStream()) {
+				for (var pos = 0; pos < dataInput.length; pos += chunkSize) {
+					out.write(dataInput, pos, Math.min(chunkSize, dataInput.length - pos));
+				}
+			} catch (final IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+		final var dataOutput = new ByteArrayOutputStream();
+		exchange.getSourceOriginStream().transferTo(dataOutput);
+		writerCF.get(30, SECONDS);
+		return dataOutput.toByteArray();
+	}
+
+	@Test
+	void testCompressDecompress() throws Exception {
+		final var dataInput = new byte[500_000];
+		for (var pos = 0; pos < dataInput.length; pos++) {
+			dataInput[pos] = (byte) ('a' + random.nextInt(4));
+		}
+
+		for (final var format : CompressionFormat.values()) {
+			for (final var staged : List.of(false, true)) {
+				final var name = format + (staged ? " staged" : " sequential");
+
+				exchange = new DataExchangeInOutStream();
+				exchange.addFilter(new DataExchangeFilterCompress(format));
+				if (staged) {
+					exchange.setStagedPipeline(2);
+				}
+				final var compressed = exchangeByChunks(exchange, dataInput, 8192);
+				assertTrue(compressed.length < dataInput.length, name);
+				try (var in = format.createDecompressor(new ByteArrayInputStream(compressed))) {
+					assertTrue(Arrays.areEqual(dataInput, in.readAllBytes()), name);
+				}
+
+				exchange = new DataExchangeInOutStream();
+				exchange.addFilter(new DataExchangeFilterCompress(format))
+				        .addFilter(new DataExchangeFilterDecompress(format));
+				if (staged) {
+					exchange.setStagedPipeline(2);
+				}
+				assertTrue(Arrays.areEqual(dataInput, exchangeByChunks(exchange, dataInput, 8192)), name);
+				assertEquals(WRITER_MANUALLY_CLOSED, exchange.getState(), name);
+			}
+		}
+	}
+
 	public static int read(final InputStream input,
 	                       final byte[] buffer) throws IOException {
 		var remaining = buffer.length;
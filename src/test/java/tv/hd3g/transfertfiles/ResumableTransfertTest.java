@@ -0,0 +1,336 @@
+/*
+ * This file is part of transfertfiles.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * Copyright (C) hdsdi3g for hd3g.tv 2021
+ *
+ */
+package tv.hd3g.transfertfiles;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static tv.hd3g.transfertfiles.TransfertObserver.TransfertDirection.DISTANTTOLOCAL;
+import static tv.hd3g.transfertfiles.filters.DigestFilterHashExtraction.CRC32;
+import static tv.hd3g.transfertfiles.filters.DigestFilterHashExtraction.SHA_256;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import tv.hd3g.transfertfiles.local.LocalFileSystem;
+
+class ResumableTransfertTest {
+	static final int BLOCK_SIZE = 10_000;
+
+	@Mock
+	TransfertObserver observer;
+	@Mock
+	DataExchangeObserver dataExchangeObserver;
+
+	File dir;
+	File sourceFile;
+	File destFile;
+	File journalFile;
+	LocalFileSystem fs;
+	AbstractFile source;
+	byte[] datas;
+	ResumableTransfert resumable;
+
+	@BeforeEach
+	void init() throws Exception {
+		MockitoAnnotations.openMocks(this).close();
+		when(observer.onTransfertProgress(any(), any(), any(), anyLong(), anyLong())).thenReturn(true);
+		when(dataExchangeObserver.onTransfertProgressFromSource(any(), anyLong(), anyLong())).thenReturn(true);
+		when(dataExchangeObserver.onTransfertProgressToDestination(any(), anyLong(), anyLong())).thenReturn(true);
+
+		dir = new File("target/testfs-resume");
+		FileUtils.forceMkdir(dir);
+		FileUtils.cleanDirectory(dir);
+		sourceFile = new File(dir, "source.bin");
+		destFile = new File(dir, "dest.bin");
+		journalFile = new File(dir, "transfert.journal");
+		datas = new byte[BLOCK_SIZE * 30 + 456];
+		new Random().nextBytes(datas);
+		FileUtils.writeByteArrayToFile(sourceFile, datas);
+
+		fs = new LocalFileSystem(dir);
+		source = fs.getFromPath(sourceFile.getName());
+		resumable = new ResumableTransfert(journalFile, SHA_256, BLOCK_SIZE);
+	}
+
+	@AfterEach
+	void end() throws IOException {
+		FileUtils.deleteQuietly(dir);
+	}
+
+	void stopObserverAfter(final long size) {
+		when(observer.onTransfertProgress(any(), any(), any(), anyLong(), anyLong()))
+		        .then(invocation -> (long) invocation.getArgument(4) < size);
+	}
+
+	@Test
+	void testInvalidParams() {
+		assertThrows(IllegalArgumentException.class, () -> new ResumableTransfert(journalFile, SHA_256, 0));
+		assertThrows(NullPointerException.class, () -> new ResumableTransfert(null));
+		assertThrows(NullPointerException.class, () -> new ResumableTransfert(journalFile, null, 1));
+	}
+
+	@Test
+	void testVerifyDestination() {
+		final var r = new ResumableTransfert(journalFile);
+		assertTrue(r.isVerifyDestination());
+		assertEquals(r, r.setVerifyDestination(false));
+		assertFalse(r.isVerifyDestination());
+	}
+
+	@Test
+	void testExecutor() {
+		final var r = new ResumableTransfert(journalFile);
+		assertEquals(TransfertExecutors.getDefault(), r.getExecutor());
+		final Executor executor = Runnable::run;
+		assertEquals(r, r.setExecutor(executor));
+		assertEquals(executor, r.getExecutor());
+		assertThrows(NullPointerException.class, () -> r.setExecutor(null));
+	}
+
+	@Test
+	void testCopyAbstractToAbstract_executor() throws IOException {
+		final var dest = fs.getFromPath(destFile.getName());
+		when(dataExchangeObserver.onTransfertProgressToDestination(any(), anyLong(), anyLong())).thenReturn(true);
+		final var executed = new AtomicInteger();
+		resumable.setExecutor(r -> {
+			executed.incrementAndGet();
+			TransfertExecutors.getDefault().execute(r);
+		});
+		assertTrue(resumable.copyAbstractToAbstract(source, dest, dataExchangeObserver));
+		assertArrayEquals(datas, FileUtils.readFileToByteArray(destFile));
+		assertEquals(1, executed.get());
+	}
+
+	@Test
+	void testCopyAbstractToLocal_complete() throws IOException {
+		assertTrue(resumable.copyAbstractToLocal(source, destFile, observer));
+		assertEquals(0, resumable.getResumedPosition());
+		assertArrayEquals(datas, FileUtils.readFileToByteArray(destFile));
+		assertFalse(journalFile.exists());
+
+		verify(observer, times(1)).beforeTransfert(destFile, source, DISTANTTOLOCAL);
+		verify(observer, times(1)).onTransfertProgress(
+		        eq(destFile), eq(source), eq(DISTANTTOLOCAL), anyLong(), eq((long) datas.length));
+		verify(observer, times(1)).afterTransfert(eq(destFile), eq(source), eq(DISTANTTOLOCAL), any());
+	}
+
+	@Test
+	void testCopyAbstractToLocal_emptyFile() throws IOException {
+		FileUtils.writeByteArrayToFile(sourceFile, new byte[0]);
+		assertTrue(resumable.copyAbstractToLocal(source, destFile, observer));
+		assertTrue(destFile.exists());
+		assertEquals(0, destFile.length());
+		assertFalse(journalFile.exists());
+	}
+
+	@Test
+	void testCopyAbstractToLocal_stopResume() throws IOException {
+		stopObserverAfter(BLOCK_SIZE * 10L);
+		assertFalse(resumable.copyAbstractToLocal(source, destFile, observer));
+		assertTrue(journalFile.exists());
+		verify(observer, never()).afterTransfert(any(), any(), any(), any());
+
+		when(observer.onTransfertProgress(any(), any(), any(), anyLong(), anyLong())).thenReturn(true);
+		assertTrue(resumable.copyAbstractToLocal(source, destFile, observer));
+		assertTrue(resumable.getResumedPosition() >= BLOCK_SIZE * 9L);
+		assertEquals(0, resumable.getResumedPosition() % BLOCK_SIZE);
+		assertArrayEquals(datas, FileUtils.readFileToByteArray(destFile));
+		assertFalse(journalFile.exists());
+		verify(observer, times(1)).afterTransfert(any(), any(), any(), any());
+	}
+
+	@Test
+	void testCopyAbstractToLocal_resumeAfterSourceChange() throws IOException {
+		stopObserverAfter(BLOCK_SIZE * 10L);
+		assertFalse(resumable.copyAbstractToLocal(source, destFile, observer));
+
+		datas[0]++;
+		FileUtils.writeByteArrayToFile(sourceFile, datas);
+		sourceFile.setLastModified(System.currentTimeMillis() + 10_000);
+
+		when(observer.onTransfertProgress(any(), any(), any(), anyLong(), anyLong())).thenReturn(true);
+		assertTrue(resumable.copyAbstractToLocal(source, destFile, observer));
+		assertEquals(0, resumable.getResumedPosition());
+		assertArrayEquals(datas, FileUtils.readFileToByteArray(destFile));
+	}
+
+	@Test
+	void testCopyAbstractToLocal_otherJournalSettings() throws IOException {
+		stopObserverAfter(BLOCK_SIZE * 10L);
+		assertFalse(resumable.copyAbstractToLocal(source, destFile, observer));
+
+		when(observer.onTransfertProgress(any(), any(), any(), anyLong(), anyLong())).thenReturn(true);
+		final var otherDigest = new ResumableTransfert(journalFile, CRC32, BLOCK_SIZE);
+		assertTrue(otherDigest.copyAbstractToLocal(source, destFile, observer));
+		assertEquals(0, otherDigest.getResumedPosition());
+		assertArrayEquals(datas, FileUtils.readFileToByteArray(destFile));
+	}
+
+	@Test
+	void testCopyAbstractToLocal_corruptedDestination() throws IOException {
+		stopObserverAfter(BLOCK_SIZE * 10L);
+		assertFalse(resumable.copyAbstractToLocal(source, destFile, observer));
+
+		final var corrupted = FileUtils.readFileToByteArray(destFile);
+		corrupted[BLOCK_SIZE * 3 + 10]++;
+		FileUtils.writeByteArrayToFile(destFile, corrupted);
+
+		when(observer.onTransfertProgress(any(), any(), any(), anyLong(), anyLong())).thenReturn(true);
+		assertTrue(resumable.copyAbstractToLocal(source, destFile, observer));
+		assertEquals(BLOCK_SIZE * 3L, resumable.getResumedPosition());
+		assertArrayEquals(datas, FileUtils.readFileToByteArray(destFile));
+	}
+
+	@Test
+	void testCopyAbstractToLocal_noVerifyDestination() throws IOException {
+		stopObserverAfter(BLOCK_SIZE * 10L);
+		assertFalse(resumable.copyAbstractToLocal(source, destFile, observer));
+
+		final var corrupted = FileUtils.readFileToByteArray(destFile);
+		corrupted[BLOCK_SIZE * 3 + 10]++;
+		FileUtils.writeByteArrayToFile(destFile, corrupted);
+
+		when(observer.onTransfertProgress(any(), any(), any(), anyLong(), anyLong())).thenReturn(true);
+		resumable.setVerifyDestination(false);
+		assertTrue(resumable.copyAbstractToLocal(source, destFile, observer));
+		assertTrue(resumable.getResumedPosition() >= BLOCK_SIZE * 9L);
+		assertEquals(corrupted[BLOCK_SIZE * 3 + 10], FileUtils.readFileToByteArray(destFile)[BLOCK_SIZE * 3 + 10]);
+	}
+
+	@Test
+	void testCopyAbstractToLocal_truncatedDestination() throws IOException {
+		stopObserverAfter(BLOCK_SIZE * 10L);
+		assertFalse(resumable.copyAbstractToLocal(source, destFile, observer));
+
+		final var truncated = new byte[BLOCK_SIZE * 2 + 5];
+		System.arraycopy(datas, 0, truncated, 0, truncated.length);
+		FileUtils.writeByteArrayToFile(destFile, truncated);
+
+		when(observer.onTransfertProgress(any(), any(), any(), anyLong(), anyLong())).thenReturn(true);
+		assertTrue(resumable.copyAbstractToLocal(source, destFile, observer));
+		assertEquals(BLOCK_SIZE * 2L, resumable.getResumedPosition());
+		assertArrayEquals(datas, FileUtils.readFileToByteArray(destFile));
+	}
+
+	@Test
+	void testSendLocalToAbstract_stopResume() throws IOException {
+		final var dest = fs.getFromPath(destFile.getName());
+		stopObserverAfter(BLOCK_SIZE * 10L);
+		assertFalse(resumable.sendLocalToAbstract(sourceFile, dest, observer));
+		assertTrue(journalFile.exists());
+
+		when(observer.onTransfertProgress(any(), any(), any(), anyLong(), anyLong())).thenReturn(true);
+		assertTrue(resumable.sendLocalToAbstract(sourceFile, dest, observer));
+		assertTrue(resumable.getResumedPosition() > 0);
+		assertArrayEquals(datas, FileUtils.readFileToByteArray(destFile));
+		assertFalse(journalFile.exists());
+	}
+
+	@Test
+	void testCopyAbstractToAbstract_stopResume() throws IOException {
+		final var dest = fs.getFromPath(destFile.getName());
+		when(dataExchangeObserver.onTransfertProgressToDestination(any(), anyLong(), anyLong()))
+		        .then(invocation -> (long) invocation.getArgument(2) < BLOCK_SIZE * 10L);
+		assertFalse(resumable.copyAbstractToAbstract(source, dest, dataExchangeObserver));
+		assertTrue(journalFile.exists());
+		verify(dataExchangeObserver, never()).afterTransfert(any(), any(), anyLong(), anyLong(), any());
+
+		when(dataExchangeObserver.onTransfertProgressToDestination(any(), anyLong(), anyLong())).thenReturn(true);
+		assertTrue(resumable.copyAbstractToAbstract(source, dest, dataExchangeObserver));
+		final var resumed = resumable.getResumedPosition();
+		assertTrue(resumed > 0);
+		assertArrayEquals(datas, FileUtils.readFileToByteArray(destFile));
+		verify(dataExchangeObserver, times(1)).afterTransfert(eq(source), eq(dest),
+		        eq(datas.length - resumed), eq(datas.length - resumed), any());
+	}
+
+	@Test
+	void testCopyAbstractToAbstract_stopBySource() throws IOException {
+		final var dest = fs.getFromPath(destFile.getName());
+		when(dataExchangeObserver.onTransfertProgressFromSource(any(), anyLong(), anyLong()))
+		        .then(invocation -> (long) invocation.getArgument(2) < BLOCK_SIZE * 10L);
+		assertFalse(resumable.copyAbstractToAbstract(source, dest, dataExchangeObserver));
+		assertTrue(journalFile.exists());
+
+		when(dataExchangeObserver.onTransfertProgressFromSource(any(), anyLong(), anyLong())).thenReturn(true);
+		assertTrue(resumable.copyAbstractToAbstract(source, dest, dataExchangeObserver));
+		assertArrayEquals(datas, FileUtils.readFileToByteArray(destFile));
+		assertFalse(journalFile.exists());
+	}
+
+	@Test
+	void testCopyAbstractToAbstract_bandwidthLimiter() throws IOException {
+		final var limiter = new BandwidthLimiter(Long.MAX_VALUE / 2);
+		fs.setBandwidthLimiter(limiter);
+		final var dest = fs.getFromPath(destFile.getName());
+		assertTrue(resumable.copyAbstractToAbstract(source, dest, dataExchangeObserver));
+		assertArrayEquals(datas, FileUtils.readFileToByteArray(destFile));
+		assertEquals(datas.length, limiter.getAcquiredBytes());
+	}
+
+	@Test
+	void testSendLocalToAbstract_notTruncatableDestination() throws IOException {
+		final var dest = spy(fs.getFromPath(destFile.getName()));
+		when(dest.canTruncateOnUpload()).thenReturn(false);
+		stopObserverAfter(BLOCK_SIZE * 10L);
+		assertFalse(resumable.sendLocalToAbstract(sourceFile, dest, observer));
+
+		final var corrupted = FileUtils.readFileToByteArray(destFile);
+		corrupted[BLOCK_SIZE * 3 + 10]++;
+		FileUtils.writeByteArrayToFile(destFile, corrupted);
+
+		when(observer.onTransfertProgress(any(), any(), any(), anyLong(), anyLong())).thenReturn(true);
+		assertTrue(resumable.sendLocalToAbstract(sourceFile, dest, observer));
+		assertEquals(0, resumable.getResumedPosition());
+		verify(dest, times(1)).delete();
+		assertArrayEquals(datas, FileUtils.readFileToByteArray(destFile));
+		assertFalse(journalFile.exists());
+	}
+
+	@Test
+	void testSendLocalToAbstract_invalidDestinationSize() throws IOException {
+		final var dest = spy(fs.getFromPath(destFile.getName()));
+		doReturn(datas.length + 1L).when(dest).length();
+		assertThrows(UncheckedIOException.class, () -> resumable.sendLocalToAbstract(sourceFile, dest, observer));
+		assertTrue(journalFile.exists());
+		verify(observer, never()).afterTransfert(any(), any(), any(), any());
+	}
+
+}
@@ -0,0 +1,243 @@
+/*
+ * This file is part of transfertfiles.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * Copyright (C) hdsdi3g for hd3g.tv 2021
+ *
+ */
+package tv.hd3g.transfertfiles;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static tv.hd3g.transfertfiles.SegmentedDownload.DEFAULT_MIN_SEGMENT_SIZE;
+import static tv.hd3g.transfertfiles.TransfertObserver.TransfertDirection.DISTANTTOLOCAL;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import tv.hd3g.transfertfiles.SegmentedDownload.RangeConsumer;
+import tv.hd3g.transfertfiles.TransfertObserver.TransfertDirection;
+
+class SegmentedDownloadTest {
+
+	@Mock
+	AbstractFile distantFile;
+	@Mock
+	TransfertObserver observer;
+
+	File localFile;
+	byte[] datas;
+
+	@BeforeEach
+	void init() throws Exception {
+		MockitoAnnotations.openMocks(this).close();
+		when(observer.onTransfertProgress(any(), any(), any(), anyLong(), anyLong())).thenReturn(true);
+		localFile = new File("target/segmented-download.bin");
+		FileUtils.deleteQuietly(localFile);
+		datas = new byte[(int) (DEFAULT_MIN_SEGMENT_SIZE * 3 + 1234)];
+		new Random().nextBytes(datas);
+	}
+
+	@AfterEach
+	void end() {
+		FileUtils.deleteQuietly(localFile);
+	}
+
+	/**
+	 * Push datas by small chunks, and more than the asked length
+	 */
+	void read(final long offset, final long length, final RangeConsumer consumer) throws IOException {
+		final var chunk = new byte[10000];
+		var pos = (int) offset;
+		while (pos < datas.length) {
+			final var len = Math.min(chunk.length, datas.length - pos);
+			System.arraycopy(datas, pos, chunk, 0, len);
+			pos += len;
+			if (consumer.accept(chunk, len) == false) {
+				return;
+			}
+		}
+	}
+
+	@Test
+	void testInvalidParams() {
+		assertThrows(IllegalArgumentException.class,
+		        () -> new SegmentedDownload(distantFile, localFile, -1, 1, observer));
+		assertThrows(IllegalArgumentException.class,
+		        () -> new SegmentedDownload(distantFile, localFile, 1, 0, observer));
+		assertThrows(IllegalArgumentException.class,
+		        () -> new SegmentedDownload(distantFile, localFile, 1, 1, 0, observer));
+	}
+
+	@Test
+	void testGetSegmentCount() {
+		assertEquals(4, new SegmentedDownload(distantFile, localFile, datas.length, 8, observer).getSegmentCount());
+		assertEquals(2, new SegmentedDownload(distantFile, localFile, datas.length, 2, observer).getSegmentCount());
+		assertEquals(1, new SegmentedDownload(distantFile, localFile, 10, 8, observer).getSegmentCount());
+		assertEquals(1, new SegmentedDownload(distantFile, localFile, 0, 8, observer).getSegmentCount());
+		assertEquals(8, new SegmentedDownload(distantFile, localFile, 1000, 8, 100, observer).getSegmentCount());
+		assertEquals(5, new SegmentedDownload(distantFile, localFile, 1000, 8, 200, observer).getSegmentCount());
+	}
+
+	@Test
+	void testDownload() throws IOException {
+		final var download = new SegmentedDownload(distantFile, localFile, datas.length, 4, observer);
+		final var offsets = ConcurrentHashMap.<Long> newKeySet();
+		assertTrue(download.download((offset, length, consumer) -> {
+			offsets.add(offset);
+			read(offset, length, consumer);
+		}));
+		assertArrayEquals(datas, FileUtils.readFileToByteArray(localFile));
+		assertEquals(4, offsets.size());
+
+		verify(observer, times(1)).beforeTransfert(localFile, distantFile, DISTANTTOLOCAL);
+		verify(observer, times(1)).afterTransfert(eq(localFile), eq(distantFile), eq(DISTANTTOLOCAL),
+		        any(Duration.class));
+		for (var segment = 0; segment < 4; segment++) {
+			verify(observer, atLeastOnce()).onSegmentProgress(eq(localFile), eq(distantFile), eq(DISTANTTOLOCAL),
+			        eq(segment), anyLong(), anyLong(), anyLong());
+		}
+		verify(observer, times(1)).onTransfertProgress(eq(localFile), eq(distantFile), eq(DISTANTTOLOCAL),
+		        anyLong(), eq((long) datas.length));
+	}
+
+	@Test
+	void testDownload_executor() throws IOException {
+		final var download = new SegmentedDownload(distantFile, localFile, datas.length, 4, observer);
+		final var executed = new AtomicInteger();
+		assertTrue(download.download(this::read, r -> {
+			executed.incrementAndGet();
+			TransfertExecutors.getDefault().execute(r);
+		}));
+		assertArrayEquals(datas, FileUtils.readFileToByteArray(localFile));
+		assertEquals(4, executed.get());
+		assertThrows(NullPointerException.class, () -> download.download(this::read, null));
+	}
+
+	@Test
+	void testDownload_serializedObserver() throws IOException {
+		final var inCall = new AtomicInteger();
+		final var concurrentCalls = new AtomicInteger();
+		final var lastTotal = new AtomicLong();
+		final var decreasingTotals = new AtomicInteger();
+		final var checkObserver = new TransfertObserver() {
+
+			@Override
+			public void onSegmentProgress(final File localFile,
+			                              final AbstractFile distantFile,
+			                              final TransfertDirection transfertDirection,
+			                              final int segment,
+			                              final long segmentOffset,
+			                              final long segmentLength,
+			                              final long segmentTransferred) {
+				if (inCall.incrementAndGet() > 1) {
+					concurrentCalls.incrementAndGet();
+				}
+				Thread.yield();
+				inCall.decrementAndGet();
+			}
+
+			@Override
+			public boolean onTransfertProgress(final File localFile,
+			                                   final AbstractFile distantFile,
+			                                   final TransfertDirection transfertDirection,
+			                                   final long startDate,
+			                                   final long dataTransferred) {
+				if (inCall.incrementAndGet() > 1) {
+					concurrentCalls.incrementAndGet();
+				}
+				if (lastTotal.getAndSet(dataTransferred) > dataTransferred) {
+					decreasingTotals.incrementAndGet();
+				}
+				Thread.yield();
+				inCall.decrementAndGet();
+				return true;
+			}
+		};
+
+		final var download = new SegmentedDownload(distantFile, localFile, datas.length, 4, checkObserver);
+		assertTrue(download.download(this::read));
+		assertArrayEquals(datas, FileUtils.readFileToByteArray(localFile));
+		assertEquals(0, concurrentCalls.get());
+		assertEquals(0, decreasingTotals.get());
+		assertEquals(datas.length, lastTotal.get());
+	}
+
+	@Test
+	void testDownload_empty() throws IOException {
+		datas = new byte[0];
+		final var download = new SegmentedDownload(distantFile, localFile, 0, 4, observer);
+		assertTrue(download.download(this::read));
+		assertTrue(localFile.exists());
+		assertEquals(0, localFile.length());
+	}
+
+	@Test
+	void testDownload_stop() throws IOException {
+		when(observer.onTransfertProgress(any(), any(), any(), anyLong(), anyLong())).thenReturn(false);
+		final var download = new SegmentedDownload(distantFile, localFile, datas.length, 4, observer);
+		final var chunks = new AtomicInteger();
+		assertFalse(download.download((offset, length, consumer) -> read(offset, length, (d, len) -> {
+			chunks.incrementAndGet();
+			return consumer.accept(d, len);
+		})));
+		assertTrue(chunks.get() <= 4);
+		verify(observer, never()).afterTransfert(any(), any(), any(), any());
+	}
+
+	@Test
+	void testDownload_incomplete() {
+		final var download = new SegmentedDownload(distantFile, localFile, datas.length + 10, 4, observer);
+		assertThrows(IOException.class, () -> download.download(this::read));
+		verify(observer, never()).afterTransfert(any(), any(), any(), any());
+	}
+
+	@Test
+	void testDownload_error() {
+		final var download = new SegmentedDownload(distantFile, localFile, datas.length, 4, observer);
+		final var e = assertThrows(IOException.class, () -> download.download((offset, length, consumer) -> {
+			if (offset > 0) {
+				throw new IOException("Nope");
+			}
+			read(offset, length, consumer);
+		}));
+		assertEquals("Nope", e.getCause().getMessage());
+		verify(observer, never()).afterTransfert(any(), any(), any(), any());
+		verify(observer, never()).onSegmentProgress(any(), any(), any(), anyInt(), anyLong(), anyLong(),
+		        eq(0L));
+	}
+
+}
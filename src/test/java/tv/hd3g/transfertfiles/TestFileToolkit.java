@@ -65,6 +65,7 @@ import org.mockito.ArgumentMatchers;
 import org.mockito.Mockito;
 
 import tv.hd3g.transfertfiles.TransfertObserver.TransfertDirection;
+import tv.hd3g.transfertfiles.filters.DigestFilterHashExtraction;
 import tv.hd3g.transfertfiles.ftp.FTPFileSystem;
 
 public abstract class TestFileToolkit<T extends AbstractFile> { // NOSONAR S5786
@@ -642,6 +643,55 @@ public abstract class TestFileToolkit<T extends AbstractFile> { // NOSONAR S5786
 			        outputStream.toByteArray(), 0, (int) copied));
 		});
 
+		tests.put("testUploadAbstract_position", f -> {
+			final var position = sourceDatas.length / 3;
+			FileUtils.writeByteArrayToFile(file, Arrays.copyOf(sourceDatas, position));
+
+			final var inputStream = new ByteArrayInputStream(sourceDatas, position, sourceDatas.length - position);
+			final var copied = f.uploadAbstract(inputStream, bufferSize, copyCallback, position);
+
+			assertEquals(sourceDatas.length - position, copied);
+			verify(copyCallback, atLeastOnce())
+			        .apply(longThat(l -> l > 0 && l <= copied));
+			verify(copyCallback, times(1)).apply(eq(copied));
+			assertTrue(Arrays.equals(sourceDatas, FileUtils.readFileToByteArray(file)));
+		});
+		tests.put("testUploadAbstract_position_overwrite", f -> {
+			final var position = sourceDatas.length / 3;
+			final var previous = new byte[sourceDatas.length * 2];
+			System.arraycopy(sourceDatas, 0, previous, 0, position);
+			FileUtils.writeByteArrayToFile(file, previous);
+
+			final var inputStream = new ByteArrayInputStream(sourceDatas, position, sourceDatas.length - position);
+			if (f.canTruncateOnUpload() == false) {
+				assertThrows(UncheckedIOException.class,
+				        () -> f.uploadAbstract(inputStream, bufferSize, copyCallback, position));
+				assertTrue(Arrays.equals(previous, FileUtils.readFileToByteArray(file)));
+				return;
+			}
+			final var copied = f.uploadAbstract(inputStream, bufferSize, copyCallback, position);
+
+			assertEquals(sourceDatas.length - position, copied);
+			verify(copyCallback, atLeastOnce())
+			        .apply(longThat(l -> l > 0 && l <= copied));
+			verify(copyCallback, times(1)).apply(eq(copied));
+			assertTrue(Arrays.equals(sourceDatas, FileUtils.readFileToByteArray(file)));
+		});
+		tests.put("testDownloadAbstract_position", f -> {
+			FileUtils.writeByteArrayToFile(file, sourceDatas);
+			final var position = sourceDatas.length / 3;
+
+			final var outputStream = new ByteArrayOutputStream();
+			final var copied = f.downloadAbstract(outputStream, bufferSize, copyCallback, position);
+
+			assertEquals(sourceDatas.length - position, copied);
+			verify(copyCallback, atLeastOnce())
+			        .apply(ArgumentMatchers.longThat(l -> l > 0 && l <= copied));
+			verify(copyCallback, times(1)).apply(eq(copied));
+			assertTrue(Arrays.equals(sourceDatas, position, sourceDatas.length,
+			        outputStream.toByteArray(), 0, (int) copied));
+		});
+
 		return tests.entrySet().stream().map(entry -> {
 			final var testName = entry.getKey();
 			final var testAction = entry.getValue();
@@ -662,6 +712,89 @@ public abstract class TestFileToolkit<T extends AbstractFile> { // NOSONAR S5786
 		});
 	}
 
+	@TestFactory
+	final Stream<DynamicNode> testResumableTransfert() throws IOException {
+		final var baseName = "fileForResume";
+		final var file = new File(root, baseName).getAbsoluteFile();
+		final var localFile = new File(root, "localFileForResume").getAbsoluteFile();
+		final var journalFile = new File(root, "resume.journal").getAbsoluteFile();
+		final var fs = createFileSystem();
+		createdFS.add(fs);
+
+		final var blockSize = 16 * 1024;
+		final var sourceDatas = new byte[blockSize * 20 + 123];
+		final var stopAfter = blockSize * 6L;
+		final var stopObserver = new TransfertObserver() {
+			@Override
+			public boolean onTransfertProgress(final File localFile,
+			                                   final AbstractFile distantFile,
+			                                   final TransfertDirection transfertDirection,
+			                                   final long startDate,
+			                                   final long dataTransferred) {
+				return dataTransferred < stopAfter;
+			}
+		};
+		final var observer = new TransfertObserver() {};
+
+		final Map<String, Executable1<AbstractFile>> tests = new LinkedHashMap<>();
+		tests.put("testSendLocalToAbstract", f -> {
+			FileUtils.writeByteArrayToFile(localFile, sourceDatas);
+			final var resumable = new ResumableTransfert(journalFile, DigestFilterHashExtraction.SHA_256, blockSize);
+
+			assertFalse(resumable.sendLocalToAbstract(localFile, f, stopObserver));
+			assertTrue(journalFile.exists());
+			assertTrue(file.length() < sourceDatas.length);
+
+			final var destinationSize = file.length();
+			assertTrue(resumable.sendLocalToAbstract(localFile, f, observer));
+			if (f.canTruncateOnUpload() || destinationSize == resumable.getResumedPosition()) {
+				assertTrue(resumable.getResumedPosition() >= stopAfter - blockSize);
+			} else {
+				assertEquals(0, resumable.getResumedPosition());
+			}
+			assertFalse(journalFile.exists());
+			assertTrue(Arrays.equals(sourceDatas, FileUtils.readFileToByteArray(file)));
+		});
+		tests.put("testCopyAbstractToLocal", f -> {
+			FileUtils.writeByteArrayToFile(file, sourceDatas);
+			final var resumable = new ResumableTransfert(journalFile, DigestFilterHashExtraction.SHA_256, blockSize);
+
+			assertFalse(resumable.copyAbstractToLocal(f, localFile, stopObserver));
+			assertTrue(journalFile.exists());
+			assertTrue(localFile.length() < sourceDatas.length);
+
+			assertTrue(resumable.copyAbstractToLocal(f, localFile, observer));
+			assertTrue(resumable.getResumedPosition() >= stopAfter - blockSize);
+			assertFalse(journalFile.exists());
+			assertTrue(Arrays.equals(sourceDatas, FileUtils.readFileToByteArray(localFile)));
+		});
+		tests.put("testSendLocalToAbstract_corruptedDestination", f -> {
+			FileUtils.writeByteArrayToFile(localFile, sourceDatas);
+			final var resumable = new ResumableTransfert(journalFile, DigestFilterHashExtraction.SHA_256, blockSize);
+			assertFalse(resumable.sendLocalToAbstract(localFile, f, stopObserver));
+
+			final var corrupted = FileUtils.readFileToByteArray(file);
+			corrupted[blockSize + 1]++;
+			FileUtils.writeByteArrayToFile(file, corrupted);
+
+			assertTrue(resumable.sendLocalToAbstract(localFile, f, observer));
+			assertEquals(f.canTruncateOnUpload() ? blockSize : 0, resumable.getResumedPosition());
+			assertTrue(Arrays.equals(sourceDatas, FileUtils.readFileToByteArray(file)));
+		});
+
+		return tests.entrySet().stream().map(entry -> {
+			final var testName = entry.getKey();
+			final var testAction = entry.getValue();
+			return dynamicTest(testName,
+			        () -> {
+				        random.nextBytes(sourceDatas);
+				        FileUtils.cleanDirectory(root);
+				        final var f = fs.getFromPath(baseName);
+				        testAction.execute(f);
+			        });
+		});
+	}
+
 	/*@TestFactory
 	Stream<DynamicNode> normalizedTests() throws IOException {
 		return Stream.of(
@@ -0,0 +1,86 @@
+/*
+ * This file is part of transfertfiles.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * Copyright (C) hdsdi3g for hd3g.tv 2021
+ *
+ */
+package tv.hd3g.transfertfiles;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class TransfertExecutorsTest {
+
+	@Test
+	void testGetDefault() throws Exception {
+		final var executor = TransfertExecutors.getDefault();
+		assertEquals(executor, TransfertExecutors.getDefault());
+
+		final var thread = CompletableFuture.supplyAsync(Thread::currentThread, executor).get(10, TimeUnit.SECONDS);
+		assertTrue(thread.isDaemon());
+		assertTrue(thread.getName().startsWith("Transfert-"));
+	}
+
+	@Test
+	void testNotBounded() throws Exception {
+		final var executor = TransfertExecutors.getDefault();
+		final var tasks = Runtime.getRuntime().availableProcessors() * 4;
+		final var allStarted = new CountDownLatch(tasks);
+		final var release = new CountDownLatch(1);
+		for (var pos = 0; pos < tasks; pos++) {
+			executor.execute(() -> {
+				allStarted.countDown();
+				try {
+					release.await();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+		}
+		try {
+			/**
+			 * Blocking tasks can't starve this pool
+			 */
+			assertTrue(allStarted.await(10, TimeUnit.SECONDS));
+		} finally {
+			release.countDown();
+		}
+	}
+
+	@Test
+	void testGetCompute() throws Exception {
+		final var executor = TransfertExecutors.getCompute();
+		assertEquals(executor, TransfertExecutors.getCompute());
+
+		final var thread = CompletableFuture.supplyAsync(Thread::currentThread, executor).get(10, TimeUnit.SECONDS);
+		assertTrue(thread.isDaemon());
+		assertTrue(thread.getName().startsWith("TransfertCompute-"));
+	}
+
+	@Test
+	void testGetCompute_nested() throws Exception {
+		final var executor = TransfertExecutors.getCompute();
+		final var threads = CompletableFuture.supplyAsync(() -> {
+			final var nested = CompletableFuture.supplyAsync(Thread::currentThread, executor).join();
+			return new Thread[] { Thread.currentThread(), nested };
+		}, executor).get(10, TimeUnit.SECONDS);
+		assertEquals(threads[0], threads[1]);
+	}
+
+}
@@ -0,0 +1,131 @@
+/*
+ * This file is part of transfertfiles.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * Copyright (C) hdsdi3g for hd3g.tv 2021
+ *
+ */
+package tv.hd3g.transfertfiles;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TransfertJournalTest {
+
+	static final String IDENTITY = "src dest 1000 42 SHA_256 100";
+
+	File file;
+	byte[] digest0;
+	byte[] digest1;
+
+	@BeforeEach
+	void init() {
+		file = new File("target/transfert-journal-test.journal");
+		FileUtils.deleteQuietly(file);
+		digest0 = new byte[] { 0, 1, 2, 3 };
+		digest1 = new byte[] { 4, 5, 6, (byte) 0xFF };
+	}
+
+	@AfterEach
+	void end() {
+		FileUtils.deleteQuietly(file);
+	}
+
+	@Test
+	void testOpen_noFile() throws IOException {
+		try (var journal = TransfertJournal.open(file, IDENTITY)) {
+			assertTrue(journal.getBlockDigests().isEmpty());
+			assertEquals(file, journal.getFile());
+			assertFalse(file.exists());
+		}
+	}
+
+	@Test
+	void testOpen_badIdentity() {
+		assertThrows(IllegalArgumentException.class, () -> TransfertJournal.open(file, "a\nb"));
+	}
+
+	@Test
+	void testAppendReload() throws IOException {
+		try (var journal = TransfertJournal.open(file, IDENTITY)) {
+			assertThrows(IllegalStateException.class, () -> journal.append(digest0));
+			journal.restart(0);
+			journal.append(digest0);
+			journal.append(digest1);
+			assertEquals(2, journal.getBlockDigests().size());
+		}
+		try (var journal = TransfertJournal.open(file, IDENTITY)) {
+			assertEquals(2, journal.getBlockDigests().size());
+			assertArrayEquals(digest0, journal.getBlockDigests().get(0));
+			assertArrayEquals(digest1, journal.getBlockDigests().get(1));
+		}
+	}
+
+	@Test
+	void testRestart_keepBlocks() throws IOException {
+		try (var journal = TransfertJournal.open(file, IDENTITY)) {
+			journal.restart(0);
+			journal.append(digest0);
+			journal.append(digest1);
+			assertThrows(IllegalArgumentException.class, () -> journal.restart(3));
+			journal.restart(1);
+			assertEquals(1, journal.getBlockDigests().size());
+		}
+		try (var journal = TransfertJournal.open(file, IDENTITY)) {
+			assertEquals(1, journal.getBlockDigests().size());
+			assertArrayEquals(digest0, journal.getBlockDigests().get(0));
+		}
+	}
+
+	@Test
+	void testOpen_otherIdentity() throws IOException {
+		try (var journal = TransfertJournal.open(file, IDENTITY)) {
+			journal.restart(0);
+			journal.append(digest0);
+		}
+		try (var journal = TransfertJournal.open(file, "other")) {
+			assertTrue(journal.getBlockDigests().isEmpty());
+		}
+	}
+
+	@Test
+	void testOpen_incompleteLastLine() throws IOException {
+		FileUtils.write(file, TransfertJournal.HEADER + "\n" + IDENTITY + "\n00010203\n040506", UTF_8);
+		try (var journal = TransfertJournal.open(file, IDENTITY)) {
+			assertEquals(1, journal.getBlockDigests().size());
+			assertArrayEquals(digest0, journal.getBlockDigests().get(0));
+		}
+	}
+
+	@Test
+	void testDelete() throws IOException {
+		try (var journal = TransfertJournal.open(file, IDENTITY)) {
+			journal.restart(0);
+			assertTrue(file.exists());
+			journal.delete();
+			assertFalse(file.exists());
+		}
+	}
+
+}
@@ -0,0 +1,206 @@
+/*
+ * This file is part of transfertfiles.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * Copyright (C) hdsdi3g for hd3g.tv 2021
+ *
+ */
+package tv.hd3g.transfertfiles;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toUnmodifiableList;
+import static java.util.stream.Collectors.toUnmodifiableSet;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import tv.hd3g.transfertfiles.local.LocalFileSystem;
+
+class TreeWalkerTest {
+
+	static final Set<String> ALL = Set.of(
+	        "/a", "/d1", "/d1/b", "/d1/d2", "/d1/d2/c", "/d1/d2/d3", "/d1/d2/d3/e", "/d4", "/d4/f");
+
+	File root;
+	LocalFileSystem fs;
+
+	@BeforeEach
+	void init() throws IOException {
+		root = new File("target/testfs-walk");
+		FileUtils.forceMkdir(root);
+		FileUtils.cleanDirectory(root);
+		for (final var path : ALL) {
+			final var f = new File(root, path);
+			if (f.getName().startsWith("d")) {
+				FileUtils.forceMkdir(f);
+			} else {
+				FileUtils.write(f, path, UTF_8);
+			}
+		}
+		fs = new LocalFileSystem(root);
+	}
+
+	@AfterEach
+	void end() {
+		FileUtils.deleteQuietly(root);
+	}
+
+	static Set<String> toPaths(final Stream<CachedFileAttributes> walk) {
+		try (walk) {
+			return walk.map(CachedFileAttributes::getPath).collect(toUnmodifiableSet());
+		}
+	}
+
+	@Test
+	void testWalkCached() {
+		assertEquals(ALL, toPaths(fs.getFromPath("").walkCached()));
+		assertEquals(Set.of("/d1/d2/c", "/d1/d2/d3", "/d1/d2/d3/e"),
+		        toPaths(fs.getFromPath("d1/d2").walkCached()));
+		assertEquals(Set.of(), toPaths(fs.getFromPath("a").walkCached()));
+		assertEquals(Set.of(), toPaths(fs.getFromPath("nope").walkCached()));
+	}
+
+	@Test
+	void testWalk() {
+		final var files = fs.getFromPath("").walk().collect(toUnmodifiableList());
+		assertEquals(ALL.size(), files.size());
+		assertEquals(ALL, files.stream().map(AbstractFile::getPath).collect(toUnmodifiableSet()));
+		assertTrue(files.contains(fs.getFromPath("d1/d2/d3/e")));
+	}
+
+	@Test
+	void testMaxDepth() {
+		final var walker = new TreeWalker(fs.getFromPath(""));
+		assertEquals(Set.of("/a", "/d1", "/d4"), toPaths(walker.setMaxDepth(1).stream()));
+		assertEquals(Set.of("/a", "/d1", "/d4", "/d1/b", "/d1/d2", "/d4/f"),
+		        toPaths(walker.setMaxDepth(2).stream()));
+	}
+
+	@Test
+	void testFilter() {
+		final var walker = new TreeWalker(fs.getFromPath(""))
+		        .setFilter(CachedFileAttributes::isFile);
+		assertEquals(Set.of("/a", "/d1/b", "/d1/d2/c", "/d1/d2/d3/e", "/d4/f"), toPaths(walker.stream()));
+	}
+
+	@Test
+	void testDescendFilter() {
+		final var listed = new AtomicInteger();
+		final var walker = new TreeWalker(fs.getFromPath(""))
+		        .setDescendFilter(f -> {
+			        listed.incrementAndGet();
+			        return f.getName().equals("d2") == false;
+		        });
+		assertEquals(Set.of("/a", "/d1", "/d1/b", "/d1/d2", "/d4", "/d4/f"), toPaths(walker.stream()));
+		assertEquals(3, listed.get());
+	}
+
+	@Test
+	void testParallel() throws IOException {
+		for (var d = 0; d < 20; d++) {
+			for (var f = 0; f < 20; f++) {
+				FileUtils.write(new File(root, "p/d" + d + "/f" + f), "", UTF_8);
+			}
+		}
+		final var walker = new TreeWalker(fs.getFromPath("p")).setParallelism(4).setBufferSize(10);
+		final var list = walker.stream().collect(toUnmodifiableList());
+		assertEquals(20 * 21, list.size());
+		assertEquals(20 * 21, list.stream().distinct().count());
+	}
+
+	@Test
+	void testGetParallelism() {
+		final var cpuCount = Runtime.getRuntime().availableProcessors();
+		final var walker = new TreeWalker(fs.getFromPath(""));
+		assertEquals(Math.min(TreeWalker.DEFAULT_MAX_PARALLELISM, cpuCount), walker.getParallelism());
+		assertEquals(1, walker.setParallelism(1).getParallelism());
+		assertEquals(Math.min(cpuCount, 100), walker.setParallelism(100).getParallelism());
+
+		final var mockFs = mock(AbstractFileSystem.class);
+		when(mockFs.getMaxParallelOperations()).thenReturn(1);
+		final var file = mock(AbstractFile.class);
+		doReturn(mockFs).when(file).getFileSystem();
+		assertEquals(1, new TreeWalker(file).setParallelism(4).getParallelism());
+		assertEquals(1, new TreeWalker(file).getParallelism());
+	}
+
+	@Test
+	void testInvalidParams() {
+		final var walker = new TreeWalker(fs.getFromPath(""));
+		assertThrows(IllegalArgumentException.class, () -> walker.setParallelism(-1));
+		assertThrows(IllegalArgumentException.class, () -> walker.setMaxDepth(0));
+		assertThrows(IllegalArgumentException.class, () -> walker.setBufferSize(0));
+		assertThrows(NullPointerException.class, () -> walker.setFilter(null));
+		assertThrows(NullPointerException.class, () -> walker.setDescendFilter(null));
+		assertThrows(NullPointerException.class, () -> new TreeWalker(null));
+	}
+
+	AbstractFile mockDirectory(final Stream<CachedFileAttributes> content) {
+		final var mockFs = mock(AbstractFileSystem.class);
+		when(mockFs.getMaxParallelOperations()).thenReturn(1);
+		final var dir = mock(AbstractFile.class);
+		doReturn(mockFs).when(dir).getFileSystem();
+		when(dir.toCachedList()).thenReturn(content);
+		return dir;
+	}
+
+	@Test
+	void testBackPressure() throws InterruptedException {
+		final var produced = new AtomicInteger();
+		final var file = fs.getFromPath("a");
+		final var content = IntStream.range(0, 1000)
+		        .mapToObj(i -> new CachedFileAttributes(file, i, 0, true, false, true, false, false))
+		        .peek(f -> produced.incrementAndGet());// NOSONAR S3864
+		final var walker = new TreeWalker(mockDirectory(content)).setBufferSize(5);
+
+		try (var stream = walker.stream()) {
+			final var iterator = stream.iterator();
+			assertEquals(0, iterator.next().length());
+			Thread.sleep(50);// NOSONAR S2925
+			assertTrue(produced.get() <= 5 + 2, "produced: " + produced.get());
+			assertEquals(1, iterator.next().length());
+		}
+		Thread.sleep(50);// NOSONAR S2925
+		assertTrue(produced.get() < 20);
+	}
+
+	@Test
+	void testError() {
+		final var error = new UncheckedIOException(new IOException("Test"));
+		final var content = Stream.<CachedFileAttributes> generate(() -> {
+			throw error;
+		});
+		final var walker = new TreeWalker(mockDirectory(content));
+		try (var stream = walker.stream()) {
+			final var e = assertThrows(UncheckedIOException.class, () -> stream.count());
+			assertSame(error, e);
+		}
+	}
+
+}
@@ -0,0 +1,234 @@
+/*
+ * This file is part of transfertfiles.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * Copyright (C) hdsdi3g for hd3g.tv 2021
+ *
+ */
+package tv.hd3g.transfertfiles.cached;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static java.util.stream.Collectors.toUnmodifiableSet;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import tv.hd3g.transfertfiles.AbstractFile;
+import tv.hd3g.transfertfiles.CachedFileAttributes;
+import tv.hd3g.transfertfiles.TransfertObserver;
+import tv.hd3g.transfertfiles.local.LocalFileSystem;
+
+/**
+ * Changes are done directly on disk, to see if the values come from the cache.
+ */
+class CachedFileSystemTest {
+
+	File root;
+	LocalFileSystem localFs;
+	CachedFileSystem fs;
+
+	@BeforeEach
+	void init() throws IOException {
+		root = new File("target/testfs-cached");
+		FileUtils.forceMkdir(root);
+		FileUtils.cleanDirectory(root);
+		FileUtils.forceMkdir(new File(root, "dir"));
+		FileUtils.write(new File(root, "dir/a"), "aaa", UTF_8);
+		FileUtils.write(new File(root, "dir/b"), "bb", UTF_8);
+		localFs = new LocalFileSystem(root);
+		fs = new CachedFileSystem(localFs, Duration.ofMinutes(1));
+	}
+
+	@AfterEach
+	void end() throws IOException {
+		fs.close();
+		FileUtils.deleteQuietly(root);
+	}
+
+	@Test
+	void testWrapper() {
+		assertEquals(localFs, fs.getFileSystem());
+		assertEquals(localFs.getIOBufferSize(), fs.getIOBufferSize());
+		assertEquals(localFs.reusableHashCode(), fs.reusableHashCode());
+		assertEquals(localFs.isReusable(), fs.isReusable());
+		assertEquals(localFs.isAvaliable(), fs.isAvaliable());
+		assertEquals(localFs.getHost(), fs.getHost());
+		assertEquals(localFs.getUsername(), fs.getUsername());
+		assertEquals(new CachedFileSystem(localFs, Duration.ZERO), fs);
+		assertNotNull(fs.toString());
+
+		final var f = fs.getFromPath("dir/a");
+		assertEquals("/dir/a", f.getPath());
+		assertEquals(localFs.getFromPath("dir/a"), f.getFile());
+		assertEquals(fs, f.getFileSystem());
+		assertEquals(fs.getFromPath("dir"), f.getParent());
+	}
+
+	@Test
+	void testAttributes() {
+		final var f = fs.getFromPath("dir/a");
+		assertTrue(f.exists());
+		assertTrue(f.isFile());
+		assertEquals(3, f.length());
+		assertEquals(1, fs.getMissCount());
+
+		new File(root, "dir/a").delete();
+		assertTrue(f.exists());
+		assertEquals(3, f.length());
+		assertTrue(fs.getHitCount() >= 2);
+
+		fs.invalidate("dir/a");
+		assertFalse(f.exists());
+	}
+
+	@Test
+	void testNegative() throws IOException {
+		final var f = fs.getFromPath("dir/c");
+		assertFalse(f.exists());
+		FileUtils.write(new File(root, "dir/c"), "c", UTF_8);
+		assertFalse(f.exists());
+		fs.invalidateAll();
+		assertTrue(f.exists());
+	}
+
+	@Test
+	void testToCachedList() throws IOException {
+		final var dir = fs.getFromPath("dir");
+		final var names = dir.toCachedList()
+		        .map(CachedFileAttributes::getName)
+		        .collect(toUnmodifiableSet());
+		assertEquals(Set.of("a", "b"), names);
+
+		FileUtils.write(new File(root, "dir/c"), "c", UTF_8);
+		assertEquals(2, dir.toCachedList().count());
+		assertEquals(2, dir.list().count());
+		assertTrue(dir.list().allMatch(CachedFile.class::isInstance));
+
+		/**
+		 * Primed by the listing
+		 */
+		final var misses = fs.getMissCount();
+		assertEquals(2, fs.getFromPath("dir/b").length());
+		assertEquals(misses, fs.getMissCount());
+		assertTrue(dir.toCachedList()
+		        .map(CachedFileAttributes::getAbstractFile)
+		        .allMatch(CachedFile.class::isInstance));
+	}
+
+	@Test
+	void testInvalidate_delete() {
+		final var dir = fs.getFromPath("dir");
+		final var f = fs.getFromPath("dir/a");
+		assertEquals(2, dir.toCachedList().count());
+		assertTrue(f.exists());
+		f.delete();
+		assertFalse(f.exists());
+		assertEquals(1, dir.toCachedList().count());
+	}
+
+	@Test
+	void testInvalidate_mkdir() {
+		final var dir = fs.getFromPath("dir");
+		final var f = fs.getFromPath("dir/sub");
+		assertEquals(2, dir.list().count());
+		assertFalse(f.exists());
+		f.mkdir();
+		assertTrue(f.isDirectory());
+		assertEquals(3, dir.list().count());
+	}
+
+	@Test
+	void testInvalidate_renameTo() {
+		final var dir = fs.getFromPath("dir");
+		final var f = fs.getFromPath("dir/a");
+		final var dest = fs.getFromPath("dir/z");
+		assertEquals(2, dir.toCachedList().count());
+		assertFalse(dest.exists());
+
+		final var renamed = f.renameTo("dir/z");
+		assertTrue(renamed instanceof CachedFile);
+		assertFalse(f.exists());
+		assertTrue(dest.exists());
+		assertTrue(dir.list().map(AbstractFile::getName).anyMatch("z"::equals));
+	}
+
+	@Test
+	void testInvalidate_renameDir() {
+		final var dir = fs.getFromPath("dir");
+		assertEquals(2, dir.toCachedList().count());
+		dir.renameTo("dir2");
+		assertFalse(fs.getFromPath("dir/a").exists());
+		assertFalse(dir.exists());
+		assertTrue(fs.getFromPath("dir2/a").exists());
+	}
+
+	@Test
+	void testInvalidate_upload() {
+		final var f = fs.getFromPath("dir/a");
+		assertEquals(3, f.length());
+		f.uploadAbstract(new ByteArrayInputStream(new byte[10]), 10, s -> true);
+		assertEquals(10, f.length());
+		f.uploadAbstract(new ByteArrayInputStream(new byte[5]), 10, s -> true, 10);
+		assertEquals(15, f.length());
+	}
+
+	@Test
+	void testInvalidate_sendLocalToAbstract() throws IOException {
+		final var dir = fs.getFromPath("dir");
+		final var f = fs.getFromPath("dir/sended");
+		assertEquals(2, dir.toCachedList().count());
+		assertFalse(f.exists());
+
+		final var localFile = new File("target/cached-send.bin");
+		FileUtils.writeByteArrayToFile(localFile, new byte[123]);
+		try {
+			f.sendLocalToAbstract(localFile, new TransfertObserver() {});
+		} finally {
+			FileUtils.deleteQuietly(localFile);
+		}
+		assertEquals(123, f.length());
+		assertEquals(3, dir.toCachedList().count());
+	}
+
+	@Test
+	void testDisabled() {
+		fs = new CachedFileSystem(localFs, Duration.ZERO);
+		final var f = fs.getFromPath("dir/a");
+		assertTrue(f.exists());
+		new File(root, "dir/a").delete();
+		assertFalse(f.exists());
+		assertEquals(0, fs.getCacheSize());
+	}
+
+	@Test
+	void testLRU() {
+		fs = new CachedFileSystem(localFs, Duration.ofMinutes(1), Duration.ofMinutes(1), 2);
+		fs.getFromPath("dir/a").exists();
+		fs.getFromPath("dir/b").exists();
+		fs.getFromPath("dir/c").exists();
+		assertEquals(2, fs.getCacheSize());
+		assertEquals(1, fs.getEvictionCount());
+	}
+
+}
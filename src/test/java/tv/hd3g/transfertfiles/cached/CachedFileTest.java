@@ -0,0 +1,37 @@
+/*
+ * This file is part of transfertfiles.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * Copyright (C) hdsdi3g for hd3g.tv 2021
+ *
+ */
+package tv.hd3g.transfertfiles.cached;
+
+import java.time.Duration;
+
+import tv.hd3g.transfertfiles.AbstractFileSystem;
+import tv.hd3g.transfertfiles.TestFileToolkit;
+import tv.hd3g.transfertfiles.local.LocalFileSystem;
+
+/**
+ * Same tests as LocalFileTest, with a disabled cache: CachedFile must behave like the wrapped AbstractFile.
+ */
+class CachedFileTest extends TestFileToolkit<CachedFile> {
+
+	@Override
+	protected AbstractFileSystem<CachedFile> createFileSystem() {
+		final var fs = new LocalFileSystem(getRoot());
+		fs.setTransferSegmentSize(fs.getIOBufferSize());
+		return new CachedFileSystem(fs, Duration.ZERO);
+	}
+
+}
@@ -0,0 +1,159 @@
+/*
+ * This file is part of transfertfiles.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * Copyright (C) hdsdi3g for hd3g.tv 2021
+ *
+ */
+package tv.hd3g.transfertfiles.cached;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import tv.hd3g.transfertfiles.AbstractFile;
+import tv.hd3g.transfertfiles.CachedFileAttributes;
+
+class MetadataCacheTest {
+
+	MetadataCache cache;
+
+	@BeforeEach
+	void init() {
+		cache = new MetadataCache(Duration.ofMinutes(1), Duration.ofMinutes(1), 10);
+	}
+
+	static CachedFileAttributes attributes(final String path, final boolean exists) {
+		final var file = mock(AbstractFile.class);
+		org.mockito.Mockito.when(file.getPath()).thenReturn(path);
+		return new CachedFileAttributes(file, 1, 2, exists, false, exists, false, false);
+	}
+
+	@Test
+	void testInvalidParams() {
+		final var ttl = Duration.ofMinutes(1);
+		final var negative = Duration.ofSeconds(-1);
+		assertThrows(IllegalArgumentException.class, () -> new MetadataCache(ttl, ttl, 0));
+		assertThrows(IllegalArgumentException.class, () -> new MetadataCache(negative, ttl, 1));
+		assertThrows(IllegalArgumentException.class, () -> new MetadataCache(ttl, negative, 1));
+		assertThrows(NullPointerException.class, () -> new MetadataCache(null, ttl, 1));
+	}
+
+	@Test
+	void testAttributes() {
+		assertTrue(cache.getAttributes("/a").isEmpty());
+		final var a = attributes("/a", true);
+		cache.putAttributes("/a", a);
+		assertEquals(a, cache.getAttributes("/a").get());
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+		assertEquals(1, cache.getSize());
+	}
+
+	@Test
+	void testNegative() {
+		final var a = attributes("/a", false);
+		cache.putAttributes("/a", a);
+		assertFalse(cache.getAttributes("/a").get().exists());
+
+		cache = new MetadataCache(Duration.ofMinutes(1), Duration.ZERO, 10);
+		cache.putAttributes("/a", a);
+		assertTrue(cache.getAttributes("/a").isEmpty());
+		cache.putAttributes("/b", attributes("/b", true));
+		assertTrue(cache.getAttributes("/b").isPresent());
+	}
+
+	@Test
+	void testExpired() throws InterruptedException {
+		cache = new MetadataCache(Duration.ofMillis(1), Duration.ofMillis(1), 10);
+		cache.putAttributes("/a", attributes("/a", true));
+		cache.putListing("/", List.of(attributes("/b", true)));
+		Thread.sleep(5);// NOSONAR S2925
+		assertTrue(cache.getAttributes("/a").isEmpty());
+		assertTrue(cache.getListing("/").isEmpty());
+		assertEquals(1, cache.getSize());
+	}
+
+	@Test
+	void testListing() {
+		final var listing = List.of(attributes("/d/a", true), attributes("/d/b", true));
+		cache.putListing("/d", listing);
+		assertEquals(listing, cache.getListing("/d").get());
+		assertTrue(cache.getAttributes("/d/a").isPresent());
+		assertTrue(cache.getAttributes("/d/b").isPresent());
+		assertEquals(3 + 2, cache.getSize());
+	}
+
+	@Test
+	void testLRU() {
+		for (var pos = 0; pos < 10; pos++) {
+			cache.putAttributes("/" + pos, attributes("/" + pos, true));
+		}
+		assertEquals(10, cache.getSize());
+		assertTrue(cache.getAttributes("/0").isPresent());
+
+		cache.putAttributes("/10", attributes("/10", true));
+		assertEquals(10, cache.getSize());
+		assertEquals(1, cache.getEvictions());
+		assertTrue(cache.getAttributes("/0").isPresent());
+		assertTrue(cache.getAttributes("/1").isEmpty());
+	}
+
+	@Test
+	void testLRU_weight() {
+		for (var pos = 0; pos < 10; pos++) {
+			cache.putAttributes("/" + pos, attributes("/" + pos, true));
+		}
+		cache.putListing("/d", List.of(attributes("/d/a", true), attributes("/d/b", true)));
+		assertEquals(10, cache.getSize());
+		assertEquals(5, cache.getEvictions());
+		assertTrue(cache.getListing("/d").isPresent());
+	}
+
+	@Test
+	void testTooBigListing() {
+		cache = new MetadataCache(Duration.ofMinutes(1), Duration.ofMinutes(1), 2);
+		cache.putListing("/d", List.of(attributes("/d/a", true), attributes("/d/b", true)));
+		assertTrue(cache.getListing("/d").isEmpty());
+		assertTrue(cache.getAttributes("/d/a").isPresent());
+		assertTrue(cache.getAttributes("/d/b").isPresent());
+	}
+
+	@Test
+	void testInvalidate() {
+		cache.putListing("/d", List.of(attributes("/d/a", true)));
+		cache.putAttributes("/d", attributes("/d", true));
+		cache.putListing("/", List.of(attributes("/d", true), attributes("/dd", true)));
+		cache.putAttributes("/d/a/b", attributes("/d/a/b", true));
+
+		cache.invalidate("/d", "/");
+		assertTrue(cache.getAttributes("/d").isEmpty());
+		assertTrue(cache.getListing("/d").isEmpty());
+		assertTrue(cache.getAttributes("/d/a").isEmpty());
+		assertTrue(cache.getAttributes("/d/a/b").isEmpty());
+		assertTrue(cache.getListing("/").isEmpty());
+		assertTrue(cache.getAttributes("/dd").isPresent());
+		assertEquals(1, cache.getSize());
+
+		cache.clear();
+		assertEquals(0, cache.getSize());
+	}
+
+}
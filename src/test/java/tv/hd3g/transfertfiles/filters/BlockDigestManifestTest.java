@@ -0,0 +1,131 @@
+/*
+ * This file is part of transfertfiles.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * Copyright (C) hdsdi3g for hd3g.tv 2021
+ *
+ */
+package tv.hd3g.transfertfiles.filters;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static tv.hd3g.transfertfiles.filters.DigestFilterHashExtraction.MD5;
+import static tv.hd3g.transfertfiles.filters.DigestFilterHashExtraction.SHA_256;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Test;
+
+class BlockDigestManifestTest {
+
+	static BlockDigestManifest compute(final byte[] datas, final int blockSize) {
+		final var instance = SHA_256.createTreeInstance(blockSize, null);
+		instance.update(ByteBuffer.wrap(datas));
+		return instance.getManifest();
+	}
+
+	@Test
+	void testInvalid() {
+		final List<byte[]> empty = List.of();
+		final var one = List.of(new byte[1]);
+		assertThrows(IllegalArgumentException.class, () -> new BlockDigestManifest(SHA_256, 0, 0, one));
+		assertThrows(IllegalArgumentException.class, () -> new BlockDigestManifest(SHA_256, 10, 0, empty));
+		assertThrows(IllegalArgumentException.class, () -> new BlockDigestManifest(SHA_256, 10, 11, one));
+		assertThrows(IllegalArgumentException.class, () -> SHA_256.createTreeInstance(0, null));
+	}
+
+	@Test
+	void testEmpty() {
+		final var manifest = compute(new byte[0], 10);
+		assertEquals(1, manifest.getBlockCount());
+		assertEquals(0, manifest.getBlockLength(0));
+		assertTrue(Arrays.equals(
+		        BlockDigestManifest.computeBlockDigest(SHA_256, ByteBuffer.allocate(0)),
+		        manifest.getRootDigest()));
+		assertThrows(IndexOutOfBoundsException.class, () -> manifest.getBlockDigest(1));
+	}
+
+	@Test
+	void testTree() {
+		final var datas = new byte[25];
+		new Random().nextBytes(datas);
+		final var manifest = compute(datas, 10);
+		assertEquals(3, manifest.getBlockCount());
+		assertEquals(20, manifest.getBlockOffset(2));
+		assertEquals(5, manifest.getBlockLength(2));
+
+		final var b0 = BlockDigestManifest.computeBlockDigest(SHA_256, ByteBuffer.wrap(datas, 0, 10));
+		final var b1 = BlockDigestManifest.computeBlockDigest(SHA_256, ByteBuffer.wrap(datas, 10, 10));
+		final var b2 = BlockDigestManifest.computeBlockDigest(SHA_256, ByteBuffer.wrap(datas, 20, 5));
+		assertTrue(Arrays.equals(b2, manifest.getBlockDigest(2)));
+
+		final var node = SHA_256.createInstance();
+		node.update(ByteBuffer.wrap(new byte[] { 1 }));
+		node.update(ByteBuffer.wrap(b0));
+		node.update(ByteBuffer.wrap(b1));
+		final var n01 = node.digest();
+
+		final var root = SHA_256.createInstance();
+		root.update(ByteBuffer.wrap(new byte[] { 1 }));
+		root.update(ByteBuffer.wrap(n01));
+		root.update(ByteBuffer.wrap(b2));
+		assertTrue(Arrays.equals(root.digest(), manifest.getRootDigest()));
+
+		assertTrue(manifest.isValidBlock(1, ByteBuffer.wrap(datas, 10, 10)));
+		assertFalse(manifest.isValidBlock(1, ByteBuffer.wrap(datas, 11, 10)));
+		assertFalse(manifest.isValidBlock(2, ByteBuffer.wrap(datas, 20, 4)));
+	}
+
+	@Test
+	void testParallel() {
+		final var datas = new byte[100_000];
+		new Random().nextBytes(datas);
+		final var executor = Executors.newFixedThreadPool(4);
+		try {
+			final var instance = SHA_256.createTreeInstance(1000, executor);
+			for (var pos = 0; pos < datas.length; pos += 777) {
+				instance.update(ByteBuffer.wrap(datas, pos, Math.min(777, datas.length - pos)));
+			}
+			final var manifest = instance.getManifest();
+			assertTrue(Arrays.equals(compute(datas, 1000).getRootDigest(), manifest.getRootDigest()));
+			assertTrue(Arrays.equals(manifest.getRootDigest(), instance.digest()));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	void testGetFirstMismatchBlock() {
+		final var datas = new byte[100];
+		new Random().nextBytes(datas);
+		final var manifest = compute(datas, 10);
+		assertEquals(-1, manifest.getFirstMismatchBlock(compute(datas, 10)));
+
+		final var partial = compute(Arrays.copyOf(datas, 45), 10);
+		assertEquals(4, manifest.getFirstMismatchBlock(partial));
+		assertEquals(4, partial.getFirstMismatchBlock(manifest));
+
+		final var changed = datas.clone();
+		changed[35]++;
+		assertEquals(3, manifest.getFirstMismatchBlock(compute(changed, 10)));
+
+		final var other = MD5.createTreeInstance(10, null).getManifest();
+		assertThrows(IllegalArgumentException.class, () -> manifest.getFirstMismatchBlock(other));
+	}
+
+}
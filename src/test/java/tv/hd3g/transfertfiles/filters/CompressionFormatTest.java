@@ -0,0 +1,77 @@
+/*
+ * This file is part of transfertfiles.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * Copyright (C) hdsdi3g for hd3g.tv 2021
+ *
+ */
+package tv.hd3g.transfertfiles.filters;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class CompressionFormatTest {
+
+	static byte[] getCompressibleDatas(final int size) {
+		final var random = new Random();
+		final var datas = new byte[size];
+		for (var pos = 0; pos < size; pos++) {
+			datas[pos] = (byte) ('a' + random.nextInt(4));
+		}
+		return datas;
+	}
+
+	@Test
+	void testCheckLevel() {
+		for (final var format : CompressionFormat.values()) {
+			assertEquals(format.getDefaultLevel(), format.checkLevel(-1));
+			assertEquals(format.getMinLevel(), format.checkLevel(format.getMinLevel()));
+			assertEquals(format.getMaxLevel(), format.checkLevel(format.getMaxLevel()));
+			assertThrows(IllegalArgumentException.class, () -> format.checkLevel(format.getMaxLevel() + 1));
+			assertThrows(IllegalArgumentException.class, () -> format.checkLevel(-2));
+		}
+	}
+
+	@Test
+	void testCompressDecompress() throws IOException {
+		for (final var format : CompressionFormat.values()) {
+			final var datas = getCompressibleDatas(100_000);
+			final var compressed = new ByteArrayOutputStream();
+			try (var out = format.createCompressor(compressed, format.getMaxLevel(), 1 << 20)) {
+				out.write(datas);
+			}
+			assertTrue(compressed.size() < datas.length);
+
+			try (var in = format.createDecompressor(new ByteArrayInputStream(compressed.toByteArray()))) {
+				assertTrue(Arrays.equals(datas, in.readAllBytes()));
+			}
+		}
+	}
+
+	@Test
+	void testCreateCompressor_badDictionarySize() {
+		for (final var format : CompressionFormat.values()) {
+			final var out = new ByteArrayOutputStream();
+			assertThrows(IllegalArgumentException.class, () -> format.createCompressor(out, -1, -1));
+		}
+	}
+
+}
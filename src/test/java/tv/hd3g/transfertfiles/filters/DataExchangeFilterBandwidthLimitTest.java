@@ -0,0 +1,70 @@
+/*
+ * This file is part of transfertfiles.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * Copyright (C) hdsdi3g for hd3g.tv 2021
+ *
+ */
+package tv.hd3g.transfertfiles.filters;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import tv.hd3g.transfertfiles.BandwidthLimiter;
+import tv.hd3g.transfertfiles.BufferVault;
+
+class DataExchangeFilterBandwidthLimitTest {
+
+	BandwidthLimiter limiter;
+	DataExchangeFilterBandwidthLimit filter;
+
+	@BeforeEach
+	void init() throws Exception {
+		limiter = new BandwidthLimiter(1_000_000);
+		filter = new DataExchangeFilterBandwidthLimit(limiter);
+	}
+
+	@Test
+	void testApplyDataFilter() throws IOException {
+		final var datas = new byte[200_000];
+		new Random().nextBytes(datas);
+		final var start = System.currentTimeMillis();
+		final var result = filter.applyDataFilter(true, new BufferVault().write(datas));
+		assertTrue(Arrays.equals(datas, result.readAll()));
+		assertTrue(System.currentTimeMillis() - start >= 90);
+		assertEquals(datas.length, limiter.getAcquiredBytes());
+	}
+
+	@Test
+	void testOnCancelTransfert() throws IOException {
+		filter.onCancelTransfert();
+		assertEquals(0, filter.applyDataFilter(false, new BufferVault().write(new byte[10_000_000])).getSize());
+	}
+
+	@Test
+	void testGetLimiter() {
+		assertEquals(limiter, filter.getLimiter());
+	}
+
+	@Test
+	void testGetFilterName() {
+		assertEquals("BandwidthLimit:1000000", filter.getFilterName());
+	}
+
+}
@@ -0,0 +1,145 @@
+/*
+ * This file is part of transfertfiles.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * Copyright (C) hdsdi3g for hd3g.tv 2021
+ *
+ */
+package tv.hd3g.transfertfiles.filters;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static tv.hd3g.transfertfiles.filters.CompressionFormat.GZIP;
+import static tv.hd3g.transfertfiles.filters.CompressionFormat.XZ;
+import static tv.hd3g.transfertfiles.filters.CompressionFormatTest.getCompressibleDatas;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Test;
+
+import tv.hd3g.transfertfiles.BufferVault;
+import tv.hd3g.transfertfiles.TransfertExecutors;
+
+class DataExchangeFilterCompressTest {
+
+	static byte[] applyByChunks(final DataExchangeFilter filter, final byte[] datas) throws IOException {
+		final var random = new Random();
+		final var result = new ByteArrayOutputStream();
+		var pos = 0;
+		do {
+			final var len = Math.min(datas.length - pos, random.nextInt(20_000));
+			final var last = pos + len == datas.length;
+			result.write(filter.applyDataFilter(last, new BufferVault().write(datas, pos, len)).readAll());
+			pos += len;
+			if (last) {
+				break;
+			}
+		} while (true);
+		return result.toByteArray();
+	}
+
+	static byte[] decompress(final CompressionFormat format, final byte[] compressed) throws IOException {
+		try (var in = format.createDecompressor(new ByteArrayInputStream(compressed))) {
+			return in.readAllBytes();
+		}
+	}
+
+	@Test
+	void testApplyDataFilter() throws IOException {
+		for (final var format : CompressionFormat.values()) {
+			final var datas = getCompressibleDatas(300_000);
+			final var compressed = applyByChunks(new DataExchangeFilterCompress(format), datas);
+			assertTrue(compressed.length < datas.length);
+			assertTrue(Arrays.equals(datas, decompress(format, compressed)));
+		}
+	}
+
+	@Test
+	void testApplyDataFilter_parallel() throws IOException {
+		for (final var format : CompressionFormat.values()) {
+			final var datas = getCompressibleDatas(300_000);
+			final var filter = new DataExchangeFilterCompress(format, format.getMinLevel(), 0)
+			        .setParallel(3, 50_000);
+			final var compressed = applyByChunks(filter, datas);
+			assertTrue(compressed.length < datas.length);
+			assertTrue(Arrays.equals(datas, decompress(format, compressed)));
+		}
+	}
+
+	@Test
+	void testApplyDataFilter_parallelExecutor() throws IOException {
+		final var datas = getCompressibleDatas(300_000);
+		final var executed = new AtomicInteger();
+		final var filter = new DataExchangeFilterCompress(GZIP).setParallel(2, 50_000, r -> {
+			executed.incrementAndGet();
+			TransfertExecutors.getCompute().execute(r);
+		});
+		assertTrue(Arrays.equals(datas, decompress(GZIP, applyByChunks(filter, datas))));
+		assertTrue(executed.get() >= 6);
+	}
+
+	@Test
+	void testApplyDataFilter_parallelEmpty() throws IOException {
+		for (final var format : CompressionFormat.values()) {
+			final var filter = new DataExchangeFilterCompress(format, format.getMinLevel(), 0).setParallel(0, 1000);
+			final var compressed = filter.applyDataFilter(true, new BufferVault()).readAll();
+			assertEquals(0, decompress(format, compressed).length);
+		}
+	}
+
+	@Test
+	void testApplyDataFilter_gzipInterop() throws IOException {
+		final var datas = getCompressibleDatas(100_000);
+		final var filter = new DataExchangeFilterCompress(GZIP).setParallel(2, 10_000);
+		try (var in = new GZIPInputStream(new ByteArrayInputStream(applyByChunks(filter, datas)))) {
+			assertTrue(Arrays.equals(datas, in.readAllBytes()));
+		}
+	}
+
+	@Test
+	void testDictionarySize() throws IOException {
+		final var datas = getCompressibleDatas(100_000);
+		final var compressed = applyByChunks(new DataExchangeFilterCompress(XZ, 1, 1 << 16), datas);
+		assertTrue(Arrays.equals(datas, decompress(XZ, compressed)));
+	}
+
+	@Test
+	void testInvalid() {
+		assertThrows(IllegalArgumentException.class, () -> new DataExchangeFilterCompress(GZIP, 10, 0));
+		assertThrows(IllegalArgumentException.class, () -> new DataExchangeFilterCompress(GZIP, -1, -1));
+		final var filter = new DataExchangeFilterCompress(GZIP);
+		assertThrows(IllegalArgumentException.class, () -> filter.setParallel(-1, 1000));
+		assertThrows(IllegalArgumentException.class, () -> filter.setParallel(1, 0));
+		assertThrows(NullPointerException.class, () -> filter.setParallel(1, 1000, null));
+		filter.setParallel(1, 1000);
+		assertThrows(IllegalStateException.class, () -> filter.setParallel(1, 1000));
+		filter.onCancelTransfert();
+	}
+
+	@Test
+	void testGetFilterName() {
+		assertEquals("Compress:XZ", new DataExchangeFilterCompress(XZ).getFilterName());
+	}
+
+	@Test
+	void testIsConsumingDataSources() {
+		assertTrue(new DataExchangeFilterCompress(XZ).isConsumingDataSources());
+	}
+
+}
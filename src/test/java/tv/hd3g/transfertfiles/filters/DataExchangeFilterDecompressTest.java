@@ -0,0 +1,121 @@
+/*
+ * This file is part of transfertfiles.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * Copyright (C) hdsdi3g for hd3g.tv 2021
+ *
+ */
+package tv.hd3g.transfertfiles.filters;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static tv.hd3g.transfertfiles.filters.CompressionFormat.BZIP2;
+import static tv.hd3g.transfertfiles.filters.CompressionFormat.GZIP;
+import static tv.hd3g.transfertfiles.filters.CompressionFormatTest.getCompressibleDatas;
+import static tv.hd3g.transfertfiles.filters.DataExchangeFilterCompressTest.applyByChunks;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import tv.hd3g.transfertfiles.BufferVault;
+
+class DataExchangeFilterDecompressTest {
+
+	@Test
+	void testApplyDataFilter() throws IOException {
+		for (final var format : CompressionFormat.values()) {
+			final var datas = getCompressibleDatas(300_000);
+			final var compressed = applyByChunks(new DataExchangeFilterCompress(format), datas);
+			assertTrue(Arrays.equals(datas, applyByChunks(new DataExchangeFilterDecompress(format), compressed)));
+		}
+	}
+
+	@Test
+	void testApplyDataFilter_parallelCompressed() throws IOException {
+		for (final var format : CompressionFormat.values()) {
+			final var datas = getCompressibleDatas(300_000);
+			final var compressed = applyByChunks(new DataExchangeFilterCompress(format).setParallel(0, 40_000), datas);
+			assertTrue(Arrays.equals(datas, applyByChunks(new DataExchangeFilterDecompress(format), compressed)));
+		}
+	}
+
+	@Test
+	void testApplyDataFilter_progressive() throws IOException {
+		final var datas = getCompressibleDatas(1_000_000);
+		final var compressed = applyByChunks(new DataExchangeFilterCompress(GZIP), datas);
+		final var filter = new DataExchangeFilterDecompress(GZIP);
+		final var half = compressed.length / 2;
+		final var firstPart = filter.applyDataFilter(false, new BufferVault().write(compressed, 0, half)).getSize();
+		assertTrue(firstPart > 0);
+		final var secondPart = filter.applyDataFilter(true,
+		        new BufferVault().write(compressed, half, compressed.length - half)).getSize();
+		assertEquals(datas.length, firstPart + secondPart);
+	}
+
+	@Test
+	void testApplyDataFilter_maxPendingSize() throws IOException {
+		final var maxPendingSize = 100_000;
+		final var datas = new byte[20_000_000];
+		final var compressed = applyByChunks(new DataExchangeFilterCompress(GZIP), datas);
+		assertTrue(compressed.length < 100_000);
+
+		final var filter = new DataExchangeFilterDecompress(GZIP, maxPendingSize);
+		var total = filter.applyDataFilter(false, new BufferVault().write(compressed)).getSize();
+		assertTrue(total > 0);
+		assertTrue(total <= maxPendingSize + DataExchangeFilter.DEFAULT_BUFFER_SIZE);
+		var calls = 1;
+		while (total < datas.length && calls < 1000) {
+			final var size = filter.applyDataFilter(false, new BufferVault()).getSize();
+			assertTrue(size <= maxPendingSize + DataExchangeFilter.DEFAULT_BUFFER_SIZE);
+			total += size;
+			calls++;
+		}
+		total += filter.applyDataFilter(true, new BufferVault()).getSize();
+		assertEquals(datas.length, total);
+		assertTrue(calls > 100);
+	}
+
+	@Test
+	void testInvalidMaxPendingSize() {
+		assertThrows(IllegalArgumentException.class, () -> new DataExchangeFilterDecompress(GZIP, 0));
+	}
+
+	@Test
+	void testApplyDataFilter_badDatas() {
+		final var filter = new DataExchangeFilterDecompress(BZIP2);
+		final var badDatas = new BufferVault().write(getCompressibleDatas(1000));
+		assertThrows(IOException.class, () -> filter.applyDataFilter(true, badDatas));
+	}
+
+	@Test
+	void testOnCancelTransfert() throws IOException {
+		final var filter = new DataExchangeFilterDecompress(GZIP);
+		final var compressed = applyByChunks(new DataExchangeFilterCompress(GZIP), getCompressibleDatas(100_000));
+		filter.applyDataFilter(false, new BufferVault().write(compressed, 0, 100));
+		filter.onCancelTransfert();
+		assertEquals(0, filter.applyDataFilter(true, new BufferVault()).getSize());
+	}
+
+	@Test
+	void testGetFilterName() {
+		assertEquals("Decompress:GZIP", new DataExchangeFilterDecompress(GZIP).getFilterName());
+	}
+
+	@Test
+	void testIsConsumingDataSources() {
+		assertTrue(new DataExchangeFilterDecompress(GZIP).isConsumingDataSources());
+	}
+
+}
@@ -20,10 +20,14 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static tv.hd3g.transfertfiles.filters.DigestFilterHashExtraction.CRC32;
 import static tv.hd3g.transfertfiles.filters.DigestFilterHashExtraction.MD5;
+import static tv.hd3g.transfertfiles.filters.DigestFilterHashExtraction.SHA_1;
+import static tv.hd3g.transfertfiles.filters.DigestFilterHashExtraction.SHA_256;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
@@ -76,4 +80,88 @@ class DataExchangeFilterHashExtractionTest {
 
 		assertTrue(Arrays.equals(instance.digest(), results.get(MD5)));
 	}
+
+	@Test
+	void testGetResults_multipleDigests() throws IOException {
+		final var digests = List.of(MD5, SHA_1, SHA_256, CRC32);
+		final var random = new Random();
+		final var parallel = random.nextBoolean();
+		filter = new DataExchangeFilterHashExtraction(digests, parallel);
+
+		final var chunks = new ArrayList<byte[]>();
+		for (var pos = 0; pos < 10; pos++) {
+			final var buffer = new byte[random.nextInt(10000)];
+			random.nextBytes(buffer);
+			chunks.add(buffer);
+			final var dataSources = new BufferVault().write(buffer);
+			assertEquals(0, filter.applyDataFilter(pos == 9, dataSources).getSize());
+			assertTrue(Arrays.equals(buffer, dataSources.readAll()), "Filter has changed datas");
+		}
+
+		final var results = filter.getResults();
+		assertEquals(digests.size(), results.size());
+		for (final var digest : digests) {
+			final var instance = digest.createInstance();
+			chunks.forEach(c -> instance.update(ByteBuffer.wrap(c)));
+			assertTrue(Arrays.equals(instance.digest(), results.get(digest)), digest + ", parallel=" + parallel);
+		}
+		assertTrue(filter.isObserverOnly());
+	}
+
+	@Test
+	void testAbortedParallelDigests() throws IOException {
+		final var buffer = new byte[100_000];
+		new Random().nextBytes(buffer);
+		final var threadsBefore = Thread.activeCount();
+		for (var pos = 0; pos < 20; pos++) {
+			filter = new DataExchangeFilterHashExtraction(List.of(MD5, SHA_1, SHA_256), true, pos % 2 * 4096);
+			filter.applyDataFilter(false, new BufferVault().write(buffer));
+		}
+		final var newThreads = Thread.activeCount() - threadsBefore;
+		assertTrue(newThreads <= Runtime.getRuntime().availableProcessors(), "New threads: " + newThreads);
+	}
+
+	@Test
+	void testGetBlockManifests() throws IOException {
+		final var digests = List.of(SHA_256, CRC32);
+		final var random = new Random();
+		final var parallel = random.nextBoolean();
+		final var blockSize = 1 + random.nextInt(5000);
+		filter = new DataExchangeFilterHashExtraction(digests, parallel, blockSize);
+
+		final var all = new BufferVault();
+		for (var pos = 0; pos < 10; pos++) {
+			final var buffer = new byte[random.nextInt(10000)];
+			random.nextBytes(buffer);
+			all.write(buffer);
+			assertEquals(0, filter.applyDataFilter(pos == 9, new BufferVault().write(buffer)).getSize());
+		}
+
+		final var results = filter.getResults();
+		final var manifests = filter.getBlockManifests();
+		assertEquals(digests.size(), manifests.size());
+		for (final var digest : digests) {
+			final var manifest = manifests.get(digest);
+			assertEquals(digest, manifest.getDigest());
+			assertEquals(blockSize, manifest.getBlockSize());
+			assertEquals(all.getSize(), manifest.getSize());
+			assertEquals(Math.max(1, (all.getSize() + blockSize - 1) / blockSize), manifest.getBlockCount());
+			assertTrue(Arrays.equals(manifest.getRootDigest(), results.get(digest)), digest + ", parallel=" + parallel);
+
+			final var blockDigests = new ArrayList<byte[]>();
+			for (var pos = 0; pos < manifest.getBlockCount(); pos++) {
+				final var block = all.slice((int) manifest.getBlockOffset(pos), manifest.getBlockLength(pos));
+				assertTrue(manifest.isValidBlock(pos, block.duplicate()));
+				blockDigests.add(manifest.getBlockDigest(pos));
+			}
+			assertTrue(Arrays.equals(manifest.getRootDigest(),
+			        new BlockDigestManifest(digest, blockSize, all.getSize(), blockDigests).getRootDigest()));
+		}
+	}
+
+	@Test
+	void testGetBlockManifests_notTree() {
+		filter = new DataExchangeFilterHashExtraction(MD5);
+		assertThrows(IllegalStateException.class, filter::getBlockManifests);
+	}
 }
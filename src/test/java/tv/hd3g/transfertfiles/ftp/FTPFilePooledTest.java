@@ -0,0 +1,36 @@
+/*
+ * This file is part of transfertfiles.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * Copyright (C) hdsdi3g for hd3g.tv 2021
+ *
+ */
+package tv.hd3g.transfertfiles.ftp;
+
+import java.time.Duration;
+
+import tv.hd3g.transfertfiles.AbstractFileSystem;
+
+/**
+ * Same tests as FTPFileTest, with the connection pool.
+ */
+class FTPFilePooledTest extends FTPFileTest {
+
+	@Override
+	protected AbstractFileSystem<FTPFile> createFileSystem() {
+		final var fs = new FTPFileSystem(host, port, username, password.toCharArray(), true, "");
+		fs.setConnectionPool(1, 4, Duration.ofSeconds(10), Duration.ofSeconds(30));
+		fs.connect();
+		return fs;
+	}
+
+}
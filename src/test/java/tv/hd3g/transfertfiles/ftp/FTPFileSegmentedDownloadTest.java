@@ -0,0 +1,207 @@
+/*
+ * This file is part of transfertfiles.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * Copyright (C) hdsdi3g for hd3g.tv 2021
+ *
+ */
+package tv.hd3g.transfertfiles.ftp;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.time.Duration;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.ftpserver.FtpServerFactory;
+import org.apache.ftpserver.ftplet.FtpException;
+import org.apache.ftpserver.impl.DefaultFtpServer;
+import org.apache.ftpserver.listener.ListenerFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import tv.hd3g.transfertfiles.AbstractFile;
+import tv.hd3g.transfertfiles.TransfertObserver;
+
+class FTPFileSegmentedDownloadTest {
+	static final int MIN_SEGMENT_SIZE = 100_000;
+
+	static File root;
+	static int port;
+	static InetAddress host;
+	static String username;
+	static String password;
+	static DefaultFtpServer ftpd;
+
+	@BeforeAll
+	static void load() throws IOException, FtpException {
+		root = new File("target/testfs-ftp-segmented");
+		FileUtils.forceMkdir(root);
+		FileUtils.cleanDirectory(root);
+
+		host = InetAddress.getLocalHost();
+		username = "testusr";
+		password = String.valueOf(System.nanoTime());
+
+		final var serverFactory = new FtpServerFactory();
+		serverFactory.setUserManager(new FTPLetUserManager(username, password, root.getAbsoluteFile()));
+		final var factory = new ListenerFactory();
+		factory.setPort(0);
+		factory.setServerAddress(host.getHostAddress());
+		serverFactory.addListener("default", factory.createListener());
+		ftpd = (DefaultFtpServer) serverFactory.createServer();
+		ftpd.start();
+		port = ftpd.getListener("default").getPort();
+	}
+
+	@AfterAll
+	static void ends() {
+		ftpd.stop();
+	}
+
+	byte[] datas;
+	File localFile;
+	FTPFileSystem fs;
+	Set<Integer> segments;
+	AtomicLong lastProgress;
+	TransfertObserver observer;
+
+	@BeforeEach
+	void init() throws IOException {
+		datas = new byte[MIN_SEGMENT_SIZE * 4 + 123];
+		new Random().nextBytes(datas);
+		FileUtils.writeByteArrayToFile(new File(root, "source.bin"), datas);
+		localFile = new File(root, "dest.bin");
+		FileUtils.deleteQuietly(localFile);
+
+		segments = ConcurrentHashMap.newKeySet();
+		lastProgress = new AtomicLong();
+		observer = new TransfertObserver() {
+			@Override
+			public void onSegmentProgress(final File localFile,
+			                              final AbstractFile distantFile,
+			                              final TransfertDirection transfertDirection,
+			                              final int segment,
+			                              final long segmentOffset,
+			                              final long segmentLength,
+			                              final long segmentTransferred) {
+				segments.add(segment);
+			}
+
+			@Override
+			public boolean onTransfertProgress(final File localFile,
+			                                   final AbstractFile distantFile,
+			                                   final TransfertDirection transfertDirection,
+			                                   final long startDate,
+			                                   final long dataTransferred) {
+				lastProgress.accumulateAndGet(dataTransferred, Math::max);
+				return true;
+			}
+		};
+		fs = new FTPFileSystem(host, port, username, password.toCharArray(), true, "");
+	}
+
+	@AfterEach
+	void end() {
+		fs.close();
+	}
+
+	private FTPFile getSource() {
+		return (FTPFile) fs.getFromPath("source.bin");
+	}
+
+	@Test
+	void testCopyAbstractToLocalSegmented() throws IOException {
+		fs.setConnectionPool(0, 4, Duration.ofSeconds(10), Duration.ofSeconds(10));
+		fs.connect();
+		getSource().copyAbstractToLocalSegmented(localFile, 8, MIN_SEGMENT_SIZE, observer);
+
+		assertArrayEquals(datas, FileUtils.readFileToByteArray(localFile));
+		assertEquals(Set.of(0, 1, 2, 3), segments);
+		assertEquals(datas.length, lastProgress.get());
+		assertTrue(fs.getConnectionPool().getSize() <= 4);
+	}
+
+	@Test
+	void testCopyAbstractToLocalSegmented_recycleLastSegment() throws IOException {
+		final var created = new AtomicInteger();
+		fs = new FTPFileSystem(host, port, username, password.toCharArray(), true, "") {
+			@Override
+			protected FTPClient createClient() {
+				created.incrementAndGet();
+				return super.createClient();
+			}
+		};
+		fs.setConnectionPool(0, 4, Duration.ofSeconds(10), Duration.ofSeconds(10));
+		fs.connect();
+		final var createdBefore = created.get();
+
+		getSource().copyAbstractToLocalSegmented(localFile, 1, MIN_SEGMENT_SIZE, observer);
+		assertArrayEquals(datas, FileUtils.readFileToByteArray(localFile));
+		assertEquals(Set.of(0), segments);
+		assertEquals(1, created.get() - createdBefore);
+		assertEquals(1, fs.getConnectionPool().getIdleCount());
+		assertEquals(1, fs.getConnectionPool().getSize());
+
+		FileUtils.deleteQuietly(localFile);
+		getSource().copyAbstractToLocalSegmented(localFile, 4, MIN_SEGMENT_SIZE, observer);
+		assertArrayEquals(datas, FileUtils.readFileToByteArray(localFile));
+		assertTrue(created.get() - createdBefore <= 4);
+		assertEquals(1, fs.getConnectionPool().getIdleCount());
+		assertEquals(1, fs.getConnectionPool().getSize());
+	}
+
+	@Test
+	void testCopyAbstractToLocalSegmented_noPool() throws IOException {
+		fs.connect();
+		getSource().copyAbstractToLocalSegmented(localFile, 8, MIN_SEGMENT_SIZE, observer);
+
+		assertArrayEquals(datas, FileUtils.readFileToByteArray(localFile));
+		assertTrue(segments.isEmpty());
+		assertEquals(datas.length, lastProgress.get());
+	}
+
+	@Test
+	void testCopyAbstractToLocalSegmented_noRest() throws IOException {
+		fs = new FTPFileSystem(host, port, username, password.toCharArray(), true, "") {
+			@Override
+			protected FTPClient createClient() {
+				return new FTPClient() {
+					@Override
+					public boolean hasFeature(final String feature) throws IOException {
+						return "REST".equals(feature) == false && super.hasFeature(feature);
+					}
+				};
+			}
+		};
+		fs.setConnectionPool(0, 4, Duration.ofSeconds(10), Duration.ofSeconds(10));
+		fs.connect();
+		getSource().copyAbstractToLocalSegmented(localFile, 8, MIN_SEGMENT_SIZE, observer);
+
+		assertArrayEquals(datas, FileUtils.readFileToByteArray(localFile));
+		assertTrue(segments.isEmpty());
+	}
+
+}
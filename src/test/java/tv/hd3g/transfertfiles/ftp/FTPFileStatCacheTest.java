@@ -0,0 +1,241 @@
+/*
+ * This file is part of transfertfiles.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * Copyright (C) hdsdi3g for hd3g.tv 2021
+ *
+ */
+package tv.hd3g.transfertfiles.ftp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.ftpserver.FtpServerFactory;
+import org.apache.ftpserver.ftplet.FtpException;
+import org.apache.ftpserver.impl.DefaultFtpServer;
+import org.apache.ftpserver.listener.ListenerFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class FTPFileStatCacheTest {
+
+	static File root;
+	static int port;
+	static InetAddress host;
+	static String username;
+	static String password;
+	static DefaultFtpServer ftpd;
+
+	@BeforeAll
+	static void load() throws IOException, FtpException {
+		root = new File("target/testfs-ftp-statcache");
+		FileUtils.forceMkdir(root);
+
+		host = InetAddress.getLocalHost();
+		username = "testusr";
+		password = String.valueOf(System.nanoTime());
+
+		final var serverFactory = new FtpServerFactory();
+		serverFactory.setUserManager(new FTPLetUserManager(username, password, root.getAbsoluteFile()));
+		final var factory = new ListenerFactory();
+		factory.setPort(0);
+		factory.setServerAddress(host.getHostAddress());
+		serverFactory.addListener("default", factory.createListener());
+		ftpd = (DefaultFtpServer) serverFactory.createServer();
+		ftpd.start();
+		port = ftpd.getListener("default").getPort();
+	}
+
+	@AfterAll
+	static void ends() {
+		ftpd.stop();
+	}
+
+	AtomicInteger listCount;
+	AtomicInteger mlstCount;
+	FTPFileSystem fs;
+
+	@BeforeEach
+	void init() throws IOException {
+		FileUtils.cleanDirectory(root);
+		FileUtils.forceMkdir(new File(root, "dir"));
+		for (var pos = 0; pos < 10; pos++) {
+			FileUtils.write(new File(root, "dir/file" + pos), "content" + pos, "UTF-8");
+		}
+		listCount = new AtomicInteger();
+		mlstCount = new AtomicInteger();
+		fs = new FTPFileSystem(host, port, username, password.toCharArray(), true, "") {
+			@Override
+			protected FTPClient createClient() {
+				return new FTPClient() {
+					@Override
+					public org.apache.commons.net.ftp.FTPFile[] listFiles(final String pathname) throws IOException {
+						listCount.incrementAndGet();
+						return super.listFiles(pathname);
+					}
+
+					@Override
+					public org.apache.commons.net.ftp.FTPFile mlistFile(final String pathname) throws IOException {
+						mlstCount.incrementAndGet();
+						return super.mlistFile(pathname);
+					}
+				};
+			}
+		};
+		fs.setConnectionPool(1, 2, Duration.ofSeconds(10), Duration.ofSeconds(30));
+		fs.setStatCacheTTL(Duration.ofMinutes(1));
+		fs.connect();
+	}
+
+	@AfterEach
+	void end() {
+		fs.close();
+	}
+
+	@Test
+	void testSetStatCacheTTL() {
+		assertEquals(Duration.ofMinutes(1), fs.getStatCacheTTL());
+		fs.setStatCacheTTL(Duration.ZERO);
+		assertFalse(fs.getStatCache().isEnabled());
+	}
+
+	@Test
+	void testGetters_list() {
+		fs.setFtpListing(FTPListing.LIST);
+		final var f = fs.getFromPath("dir/file0");
+		assertTrue(f.exists());
+		assertTrue(f.isFile());
+		assertFalse(f.isDirectory());
+		assertFalse(f.isLink());
+		assertFalse(f.isSpecial());
+		assertTrue(f.lastModified() > 0);
+		assertEquals("content0".length(), f.length());
+		assertEquals(1, listCount.get());
+
+		/**
+		 * Populated by the parent LIST
+		 */
+		for (var pos = 1; pos < 10; pos++) {
+			final var sibling = fs.getFromPath("dir/file" + pos);
+			assertTrue(sibling.isFile());
+			assertTrue(sibling.lastModified() > 0);
+		}
+		assertFalse(fs.getFromPath("dir/nope").exists());
+		assertFalse(fs.getFromPath("dir/nope").isFile());
+		assertEquals(2, listCount.get());
+		assertEquals(0, mlstCount.get());
+	}
+
+	@Test
+	void testGetters_mlst() {
+		final var f = fs.getFromPath("dir/file0");
+		assertTrue(f.exists());
+		assertTrue(f.isFile());
+		assertTrue(f.lastModified() > 0);
+		assertEquals(1, mlstCount.get());
+		assertEquals(0, listCount.get());
+	}
+
+	@Test
+	void testToCachedList_prime() {
+		assertEquals(10, fs.getFromPath("dir").toCachedList().count());
+		final var listCountAfterList = listCount.get();
+		for (var pos = 0; pos < 10; pos++) {
+			assertTrue(fs.getFromPath("dir/file" + pos).isFile());
+		}
+		assertEquals(0, mlstCount.get());
+		assertEquals(listCountAfterList, listCount.get());
+	}
+
+	@Test
+	void testNotCachedAfterTTL() {
+		fs.setStatCacheTTL(Duration.ZERO);
+		final var f = fs.getFromPath("dir/file0");
+		assertTrue(f.exists());
+		assertTrue(f.isFile());
+		assertEquals(2, mlstCount.get());
+	}
+
+	@Test
+	void testInvalidate_delete() {
+		final var f = fs.getFromPath("dir/file0");
+		assertTrue(f.exists());
+		f.delete();
+		assertFalse(f.exists());
+		assertEquals(2, mlstCount.get());
+	}
+
+	@Test
+	void testInvalidate_mkdir() {
+		final var f = fs.getFromPath("dir/newdir");
+		assertFalse(f.exists());
+		f.mkdir();
+		assertTrue(f.isDirectory());
+	}
+
+	@Test
+	void testInvalidate_rename() {
+		final var from = fs.getFromPath("dir/file0");
+		final var to = fs.getFromPath("dir/renamed");
+		assertTrue(from.exists());
+		assertFalse(to.exists());
+		from.renameTo("dir/renamed");
+		assertFalse(from.exists());
+		assertTrue(to.exists());
+	}
+
+	@Test
+	void testInvalidate_renameDir() {
+		assertTrue(fs.getFromPath("dir").toCachedList().count() > 0);
+		fs.getFromPath("dir").renameTo("dir2");
+		assertFalse(fs.getFromPath("dir/file0").exists());
+		assertTrue(fs.getFromPath("dir2/file0").exists());
+	}
+
+	@Test
+	void testInvalidate_upload() {
+		final var f = fs.getFromPath("dir/file0");
+		assertEquals("content0".length(), f.length());
+		final var datas = new byte[1000];
+		f.uploadAbstract(new ByteArrayInputStream(datas), 1000, s -> true);
+		assertEquals(datas.length, f.length());
+	}
+
+	@Test
+	void testInvalidate_sendLocalToAbstract() throws IOException {
+		final var f = fs.getFromPath("dir/sended");
+		assertFalse(f.exists());
+		final var localFile = new File("target/ftp-statcache-send.bin");
+		FileUtils.writeByteArrayToFile(localFile, new byte[1234]);
+		try {
+			f.sendLocalToAbstract(localFile, new tv.hd3g.transfertfiles.TransfertObserver() {});
+		} finally {
+			FileUtils.deleteQuietly(localFile);
+		}
+		assertTrue(f.exists());
+		assertEquals(1234, f.length());
+	}
+
+}
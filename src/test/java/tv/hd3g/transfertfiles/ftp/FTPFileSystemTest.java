@@ -29,9 +29,11 @@ import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.time.Duration;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.net.ftp.FTPClient;
 import org.apache.ftpserver.FtpServerFactory;
 import org.apache.ftpserver.ftplet.FtpException;
 import org.apache.ftpserver.impl.DefaultFtpServer;
@@ -119,6 +121,14 @@ class FTPFileSystemTest {
 		assertNotNull(fs.getClient());
 	}
 
+	@Test
+	void testGetClientLock() {
+		final var lock = fs.getClientLock(fs.getClient());
+		assertNotNull(lock);
+		assertEquals(lock, fs.getClientLock(fs.getClient()));
+		assertNotEquals(lock, fs.getClientLock(new FTPClient()));
+	}
+
 	@Test
 	void testGetHost() throws UnknownHostException {
 		assertEquals(InetAddress.getLocalHost(), fs.getHost());
@@ -229,6 +239,36 @@ class FTPFileSystemTest {
 		assertEquals(fs.getTimeout(), client.getDefaultTimeout());
 	}
 
+	@Test
+	void testSetConnectionPool() throws IOException {
+		final var timeout = Duration.ofSeconds(10);
+		assertThrows(IllegalArgumentException.class, () -> fs.setConnectionPool(2, 1, timeout, timeout));
+		assertThrows(IllegalArgumentException.class, () -> fs.setConnectionPool(-1, 1, timeout, timeout));
+
+		fs.connect();
+		assertNull(fs.getConnectionPool());
+		assertEquals(fs.getClient(), fs.useClient(c -> c));
+		fs.close();
+
+		fs.setConnectionPool(0, 2, timeout, timeout);
+		fs.connect();
+		final var pool = fs.getConnectionPool();
+		assertNotNull(pool);
+		final var pooledClient = fs.useClient(c -> {
+			assertTrue(c.isAvailable());
+			assertEquals(1, pool.getSize());
+			return c;
+		});
+		assertNotEquals(fs.getClient(), pooledClient);
+		assertEquals(1, pool.getIdleCount());
+		assertEquals(pooledClient, fs.useClient(c -> c));
+
+		fs.close();
+		assertNull(fs.getConnectionPool());
+		assertEquals(0, pool.getSize());
+		assertFalse(pooledClient.isConnected());
+	}
+
 	@Test
 	void testReusableHashCode() {
 		final var code0 = fs.reusableHashCode();
@@ -21,6 +21,7 @@ import java.io.IOException;
 import java.net.InetAddress;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.ftpserver.ConnectionConfigFactory;
 import org.apache.ftpserver.FtpServerFactory;
 import org.apache.ftpserver.ftplet.FtpException;
 import org.apache.ftpserver.impl.DefaultFtpServer;
@@ -49,6 +50,12 @@ class FTPFileTest extends TestFileToolkit<FTPFile> {
 
 		final var serverFactory = new FtpServerFactory();
 		serverFactory.setUserManager(new FTPLetUserManager(username, password, getRoot().getAbsoluteFile()));
+		/**
+		 * Pooled tests keep some idle connections by FileSystem
+		 */
+		final var connectionConfig = new ConnectionConfigFactory();
+		connectionConfig.setMaxLogins(50);
+		serverFactory.setConnectionConfig(connectionConfig.createConnectionConfig());
 		final var factory = new ListenerFactory();
 		factory.setPort(0);
 		factory.setServerAddress(host.getHostAddress());
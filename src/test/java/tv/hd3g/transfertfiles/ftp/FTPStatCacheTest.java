@@ -0,0 +1,128 @@
+/*
+ * This file is part of transfertfiles.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * Copyright (C) hdsdi3g for hd3g.tv 2021
+ *
+ */
+package tv.hd3g.transfertfiles.ftp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.apache.commons.net.ftp.FTPFile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class FTPStatCacheTest {
+
+	FTPStatCache statCache;
+	FTPFile file;
+
+	@BeforeEach
+	void init() {
+		statCache = new FTPStatCache();
+		file = new FTPFile();
+		file.setName("file");
+	}
+
+	@Test
+	void testDisabled() {
+		assertFalse(statCache.isEnabled());
+		assertEquals(Duration.ZERO, statCache.getTTL());
+		statCache.put("/dir/file", file);
+		statCache.putListing("/dir", List.of(file));
+		assertTrue(statCache.get("/dir/file").isEmpty());
+		assertEquals(0, statCache.size());
+		assertEquals(0, statCache.getHits());
+		assertEquals(0, statCache.getMisses());
+	}
+
+	@Test
+	void testSetTTL() {
+		assertThrows(NullPointerException.class, () -> statCache.setTTL(null));
+		assertThrows(IllegalArgumentException.class, () -> statCache.setTTL(Duration.ofSeconds(-1)));
+		statCache.setTTL(Duration.ofMinutes(1));
+		assertTrue(statCache.isEnabled());
+		assertEquals(Duration.ofMinutes(1), statCache.getTTL());
+
+		statCache.put("/dir/file", file);
+		statCache.setTTL(Duration.ofMinutes(2));
+		assertEquals(0, statCache.size());
+	}
+
+	@Test
+	void testPutGet() {
+		statCache.setTTL(Duration.ofMinutes(1));
+		assertTrue(statCache.get("/dir/file").isEmpty());
+		assertEquals(1, statCache.getMisses());
+
+		statCache.put("/dir/file", file);
+		assertEquals(file, statCache.get("/dir/file").get().getFile().get());
+		statCache.put("/dir/nope", null);
+		assertTrue(statCache.get("/dir/nope").get().getFile().isEmpty());
+		assertEquals(2, statCache.getHits());
+		assertEquals(1, statCache.getMisses());
+	}
+
+	@Test
+	void testPutListing() {
+		statCache.setTTL(Duration.ofMinutes(1));
+		final var other = new FTPFile();
+		other.setName("other");
+		statCache.putListing("/dir", List.of(file, other));
+		assertEquals(file, statCache.get("/dir/file").get().getFile().get());
+		assertEquals(other, statCache.get("/dir/other").get().getFile().get());
+
+		statCache.putListing("/", List.of(file));
+		assertEquals(file, statCache.get("/file").get().getFile().get());
+	}
+
+	@Test
+	void testExpired() throws InterruptedException {
+		statCache.setTTL(Duration.ofMillis(1));
+		statCache.put("/dir/file", file);
+		Thread.sleep(5);// NOSONAR S2925
+		assertTrue(statCache.get("/dir/file").isEmpty());
+		assertEquals(0, statCache.size());
+
+		statCache.put("/dir/file", file);
+		Thread.sleep(5);// NOSONAR S2925
+		statCache.putListing("/other", List.of());
+		assertEquals(0, statCache.size());
+	}
+
+	@Test
+	void testInvalidate() {
+		statCache.setTTL(Duration.ofMinutes(1));
+		statCache.put("/dir", file);
+		statCache.putListing("/dir", List.of(file));
+		statCache.put("/dir2", file);
+		statCache.put("/dirfile", file);
+		assertEquals(4, statCache.size());
+
+		statCache.invalidate("/dir");
+		assertTrue(statCache.get("/dir").isEmpty());
+		assertTrue(statCache.get("/dir/file").isEmpty());
+		assertTrue(statCache.get("/dir2").isPresent());
+		assertTrue(statCache.get("/dirfile").isPresent());
+
+		statCache.clear();
+		assertEquals(0, statCache.size());
+	}
+
+}
@@ -16,24 +16,71 @@
  */
 package tv.hd3g.transfertfiles.local;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static tv.hd3g.transfertfiles.TransfertObserver.TransfertDirection.DISTANTTOLOCAL;
+import static tv.hd3g.transfertfiles.TransfertObserver.TransfertDirection.LOCALTODISTANT;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
 
+import tv.hd3g.transfertfiles.AbstractFile;
 import tv.hd3g.transfertfiles.AbstractFileSystem;
+import tv.hd3g.transfertfiles.DataExchangeInOutStream;
+import tv.hd3g.transfertfiles.DataExchangeObserver;
 import tv.hd3g.transfertfiles.TestFileToolkit;
+import tv.hd3g.transfertfiles.TransfertObserver;
+import tv.hd3g.transfertfiles.TransfertObserver.TransfertDirection;
 
+/**
+ * Local copy benchmark: mvn test -Dtest=LocalFileTest -Dbenchmark=true [-Dbenchmark.size=4096] (MB)
+ */
 class LocalFileTest extends TestFileToolkit<LocalFile> {
+	private static final Logger log = LogManager.getLogger();
 
 	@Override
 	protected AbstractFileSystem<LocalFile> createFileSystem() {
-		return new LocalFileSystem(getRoot());
+		final var fs = new LocalFileSystem(getRoot());
+		/**
+		 * Same observer steps as the other FileSystems, for the stop tests.
+		 */
+		fs.setTransferSegmentSize(fs.getIOBufferSize());
+		return fs;
 	}
 
 	@Nested
@@ -97,4 +144,293 @@ class LocalFileTest extends TestFileToolkit<LocalFile> {
 			assertEquals(file, f.getInternalFile());
 		}
 	}
+
+	@Nested
+	class Specific_Copy {
+		@Mock
+		TransfertObserver observer;
+
+		File source;
+		File dest;
+		byte[] datas;
+		LocalFileSystem fs;
+		LocalFile f;
+
+		@BeforeEach
+		void init() throws Exception {
+			MockitoAnnotations.openMocks(this).close();
+			FileUtils.cleanDirectory(getRoot());
+			datas = new byte[10 * 1024];
+			new Random().nextBytes(datas);
+			source = new File(getRoot(), "source.bin");
+			FileUtils.writeByteArrayToFile(source, datas);
+			dest = new File(getRoot(), "dest.bin");
+			fs = new LocalFileSystem(getRoot());
+			f = fs.getFromPath("source.bin");
+			when(observer.onTransfertProgress(any(File.class), any(AbstractFile.class),
+			        any(TransfertDirection.class), anyLong(), anyLong())).thenReturn(true);
+		}
+
+		@AfterEach
+		void end() throws IOException {
+			FileUtils.cleanDirectory(getRoot());
+		}
+
+		@Test
+		void testTransferSegmentSize() {
+			assertEquals(LocalFileSystem.DEFAULT_TRANSFER_SEGMENT_SIZE, fs.getTransferSegmentSize());
+			fs.setTransferSegmentSize(0);
+			assertEquals(0, fs.getTransferSegmentSize());
+			assertThrows(IllegalArgumentException.class, () -> fs.setTransferSegmentSize(-1));
+		}
+
+		@Test
+		void testCopyAbstractToLocal_segments() throws IOException {
+			fs.setTransferSegmentSize(4096);
+			f.copyAbstractToLocal(dest, observer);
+			assertArrayEquals(datas, FileUtils.readFileToByteArray(dest));
+
+			final var order = inOrder(observer);
+			order.verify(observer, times(1)).beforeTransfert(dest, f, DISTANTTOLOCAL);
+			order.verify(observer, times(1))
+			        .onTransfertProgress(eq(dest), eq(f), eq(DISTANTTOLOCAL), anyLong(), eq(4096L));
+			order.verify(observer, times(1))
+			        .onTransfertProgress(eq(dest), eq(f), eq(DISTANTTOLOCAL), anyLong(), eq(8192L));
+			order.verify(observer, times(1))
+			        .onTransfertProgress(eq(dest), eq(f), eq(DISTANTTOLOCAL), anyLong(), eq(10240L));
+			order.verify(observer, times(1))
+			        .afterTransfert(eq(dest), eq(f), eq(DISTANTTOLOCAL), any(Duration.class));
+		}
+
+		@Test
+		void testSendLocalToAbstract_segments() throws IOException {
+			final var sended = fs.getFromPath("sended.bin");
+			fs.setTransferSegmentSize(6000);
+			sended.sendLocalToAbstract(source, observer);
+			assertArrayEquals(datas, FileUtils.readFileToByteArray(sended.getInternalFile()));
+			verify(observer, times(2))
+			        .onTransfertProgress(eq(source), eq(sended), eq(LOCALTODISTANT), anyLong(), anyLong());
+			verify(observer, times(1))
+			        .afterTransfert(eq(source), eq(sended), eq(LOCALTODISTANT), any(Duration.class));
+		}
+
+		@Test
+		void testCopy_stop() {
+			fs.setTransferSegmentSize(4096);
+			when(observer.onTransfertProgress(any(File.class), any(AbstractFile.class),
+			        any(TransfertDirection.class), anyLong(), anyLong())).thenReturn(false);
+			f.copyAbstractToLocal(dest, observer);
+			assertEquals(4096, dest.length());
+			verify(observer, times(1))
+			        .onTransfertProgress(eq(dest), eq(f), eq(DISTANTTOLOCAL), anyLong(), eq(4096L));
+			verify(observer, never())
+			        .afterTransfert(any(File.class), any(AbstractFile.class), any(TransfertDirection.class),
+			                any(Duration.class));
+		}
+
+		@Test
+		void testCopy_buffered() throws IOException {
+			fs.setTransferSegmentSize(0);
+			f.copyAbstractToLocal(dest, observer);
+			assertArrayEquals(datas, FileUtils.readFileToByteArray(dest));
+			verify(observer, times(1))
+			        .onTransfertProgress(eq(dest), eq(f), eq(DISTANTTOLOCAL), anyLong(), eq((long) datas.length));
+			verify(observer, times(1))
+			        .afterTransfert(eq(dest), eq(f), eq(DISTANTTOLOCAL), any(Duration.class));
+		}
+
+		@Test
+		void testCopy_empty() throws IOException {
+			FileUtils.writeByteArrayToFile(source, new byte[0]);
+			f.copyAbstractToLocal(dest, observer);
+			assertEquals(0, dest.length());
+			assertEquals(true, dest.exists());
+			verify(observer, never())
+			        .onTransfertProgress(any(File.class), any(AbstractFile.class), any(TransfertDirection.class),
+			                anyLong(), anyLong());
+			verify(observer, times(1))
+			        .afterTransfert(eq(dest), eq(f), eq(DISTANTTOLOCAL), any(Duration.class));
+		}
+
+		@Test
+		void testMappedReadWindowSize() {
+			assertEquals(0, fs.getMappedReadWindowSize());
+			fs.setMappedReadWindowSize(4096);
+			assertEquals(4096, fs.getMappedReadWindowSize());
+			assertThrows(IllegalArgumentException.class, () -> fs.setMappedReadWindowSize(-1));
+		}
+
+		@Test
+		void testDownloadAbstract_mapped_stream() {
+			fs.setMappedReadWindowSize(4000);
+			final var callbacks = new ArrayList<Long>();
+			final var outputStream = new ByteArrayOutputStream();
+			assertEquals(datas.length, f.downloadAbstract(outputStream, 3000, callbacks::add));
+			assertArrayEquals(datas, outputStream.toByteArray());
+			/**
+			 * Windows of 4000 bytes, by slices of 3000: 3000, 1000, 3000, 1000, 2240
+			 */
+			assertEquals(List.of(3000L, 4000L, 7000L, 8000L, 10240L), callbacks);
+		}
+
+		@Test
+		void testDownloadAbstract_mapped_position() {
+			fs.setMappedReadWindowSize(4096);
+			final var outputStream = new ByteArrayOutputStream();
+			assertEquals(datas.length - 5000, f.downloadAbstract(outputStream, 0, s -> true, 5000));
+			assertArrayEquals(Arrays.copyOfRange(datas, 5000, datas.length), outputStream.toByteArray());
+
+			final var end = new ByteArrayOutputStream();
+			assertEquals(0, f.downloadAbstract(end, 0, s -> true, datas.length));
+			assertEquals(0, end.size());
+		}
+
+		@Test
+		void testDownloadAbstract_mapped_stop() {
+			fs.setMappedReadWindowSize(4096);
+			final var outputStream = new ByteArrayOutputStream();
+			assertEquals(1024, f.downloadAbstract(outputStream, 1024, s -> false));
+			assertArrayEquals(Arrays.copyOf(datas, 1024), outputStream.toByteArray());
+		}
+
+		@Test
+		void testDownloadAbstract_mapped_fileChannel() throws IOException {
+			fs.setMappedReadWindowSize(4096);
+			try (var outputStream = new FileOutputStream(dest)) {
+				assertEquals(datas.length, f.downloadAbstract(outputStream, 1000, s -> true));
+			}
+			assertArrayEquals(datas, FileUtils.readFileToByteArray(dest));
+		}
+
+		@Test
+		void testDownloadAbstract_mapped_exchange() throws Exception {
+			fs.setMappedReadWindowSize(4096);
+			final var exchange = new DataExchangeInOutStream();
+			final var downloaded = CompletableFuture.supplyAsync(
+			        () -> f.downloadAbstract(exchange.getDestTargetStream(), 1000, s -> true));
+			final var readed = IOUtils.toByteArray(exchange.getSourceOriginStream());
+			assertEquals(datas.length, downloaded.get(10, TimeUnit.SECONDS));
+			assertArrayEquals(datas, readed);
+		}
+
+		@Test
+		void testDownloadAbstract_mapped_empty() throws IOException {
+			fs.setMappedReadWindowSize(4096);
+			FileUtils.writeByteArrayToFile(source, new byte[0]);
+			final var outputStream = new ByteArrayOutputStream();
+			assertEquals(0, f.downloadAbstract(outputStream, 1000, s -> true));
+		}
+
+		@Test
+		void testDownloadAbstract_channel() {
+			final var callbacks = new ArrayList<Long>();
+			final var outputStream = new ByteArrayOutputStream();
+			final var channel = Channels.newChannel(outputStream);
+			assertEquals(datas.length, f.downloadAbstract(channel, 3000, callbacks::add));
+			assertArrayEquals(datas, outputStream.toByteArray());
+			assertEquals(List.of(3000L, 6000L, 9000L, 10240L), callbacks);
+			assertFalse(channel.isOpen());
+		}
+
+		@Test
+		void testDownloadAbstract_channel_stop() {
+			final var outputStream = new ByteArrayOutputStream();
+			assertEquals(1024, f.downloadAbstract(Channels.newChannel(outputStream), 1024, s -> false));
+			assertArrayEquals(Arrays.copyOf(datas, 1024), outputStream.toByteArray());
+		}
+
+		@Test
+		void testDownloadAbstract_fileChannel_position() throws IOException {
+			try (var outputStream = new FileOutputStream(dest)) {
+				assertEquals(datas.length - 5000, f.downloadAbstract(outputStream, 1000, s -> true, 5000));
+			}
+			assertArrayEquals(Arrays.copyOfRange(datas, 5000, datas.length), FileUtils.readFileToByteArray(dest));
+		}
+
+		@Test
+		void testDownloadAbstract_channel_mapped() {
+			fs.setMappedReadWindowSize(4096);
+			final var outputStream = new ByteArrayOutputStream();
+			assertEquals(datas.length, f.downloadAbstract(Channels.newChannel(outputStream), 1000, s -> true));
+			assertArrayEquals(datas, outputStream.toByteArray());
+		}
+
+		@Test
+		void testUploadAbstract_channel() throws IOException {
+			final var callbacks = new ArrayList<Long>();
+			final var channel = Channels.newChannel(new ByteArrayInputStream(datas));
+			final var target = fs.getFromPath("dest.bin");
+			assertEquals(datas.length, target.uploadAbstract(channel, 4000, callbacks::add));
+			assertArrayEquals(datas, FileUtils.readFileToByteArray(dest));
+			assertEquals(List.of(4000L, 8000L, 10240L), callbacks);
+			assertFalse(channel.isOpen());
+		}
+
+		@Test
+		void testUploadAbstract_channel_stop() throws IOException {
+			final var target = fs.getFromPath("dest.bin");
+			final var channel = Channels.newChannel(new ByteArrayInputStream(datas));
+			assertEquals(1024, target.uploadAbstract(channel, 1024, s -> false));
+			assertArrayEquals(Arrays.copyOf(datas, 1024), FileUtils.readFileToByteArray(dest));
+		}
+
+		@Test
+		void testUploadAbstract_fileChannel_position() throws IOException {
+			FileUtils.writeByteArrayToFile(dest, datas);
+			try (var inputStream = new FileInputStream(dest)) {
+				assertEquals(datas.length, f.uploadAbstract(inputStream, 1000, s -> true, 5000));
+			}
+			final var expected = new byte[5000 + datas.length];
+			System.arraycopy(datas, 0, expected, 0, 5000);
+			System.arraycopy(datas, 0, expected, 5000, datas.length);
+			assertArrayEquals(expected, FileUtils.readFileToByteArray(source));
+		}
+
+		@Test
+		void testCopyAbstractToAbstract_channels() throws Exception {
+			final var destFs = new LocalFileSystem(getRoot());
+			final var target = destFs.getFromPath("dest.bin");
+			final var dataExchangeObserver = new DataExchangeObserver() {};
+			final var exchange = f.copyAbstractToAbstract(target, dataExchangeObserver);
+			assertEquals(DataExchangeInOutStream.State.WRITER_MANUALLY_CLOSED, exchange.getState());
+			assertArrayEquals(datas, FileUtils.readFileToByteArray(dest));
+		}
+
+		@Test
+		void testChannel_exchange() throws Exception {
+			final var exchange = new DataExchangeInOutStream();
+			final var target = fs.getFromPath("dest.bin");
+			final var downloaded = CompletableFuture.supplyAsync(
+			        () -> f.downloadAbstract(exchange.getDestTargetChannel(), 1000, s -> true));
+			assertEquals(datas.length, target.uploadAbstract(exchange.getSourceOriginChannel(), 1500, s -> true));
+			assertEquals(datas.length, downloaded.get(10, TimeUnit.SECONDS));
+			assertArrayEquals(datas, FileUtils.readFileToByteArray(dest));
+		}
+
+		@Test
+		@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+		void benchmark() throws IOException {
+			final var size = Long.getLong("benchmark.size", 2048) * 1024 * 1024;
+			try (var raf = new RandomAccessFile(source, "rw")) {
+				final var block = new byte[1024 * 1024];
+				new Random().nextBytes(block);
+				raf.setLength(0);
+				for (var pos = 0L; pos < size; pos += block.length) {
+					raf.write(block);
+				}
+			}
+			final var result = new StringBuilder("Local copy of " + size / 1024 / 1024 + " MB (MB/s):");
+			for (final var segmentSize : new long[] { 0, 8L * 1024 * 1024, LocalFileSystem.DEFAULT_TRANSFER_SEGMENT_SIZE }) {
+				fs.setTransferSegmentSize(segmentSize);
+				FileUtils.deleteQuietly(dest);
+				final var start = System.nanoTime();
+				f.copyAbstractToLocal(dest, observer);
+				final var duration = System.nanoTime() - start;
+				assertEquals(size, dest.length());
+				result.append(String.format("%nsegment %3d MB: %7.1f",
+				        segmentSize / 1024 / 1024, size / (1024d * 1024d) / (duration / 1_000_000_000d)));
+			}
+			log.warn(result);// Visible with the test log configuration
+		}
+	}
 }
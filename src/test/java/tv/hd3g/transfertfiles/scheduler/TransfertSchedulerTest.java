@@ -0,0 +1,421 @@
+/*
+ * This file is part of transfertfiles.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * Copyright (C) hdsdi3g for hd3g.tv 2021
+ *
+ */
+package tv.hd3g.transfertfiles.scheduler;
+
+import static java.util.stream.Collectors.toUnmodifiableList;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static tv.hd3g.transfertfiles.scheduler.TransfertJob.Status.CANCELLED;
+import static tv.hd3g.transfertfiles.scheduler.TransfertJob.Status.DONE;
+import static tv.hd3g.transfertfiles.scheduler.TransfertJob.Status.FAILED;
+import static tv.hd3g.transfertfiles.scheduler.TransfertJob.Status.QUEUED;
+import static tv.hd3g.transfertfiles.scheduler.TransfertJob.Status.STOPPED;
+import static tv.hd3g.transfertfiles.scheduler.TransfertPriority.BULK;
+import static tv.hd3g.transfertfiles.scheduler.TransfertPriority.NORMAL;
+import static tv.hd3g.transfertfiles.scheduler.TransfertPriority.URGENT;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import tv.hd3g.transfertfiles.AbstractFile;
+import tv.hd3g.transfertfiles.AbstractFileSystemURL;
+import tv.hd3g.transfertfiles.BandwidthLimiter;
+import tv.hd3g.transfertfiles.DataExchangeObserver;
+import tv.hd3g.transfertfiles.cached.CachedFileSystem;
+import tv.hd3g.transfertfiles.local.LocalFileSystem;
+
+class TransfertSchedulerTest {
+
+	File root;
+	File sourceDir;
+	File destDir;
+	String sourceURL;
+	String destURL;
+	byte[] datas;
+	TransfertScheduler scheduler;
+
+	@BeforeEach
+	void init() throws IOException {
+		root = new File("target/testfs-scheduler");
+		sourceDir = new File(root, "source");
+		destDir = new File(root, "dest");
+		FileUtils.forceMkdir(sourceDir);
+		FileUtils.forceMkdir(destDir);
+		FileUtils.cleanDirectory(sourceDir);
+		FileUtils.cleanDirectory(destDir);
+		datas = new byte[10 * 1024];
+		new Random().nextBytes(datas);
+		for (var pos = 0; pos < 4; pos++) {
+			FileUtils.writeByteArrayToFile(new File(sourceDir, pos + ".bin"), datas);
+		}
+		sourceURL = "file://localhost/" + sourceDir.getAbsolutePath();
+		destURL = "file://localhost/" + destDir.getAbsolutePath();
+	}
+
+	@AfterEach
+	void end() throws IOException {
+		if (scheduler != null) {
+			scheduler.close();
+		}
+		FileUtils.deleteQuietly(root);
+	}
+
+	static TransfertJob waitEnd(final TransfertJob job) throws InterruptedException, TimeoutException {
+		try {
+			job.getCompletion().get(10, TimeUnit.SECONDS);
+		} catch (final ExecutionException e) {
+			assertEquals(FAILED, job.getStatus());
+		}
+		return job;
+	}
+
+	/**
+	 * Block each transfert start, until release.
+	 */
+	static class BlockingObserver implements DataExchangeObserver {
+		final CountDownLatch release = new CountDownLatch(1);
+		final List<String> started = Collections.synchronizedList(new ArrayList<>());
+
+		@Override
+		public void beforeTransfert(final AbstractFile source, final AbstractFile destination) {
+			started.add(source.getName());
+			try {
+				assertTrue(release.await(10, TimeUnit.SECONDS));
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Count the max concurrent transferts.
+	 */
+	static class ConcurrentObserver implements DataExchangeObserver {
+		final AtomicInteger current = new AtomicInteger();
+		final AtomicInteger max = new AtomicInteger();
+
+		@Override
+		public void beforeTransfert(final AbstractFile source, final AbstractFile destination) {
+			max.accumulateAndGet(current.incrementAndGet(), Math::max);
+			try {
+				Thread.sleep(50);// NOSONAR S2925
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		@Override
+		public void afterTransfert(final AbstractFile source,
+		                           final AbstractFile destination,
+		                           final long dataSizeTranferedFromSource,
+		                           final long dataSizeTranferedToDestination,
+		                           final Duration transfertDuration) {
+			current.decrementAndGet();
+		}
+	}
+
+	static void waitFor(final CountDownLatch latch) throws InterruptedException {
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+	}
+
+	static void waitStarted(final BlockingObserver observer, final int count) throws InterruptedException {
+		final var timeout = System.currentTimeMillis() + 10_000;
+		while (observer.started.size() < count) {
+			assertTrue(System.currentTimeMillis() < timeout);
+			Thread.sleep(1);// NOSONAR S2925
+		}
+	}
+
+	@Test
+	void testInvalidParams() {
+		assertThrows(IllegalArgumentException.class, () -> new TransfertScheduler(0));
+		scheduler = new TransfertScheduler(1);
+		assertThrows(IllegalArgumentException.class, () -> scheduler.setMaxConcurrentByHost(-1));
+		assertThrows(IllegalArgumentException.class, () -> scheduler.setMaxConcurrentByFileSystem(-1));
+		final var zero = Duration.ZERO;
+		final var second = Duration.ofSeconds(1);
+		final var negative = Duration.ofSeconds(-1);
+		assertThrows(IllegalArgumentException.class, () -> scheduler.setRetry(0, zero, zero));
+		assertThrows(IllegalArgumentException.class, () -> scheduler.setRetry(1, negative, zero));
+		assertThrows(IllegalArgumentException.class, () -> scheduler.setRetry(1, second, zero));
+		final var observer = new DataExchangeObserver() {};
+		assertThrows(NullPointerException.class,
+		        () -> scheduler.submit(null, sourceURL, "0.bin", destURL, "0.bin", observer));
+		assertThrows(NullPointerException.class,
+		        () -> scheduler.submit(NORMAL, sourceURL, "0.bin", destURL, "0.bin", null));
+		assertThrows(IllegalArgumentException.class,
+		        () -> scheduler.submit(NORMAL, sourceURL, "../0.bin", destURL, "0.bin", observer));
+	}
+
+	@Test
+	void testSubmit() throws Exception {
+		scheduler = new TransfertScheduler(2);
+		final var afterCount = new AtomicInteger();
+		final var jobs = IntStream.range(0, 4)
+		        .mapToObj(pos -> scheduler.submit(NORMAL, sourceURL, pos + ".bin", destURL, "/copy" + pos + ".bin",
+		                new DataExchangeObserver() {
+			                @Override
+			                public void afterTransfert(final AbstractFile source,
+			                                           final AbstractFile destination,
+			                                           final long dataSizeTranferedFromSource,
+			                                           final long dataSizeTranferedToDestination,
+			                                           final Duration transfertDuration) {
+				                assertEquals(datas.length, dataSizeTranferedFromSource);
+				                assertEquals(datas.length, dataSizeTranferedToDestination);
+				                afterCount.incrementAndGet();
+			                }
+		                }))
+		        .collect(toUnmodifiableList());
+
+		for (final var job : jobs) {
+			assertEquals(job, job.getCompletion().get(10, TimeUnit.SECONDS));
+			assertEquals(DONE, job.getStatus());
+			assertEquals(1, job.getAttempts());
+			assertFalse(job.cancel());
+		}
+		assertEquals(4, afterCount.get());
+		for (var pos = 0; pos < 4; pos++) {
+			assertArrayEquals(datas, FileUtils.readFileToByteArray(new File(destDir, "copy" + pos + ".bin")));
+		}
+		assertEquals(0, scheduler.getQueuedCount());
+		assertEquals(0, scheduler.getRunningCount());
+	}
+
+	@Test
+	void testReuseFileSystems() throws Exception {
+		final var created = new AtomicInteger();
+		scheduler = new TransfertScheduler(2, url -> {
+			created.incrementAndGet();
+			return new AbstractFileSystemURL(url);
+		});
+		final var observer = new DataExchangeObserver() {};
+		for (var pos = 0; pos < 4; pos++) {
+			waitEnd(scheduler.submit(NORMAL, sourceURL, pos + ".bin", destURL, pos + ".bin", observer));
+		}
+		assertEquals(2, created.get());
+	}
+
+	@Test
+	void testPriority() throws Exception {
+		scheduler = new TransfertScheduler(1);
+		final var observer = new BlockingObserver();
+		final var first = scheduler.submit(BULK, sourceURL, "0.bin", destURL, "0.bin", observer);
+		waitStarted(observer, 1);
+
+		final var bulk = scheduler.submit(BULK, sourceURL, "1.bin", destURL, "1.bin", observer);
+		final var normal = scheduler.submit(NORMAL, sourceURL, "2.bin", destURL, "2.bin", observer);
+		final var urgent = scheduler.submit(URGENT, sourceURL, "3.bin", destURL, "3.bin", observer);
+		assertEquals(3, scheduler.getQueuedCount());
+		assertEquals(1, scheduler.getRunningCount());
+		assertEquals(QUEUED, urgent.getStatus());
+		observer.release.countDown();
+
+		for (final var job : List.of(first, bulk, normal, urgent)) {
+			assertEquals(DONE, waitEnd(job).getStatus());
+		}
+		assertEquals(List.of("0.bin", "3.bin", "2.bin", "1.bin"), observer.started);
+	}
+
+	@Test
+	void testMaxConcurrentByFileSystem() throws Exception {
+		scheduler = new TransfertScheduler(4).setMaxConcurrentByFileSystem(1);
+		final var observer = new ConcurrentObserver();
+		final var jobs = IntStream.range(0, 4)
+		        .mapToObj(pos -> scheduler.submit(NORMAL, sourceURL, pos + ".bin", destURL, pos + ".bin", observer))
+		        .collect(toUnmodifiableList());
+		for (final var job : jobs) {
+			assertEquals(DONE, waitEnd(job).getStatus());
+		}
+		assertEquals(1, observer.max.get());
+	}
+
+	@Test
+	void testMaxConcurrentByHost() throws Exception {
+		/**
+		 * Not LocalFileSystems: seen as distant FileSystems, all on localhost. One FileSystem by job.
+		 */
+		scheduler = new TransfertScheduler(4, url -> new AbstractFileSystemURL(url,
+		        new CachedFileSystem(new LocalFileSystem(url.startsWith("a") ? sourceDir : destDir), Duration.ZERO),
+		        "/") {}).setMaxConcurrentByHost(2);
+		final var observer = new ConcurrentObserver();
+		final var jobs = IntStream.range(0, 4)
+		        .mapToObj(pos -> scheduler.submit(NORMAL, "a" + pos, pos + ".bin", "b" + pos, pos + ".bin", observer))
+		        .collect(toUnmodifiableList());
+		for (final var job : jobs) {
+			assertEquals(DONE, waitEnd(job).getStatus());
+		}
+		assertEquals(2, observer.max.get());
+		assertArrayEquals(datas, FileUtils.readFileToByteArray(new File(destDir, "3.bin")));
+	}
+
+	@Test
+	void testNotBlockedByCaps() throws Exception {
+		scheduler = new TransfertScheduler(2).setMaxConcurrentByFileSystem(1);
+		final var observer = new BlockingObserver();
+		final var otherDir = new File(root, "other");
+		FileUtils.writeByteArrayToFile(new File(otherDir, "other.bin"), datas);
+		final var otherURL = "file://localhost/" + otherDir.getAbsolutePath();
+
+		final var first = scheduler.submit(NORMAL, sourceURL, "0.bin", destURL, "0.bin", observer);
+		waitStarted(observer, 1);
+		final var blocked = scheduler.submit(URGENT, sourceURL, "1.bin", destURL, "1.bin", observer);
+		final var free = scheduler.submit(BULK, otherURL, "other.bin", otherURL, "copy.bin", observer);
+		waitStarted(observer, 2);
+		assertEquals(QUEUED, blocked.getStatus());
+		assertEquals(List.of("0.bin", "other.bin"), observer.started);
+		observer.release.countDown();
+
+		for (final var job : List.of(first, blocked, free)) {
+			assertEquals(DONE, waitEnd(job).getStatus());
+		}
+		assertArrayEquals(datas, FileUtils.readFileToByteArray(new File(otherDir, "copy.bin")));
+	}
+
+	@Test
+	void testRetry() throws Exception {
+		scheduler = new TransfertScheduler(1).setRetry(3, Duration.ofMillis(10), Duration.ofMillis(20));
+		final var attempts = new AtomicInteger();
+		final var job = scheduler.submit(NORMAL, sourceURL, "0.bin", destURL, "0.bin", new DataExchangeObserver() {
+			@Override
+			public void beforeTransfert(final AbstractFile source, final AbstractFile destination) {
+				if (attempts.incrementAndGet() == 1) {
+					throw new IllegalStateException("First attempt error");
+				}
+			}
+		});
+		assertEquals(DONE, waitEnd(job).getStatus());
+		assertEquals(2, job.getAttempts());
+		assertEquals("First attempt error", job.getLastError().getMessage());
+		assertArrayEquals(datas, FileUtils.readFileToByteArray(new File(destDir, "0.bin")));
+	}
+
+	@Test
+	void testRetry_failed() throws Exception {
+		scheduler = new TransfertScheduler(1).setRetry(3, Duration.ofMillis(1), Duration.ofMillis(5));
+		final var job = scheduler.submit(NORMAL, sourceURL, "nope.bin", destURL, "0.bin",
+		        new DataExchangeObserver() {});
+		final var completion = job.getCompletion();
+		assertThrows(ExecutionException.class, () -> completion.get(10, TimeUnit.SECONDS));
+		assertEquals(FAILED, job.getStatus());
+		assertEquals(3, job.getAttempts());
+		assertNotNull(job.getLastError());
+	}
+
+	@Test
+	void testGetBackoff() {
+		scheduler = new TransfertScheduler(1).setRetry(5, Duration.ofSeconds(1), Duration.ofSeconds(5));
+		assertEquals(Duration.ofSeconds(1), scheduler.getBackoff(1));
+		assertEquals(Duration.ofSeconds(2), scheduler.getBackoff(2));
+		assertEquals(Duration.ofSeconds(4), scheduler.getBackoff(3));
+		assertEquals(Duration.ofSeconds(5), scheduler.getBackoff(4));
+		assertEquals(Duration.ofSeconds(5), scheduler.getBackoff(100));
+	}
+
+	@Test
+	void testCancel() throws Exception {
+		scheduler = new TransfertScheduler(1);
+		final var observer = new BlockingObserver();
+		final var running = scheduler.submit(NORMAL, sourceURL, "0.bin", destURL, "0.bin", observer);
+		waitStarted(observer, 1);
+		final var queued = scheduler.submit(NORMAL, sourceURL, "1.bin", destURL, "1.bin", observer);
+
+		assertTrue(queued.cancel());
+		assertEquals(CANCELLED, waitEnd(queued).getStatus());
+		assertFalse(queued.cancel());
+
+		assertTrue(running.cancel());
+		observer.release.countDown();
+		assertEquals(CANCELLED, waitEnd(running).getStatus());
+		assertEquals(List.of("0.bin"), observer.started);
+		assertFalse(new File(destDir, "1.bin").exists());
+	}
+
+	@Test
+	void testStopByObserver() throws Exception {
+		scheduler = new TransfertScheduler(1);
+		final var job = scheduler.submit(NORMAL, sourceURL, "0.bin", destURL, "0.bin", new DataExchangeObserver() {
+			@Override
+			public boolean onTransfertProgressFromSource(final AbstractFile source,
+			                                             final long startDate,
+			                                             final long dataTransferred) {
+				return false;
+			}
+		});
+		assertEquals(STOPPED, waitEnd(job).getStatus());
+		assertEquals(1, job.getAttempts());
+	}
+
+	@Test
+	void testBandwidthLimiter() throws Exception {
+		final var limiter = new BandwidthLimiter(100_000_000);
+		scheduler = new TransfertScheduler(2).setBandwidthLimiter(limiter);
+		assertEquals(limiter, scheduler.getBandwidthLimiter());
+		final var observer = new DataExchangeObserver() {};
+		waitEnd(scheduler.submit(NORMAL, sourceURL, "0.bin", destURL, "0.bin", observer));
+		waitEnd(scheduler.submit(NORMAL, sourceURL, "1.bin", destURL, "1.bin", observer));
+		assertEquals(2L * datas.length, limiter.getAcquiredBytes());
+	}
+
+	@Test
+	void testClose() throws Exception {
+		scheduler = new TransfertScheduler(1);
+		final var observer = new BlockingObserver();
+		final var running = scheduler.submit(NORMAL, sourceURL, "0.bin", destURL, "0.bin", observer);
+		waitStarted(observer, 1);
+		final var queued = scheduler.submit(NORMAL, sourceURL, "1.bin", destURL, "1.bin", observer);
+
+		final var closed = CompletableFuture.runAsync(() -> {
+			try {
+				scheduler.close();
+			} catch (final IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+		assertEquals(CANCELLED, waitEnd(queued).getStatus());
+		observer.release.countDown();
+		closed.get(10, TimeUnit.SECONDS);
+
+		assertEquals(CANCELLED, waitEnd(running).getStatus());
+		assertEquals(List.of("0.bin"), observer.started);
+		assertThrows(IllegalStateException.class,
+		        () -> scheduler.submit(NORMAL, sourceURL, "0.bin", destURL, "0.bin", observer));
+		scheduler.close();
+	}
+
+}
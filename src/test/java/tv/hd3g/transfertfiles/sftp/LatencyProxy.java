@@ -0,0 +1,139 @@
+/*
+ * This file is part of transfertfiles.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * Copyright (C) hdsdi3g for hd3g.tv 2021
+ *
+ */
+package tv.hd3g.transfertfiles.sftp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TCP proxy which delays all datas by rtt/2 in each direction (not a bandwidth limit), for simulate a long network
+ * link with loopback connections.
+ */
+class LatencyProxy implements AutoCloseable {
+	private static final byte[] END = new byte[0];
+
+	private final ServerSocket serverSocket;
+	private final InetAddress targetHost;
+	private final int targetPort;
+	private final long oneWayDelayNanos;
+
+	LatencyProxy(final InetAddress targetHost, final int targetPort, final long rttMillis) throws IOException {
+		this.targetHost = targetHost;
+		this.targetPort = targetPort;
+		oneWayDelayNanos = TimeUnit.MILLISECONDS.toNanos(rttMillis) / 2;
+		serverSocket = new ServerSocket();
+		serverSocket.bind(new InetSocketAddress(targetHost, 0));
+		startDaemon(this::accept, "LatencyProxyAccept");
+	}
+
+	int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	private static void startDaemon(final Runnable r, final String name) {
+		final var t = new Thread(r, name);
+		t.setDaemon(true);
+		t.start();
+	}
+
+	private void accept() {
+		while (serverSocket.isClosed() == false) {
+			try {
+				final var client = serverSocket.accept();
+				final var server = new Socket(targetHost, targetPort);
+				client.setTcpNoDelay(true);
+				server.setTcpNoDelay(true);
+				pipe(client, server);
+				pipe(server, client);
+			} catch (final IOException e) {
+				return;
+			}
+		}
+	}
+
+	private void pipe(final Socket from, final Socket to) throws IOException {
+		final BlockingQueue<Delayed> queue = new LinkedBlockingQueue<>();
+		final var in = from.getInputStream();
+		final var out = to.getOutputStream();
+		startDaemon(() -> read(in, queue), "LatencyProxyRead");
+		startDaemon(() -> write(queue, out, to), "LatencyProxyWrite");
+	}
+
+	private static class Delayed {
+		final long deadline;
+		final byte[] datas;
+
+		Delayed(final long deadline, final byte[] datas) {
+			this.deadline = deadline;
+			this.datas = datas;
+		}
+	}
+
+	private void read(final InputStream in, final BlockingQueue<Delayed> queue) {
+		final var buffer = new byte[65536];
+		try {
+			int size;
+			while ((size = in.read(buffer)) > -1) {
+				queue.add(new Delayed(System.nanoTime() + oneWayDelayNanos, Arrays.copyOf(buffer, size)));
+			}
+		} catch (final IOException e) {
+			/**
+			 * Closed
+			 */
+		} finally {
+			queue.add(new Delayed(System.nanoTime() + oneWayDelayNanos, END));
+		}
+	}
+
+	private static void write(final BlockingQueue<Delayed> queue, final OutputStream out, final Socket to) {
+		try {
+			while (true) {
+				final var delayed = queue.take();
+				final var wait = delayed.deadline - System.nanoTime();
+				if (wait > 0) {
+					TimeUnit.NANOSECONDS.sleep(wait);
+				}
+				if (delayed.datas == END) {
+					to.shutdownOutput();
+					return;
+				}
+				out.write(delayed.datas);
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (final IOException e) {
+			/**
+			 * Closed
+			 */
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		serverSocket.close();
+	}
+
+}
@@ -0,0 +1,329 @@
+/*
+ * This file is part of transfertfiles.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * Copyright (C) hdsdi3g for hd3g.tv 2021
+ *
+ */
+package tv.hd3g.transfertfiles.sftp;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toUnmodifiableList;
+import static org.apache.sshd.common.config.keys.KeyUtils.RSA_ALGORITHM;
+import static org.apache.sshd.server.auth.BuiltinUserAuthFactories.PASSWORD;
+import static org.apache.sshd.sftp.common.SftpConstants.SSH_FXP_STAT;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.sshd.common.file.virtualfs.VirtualFileSystemFactory;
+import org.apache.sshd.server.SshServer;
+import org.apache.sshd.server.keyprovider.SimpleGeneratorHostKeyProvider;
+import org.apache.sshd.server.session.ServerSession;
+import org.apache.sshd.server.shell.UnknownCommandFactory;
+import org.apache.sshd.sftp.server.SftpEventListener;
+import org.apache.sshd.sftp.server.SftpSubsystemFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import tv.hd3g.transfertfiles.AbstractFile;
+import tv.hd3g.transfertfiles.CachedFileAttributes;
+import tv.hd3g.transfertfiles.TreeWalker;
+
+/**
+ * Count the STAT requests received by the server.
+ */
+class SFTPFileListingTest {
+
+	static File root;
+	static SshServer sshd;
+	static String username;
+	static String password;
+	static InetAddress host;
+	static AtomicInteger statCount;
+
+	@BeforeAll
+	static void load() throws Exception {
+		root = new File("target/testfs-sftp-listing");
+		FileUtils.forceMkdir(root);
+		FileUtils.cleanDirectory(root);
+		final var serverKeys = new File("target/testfs-sftp-listing-key.ser");
+
+		host = InetAddress.getLocalHost();
+		username = "testusr";
+		password = String.valueOf(System.nanoTime());
+		statCount = new AtomicInteger();
+
+		sshd = SshServer.setUpDefaultServer();
+		sshd.setPort(0);
+		sshd.setHost(host.getHostAddress());
+
+		final var hostKeyProvider = new SimpleGeneratorHostKeyProvider(serverKeys.toPath());
+		hostKeyProvider.setAlgorithm(RSA_ALGORITHM);
+		sshd.setKeyPairProvider(hostKeyProvider);
+
+		sshd.setUserAuthFactories(List.of(PASSWORD.create()));
+		sshd.setPasswordAuthenticator(
+		        (usr, passw, session) -> (usr.equalsIgnoreCase(username)
+		                                  && passw.equals(password)));
+		sshd.setCommandFactory(UnknownCommandFactory.INSTANCE);
+		final var sftpFactory = new SftpSubsystemFactory();
+		sftpFactory.addSftpEventListener(new SftpEventListener() {
+			@Override
+			public void received(final ServerSession session, final int type, final int id) throws IOException {
+				if (type == SSH_FXP_STAT) {
+					statCount.incrementAndGet();
+				}
+			}
+		});
+		sshd.setSubsystemFactories(List.of(sftpFactory));
+
+		final var fileSystemFactory = new VirtualFileSystemFactory();
+		fileSystemFactory.setDefaultHomeDir(root.getAbsoluteFile().toPath());
+		sshd.setFileSystemFactory(fileSystemFactory);
+		sshd.start();
+
+		final var savedFile = File.createTempFile("testKnownHosts", ".txt");
+		System.setProperty("ssh.knownhosts", savedFile.getAbsolutePath());
+	}
+
+	@AfterAll
+	static void ends() throws Exception {
+		sshd.stop(true);
+		System.clearProperty("ssh.knownhosts");
+	}
+
+	SFTPFileSystem fs;
+
+	@BeforeEach
+	void init() throws IOException {
+		FileUtils.cleanDirectory(root);
+		FileUtils.forceMkdir(new File(root, "dir/sub"));
+		FileUtils.write(new File(root, "dir/a"), "aaa", UTF_8);
+		FileUtils.write(new File(root, "dir/b"), "bb", UTF_8);
+		fs = new SFTPFileSystem(host, sshd.getPort(), username, "");
+		fs.setPasswordAuth(password.toCharArray());
+		fs.connect();
+		statCount.set(0);
+	}
+
+	@AfterEach
+	void end() {
+		fs.close();
+	}
+
+	List<SFTPFile> list() {
+		return fs.getFromPath("dir").list()
+		        .map(SFTPFile.class::cast)
+		        .collect(toUnmodifiableList());
+	}
+
+	SFTPFile list(final String name) {
+		return list().stream()
+		        .filter(f -> f.getName().equals(name))
+		        .findFirst()
+		        .orElseThrow();
+	}
+
+	@Test
+	void testList_noStat() {
+		final var files = list();
+		assertEquals(3, files.size());
+		assertTrue(files.stream().allMatch(SFTPFile::hasKnownAttributes));
+
+		final var a = list("a");
+		assertTrue(a.exists());
+		assertTrue(a.isFile());
+		assertFalse(a.isDirectory());
+		assertFalse(a.isLink());
+		assertFalse(a.isSpecial());
+		assertEquals(3, a.length());
+		assertEquals(new File(root, "dir/a").lastModified() / 1000L, a.lastModified() / 1000L);
+
+		final var sub = list("sub");
+		assertTrue(sub.isDirectory());
+		assertFalse(sub.isFile());
+		assertEquals(0, statCount.get());
+	}
+
+	@Test
+	void testList_links() throws IOException {
+		Files.createSymbolicLink(new File(root, "dir/linkdir").toPath(), new File(root, "dir/sub").getAbsoluteFile()
+		        .toPath());
+		Files.createSymbolicLink(new File(root, "dir/linkfile").toPath(), new File(root, "dir/a").getAbsoluteFile()
+		        .toPath());
+		Files.createSymbolicLink(new File(root, "dir/broken").toPath(), new File(root, "dir/nope").getAbsoluteFile()
+		        .toPath());
+		assertEquals(6, list().size());
+
+		for (final var name : List.of("linkdir", "linkfile")) {
+			final var listed = list(name);
+			final var stated = fs.getFromPath("dir/" + name);
+			assertEquals(stated.isDirectory(), listed.isDirectory(), name);
+			assertEquals(stated.isFile(), listed.isFile(), name);
+			assertEquals(stated.isLink(), listed.isLink(), name);
+			assertEquals(stated.length(), listed.length(), name);
+		}
+		assertTrue(list("linkdir").isDirectory());
+		assertEquals(3, list("linkfile").length());
+		assertTrue(list("broken").isLink());
+	}
+
+	@Test
+	void testToCachedList_noStat() {
+		final var list = fs.getFromPath("dir").toCachedList().collect(toUnmodifiableList());
+		assertEquals(3, list.size());
+		assertTrue(list.stream()
+		        .map(CachedFileAttributes::getAbstractFile)
+		        .map(SFTPFile.class::cast)
+		        .allMatch(SFTPFile::hasKnownAttributes));
+		final var a = list.stream().filter(f -> f.getName().equals("a")).findFirst().orElseThrow();
+		assertEquals(3, a.length());
+		assertEquals(0, statCount.get());
+	}
+
+	@Test
+	void testRefresh() throws IOException {
+		final var a = list("a");
+		FileUtils.write(new File(root, "dir/a"), "aaaaa", UTF_8);
+		assertEquals(3, a.length());
+
+		final var refreshed = a.refresh();
+		assertFalse(refreshed.hasKnownAttributes());
+		assertEquals(a, refreshed);
+		assertEquals(5, refreshed.length());
+		assertTrue(refreshed.isFile());
+		assertTrue(statCount.get() > 0);
+	}
+
+	@Test
+	void testForgetAfterChange() {
+		final var a = list("a");
+		assertEquals(3, a.length());
+		a.uploadAbstract(new ByteArrayInputStream(new byte[10]), 0, s -> true);
+		assertFalse(a.hasKnownAttributes());
+		assertEquals(10, a.length());
+
+		final var b = list("b");
+		b.delete();
+		assertFalse(b.hasKnownAttributes());
+		assertFalse(b.exists());
+	}
+
+	@Test
+	void testBulkStat() {
+		final var result = fs.stat(List.of("dir/a", "dir/nope", "dir/sub", "dir/b"));
+		assertEquals(4, result.size());
+		assertEquals(4, statCount.get());
+
+		assertEquals("/dir/a", result.get(0).getPath());
+		assertTrue(result.get(0).exists());
+		assertEquals(3, result.get(0).length());
+		assertTrue(result.get(0).isFile());
+
+		assertEquals("/dir/nope", result.get(1).getPath());
+		assertFalse(result.get(1).exists());
+
+		assertTrue(result.get(2).isDirectory());
+		assertEquals(2, result.get(3).length());
+
+		final var a = (SFTPFile) result.get(0).getAbstractFile();
+		assertTrue(a.hasKnownAttributes());
+		assertTrue(a.isFile());
+		assertEquals(3, a.length());
+		assertEquals(4, statCount.get());
+		assertFalse(((SFTPFile) result.get(1).getAbstractFile()).hasKnownAttributes());
+	}
+
+	@Test
+	void testBulkStat_window() {
+		fs.setPipelining(3, 32 * 1024);
+		final var paths = new ArrayList<String>();
+		IntStream.range(0, 50).forEach(i -> paths.add(i % 2 == 0 ? "dir/a" : "dir/none" + i));
+		final var result = fs.stat(paths);
+		assertEquals(50, result.size());
+		IntStream.range(0, 50).forEach(i -> assertEquals(i % 2 == 0, result.get(i).exists()));
+		assertEquals(50, statCount.get());
+	}
+
+	@Test
+	void testBulkStat_pooled() {
+		fs.close();
+		fs = new SFTPFileSystem(host, sshd.getPort(), username, "");
+		fs.setPasswordAuth(password.toCharArray());
+		fs.setChannelPool(1, 2, Duration.ofSeconds(10), Duration.ofSeconds(30));
+		fs.connect();
+		final var result = fs.stat(List.of("dir/a", "dir/b"));
+		assertTrue(result.stream().allMatch(CachedFileAttributes::exists));
+	}
+
+	@Test
+	void testWalk_pooled() throws IOException {
+		fs.close();
+		fs = new SFTPFileSystem(host, sshd.getPort(), username, "");
+		fs.setPasswordAuth(password.toCharArray());
+		fs.setChannelPool(1, 3, Duration.ofSeconds(10), Duration.ofSeconds(30));
+		fs.connect();
+		assertEquals(3, fs.getMaxParallelOperations());
+		for (var pos = 0; pos < 10; pos++) {
+			FileUtils.write(new File(root, "dir/sub/s" + pos + "/f"), "f", UTF_8);
+		}
+		statCount.set(0);
+
+		final var walker = new TreeWalker(fs.getFromPath("dir"));
+		assertEquals(3, walker.getParallelism());
+		try (var walk = walker.stream()) {
+			assertEquals(3 + 10 * 2, walk.count());
+		}
+		assertEquals(0, statCount.get());
+	}
+
+	@Test
+	void testWalk_notPooled() {
+		assertEquals(1, fs.getMaxParallelOperations());
+		assertEquals(1, new TreeWalker(fs.getFromPath("dir")).getParallelism());
+		try (var walk = fs.getFromPath("dir").walkCached()) {
+			assertEquals(3, walk.count());
+		}
+	}
+
+	@Test
+	void testBulkStat_empty() {
+		assertTrue(fs.stat(List.of()).isEmpty());
+		assertThrows(NullPointerException.class, () -> fs.stat(null));
+		assertEquals(0, statCount.get());
+	}
+
+	@Test
+	void testList_sameAsGetFromPath() {
+		final AbstractFile a = list("a");
+		assertEquals(fs.getFromPath("dir/a"), a);
+		assertEquals(fs.getFromPath("dir/a").toCache(), a.toCache());
+	}
+
+}
@@ -0,0 +1,295 @@
+/*
+ * This file is part of transfertfiles.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * Copyright (C) hdsdi3g for hd3g.tv 2021
+ *
+ */
+package tv.hd3g.transfertfiles.sftp;
+
+import static org.apache.sshd.common.config.keys.KeyUtils.RSA_ALGORITHM;
+import static org.apache.sshd.server.auth.BuiltinUserAuthFactories.PASSWORD;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.sshd.common.file.virtualfs.VirtualFileSystemFactory;
+import org.apache.sshd.server.SshServer;
+import org.apache.sshd.server.keyprovider.SimpleGeneratorHostKeyProvider;
+import org.apache.sshd.server.shell.UnknownCommandFactory;
+import org.apache.sshd.sftp.server.SftpSubsystemFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import tv.hd3g.transfertfiles.AbstractFile;
+import tv.hd3g.transfertfiles.SegmentedDownload;
+import tv.hd3g.transfertfiles.TransfertObserver;
+
+/**
+ * Throughput vs RTT benchmark: mvn test -Dtest=SFTPFilePipeliningTest -Dbenchmark=true
+ */
+class SFTPFilePipeliningTest {
+	private static final Logger log = LogManager.getLogger();
+
+	static File root;
+	static SshServer sshd;
+	static String username;
+	static String password;
+	static InetAddress host;
+
+	@BeforeAll
+	static void load() throws Exception {
+		root = new File("target/testfs-sftp-pipelining");
+		FileUtils.forceMkdir(root);
+		FileUtils.cleanDirectory(root);
+		final var serverKeys = new File(root, "testserverkey.ser");
+
+		host = InetAddress.getLocalHost();
+		username = "testusr";
+		password = String.valueOf(System.nanoTime());
+
+		sshd = SshServer.setUpDefaultServer();
+		sshd.setPort(0);
+		sshd.setHost(host.getHostAddress());
+
+		final var hostKeyProvider = new SimpleGeneratorHostKeyProvider(serverKeys.toPath());
+		hostKeyProvider.setAlgorithm(RSA_ALGORITHM);
+		sshd.setKeyPairProvider(hostKeyProvider);
+
+		sshd.setUserAuthFactories(List.of(PASSWORD.create()));
+		sshd.setPasswordAuthenticator(
+		        (usr, passw, session) -> (usr.equalsIgnoreCase(username)
+		                                  && passw.equals(password)));
+		sshd.setCommandFactory(UnknownCommandFactory.INSTANCE);
+		sshd.setSubsystemFactories(List.of(new SftpSubsystemFactory()));
+
+		final var fileSystemFactory = new VirtualFileSystemFactory();
+		fileSystemFactory.setDefaultHomeDir(root.getAbsoluteFile().toPath());
+		sshd.setFileSystemFactory(fileSystemFactory);
+		sshd.start();
+
+		final var savedFile = File.createTempFile("testKnownHosts", ".txt");
+		System.setProperty("ssh.knownhosts", savedFile.getAbsolutePath());
+	}
+
+	@AfterAll
+	static void ends() throws Exception {
+		sshd.stop(true);
+		System.clearProperty("ssh.knownhosts");
+	}
+
+	byte[] datas;
+
+	@BeforeEach
+	void init() {
+		datas = new byte[1024 * 1024 + 123];
+		new Random().nextBytes(datas);
+	}
+
+	static SFTPFileSystem connect(final int port) {
+		final var fs = new SFTPFileSystem(host, port, username, "");
+		fs.setPasswordAuth(password.toCharArray());
+		fs.connect();
+		return fs;
+	}
+
+	/**
+	 * @return nanoseconds
+	 */
+	long upload(final SFTPFileSystem fs, final String name) {
+		final var f = fs.getFromPath(name);
+		final var start = System.nanoTime();
+		assertEquals(datas.length, f.uploadAbstract(new ByteArrayInputStream(datas), 0, s -> true));
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * @return nanoseconds
+	 */
+	long download(final SFTPFileSystem fs, final String name) {
+		final var f = fs.getFromPath(name);
+		final var outputStream = new ByteArrayOutputStream();
+		final var start = System.nanoTime();
+		assertEquals(datas.length, f.downloadAbstract(outputStream, 0, s -> true));
+		final var duration = System.nanoTime() - start;
+		assertArrayEquals(datas, outputStream.toByteArray());
+		return duration;
+	}
+
+	@Test
+	void testSetPipelining() {
+		final var fs = new SFTPFileSystem(host, sshd.getPort(), username, "");
+		assertEquals(SFTPFileSystem.DEFAULT_MAX_OUTSTANDING_REQUESTS, fs.getMaxOutstandingRequests());
+		assertEquals(SFTPFileSystem.DEFAULT_REQUEST_SIZE, fs.getRequestSize());
+		fs.setPipelining(4, 8192);
+		assertEquals(4, fs.getMaxOutstandingRequests());
+		assertEquals(8192, fs.getRequestSize());
+		assertThrows(IllegalArgumentException.class, () -> fs.setPipelining(0, 8192));
+		assertThrows(IllegalArgumentException.class, () -> fs.setPipelining(4, 0));
+	}
+
+	@Test
+	void testUploadDownload() throws IOException {
+		final var fs = connect(sshd.getPort());
+		try {
+			for (final var maxOutstandingRequests : List.of(1, 64)) {
+				for (final var requestSize : List.of(4096, 256 * 1024)) {
+					fs.setPipelining(maxOutstandingRequests, requestSize);
+					upload(fs, "file.bin");
+					assertArrayEquals(datas, FileUtils.readFileToByteArray(new File(root, "file.bin")));
+					download(fs, "file.bin");
+				}
+			}
+		} finally {
+			fs.close();
+		}
+	}
+
+	@Test
+	void testUploadDownload_bufferSizeSteps() throws IOException {
+		final var bufferSize = 100_000;
+		final var expectedSteps = (datas.length + bufferSize - 1) / bufferSize;
+		final var fs = connect(sshd.getPort());
+		try {
+			fs.setPipelining(16, 4096);
+			final var f = fs.getFromPath("file.bin");
+
+			final var uploadSteps = new ArrayList<Long>();
+			assertEquals(datas.length, f.uploadAbstract(new ByteArrayInputStream(datas), bufferSize,
+			        uploadSteps::add));
+			assertArrayEquals(datas, FileUtils.readFileToByteArray(new File(root, "file.bin")));
+
+			final var downloadSteps = new ArrayList<Long>();
+			final var outputStream = new ByteArrayOutputStream();
+			assertEquals(datas.length, f.downloadAbstract(outputStream, bufferSize, downloadSteps::add));
+			assertArrayEquals(datas, outputStream.toByteArray());
+
+			for (final var steps : List.of(uploadSteps, downloadSteps)) {
+				assertEquals(expectedSteps, steps.size());
+				for (var pos = 0; pos < expectedSteps - 1; pos++) {
+					assertEquals((pos + 1L) * bufferSize, steps.get(pos));
+				}
+				assertEquals(datas.length, steps.get(expectedSteps - 1));
+			}
+		} finally {
+			fs.close();
+		}
+	}
+
+	@Test
+	void testPipelining_withLatency() throws IOException {
+		try (var proxy = new LatencyProxy(host, sshd.getPort(), 20)) {
+			final var fs = connect(proxy.getPort());
+			try {
+				fs.setPipelining(1, 32 * 1024);
+				final var uploadOneByOne = upload(fs, "file.bin");
+				final var downloadOneByOne = download(fs, "file.bin");
+				fs.setPipelining(32, 32 * 1024);
+				final var uploadPipelined = upload(fs, "file.bin");
+				final var downloadPipelined = download(fs, "file.bin");
+
+				assertTrue(uploadPipelined * 2 < uploadOneByOne,
+				        "Upload " + uploadPipelined + " vs " + uploadOneByOne);
+				assertTrue(downloadPipelined * 2 < downloadOneByOne,
+				        "Download " + downloadPipelined + " vs " + downloadOneByOne);
+			} finally {
+				fs.close();
+			}
+		}
+	}
+
+	@Test
+	void testCopyAbstractToLocalSegmented() throws IOException {
+		datas = new byte[(int) (SegmentedDownload.DEFAULT_MIN_SEGMENT_SIZE * 3 + 1234)];
+		new Random().nextBytes(datas);
+		FileUtils.writeByteArrayToFile(new File(root, "segmented.bin"), datas);
+		final var localFile = new File(root, "segmented-local.bin");
+
+		final var fs = new SFTPFileSystem(host, sshd.getPort(), username, "");
+		fs.setPasswordAuth(password.toCharArray());
+		fs.setChannelPool(0, 4, Duration.ofSeconds(10), Duration.ofSeconds(10));
+		fs.connect();
+		try {
+			final var segments = ConcurrentHashMap.<Integer> newKeySet();
+			final var observer = new TransfertObserver() {
+				@Override
+				public void onSegmentProgress(final File localFile,
+				                              final AbstractFile distantFile,
+				                              final TransfertDirection transfertDirection,
+				                              final int segment,
+				                              final long segmentOffset,
+				                              final long segmentLength,
+				                              final long segmentTransferred) {
+					segments.add(segment);
+				}
+			};
+			fs.getFromPath("segmented.bin").copyAbstractToLocalSegmented(localFile, 8, observer);
+			assertArrayEquals(datas, FileUtils.readFileToByteArray(localFile));
+			assertEquals(Set.of(0, 1, 2, 3), segments);
+			assertEquals(4, fs.getChannelPool().getSize());
+		} finally {
+			fs.close();
+		}
+	}
+
+	@Test
+	@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+	void benchmark() throws IOException {
+		datas = new byte[4 * 1024 * 1024];
+		new Random().nextBytes(datas);
+		final var result = new StringBuilder("Throughput (MB/s) vs RTT, outstanding requests x request size:");
+		for (final var rtt : List.of(0, 10, 50, 100)) {
+			try (var proxy = new LatencyProxy(host, sshd.getPort(), rtt)) {
+				final var fs = connect(proxy.getPort());
+				try {
+					for (final var maxOutstandingRequests : List.of(1, 16, 64)) {
+						for (final var requestSize : List.of(32 * 1024, 128 * 1024)) {
+							fs.setPipelining(maxOutstandingRequests, requestSize);
+							final var upload = upload(fs, "bench.bin");
+							final var download = download(fs, "bench.bin");
+							result.append(String.format("%nRTT %3d ms, %2d x %3d KB: upload %7.1f, download %7.1f",
+							        rtt, maxOutstandingRequests, requestSize / 1024,
+							        toMBs(upload), toMBs(download)));
+						}
+					}
+				} finally {
+					fs.close();
+				}
+			}
+		}
+		log.warn(result);// Visible with the test log configuration
+	}
+
+	private double toMBs(final long nanos) {
+		return datas.length / (1024d * 1024d) / (nanos / 1_000_000_000d);
+	}
+
+}
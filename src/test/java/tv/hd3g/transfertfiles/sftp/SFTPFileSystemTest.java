@@ -37,7 +37,9 @@ import java.net.UnknownHostException;
 import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
 import java.security.PublicKey;
+import java.time.Duration;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.io.FileUtils;
@@ -379,6 +381,46 @@ class SFTPFileSystemTest {
 		assertNull(fs.getSFTPClient());
 	}
 
+	@Test
+	void testSetChannelPool() throws Exception {
+		final var timeout = Duration.ofSeconds(10);
+		assertThrows(IllegalArgumentException.class, () -> fs.setChannelPool(2, 1, timeout, timeout));
+		fs.setPasswordAuth(password.toCharArray());
+		fs.setChannelPool(0, 2, timeout, timeout);
+		fs.connect();
+
+		final var pool = fs.getChannelPool();
+		assertNotNull(pool);
+		final var defaultClient = fs.getSFTPClient();
+		final var pooledClient = fs.useClient(defaultClient, c -> c);
+		assertNotEquals(defaultClient, pooledClient);
+		assertEquals(1, pool.getIdleCount());
+
+		/**
+		 * Two channels in same time
+		 */
+		final var f = fs.getFromPath("target");
+		final var inUse = new CompletableFuture<Void>();
+		final var listing = CompletableFuture.supplyAsync(() -> {
+			try {
+				return fs.useClient(defaultClient, c -> {
+					inUse.join();
+					return f.list().count();
+				});
+			} catch (final IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+		assertTrue(f.exists());
+		inUse.complete(null);
+		assertTrue(listing.get() > 0);
+		assertEquals(2, pool.getSize());
+
+		fs.close();
+		assertNull(fs.getChannelPool());
+		assertEquals(0, pool.getSize());
+	}
+
 	@Test
 	void testClose() {
 		fs.close();